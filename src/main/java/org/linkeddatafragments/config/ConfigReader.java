@@ -1,7 +1,10 @@
 package org.linkeddatafragments.config;
 
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -22,6 +25,8 @@ public class ConfigReader {
     private final Map<String, JsonObject> dataSources = new HashMap<>();
     private final Map<String, String> prefixes = new HashMap<>();
     private final String baseURL;
+    private final List<String> hosts = new ArrayList<>();
+    private final int statisticsThreads;
 
     /**
      * Creates a new configuration reader.
@@ -31,6 +36,18 @@ public class ConfigReader {
     public ConfigReader(Reader configReader) {
         JsonObject root = new JsonParser().parse(configReader).getAsJsonObject();
         this.baseURL = root.has("baseURL") ? root.getAsJsonPrimitive("baseURL").getAsString() : null;
+        if (!root.has("statistics")) {
+            this.statisticsThreads = 0;
+        } else {
+            final JsonObject statistics = root.getAsJsonObject("statistics");
+            this.statisticsThreads = statistics.has("threads")
+                    ? statistics.getAsJsonPrimitive("threads").getAsInt() : 1;
+        }
+        if (root.has("hosts")) {
+            for (JsonElement host : root.getAsJsonArray("hosts")) {
+                this.hosts.add(host.getAsString().toLowerCase(Locale.ROOT));
+            }
+        }
         
         for (Entry<String, JsonElement> entry : root.getAsJsonObject("datasourcetypes").entrySet()) {
             final String className = entry.getValue().getAsString();
@@ -81,6 +98,29 @@ public class ConfigReader {
         return baseURL;
     }
 
+    /**
+     * Gets the host names, with optional ports, under which the server may
+     * be addressed when no base URL is configured; the first one is used for
+     * requests with any other Host header.
+     *
+     * @return the allowed hosts, in lower case, or an empty list if any
+     *         host is allowed
+     */
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Gets the number of threads with which missing VoID statistics are
+     * computed in the background, as configured by <code>statistics</code>.
+     *
+     * @return the number of threads, or 0 if statistics are only read from
+     *         their files and never computed
+     */
+    public int getStatisticsThreads() {
+        return statisticsThreads;
+    }
+
     /**
      * Loads a certain {@link IDataSourceType} class at runtime
      * 
@@ -15,7 +15,8 @@ abstract public class AbstractRequestProcessor
     public void close() {}
 
     /**
-     * Create an {@link ILinkedDataFragment} from {@link ILinkedDataFragmentRequest}
+     * Create an {@link ILinkedDataFragment} from {@link ILinkedDataFragmentRequest},
+     * unless the request was cancelled or its deadline passed already
      *
      * @param request
      * @return
@@ -26,6 +27,7 @@ abstract public class AbstractRequestProcessor
             final ILinkedDataFragmentRequest request )
                     throws IllegalArgumentException
     {
+        request.getCancellationToken().check();
         return getWorker( request ).createRequestedFragment();
     }
 
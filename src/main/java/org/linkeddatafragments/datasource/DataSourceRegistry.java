@@ -0,0 +1,49 @@
+package org.linkeddatafragments.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry of the configured {@link IDataSource}s, by name, so that data
+ * sources can refer to each other.
+ */
+public class DataSourceRegistry
+{
+    private static Map<String, IDataSource> registry =
+                                        new HashMap<String, IDataSource>();
+
+    /**
+     *
+     * @param name
+     * @return the data source, or null if none has the given name
+     */
+    public static synchronized IDataSource get( final String name )
+    {
+        return registry.get( name );
+    }
+
+    /**
+     *
+     * @param name
+     * @param dataSource
+     */
+    public static synchronized void register( final String name,
+                                              final IDataSource dataSource )
+    {
+        if ( registry.containsKey(name) ) {
+            throw new IllegalArgumentException( "The registry already " +
+                       "contains a data source with the name '" + name + "'." );
+        }
+        registry.put( name, dataSource );
+    }
+
+    /**
+     *
+     * @param name
+     */
+    public static synchronized void unregister( final String name )
+    {
+        registry.remove( name );
+    }
+
+}
@@ -0,0 +1,20 @@
+package org.linkeddatafragments.datasource;
+
+import org.apache.jena.graph.Triple;
+
+/**
+ * A data source that can check whether it contains a single triple without
+ * computing the fragment of that triple.
+ *
+ * Unions use this to drop the triples that earlier members contain.
+ */
+public interface ILookupDataSource extends IDataSource {
+
+    /**
+     * Returns whether the data source contains the given triple.
+     *
+     * @param triple a triple without variables or blank nodes
+     * @return true if the triple is in the data source
+     */
+    boolean contains(Triple triple);
+}
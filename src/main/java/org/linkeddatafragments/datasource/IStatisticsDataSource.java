@@ -0,0 +1,41 @@
+package org.linkeddatafragments.datasource;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
+
+/**
+ * A data source that can compute VoID statistics about its triples.
+ *
+ * The statistics are expensive to compute, so they are persisted in a
+ * sidecar file and only recomputed when the data has changed since.
+ */
+public interface IStatisticsDataSource extends IDataSource {
+
+    /**
+     * Returns the file in which the statistics are persisted.
+     *
+     * @return the sidecar file
+     */
+    File getStatisticsFile();
+
+    /**
+     * Returns when the data was last modified, to decide whether the sidecar
+     * file is up to date.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    long getLastModified();
+
+    /**
+     * Computes the statistics.
+     *
+     * @param threads the number of threads to use
+     * @return the statistics
+     * @throws IOException if the data cannot be read
+     * @throws InterruptedException if the computation is interrupted
+     */
+    VoidStatistics computeStatistics(int threads)
+            throws IOException, InterruptedException;
+}
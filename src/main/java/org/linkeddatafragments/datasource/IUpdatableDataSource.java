@@ -0,0 +1,32 @@
+package org.linkeddatafragments.datasource;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A data source whose triples can be changed while it is being served.
+ *
+ * Changes are submitted as patches in which every line is either empty, a
+ * comment starting with <code>#</code>, or an N-Triples statement preceded
+ * by <code>A</code> (add) or <code>D</code> (delete), as in RDF Patch.
+ */
+public interface IUpdatableDataSource extends IDataSource {
+
+    /**
+     * Checks whether a patch may be applied with the given credentials.
+     *
+     * @param authorization the value of the HTTP Authorization header, or null
+     * @return true if the patch may be applied
+     */
+    boolean isAuthorized(String authorization);
+
+    /**
+     * Applies a patch. The patch is applied completely or not at all.
+     *
+     * @param patch the patch
+     * @return the number of triples that were added or deleted
+     * @throws IOException if the patch cannot be read or persisted
+     * @throws IllegalArgumentException if the patch is malformed
+     */
+    long applyPatch(Reader patch) throws IOException;
+}
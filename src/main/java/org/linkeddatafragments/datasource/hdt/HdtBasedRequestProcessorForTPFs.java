@@ -1,6 +1,12 @@
 package org.linkeddatafragments.datasource.hdt;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -8,15 +14,22 @@ import org.apache.jena.rdf.model.RDFNode;
 
 import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
 import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
+import org.linkeddatafragments.exceptions.DataSourceNotReadyException;
+import org.linkeddatafragments.fragments.CancellationToken;
 import org.linkeddatafragments.fragments.ILinkedDataFragment;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+import org.rdfhdt.hdt.enums.ResultEstimationType;
 import org.rdfhdt.hdt.enums.TripleComponentRole;
 import org.rdfhdt.hdt.hdt.HDT;
 import org.rdfhdt.hdt.hdt.HDTManager;
+import org.rdfhdt.hdt.listener.ProgressListener;
 import org.rdfhdt.hdt.triples.IteratorTripleID;
 import org.rdfhdt.hdt.triples.TripleID;
 import org.rdfhdt.hdtjena.NodeDictionary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 
 
@@ -32,14 +45,47 @@ public class HdtBasedRequestProcessorForTPFs
 {
 
     /**
-     * HDT Datasource
+     * Suffix of the file in which HDT stores the additional indexes
      */
-    protected final HDT datasource;
+    public static final String INDEX_SUFFIX = ".index";
+
+    /**
+     * The time for which statistics wait for the HDT index, in milliseconds
+     */
+    public static final long STATISTICS_INDEX_TIMEOUT = 60L * 60 * 1000;
+
+    private static final Logger LOG =
+                LoggerFactory.getLogger( HdtBasedRequestProcessorForTPFs.class );
+
+    /**
+     * HDT Datasource; replaced by the indexed HDT once its index is ready
+     */
+    protected volatile HDT datasource;
 
     /**
      * The dictionary
      */
-    protected final NodeDictionary dictionary;
+    protected volatile NodeDictionary dictionary;
+
+    /**
+     * Exact counts for patterns that HDT can only estimate (may be null)
+     */
+    protected volatile HdtCountIndex counts;
+
+    /**
+     * Random access to deep pages of patterns that cannot goTo (may be null)
+     */
+    protected volatile HdtSkipIndex skipIndex;
+
+    /**
+     * Whether {@link #datasource} has the indexes for all pattern shapes
+     */
+    protected volatile boolean indexed;
+
+    private final long skipIndexCapacity;
+    private final IndexGenerator indexGenerator;
+    private final Future<?> indexTask;
+    private volatile boolean closed;
 
     /**
      * Creates the request processor.
@@ -49,8 +95,177 @@ public class HdtBasedRequestProcessorForTPFs
      */
     public HdtBasedRequestProcessorForTPFs( String hdtFile ) throws IOException
     {
-        datasource = HDTManager.mapIndexedHDT( hdtFile, null ); // listener=null
-        dictionary = new NodeDictionary( datasource.getDictionary() );
+        this( hdtFile, true, HdtSkipIndex.DEFAULT_CAPACITY );
+    }
+
+    /**
+     * Creates the request processor, which generates missing indexes on its
+     * own background thread.
+     *
+     * @param hdtFile the HDT datafile
+     * @param useCountIndex whether to open (and, if necessary, build) the
+     *                      {@link HdtCountIndex} next to the HDT file
+     * @param skipIndexCapacity the number of IDs that the {@link HdtSkipIndex}
+     *                          may keep in memory (0 disables it)
+     * @throws IOException if the file cannot be loaded
+     */
+    public HdtBasedRequestProcessorForTPFs( String hdtFile,
+                                            boolean useCountIndex,
+                                            long skipIndexCapacity )
+                                                             throws IOException
+    {
+        this( hdtFile, useCountIndex, skipIndexCapacity, null );
+    }
+
+    /**
+     * Creates the request processor.
+     *
+     * If the HDT file has no index yet, the plain HDT is mapped and only
+     * patterns with a bound subject (or no bound component at all) are
+     * answered, while the index is generated in the background.
+     * The same task builds a missing or outdated {@link HdtCountIndex}.
+     *
+     * @param hdtFile the HDT datafile
+     * @param useCountIndex whether to open (and, if necessary, build) the
+     *                      {@link HdtCountIndex} next to the HDT file
+     * @param skipIndexCapacity the number of IDs that the {@link HdtSkipIndex}
+     *                          may keep in memory (0 disables it)
+     * @param indexExecutor the executor that generates the indexes, which
+     *                      may be shared by several processors, or null to
+     *                      generate them on a thread of this processor
+     * @throws IOException if the file cannot be loaded
+     */
+    public HdtBasedRequestProcessorForTPFs( String hdtFile,
+                                            boolean useCountIndex,
+                                            long skipIndexCapacity,
+                                            ExecutorService indexExecutor )
+                                                             throws IOException
+    {
+        this.skipIndexCapacity = skipIndexCapacity;
+
+        final HDT hdt;
+        final boolean hasIndex = new File( hdtFile + INDEX_SUFFIX ).isFile();
+        if ( hasIndex )
+            hdt = HDTManager.mapIndexedHDT( hdtFile, null ); // listener=null
+        else
+            hdt = HDTManager.mapHDT( hdtFile, null ); // listener=null
+        useHDT( hdt, hasIndex );
+
+        if ( useCountIndex && hasIndex )
+            counts = HdtCountIndex.openIfUpToDate( hdt, new File( hdtFile ) );
+
+        if ( ! hasIndex || ( useCountIndex && counts == null ) ) {
+            indexGenerator = new IndexGenerator( hdtFile, useCountIndex );
+            if ( indexExecutor != null ) {
+                indexTask = indexExecutor.submit( indexGenerator );
+            }
+            else {
+                final FutureTask<Void> task = new FutureTask<Void>( indexGenerator, null );
+                final Thread thread = new Thread( task, "HDT index generator for " + hdtFile );
+                thread.setDaemon( true );
+                thread.start();
+                indexTask = task;
+            }
+        }
+        else {
+            indexGenerator = null;
+            indexTask = null;
+        }
+    }
+
+    /**
+     * Stops the generation of the indexes and closes the HDT.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        if ( indexTask != null ) {
+            indexTask.cancel( true );
+            // a task that never ran leaves nobody waiting for the index
+            indexGenerator.indexAttempted.countDown();
+        }
+        try {
+            datasource.close();
+        }
+        catch ( IOException e ) {
+            LOG.warn( "Could not close the HDT: {}", e.getMessage() );
+        }
+    }
+
+    /**
+     * Switches to the given HDT. The HDT IDs do not change when an index is
+     * added, so requests in progress can safely finish on the previous one.
+     */
+    private void useHDT( final HDT hdt, final boolean isIndexed )
+    {
+        dictionary = new NodeDictionary( hdt.getDictionary() );
+        skipIndex = skipIndexCapacity > 0
+                  ? new HdtSkipIndex( hdt, skipIndexCapacity,
+                                      HdtSkipIndex.DEFAULT_MINIMUM_OFFSET )
+                  : null;
+        datasource = hdt;
+        indexed = isIndexed;
+    }
+
+    /**
+     * Returns whether all triple pattern shapes can be answered, that is,
+     * whether the HDT index is available.
+     *
+     * @return true if the HDT index is available
+     */
+    public boolean isIndexed()
+    {
+        return indexed;
+    }
+
+    /**
+     * Returns the progress of the background index generation.
+     *
+     * @return a percentage, which is 100 if no index needs to be generated
+     */
+    public float getIndexProgress()
+    {
+        return indexGenerator == null || indexed ? 100f
+                                                 : indexGenerator.progress;
+    }
+
+    /**
+     * Returns the reason why the background generation of the HDT index or
+     * of the count index failed.
+     *
+     * @return the failure, or null if the generation succeeded, is still in
+     *         progress, or was not needed
+     */
+    public Throwable getIndexFailure()
+    {
+        return indexGenerator == null ? null : indexGenerator.failure;
+    }
+
+    /**
+     * Computes the VoID statistics of the HDT, first waiting for the HDT
+     * index, through which the distinct objects per predicate are counted.
+     * If the index cannot be generated, or not within
+     * {@link #STATISTICS_INDEX_TIMEOUT}, the statistics are computed from the
+     * loaded HDT without those counts.
+     *
+     * @param threads the number of threads to use
+     * @return the statistics
+     * @throws InterruptedException if the computation is interrupted
+     */
+    public VoidStatistics computeStatistics( final int threads )
+                                                  throws InterruptedException
+    {
+        if ( ! indexed && indexGenerator != null )
+            indexGenerator.indexAttempted.await( STATISTICS_INDEX_TIMEOUT,
+                                                 TimeUnit.MILLISECONDS );
+
+        // the indexed HDT is in place before the flag is set
+        final boolean hasIndex = indexed;
+        if ( ! hasIndex )
+            LOG.warn( "Computing statistics without the HDT index; the " +
+                      "distinct objects per predicate are not counted" );
+        return HdtStatistics.compute( datasource, threads, hasIndex );
     }
 
     /**
@@ -110,46 +325,38 @@ public class HdtBasedRequestProcessorForTPFs
             // see https://github.com/LinkedDataFragments/Server.Java/issues/23
 
             // look up the result from the HDT datasource)
-            int subjectId = subject.isVariable() ? 0 : dictionary.getIntID(subject.asConstantTerm().asNode(), TripleComponentRole.SUBJECT);
-            int predicateId = predicate.isVariable() ? 0 : dictionary.getIntID(predicate.asConstantTerm().asNode(), TripleComponentRole.PREDICATE);
-            int objectId = object.isVariable() ? 0 : dictionary.getIntID(object.asConstantTerm().asNode(), TripleComponentRole.OBJECT);
-        
-            if (subjectId < 0 || predicateId < 0 || objectId < 0) {
+            final int[] ids = getIds( subject, predicate, object );
+            if ( ids == null ) {
                 return createEmptyTriplePatternFragment();
             }
-        
+            final int subjectId = ids[0];
+            final int predicateId = ids[1];
+            final int objectId = ids[2];
+
             final Model triples = ModelFactory.createDefaultModel();
-            IteratorTripleID matches = datasource.getTriples().search(new TripleID(subjectId, predicateId, objectId));
-            boolean hasMatches = matches.hasNext();
-		
-            if (hasMatches) {
-                // try to jump directly to the offset
-                boolean atOffset;
-                if (matches.canGoTo()) {
-                    try {
-                        matches.goTo(offset);
-                        atOffset = true;
-                    } // if the offset is outside the bounds, this page has no matches
-                    catch (IndexOutOfBoundsException exception) {
-                        atOffset = false;
-                    }
-                } // if not possible, advance to the offset iteratively
-                else {
-                    matches.goToStart();
-                    for (int i = 0; !(atOffset = i == offset) && matches.hasNext(); i++) {
-                        matches.next();
-                    }
-                }
-                // try to add `limit` triples to the result model
-                if (atOffset) {
-                    for (int i = 0; i < limit && matches.hasNext(); i++) {
-                        triples.add(triples.asStatement(toTriple(matches.next())));
-                    }
-                }
+            final long knownTotal = readMatches( subjectId, predicateId,
+                                                 objectId, offset, limit,
+                                                 triples,
+                                                 request.getCancellationToken() );
+
+            if ( knownTotal >= 0 ) {
+                final boolean isLastPage = ( knownTotal <= offset + limit );
+                return createTriplePatternFragment( triples, knownTotal, isLastPage );
+            }
+
+            // use the exact count if we know it; the same iterator provides
+            // the estimate otherwise
+            final IteratorTripleID matches = search( subjectId, predicateId, objectId );
+            final long exactTotal = getExactCount( matches, subjectId,
+                                                   predicateId, objectId );
+            if ( exactTotal >= 0 ) {
+                final boolean isLastPage = ( exactTotal <= offset + limit );
+                return createTriplePatternFragment( triples, exactTotal, isLastPage );
             }
 
             // estimates can be wrong; ensure 0 is returned if there are no results, 
             // and always more than actual results
+            final boolean hasMatches = matches.hasNext();
             final long estimatedTotal = triples.size() > 0 ?
                     Math.max(offset + triples.size() + 1, matches.estimatedNumResults())
                     : hasMatches ?
@@ -163,13 +370,299 @@ public class HdtBasedRequestProcessorForTPFs
 
     } // end of Worker
 
+    /**
+     * Translates a triple pattern into HDT IDs, using 0 for variables.
+     *
+     * @param subject the subject of the pattern
+     * @param predicate the predicate of the pattern
+     * @param object the object of the pattern
+     * @return the subject, predicate and object IDs, or null if some
+     *         constant does not occur in the data (so nothing matches)
+     * @throws DataSourceNotReadyException if the pattern needs the HDT index
+     *                                     and it is still being generated
+     */
+    protected int[] getIds(
+               final ITriplePatternElement<RDFNode,String,String> subject,
+               final ITriplePatternElement<RDFNode,String,String> predicate,
+               final ITriplePatternElement<RDFNode,String,String> object )
+    {
+        // without the index, only patterns in SPO order can be answered
+        if ( ! indexed && subject.isVariable() &&
+             ! ( predicate.isVariable() && object.isVariable() ) ) {
+            throw new DataSourceNotReadyException(
+                    String.format( "The index of this data source is being " +
+                                   "generated (%.0f%%); only patterns with " +
+                                   "a subject are available.",
+                                   getIndexProgress() ) );
+        }
+
+        final NodeDictionary dictionary = this.dictionary;
+        int subjectId = subject.isVariable() ? 0 : dictionary.getIntID(subject.asConstantTerm().asNode(), TripleComponentRole.SUBJECT);
+        int predicateId = predicate.isVariable() ? 0 : dictionary.getIntID(predicate.asConstantTerm().asNode(), TripleComponentRole.PREDICATE);
+        int objectId = object.isVariable() ? 0 : dictionary.getIntID(object.asConstantTerm().asNode(), TripleComponentRole.OBJECT);
+
+        if (subjectId < 0 || predicateId < 0 || objectId < 0) {
+            return null;
+        }
+        return new int[] { subjectId, predicateId, objectId };
+    }
+
+    /**
+     * Searches the HDT for a pattern of HDT IDs (where 0 denotes a variable).
+     *
+     * @param subjectId the subject ID, or 0
+     * @param predicateId the predicate ID, or 0
+     * @param objectId the object ID, or 0
+     * @return an iterator over the matches
+     */
+    protected IteratorTripleID search( final int subjectId,
+                                       final int predicateId,
+                                       final int objectId )
+    {
+        return datasource.getTriples().search(
+                          new TripleID( subjectId, predicateId, objectId ) );
+    }
+
+    /**
+     * Returns whether the HDT contains the given triple, which must not
+     * contain variables.
+     *
+     * @param triple the triple
+     * @return true if the triple is in the HDT
+     */
+    protected boolean contains( final Triple triple )
+    {
+        final NodeDictionary dictionary = this.dictionary;
+        final int subjectId = dictionary.getIntID( triple.getSubject(), TripleComponentRole.SUBJECT );
+        final int predicateId = dictionary.getIntID( triple.getPredicate(), TripleComponentRole.PREDICATE );
+        final int objectId = dictionary.getIntID( triple.getObject(), TripleComponentRole.OBJECT );
+        // 0 would match any term
+        if ( subjectId <= 0 || predicateId <= 0 || objectId <= 0 )
+            return false;
+        return search( subjectId, predicateId, objectId ).hasNext();
+    }
+
+    /**
+     * Adds at most <code>limit</code> matches of a pattern of HDT IDs,
+     * starting at <code>offset</code>, to the given model.
+     *
+     * @param subjectId the subject ID, or 0 for a variable
+     * @param predicateId the predicate ID, or 0 for a variable
+     * @param objectId the object ID, or 0 for a variable
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of matches to add
+     * @param triples the model to add the matches to
+     * @param cancellation the token that is checked for every match
+     * @return the exact number of matches if it became known while reading
+     *         them, or -1 otherwise
+     */
+    protected long readMatches( final int subjectId,
+                                final int predicateId,
+                                final int objectId,
+                                final long offset,
+                                final long limit,
+                                final Model triples,
+                                final CancellationToken cancellation )
+    {
+        final IteratorTripleID matches = search( subjectId, predicateId, objectId );
+        if ( ! matches.hasNext() )
+            return 0L;
+
+        final HdtSkipIndex skipIndex = this.skipIndex;
+        if (!matches.canGoTo() && skipIndex != null) {
+            // deep pages of patterns that cannot goTo are read from the skip index
+            final HdtSkipIndex.Entry entry = skipIndex.get(subjectId, predicateId,
+                                                           objectId, offset, limit,
+                                                           cancellation);
+            if (entry != null) {
+                final TripleID tripleId = new TripleID();
+                final HdtSkipIndex.Cursor cursor = entry.cursor(Math.min(offset, entry.size()));
+                for (long i = 0; i < limit && cursor.hasNext(); i++) {
+                    triples.add(triples.asStatement(toTriple(cursor.next(tripleId))));
+                }
+                return entry.isComplete() ? entry.size() : -1L;
+            }
+        }
+
+        // try to jump directly to the offset
+        boolean atOffset;
+        if (matches.canGoTo()) {
+            try {
+                matches.goTo(offset);
+                atOffset = true;
+            } // if the offset is outside the bounds, this page has no matches
+            catch (IndexOutOfBoundsException exception) {
+                atOffset = false;
+            }
+        } // if not possible, advance to the offset iteratively
+        else {
+            matches.goToStart();
+            for (long i = 0; !(atOffset = i == offset) && matches.hasNext(); i++) {
+                cancellation.check();
+                matches.next();
+            }
+        }
+        // try to add `limit` triples to the result model
+        if (atOffset) {
+            for (long i = 0; i < limit && matches.hasNext(); i++) {
+                cancellation.check();
+                triples.add(triples.asStatement(toTriple(matches.next())));
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Returns the exact number of triples matching the given pattern of HDT
+     * IDs, or -1 if only an estimate is available.
+     *
+     * @param subjectId the subject ID, or 0 for a variable
+     * @param predicateId the predicate ID, or 0 for a variable
+     * @param objectId the object ID, or 0 for a variable
+     * @return the exact number of matches, or -1
+     */
+    protected long getExactCount( final int subjectId,
+                                  final int predicateId,
+                                  final int objectId )
+    {
+        return getExactCount( search( subjectId, predicateId, objectId ),
+                              subjectId, predicateId, objectId );
+    }
+
+    /**
+     * Returns the exact number of triples matching the given pattern of HDT
+     * IDs, or -1 if only an estimate is available, using an iterator over
+     * the matches that was obtained already.
+     *
+     * @param matches an iterator over the matches of the pattern
+     * @param subjectId the subject ID, or 0 for a variable
+     * @param predicateId the predicate ID, or 0 for a variable
+     * @param objectId the object ID, or 0 for a variable
+     * @return the exact number of matches, or -1
+     */
+    protected long getExactCount( final IteratorTripleID matches,
+                                  final int subjectId,
+                                  final int predicateId,
+                                  final int objectId )
+    {
+        if ( matches.numResultEstimation() == ResultEstimationType.EXACT )
+            return matches.estimatedNumResults();
+        final HdtCountIndex counts = this.counts;
+        if ( counts != null )
+            return counts.count( subjectId, predicateId, objectId );
+        return -1L;
+    }
+
+    /**
+     * Returns the exact number of triples matching the given pattern of HDT
+     * IDs, counting the matches one by one if no exact count is available.
+     *
+     * @param subjectId the subject ID, or 0 for a variable
+     * @param predicateId the predicate ID, or 0 for a variable
+     * @param objectId the object ID, or 0 for a variable
+     * @param cancellation the token that is checked for every match
+     * @return the exact number of matches
+     */
+    protected long countMatches( final int subjectId,
+                                 final int predicateId,
+                                 final int objectId,
+                                 final CancellationToken cancellation )
+    {
+        final IteratorTripleID matches = search( subjectId, predicateId, objectId );
+        final long exactCount = getExactCount( matches, subjectId,
+                                               predicateId, objectId );
+        if ( exactCount >= 0 )
+            return exactCount;
+
+        long count = 0;
+        for ( ; matches.hasNext(); matches.next() ) {
+            cancellation.check();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Generates the HDT index and the count index in the background.
+     */
+    private class IndexGenerator implements Runnable, ProgressListener
+    {
+        private final String hdtFile;
+        private final boolean useCountIndex;
+        private volatile float progress = 0f;
+        private volatile Throwable failure;
+        private int reported = 0;
+
+        /**
+         * Counted down once the HDT index is in place or has failed
+         */
+        final CountDownLatch indexAttempted = new CountDownLatch( 1 );
+
+        IndexGenerator( final String hdtFile, final boolean useCountIndex )
+        {
+            this.hdtFile = hdtFile;
+            this.useCountIndex = useCountIndex;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                HDT hdt = datasource;
+                try {
+                    if ( ! indexed ) {
+                        LOG.info( "Generating HDT index for {}", hdtFile );
+                        // the plain HDT is not closed, because requests in
+                        // progress may still be reading from it
+                        hdt = HDTManager.mapIndexedHDT( hdtFile, this );
+                        if ( closed ) {
+                            hdt.close();
+                            return;
+                        }
+                        useHDT( hdt, true );
+                        LOG.info( "Generated HDT index for {}", hdtFile );
+                    }
+                }
+                finally {
+                    indexAttempted.countDown();
+                }
+                if ( useCountIndex ) {
+                    counts = HdtCountIndex.openOrBuild( hdt, new File( hdtFile ) );
+                }
+            }
+            catch ( Throwable e ) {
+                if ( closed ) {
+                    LOG.info( "Stopped generating the indexes for {}", hdtFile );
+                    return;
+                }
+                // the thread ends here, so an error must not go unnoticed
+                failure = e;
+                LOG.error( "Could not generate the indexes for " + hdtFile, e );
+            }
+        }
+
+        @Override
+        public void notifyProgress( final float level, final String message )
+        {
+            // HDT offers no other way to abort the generation
+            if ( closed )
+                throw new IllegalStateException( "The data source was closed." );
+            progress = level;
+            if ( level >= reported + 10 ) {
+                reported = (int) level / 10 * 10;
+                LOG.info( "HDT index for {}: {}% ({})",
+                          hdtFile, reported, message );
+            }
+        }
+    }
+
     /**
      * Converts the HDT triple to a Jena Triple.
      *
      * @param tripleId the HDT triple
      * @return the Jena triple
      */
-    private Triple toTriple(TripleID tripleId) {
+    protected Triple toTriple(TripleID tripleId) {
         return new Triple(
             dictionary.getNode(tripleId.getSubject(), TripleComponentRole.SUBJECT),
             dictionary.getNode(tripleId.getPredicate(), TripleComponentRole.PREDICATE),
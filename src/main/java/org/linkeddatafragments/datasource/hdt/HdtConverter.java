@@ -0,0 +1,289 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.rdfhdt.hdt.enums.RDFNotation;
+import org.rdfhdt.hdt.exceptions.ParserException;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.hdt.HDTManager;
+import org.rdfhdt.hdt.listener.ProgressListener;
+import org.rdfhdt.hdt.options.HDTSpecification;
+
+/**
+ * Converts an RDF file (N-Triples, Turtle or any other syntax Jena reads)
+ * into an HDT file, together with the <code>.index</code> file that
+ * {@link HdtDataSource} needs and, optionally, its count index.
+ *
+ * The HDT is generated by the two-pass loader of hdt-java, which reads the
+ * input twice instead of holding the dictionary and the triples in memory at
+ * the same time; it sorts and deduplicates the triples itself. N-Triples
+ * files are read as they are; other syntaxes are first streamed into a
+ * temporary N-Triples file, which only serves to support them.
+ *
+ * The conversion runs on a single thread: hdt-java builds the dictionary
+ * and the triples of an HDT file itself, and offers no way to generate one
+ * from a dictionary and sorted triples that were built elsewhere, so sorting
+ * them beforehand, in parallel or not, does not make it faster.
+ *
+ * Usage: <code>HdtConverter input.ttl output.hdt [&lt;options&gt;]</code>
+ */
+public class HdtConverter
+{
+    /**
+     * The base URI used if none is given.
+     */
+    public static final String DEFAULT_BASE_URI = "http://linkeddatafragments.org";
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final long PROGRESS_INTERVAL = 1000000;
+
+    private final File tempDirectory;
+
+    /**
+     * Creates a converter.
+     *
+     * @param tempDirectory the directory for the normalized N-Triples file
+     */
+    public HdtConverter( final File tempDirectory )
+    {
+        this.tempDirectory = tempDirectory;
+    }
+
+    private static void printHelp( final Options options )
+    {
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.printHelp( HdtConverter.class.getName() + " <input> <output.hdt> [<options>]",
+                    "Converts an RDF file into an HDT file and its index. Options:", options, "" );
+    }
+
+    /**
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main( final String[] args ) throws Exception
+    {
+        Options options = new Options();
+        options.addOption( "h", "help", false, "Print this help message and then exit." );
+        options.addOption( "b", "base", true, "The base URI of the dataset. The default is " + DEFAULT_BASE_URI + "." );
+        options.addOption( "d", "temp", true, "The directory for the N-Triples file that other syntaxes are converted to. The default is the directory of the output file." );
+        options.addOption( "c", "counts", false, "Also build the count index." );
+
+        final CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse( options, args );
+        }
+        catch ( ParseException e ) {
+            System.err.println( e.getMessage() );
+            printHelp( options );
+            System.exit( -1 );
+            return;
+        }
+        if ( commandLine.getArgs().length != 2 || commandLine.hasOption( 'h' ) ) {
+            printHelp( options );
+            System.exit( -1 );
+        }
+
+        final File input = new File( commandLine.getArgs()[0] );
+        final File output = new File( commandLine.getArgs()[1] ).getAbsoluteFile();
+        final File tempDirectory = commandLine.hasOption( 'd' )
+                ? new File( commandLine.getOptionValue( 'd' ) )
+                : output.getParentFile();
+
+        new HdtConverter( tempDirectory )
+                .convert( input, output,
+                          commandLine.getOptionValue( 'b', DEFAULT_BASE_URI ),
+                          commandLine.hasOption( 'c' ) );
+    }
+
+    /**
+     * Converts an RDF file into an HDT file and builds its index. The HDT
+     * file is written next to the output and then moved into place, which
+     * replaces the output atomically where the file system supports it.
+     *
+     * @param input the RDF file
+     * @param output the HDT file
+     * @param baseURI the base URI of the dataset
+     * @param buildCounts whether to build the count index as well
+     * @throws IOException if a file cannot be read or written
+     * @throws ParserException if HDT cannot parse the triples
+     */
+    public void convert( final File input, final File output,
+                         final String baseURI, final boolean buildCounts )
+                                          throws IOException, ParserException
+    {
+        final long start = System.nanoTime();
+        File triples = null;
+        File hdtFile = null;
+        try {
+            // the two-pass loader reads N-Triples only
+            if ( input.getName().toLowerCase( Locale.ROOT ).endsWith( ".nt" ) ) {
+                triples = input;
+            }
+            else {
+                triples = File.createTempFile( "triples", ".nt", tempDirectory );
+                writeTriples( input, triples, start );
+            }
+
+            // generate the HDT next to the output, so that moving it there
+            // does not copy it
+            hdtFile = File.createTempFile( "hdt", ".tmp",
+                                           output.getAbsoluteFile().getParentFile() );
+            final HDTSpecification spec = new HDTSpecification();
+            spec.set( "loader.type", "two-pass" );
+            final long nTriples;
+            final HDT generated = HDTManager.generateHDT( triples.getPath(),
+                    baseURI, RDFNotation.NTRIPLES, spec, new Progress( start, "Generating" ) );
+            try {
+                nTriples = generated.getTriples().getNumberOfElements();
+                generated.saveToHDT( hdtFile.getPath(), new Progress( start, "Saving" ) );
+            }
+            finally {
+                generated.close();
+            }
+            log( start, "Generated " + nTriples + " distinct triples" );
+
+            // a stale index would be taken for the index of the new file
+            new File( output.getPath() + HdtBasedRequestProcessorForTPFs.INDEX_SUFFIX ).delete();
+            new File( output.getPath() + HdtCountIndex.FILE_SUFFIX ).delete();
+            move( hdtFile, output );
+            log( start, "Wrote " + output + " (" + output.length() + " bytes)" );
+
+            // build the indexes
+            final HDT indexed = HDTManager.mapIndexedHDT( output.getPath(),
+                                                new Progress( start, "Indexing" ) );
+            try {
+                if ( buildCounts )
+                    HdtCountIndex.build( indexed, new File( output.getPath() +
+                                                   HdtCountIndex.FILE_SUFFIX ) );
+            }
+            finally {
+                indexed.close();
+            }
+            log( start, String.format( "Done, %.0f triples/s overall",
+                    nTriples / ( ( System.nanoTime() - start ) / 1e9 ) ) );
+        }
+        catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        finally {
+            if ( triples != null && triples != input )
+                triples.delete();
+            if ( hdtFile != null )
+                hdtFile.delete();
+        }
+    }
+
+    /**
+     * Streams the input into an N-Triples file.
+     */
+    private static void writeTriples( final File input, final File output,
+                                      final long start ) throws IOException
+    {
+        final long inputSize = input.length();
+        try ( Writer out = new BufferedWriter( new OutputStreamWriter(
+                new FileOutputStream( output ), StandardCharsets.UTF_8 ), BUFFER_SIZE ) ) {
+            RDFDataMgr.parse( new StreamRDFBase() {
+                private long nTriples = 0;
+
+                @Override
+                public void triple( final Triple triple )
+                {
+                    try {
+                        out.write( NodeFmtLib.str( triple.getSubject() ) );
+                        out.write( ' ' );
+                        out.write( NodeFmtLib.str( triple.getPredicate() ) );
+                        out.write( ' ' );
+                        out.write( NodeFmtLib.str( triple.getObject() ) );
+                        out.write( " .\n" );
+                    }
+                    catch ( IOException e ) {
+                        throw new UncheckedIOException( e );
+                    }
+                    if ( ++nTriples % PROGRESS_INTERVAL == 0 )
+                        log( start, String.format( "Read %d triples, %.0f triples/s",
+                              nTriples, nTriples / ( ( System.nanoTime() - start ) / 1e9 ) ) );
+                }
+
+                @Override
+                public void finish()
+                {
+                    final double seconds = ( System.nanoTime() - start ) / 1e9;
+                    log( start, String.format( "Read %d triples, %.0f triples/s, %.1f MB/s",
+                            nTriples, nTriples / seconds, inputSize / seconds / ( 1 << 20 ) ) );
+                }
+            }, input.getPath() );
+        }
+    }
+
+    /**
+     * Moves a file, atomically if possible.
+     */
+    private static void move( final File source, final File target )
+                                                             throws IOException
+    {
+        try {
+            Files.move( source.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e ) {
+            Files.move( source.toPath(), target.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    private static void log( final long start, final String message )
+    {
+        System.out.println( String.format( "[%7.1fs] %s",
+                ( System.nanoTime() - start ) / 1e9, message ) );
+    }
+
+    /**
+     * Logs the progress reported by HDT in steps of ten percent.
+     */
+    private static class Progress implements ProgressListener
+    {
+        private final long start;
+        private final String task;
+        private int reported = -1;
+
+        Progress( final long start, final String task )
+        {
+            this.start = start;
+            this.task = task;
+        }
+
+        @Override
+        public void notifyProgress( final float level, final String message )
+        {
+            final int step = (int) ( level / 10 );
+            if ( step > reported ) {
+                reported = step;
+                log( start, String.format( "%s: %3.0f%% %s", task, level, message ) );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,327 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.rdfhdt.hdt.dictionary.Dictionary;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.triples.IteratorTripleID;
+import org.rdfhdt.hdt.triples.TripleID;
+
+/**
+ * Exact triple counts for the triple pattern shapes for which HDT iterators
+ * only provide estimates, that is, (?,?,?), (?,p,?), (?,?,o) and (?,p,o).
+ *
+ * The counts are computed once per HDT file, stored in a sidecar file next to
+ * it, and memory-mapped when the data source is opened.
+ */
+public class HdtCountIndex
+{
+    /**
+     * Suffix appended to the name of the HDT file to obtain the sidecar file
+     */
+    public static final String FILE_SUFFIX = ".counts";
+
+    private static final int MAGIC = 0x4C444643; // "LDFC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8;
+
+    private final long numberOfTriples;
+    private final long numberOfPredicates;
+    private final long numberOfObjects;
+    private final long numberOfPairs;
+
+    private final MappedLongArray predicateCounts;
+    private final MappedLongArray objectCounts;
+    private final MappedLongArray pairs;
+
+    /**
+     * Maps the given count index file.
+     *
+     * @param file the count index file
+     * @throws IOException if the file cannot be read or is not a count index
+     */
+    public HdtCountIndex( final File file ) throws IOException
+    {
+        try ( RandomAccessFile raf = new RandomAccessFile( file, "r" );
+              FileChannel channel = raf.getChannel() ) {
+            final MappedByteBuffer header =
+                    channel.map( FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE );
+            header.order( ByteOrder.BIG_ENDIAN );
+            if ( header.getInt() != MAGIC || header.getInt() != VERSION )
+                throw new IOException( file + " is not a count index." );
+            numberOfTriples = header.getLong();
+            numberOfPredicates = header.getLong();
+            numberOfObjects = header.getLong();
+            numberOfPairs = header.getLong();
+
+            long position = HEADER_SIZE;
+            predicateCounts = new MappedLongArray( channel, position, numberOfPredicates + 1 );
+            position += ( numberOfPredicates + 1 ) * 8;
+            objectCounts = new MappedLongArray( channel, position, numberOfObjects + 1 );
+            position += ( numberOfObjects + 1 ) * 8;
+            pairs = new MappedLongArray( channel, position, numberOfPairs * 2 );
+            position += numberOfPairs * 16;
+
+            if ( position != channel.size() )
+                throw new IOException( file + " is truncated." );
+        }
+    }
+
+    /**
+     * Opens the count index for the given HDT, building it first if it does
+     * not exist yet or if it is older than the HDT file.
+     *
+     * @param hdt the HDT to count
+     * @param hdtFile the file from which the HDT was loaded
+     * @return the count index
+     * @throws IOException if the count index cannot be built or read
+     */
+    public static HdtCountIndex openOrBuild( final HDT hdt, final File hdtFile )
+                                                             throws IOException
+    {
+        final HdtCountIndex index = openIfUpToDate( hdt, hdtFile );
+        if ( index != null )
+            return index;
+
+        final File file = new File( hdtFile.getPath() + FILE_SUFFIX );
+        build( hdt, file );
+        return new HdtCountIndex( file );
+    }
+
+    /**
+     * Opens the count index for the given HDT if it exists and is up to date.
+     *
+     * @param hdt the HDT to count
+     * @param hdtFile the file from which the HDT was loaded
+     * @return the count index, or null if it needs to be (re)built
+     */
+    public static HdtCountIndex openIfUpToDate( final HDT hdt,
+                                                final File hdtFile )
+    {
+        final File file = new File( hdtFile.getPath() + FILE_SUFFIX );
+        if ( ! file.isFile() || file.lastModified() < hdtFile.lastModified() )
+            return null;
+        try {
+            final HdtCountIndex index = new HdtCountIndex( file );
+            return index.matches( hdt ) ? index : null;
+        }
+        catch ( IOException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * Counts the triples of the given HDT and writes the result to the given
+     * file. The file is replaced atomically once it has been written completely.
+     *
+     * For every object, the matching triples are visited through the object
+     * index, so memory use is bounded by the number of predicates rather than
+     * by the number of triples.
+     *
+     * @param hdt the HDT to count
+     * @param file the count index file to write
+     * @throws IOException if the file cannot be written, or the thread is
+     *                     interrupted
+     */
+    public static void build( final HDT hdt, final File file ) throws IOException
+    {
+        final Dictionary dictionary = hdt.getDictionary();
+        final int nPredicates = (int) dictionary.getNpredicates();
+        final long nObjects = dictionary.getNobjects();
+
+        final long[] predicateCounts = new long[nPredicates + 1];
+        final long[] scratch = new long[nPredicates + 1];
+        int[] touched = new int[16];
+
+        final File objectsFile = new File( file.getPath() + ".objects.tmp" );
+        final File pairsFile = new File( file.getPath() + ".pairs.tmp" );
+        final File target = new File( file.getPath() + ".tmp" );
+        long nPairs = 0;
+
+        try {
+            try ( DataOutputStream objects = openOutput( objectsFile );
+                  DataOutputStream pairs = openOutput( pairsFile ) ) {
+                objects.writeLong( 0L ); // IDs start at 1
+                for ( long o = 1; o <= nObjects; o++ ) {
+                    if ( Thread.currentThread().isInterrupted() )
+                        throw new InterruptedIOException(
+                                "The count index was not built completely." );
+                    final IteratorTripleID matches = hdt.getTriples().search(
+                                          new TripleID( 0, 0, (int) o ) );
+                    long objectCount = 0;
+                    int nTouched = 0;
+                    while ( matches.hasNext() ) {
+                        final int p = matches.next().getPredicate();
+                        if ( scratch[p]++ == 0 ) {
+                            if ( nTouched == touched.length )
+                                touched = Arrays.copyOf( touched, nTouched * 2 );
+                            touched[nTouched++] = p;
+                        }
+                        objectCount++;
+                    }
+                    objects.writeLong( objectCount );
+
+                    // pairs are written in (object, predicate) order
+                    Arrays.sort( touched, 0, nTouched );
+                    for ( int i = 0; i < nTouched; i++ ) {
+                        final int p = touched[i];
+                        pairs.writeLong( pairKey( p, o ) );
+                        pairs.writeLong( scratch[p] );
+                        predicateCounts[p] += scratch[p];
+                        scratch[p] = 0;
+                        nPairs++;
+                    }
+                }
+            }
+
+            try ( DataOutputStream out = openOutput( target ) ) {
+                out.writeInt( MAGIC );
+                out.writeInt( VERSION );
+                out.writeLong( hdt.getTriples().getNumberOfElements() );
+                out.writeLong( nPredicates );
+                out.writeLong( nObjects );
+                out.writeLong( nPairs );
+                for ( long count : predicateCounts )
+                    out.writeLong( count );
+                copy( objectsFile, out );
+                copy( pairsFile, out );
+            }
+
+            if ( file.exists() && ! file.delete() )
+                throw new IOException( "Could not replace " + file + "." );
+            if ( ! target.renameTo( file ) )
+                throw new IOException( "Could not create " + file + "." );
+        }
+        finally {
+            objectsFile.delete();
+            pairsFile.delete();
+            target.delete();
+        }
+    }
+
+    /**
+     * Returns the exact number of triples matching the given pattern of HDT
+     * IDs (where 0 denotes a variable), or -1 if the pattern binds the
+     * subject; subject-bound patterns are counted exactly by HDT itself.
+     *
+     * @param subjectId the subject ID, or 0
+     * @param predicateId the predicate ID, or 0
+     * @param objectId the object ID, or 0
+     * @return the number of matching triples, or -1 if unknown
+     */
+    public long count( final int subjectId,
+                       final int predicateId,
+                       final int objectId )
+    {
+        if ( subjectId != 0 )
+            return -1L;
+        if ( predicateId == 0 && objectId == 0 )
+            return numberOfTriples;
+        if ( predicateId > numberOfPredicates || objectId > numberOfObjects )
+            return 0L;
+        if ( objectId == 0 )
+            return predicateCounts.get( predicateId );
+        if ( predicateId == 0 )
+            return objectCounts.get( objectId );
+        return pairCount( pairKey( predicateId, objectId ) );
+    }
+
+    /**
+     * Checks whether this count index was built for the given HDT.
+     */
+    private boolean matches( final HDT hdt )
+    {
+        final Dictionary dictionary = hdt.getDictionary();
+        return numberOfTriples == hdt.getTriples().getNumberOfElements()
+            && numberOfPredicates == dictionary.getNpredicates()
+            && numberOfObjects == dictionary.getNobjects();
+    }
+
+    /**
+     * Looks up the count of an (object, predicate) key by binary search.
+     */
+    private long pairCount( final long key )
+    {
+        long low = 0;
+        long high = numberOfPairs - 1;
+        while ( low <= high ) {
+            final long mid = ( low + high ) >>> 1;
+            final long midKey = pairs.get( mid * 2 );
+            if ( midKey < key )
+                low = mid + 1;
+            else if ( midKey > key )
+                high = mid - 1;
+            else
+                return pairs.get( mid * 2 + 1 );
+        }
+        return 0L;
+    }
+
+    private static long pairKey( final long predicateId, final long objectId )
+    {
+        return ( objectId << 32 ) | predicateId;
+    }
+
+    private static DataOutputStream openOutput( final File file )
+                                                             throws IOException
+    {
+        return new DataOutputStream( new BufferedOutputStream(
+                                 new FileOutputStream( file ), 1 << 16 ) );
+    }
+
+    private static void copy( final File source, final DataOutputStream out )
+                                                             throws IOException
+    {
+        final byte[] buffer = new byte[1 << 16];
+        try ( FileInputStream in = new FileInputStream( source ) ) {
+            int read;
+            while ( ( read = in.read( buffer ) ) > 0 )
+                out.write( buffer, 0, read );
+        }
+    }
+
+    /**
+     * A read-only array of longs backed by a memory-mapped file region.
+     * The region is mapped in chunks because a single mapping is limited to
+     * 2GB.
+     */
+    static class MappedLongArray
+    {
+        private static final int CHUNK_BITS = 27; // 2^27 longs = 1GB
+        private static final long CHUNK_MASK = ( 1L << CHUNK_BITS ) - 1;
+
+        private final MappedByteBuffer[] chunks;
+
+        MappedLongArray( final FileChannel channel,
+                         final long position,
+                         final long length ) throws IOException
+        {
+            final int nChunks = (int) ( ( length + CHUNK_MASK ) >>> CHUNK_BITS );
+            chunks = new MappedByteBuffer[nChunks];
+            for ( int i = 0; i < nChunks; i++ ) {
+                final long first = (long) i << CHUNK_BITS;
+                final long size = Math.min( CHUNK_MASK + 1, length - first ) * 8;
+                chunks[i] = channel.map( FileChannel.MapMode.READ_ONLY,
+                                         position + first * 8, size );
+            }
+        }
+
+        long get( final long index )
+        {
+            return chunks[(int) ( index >>> CHUNK_BITS )]
+                         .getLong( (int) ( ( index & CHUNK_MASK ) << 3 ) );
+        }
+    }
+
+}
@@ -1,9 +1,14 @@
 package org.linkeddatafragments.datasource.hdt;
 
+import java.io.File;
 import java.io.IOException;
 
+import org.apache.jena.graph.Triple;
 import org.linkeddatafragments.datasource.DataSourceBase;
 import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.ILookupDataSource;
+import org.linkeddatafragments.datasource.IStatisticsDataSource;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
 import org.linkeddatafragments.fragments.IFragmentRequestParser;
 import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
 
@@ -13,7 +18,8 @@ import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
  * @author Ruben Verborgh
  * @author <a href="http://olafhartig.de">Olaf Hartig</a>
  */
-public class HdtDataSource extends DataSourceBase {
+public class HdtDataSource extends DataSourceBase
+                           implements IStatisticsDataSource, ILookupDataSource {
 
     /**
      * The request processor
@@ -21,6 +27,13 @@ public class HdtDataSource extends DataSourceBase {
      */
     protected final HdtBasedRequestProcessorForTPFs requestProcessor;
 
+    /**
+     * Loads the files into the page cache (may be null)
+     */
+    protected final HdtWarmer warmer;
+
+    private final File hdtFile;
+
     /**
      * Creates a new HdtDataSource.
      *
@@ -30,8 +43,54 @@ public class HdtDataSource extends DataSourceBase {
      * @throws IOException if the file cannot be loaded
      */
     public HdtDataSource(String title, String description, String hdtFile) throws IOException {
+        this(title, description, hdtFile, true, HdtSkipIndex.DEFAULT_CAPACITY, 0);
+    }
+
+    /**
+     * Creates a new HdtDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param hdtFile the HDT datafile
+     * @param useCountIndex whether to use a {@link HdtCountIndex} for exact counts
+     * @param skipIndexCapacity the number of IDs kept by the {@link HdtSkipIndex}
+     * @param warmupRate the read rate in bytes per second with which the files
+     *                   are loaded into the page cache (0 disables the warmup)
+     * @throws IOException if the file cannot be loaded
+     */
+    public HdtDataSource(String title, String description, String hdtFile,
+                         boolean useCountIndex, long skipIndexCapacity,
+                         long warmupRate) throws IOException {
         super(title, description);
-        requestProcessor = new HdtBasedRequestProcessorForTPFs( hdtFile );
+        this.hdtFile = new File(hdtFile);
+        requestProcessor = new HdtBasedRequestProcessorForTPFs( hdtFile, useCountIndex,
+                                                                skipIndexCapacity );
+        if (warmupRate > 0) {
+            warmer = new HdtWarmer(new File(hdtFile), warmupRate);
+            warmer.start();
+        } else {
+            warmer = null;
+        }
+    }
+
+    @Override
+    public File getStatisticsFile() {
+        return new File(hdtFile.getPath() + HdtStatistics.FILE_SUFFIX);
+    }
+
+    @Override
+    public long getLastModified() {
+        return hdtFile.lastModified();
+    }
+
+    @Override
+    public VoidStatistics computeStatistics(int threads) throws InterruptedException {
+        return requestProcessor.computeStatistics(threads);
+    }
+
+    @Override
+    public boolean contains(Triple triple) {
+        return requestProcessor.contains(triple);
     }
 
     @Override
@@ -46,4 +105,12 @@ public class HdtDataSource extends DataSourceBase {
         return requestProcessor;
     }
 
+    @Override
+    public void close() {
+        if (warmer != null) {
+            warmer.close();
+        }
+        requestProcessor.close();
+    }
+
 }
@@ -24,9 +24,19 @@ public class HdtDataSourceType implements IDataSourceType
     {
         final String fname = settings.getAsJsonPrimitive("file").getAsString();
         final File file = new File( fname );
+        final boolean useCountIndex = ! settings.has("countIndex")
+                || settings.getAsJsonPrimitive("countIndex").getAsBoolean();
+        final long skipIndexCapacity = settings.has("skipIndexCapacity")
+                ? settings.getAsJsonPrimitive("skipIndexCapacity").getAsLong()
+                : HdtSkipIndex.DEFAULT_CAPACITY;
+        final long warmupRate = settings.has("warmupRate")
+                ? settings.getAsJsonPrimitive("warmupRate").getAsLong() * 1024 * 1024
+                : 0;
         
         try {
-            return new HdtDataSource(title, description, file.getAbsolutePath());
+            return new HdtDataSource(title, description, file.getAbsolutePath(),
+                                     useCountIndex, skipIndexCapacity,
+                                     warmupRate);
         } catch (IOException ex) {
             throw new DataSourceCreationException(ex);
         }
@@ -0,0 +1,90 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.apache.jena.graph.Triple;
+import org.linkeddatafragments.datasource.DataSourceBase;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.ILookupDataSource;
+import org.linkeddatafragments.datasource.IUpdatableDataSource;
+import org.linkeddatafragments.fragments.IFragmentRequestParser;
+import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
+
+/**
+ * An HDT data source of Basic Linked Data Fragments that accepts patches.
+ */
+public class HdtDeltaDataSource extends DataSourceBase
+                                implements IUpdatableDataSource, ILookupDataSource {
+
+    /**
+     * The request processor
+     * 
+     */
+    protected final HdtDeltaRequestProcessorForTPFs requestProcessor;
+
+    private final String patchToken;
+
+    /**
+     * Creates a new HdtDeltaDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param hdtFile the HDT datafile
+     * @param useCountIndex whether to use a {@link HdtCountIndex} for exact counts
+     * @param skipIndexCapacity the number of IDs kept by the {@link HdtSkipIndex}
+     * @param compactionThreshold the number of changed triples after which
+     *                            the HDT file is regenerated (0 disables it)
+     * @param patchToken the bearer token that patches must carry, or null to
+     *                   reject all patches
+     * @throws IOException if the file cannot be loaded
+     */
+    public HdtDeltaDataSource(String title, String description, String hdtFile,
+                              boolean useCountIndex, long skipIndexCapacity,
+                              long compactionThreshold, String patchToken)
+                                                             throws IOException {
+        super(title, description);
+        requestProcessor = new HdtDeltaRequestProcessorForTPFs( hdtFile,
+                useCountIndex, skipIndexCapacity, compactionThreshold );
+        this.patchToken = patchToken;
+    }
+
+    @Override
+    public boolean isAuthorized(String authorization) {
+        if (patchToken == null || authorization == null)
+            return false;
+        return MessageDigest.isEqual(
+                ("Bearer " + patchToken).getBytes(StandardCharsets.UTF_8),
+                authorization.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public long applyPatch(Reader patch) throws IOException {
+        return requestProcessor.applyPatch(patch);
+    }
+
+    @Override
+    public IFragmentRequestParser getRequestParser()
+    {
+        return TPFRequestParserForJenaBackends.getInstance();
+    }
+
+    @Override
+    public IFragmentRequestProcessor getRequestProcessor()
+    {
+        return requestProcessor;
+    }
+
+    @Override
+    public void close() {
+        requestProcessor.close();
+    }
+
+    @Override
+    public boolean contains(Triple triple) {
+        return requestProcessor.contains(triple);
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.exceptions.DataSourceCreationException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The type of HDT-backed Triple Pattern Fragment data sources that accept
+ * patches, which are authorized with the <code>patchToken</code> setting.
+ */
+public class HdtDeltaDataSourceType implements IDataSourceType
+{
+    @Override
+    public IDataSource createDataSource( final String title,
+                                         final String description,
+                                         final JsonObject settings )
+                                                     throws DataSourceCreationException
+    {
+        final String fname = settings.getAsJsonPrimitive("file").getAsString();
+        final File file = new File( fname );
+        final boolean useCountIndex = ! settings.has("countIndex")
+                || settings.getAsJsonPrimitive("countIndex").getAsBoolean();
+        final long skipIndexCapacity = settings.has("skipIndexCapacity")
+                ? settings.getAsJsonPrimitive("skipIndexCapacity").getAsLong()
+                : HdtSkipIndex.DEFAULT_CAPACITY;
+        final long compactionThreshold = settings.has("compactionThreshold")
+                ? settings.getAsJsonPrimitive("compactionThreshold").getAsLong()
+                : HdtDeltaRequestProcessorForTPFs.DEFAULT_COMPACTION_THRESHOLD;
+        final String patchToken = settings.has("patchToken")
+                ? settings.getAsJsonPrimitive("patchToken").getAsString()
+                : null;
+
+        try {
+            return new HdtDeltaDataSource(title, description, file.getAbsolutePath(),
+                                          useCountIndex, skipIndexCapacity,
+                                          compactionThreshold, patchToken);
+        } catch (IOException ex) {
+            throw new DataSourceCreationException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,1103 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.lang.LangNTriples;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.ParserProfile;
+import org.apache.jena.riot.system.RiotLib;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+
+import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.memory.LayeredTripleIndex;
+import org.linkeddatafragments.datasource.memory.TermDictionary;
+import org.linkeddatafragments.fragments.CancellationToken;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+import org.linkeddatafragments.util.BoundedCache;
+import org.rdfhdt.hdt.dictionary.Dictionary;
+import org.rdfhdt.hdt.enums.RDFNotation;
+import org.rdfhdt.hdt.enums.TripleComponentRole;
+import org.rdfhdt.hdt.exceptions.ParserException;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.hdt.HDTManager;
+import org.rdfhdt.hdt.options.HDTSpecification;
+import org.rdfhdt.hdt.triples.IteratorTripleID;
+import org.rdfhdt.hdt.triples.TripleID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link IFragmentRequestProcessor} that processes
+ * {@link ITriplePatternFragmentRequest}s over an HDT file with changes.
+ *
+ * Added and deleted triples are kept in memory as a delta on top of the
+ * HDT: two {@link LayeredTripleIndex}es over a {@link TermDictionary}, to
+ * which every patch is applied without rebuilding them. Every patch is also
+ * appended to a journal next to the HDT file, which is replayed on startup.
+ * Once the delta grows beyond a threshold, a new HDT file with the changes
+ * applied is generated in the background and swapped in.
+ *
+ * The matches of a pattern are paged through as the added matches,
+ * followed by the matches in the HDT file without the deleted ones, so the
+ * HDT matches start at the exact number of added matches even when only an
+ * estimate of their own number is known. To keep pages full, the positions
+ * of the deleted matches within the HDT matches are looked up per pattern
+ * and delta, as far as the pages read so far needed them.
+ *
+ * After a compaction, the previous HDT file is closed once the requests
+ * that were reading from it have finished.
+ *
+ * Blank nodes in patches are identified by their labels, which refer to the
+ * blank nodes of the same label in the HDT file.
+ */
+public class HdtDeltaRequestProcessorForTPFs
+    extends AbstractRequestProcessorForTriplePatterns<RDFNode,String,String>
+{
+
+    /**
+     * Suffix appended to the name of the HDT file to obtain the journal
+     */
+    public static final String JOURNAL_SUFFIX = ".patch";
+
+    /**
+     * Default number of changed triples after which the HDT is regenerated
+     */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1000000L;
+
+    /**
+     * The maximum number of patterns per delta whose deleted positions are
+     * kept
+     */
+    public static final int MAX_CACHED_POSITIONS = 1024;
+
+    private static final String COMPACTION_SUFFIX = ".compacting";
+    private static final String BASE_URI = "http://linkeddatafragments.org";
+    private static final Logger LOG =
+                LoggerFactory.getLogger( HdtDeltaRequestProcessorForTPFs.class );
+
+    /**
+     * The HDT file with the delta on top of it
+     */
+    protected volatile State state;
+
+    private final String hdtFile;
+    private final File journal;
+    private final boolean useCountIndex;
+    private final long skipIndexCapacity;
+    private final long compactionThreshold;
+    private final Object updateLock = new Object();
+    private volatile boolean compacting = false;
+    private boolean closed = false;
+
+    /**
+     * Creates the request processor, replaying the journal if there is one.
+     *
+     * @param hdtFile the HDT datafile
+     * @param useCountIndex whether to use a {@link HdtCountIndex}
+     * @param skipIndexCapacity the number of IDs kept by the {@link HdtSkipIndex}
+     * @param compactionThreshold the number of changed triples after which
+     *                            the HDT file is regenerated (0 disables it)
+     * @throws IOException if the file or the journal cannot be loaded
+     */
+    public HdtDeltaRequestProcessorForTPFs( final String hdtFile,
+                                            final boolean useCountIndex,
+                                            final long skipIndexCapacity,
+                                            final long compactionThreshold )
+                                                             throws IOException
+    {
+        this.hdtFile = hdtFile;
+        this.journal = new File( hdtFile + JOURNAL_SUFFIX );
+        this.useCountIndex = useCountIndex;
+        this.skipIndexCapacity = skipIndexCapacity;
+        this.compactionThreshold = compactionThreshold;
+        this.state = new State( new HdtBasedRequestProcessorForTPFs( hdtFile,
+                                        useCountIndex, skipIndexCapacity ),
+                                new TermDictionary(),
+                                LayeredTripleIndex.EMPTY, LayeredTripleIndex.EMPTY );
+
+        if ( journal.isFile() ) {
+            try ( Reader in = new BufferedReader( new InputStreamReader(
+                      new FileInputStream( journal ), StandardCharsets.UTF_8 ) ) ) {
+                final Patch patch = Patch.parse( in );
+                synchronized ( updateLock ) {
+                    state = apply( state, patch ).state;
+                }
+            }
+            catch ( IllegalArgumentException e ) {
+                throw new IOException( "Corrupt journal " + journal + ": " +
+                                       e.getMessage(), e );
+            }
+        }
+    }
+
+    /**
+     * Applies a patch and appends it to the journal.
+     *
+     * @param in the patch
+     * @return the number of triples that were added or deleted
+     * @throws IOException if the patch cannot be read or journaled
+     * @throws IllegalArgumentException if the patch is malformed
+     */
+    public long applyPatch( final Reader in ) throws IOException
+    {
+        final Patch patch = Patch.parse( in );
+        final long changes;
+        synchronized ( updateLock ) {
+            final Update update = apply( state, patch );
+            if ( update.changes == 0 )
+                return 0L;
+            try ( Writer out = new BufferedWriter( new OutputStreamWriter(
+                      new FileOutputStream( journal, true ), StandardCharsets.UTF_8 ) ) ) {
+                patch.write( out );
+            }
+            state = update.state;
+            changes = update.changes;
+        }
+        startCompactionIfNeeded();
+        return changes;
+    }
+
+    /**
+     * Returns the number of triples in the delta.
+     *
+     * @return the number of added plus the number of deleted triples
+     */
+    public long getDeltaSize()
+    {
+        final State state = this.state;
+        return state.added.size() + state.removed.size();
+    }
+
+    /**
+     * Closes the HDT file once the requests in progress have finished.
+     */
+    @Override
+    public void close()
+    {
+        synchronized ( updateLock ) {
+            if ( closed )
+                return;
+            closed = true;
+            state.release();
+        }
+    }
+
+    /**
+     * Returns whether the HDT file with the changes contains the given triple.
+     *
+     * @param triple a triple without variables
+     * @return true if the triple is in the data
+     */
+    public boolean contains( final Triple triple )
+    {
+        final State state = acquireState();
+        try {
+            final Triple resolved = resolve( state.base, triple );
+            return state.contains( resolved, state.isInBase( resolved ) );
+        }
+        finally {
+            state.release();
+        }
+    }
+
+    /**
+     * Returns the current state, which must be released after use.
+     */
+    private State acquireState()
+    {
+        while ( true ) {
+            final State current = state;
+            if ( current.acquire() )
+                return current;
+            // the HDT file was swapped out and closed in the meantime
+            if ( current == state )
+                throw new IllegalStateException( "The data source was closed." );
+        }
+    }
+
+    /**
+     *
+     * @param request
+     * @return
+     * @throws IllegalArgumentException
+     */
+    @Override
+    protected Worker getTPFSpecificWorker(
+            final ITriplePatternFragmentRequest<RDFNode,String,String> request )
+                                                throws IllegalArgumentException
+    {
+        return new Worker( request );
+    }
+
+    /**
+     * Worker class for HDT with a delta
+     */
+    protected class Worker
+       extends AbstractRequestProcessorForTriplePatterns.Worker<RDFNode,String,String>
+    {
+
+        /**
+         * Create a Worker for HDT with a delta
+         *
+         * @param req
+         */
+        public Worker(
+                final ITriplePatternFragmentRequest<RDFNode,String,String> req )
+        {
+            super( req );
+        }
+
+        /**
+         * Creates an {@link ILinkedDataFragment} from the HDT and the delta
+         *
+         * @param subject
+         * @param predicate
+         * @param object
+         * @param offset
+         * @param limit
+         * @return
+         */
+        @Override
+        protected ILinkedDataFragment createFragment(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final State state = acquireState();
+            try {
+                return createFragment( state, subject, predicate, object,
+                                       offset, limit );
+            }
+            finally {
+                state.release();
+            }
+        }
+
+        private ILinkedDataFragment createFragment( final State state,
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final CancellationToken cancellation = request.getCancellationToken();
+
+            // the delta is in memory, so its counts are exact
+            final int[] ids = state.base.getIds( subject, predicate, object );
+            final int s = getDeltaId( state, subject );
+            final int p = getDeltaId( state, predicate );
+            final int o = getDeltaId( state, object );
+            final boolean inDelta = s >= 0 && p >= 0 && o >= 0;
+            final LayeredTripleIndex.Matches added =
+                                    inDelta ? state.added.find( s, p, o ) : null;
+            final long addedCount = added == null ? 0L : added.size();
+            final LayeredTripleIndex.Matches removed =
+                                    inDelta ? state.removed.find( s, p, o ) : null;
+            final long removedCount = removed == null ? 0L : removed.size();
+
+            // start with the added matches
+            final Model triples = ModelFactory.createDefaultModel();
+            final int[] triple = new int[3];
+            for ( long i = offset; i < Math.min( addedCount, offset + limit ); i++ ) {
+                state.added.get( added, i, triple );
+                triples.add( triples.asStatement( state.toTriple( triple ) ) );
+            }
+            if ( ids == null ) {
+                final boolean isLastPage = ( addedCount <= offset + limit );
+                return createTriplePatternFragment( triples, addedCount, isLastPage );
+            }
+
+            // continue with the matches in the HDT file, skipping deleted ones
+            long knownTotal = state.base.getExactCount( ids[0], ids[1], ids[2] );
+            boolean exhausted = false;
+            final long baseOffset = Math.max( 0L, offset - addedCount );
+            final long baseLimit = offset + limit - Math.max( offset, addedCount );
+            if ( baseLimit > 0 ) {
+                long start = baseOffset;
+                long end = baseOffset + baseLimit;
+                if ( removedCount > 0 ) {
+                    // move the range past the deleted matches before and in it
+                    final long[] range = state.getRemovedPositions( ids, removed,
+                                                        cancellation ).skip(
+                                                        start, end, cancellation );
+                    start = range[0];
+                    end = range[1];
+                }
+
+                final Model page = ModelFactory.createDefaultModel();
+                final long readTotal = state.base.readMatches( ids[0], ids[1],
+                                                 ids[2], start, end - start,
+                                                 page, cancellation );
+                if ( readTotal >= 0 )
+                    knownTotal = readTotal;
+                // a short page ends the matches, unless it is beyond them
+                exhausted = page.size() < end - start &&
+                            ( page.size() > 0 || start == 0 );
+                if ( removedCount == 0 ) {
+                    triples.add( page );
+                }
+                else {
+                    for ( Statement statement : page.listStatements().toList() ) {
+                        if ( ! state.isRemoved( statement.asTriple() ) )
+                            triples.add( statement );
+                    }
+                }
+            }
+
+            // derive the total from the HDT count and the delta
+            if ( knownTotal >= 0 ) {
+                final long totalSize = addedCount + knownTotal - removedCount;
+                final boolean isLastPage = ( totalSize <= offset + limit );
+                return createTriplePatternFragment( triples, totalSize, isLastPage );
+            }
+            if ( exhausted ) {
+                final long totalSize = offset + triples.size();
+                return createTriplePatternFragment( triples, totalSize, true );
+            }
+
+            // estimates can be wrong; always report more than the matches so far
+            final long estimate = state.base.search( ids[0], ids[1], ids[2] )
+                                            .estimatedNumResults();
+            final long estimatedTotal = Math.max( offset + triples.size() + 1,
+                                      addedCount + estimate - removedCount );
+            return createTriplePatternFragment( triples, estimatedTotal, false );
+        }
+
+        } // end of Worker
+
+    /**
+     * Returns the delta ID of a pattern element, 0 for a variable, or -1 if
+     * the constant does not occur in the delta.
+     */
+    private static int getDeltaId( final State state,
+                final ITriplePatternElement<RDFNode,String,String> element )
+    {
+        return element.isVariable() ? 0
+             : state.terms.getId( element.asConstantTerm().asNode() );
+    }
+
+    /**
+     * Applies a patch to the given state, without changing it.
+     */
+    private static Update apply( final State state, final Patch patch )
+    {
+        final Changes added = new Changes( state.added );
+        final Changes removed = new Changes( state.removed );
+        long changes = 0;
+        for ( int i = 0; i < patch.triples.size(); i++ ) {
+            final Triple triple = resolve( state.base, patch.triples.get( i ) );
+            final IdTriple ids = new IdTriple( state.terms, triple );
+            final boolean inBase = state.isInBase( triple );
+            if ( patch.additions.get( i ) ) {
+                if ( removed.contains( ids ) ) {
+                    removed.remove( ids );
+                    changes++;
+                }
+                else if ( ! inBase && ! added.contains( ids ) ) {
+                    added.add( ids );
+                    changes++;
+                }
+            }
+            else {
+                if ( added.contains( ids ) ) {
+                    added.remove( ids );
+                    changes++;
+                }
+                else if ( inBase && ! removed.contains( ids ) ) {
+                    removed.add( ids );
+                    changes++;
+                }
+            }
+        }
+        return new Update( new State( state, added.toIndex(), removed.toIndex() ),
+                           changes );
+    }
+
+    /**
+     * Replaces the blank nodes of the given triple by the blank nodes with
+     * the same label in the HDT file, if there are any.
+     */
+    private static Triple resolve( final HdtBasedRequestProcessorForTPFs base,
+                                   final Triple triple )
+    {
+        if ( ! triple.getSubject().isBlank() && ! triple.getObject().isBlank() )
+            return triple;
+        return new Triple( resolve( base, triple.getSubject(), TripleComponentRole.SUBJECT ),
+                           triple.getPredicate(),
+                           resolve( base, triple.getObject(), TripleComponentRole.OBJECT ) );
+    }
+
+    private static Node resolve( final HdtBasedRequestProcessorForTPFs base,
+                                 final Node node,
+                                 final TripleComponentRole role )
+    {
+        if ( ! node.isBlank() )
+            return node;
+        final Dictionary dictionary = base.datasource.getDictionary();
+        final int id = dictionary.stringToId( toBlankNodeString( node ), role );
+        return id > 0 ? base.dictionary.getNode( id, role ) : node;
+    }
+
+    /**
+     * Returns the label of a blank node in the form in which HDT stores it.
+     */
+    private static String toBlankNodeString( final Node node )
+    {
+        final String label = node.getBlankNodeLabel();
+        return label.startsWith( "_:" ) ? label : "_:" + label;
+    }
+
+    private void startCompactionIfNeeded()
+    {
+        if ( compactionThreshold <= 0 || compacting ||
+             getDeltaSize() < compactionThreshold )
+            return;
+        synchronized ( updateLock ) {
+            if ( compacting )
+                return;
+            compacting = true;
+        }
+        final Thread thread = new Thread( new Compactor(),
+                                          "HDT compaction for " + hdtFile );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Generates an HDT file with the current delta applied and swaps it in.
+     * Patches that arrive in the meantime are kept in the delta.
+     *
+     * The HDT is generated from an N-Triples file by the two-pass loader,
+     * which reads the file twice instead of keeping all triples in memory.
+     *
+     * @throws IOException if the HDT file cannot be generated
+     * @throws IllegalStateException if a compaction is in progress already
+     */
+    public void compact() throws IOException
+    {
+        synchronized ( updateLock ) {
+            if ( compacting )
+                throw new IllegalStateException( "A compaction is in progress." );
+            compacting = true;
+        }
+        try {
+            compactNow();
+        }
+        finally {
+            compacting = false;
+        }
+    }
+
+    private void compactNow() throws IOException
+    {
+        final File hdt = new File( hdtFile );
+        final File compacted = new File( hdtFile + COMPACTION_SUFFIX );
+        final File triples = new File( hdtFile + COMPACTION_SUFFIX + ".nt" );
+        final File index = new File( compacted.getPath() +
+                               HdtBasedRequestProcessorForTPFs.INDEX_SUFFIX );
+        final File counts = new File( compacted.getPath() +
+                                      HdtCountIndex.FILE_SUFFIX );
+        try {
+            LOG.info( "Compacting the changes into {}", hdtFile );
+            final State snapshot = acquireState();
+            try {
+                compact( snapshot, hdt, compacted, triples, index, counts );
+            }
+            finally {
+                snapshot.release();
+            }
+            LOG.info( "Compacted the changes into {}", hdtFile );
+        }
+        catch ( ParserException e ) {
+            throw new IOException( e.getMessage(), e );
+        }
+        finally {
+            triples.delete();
+            compacted.delete();
+            index.delete();
+            counts.delete();
+        }
+    }
+
+    /**
+     * Generates the HDT file of the given snapshot and swaps it in.
+     */
+    private void compact( final State snapshot, final File hdt,
+                          final File compacted, final File triples,
+                          final File index, final File counts )
+                                        throws IOException, ParserException
+    {
+        writeTriples( snapshot, triples );
+        final HDTSpecification spec = new HDTSpecification();
+        spec.set( "loader.type", "two-pass" );
+        final HDT generated = HDTManager.generateHDT(
+                triples.getPath(), BASE_URI, RDFNotation.NTRIPLES, spec, null );
+        try {
+            generated.saveToHDT( compacted.getPath(), null );
+        }
+        finally {
+            generated.close();
+        }
+        triples.delete();
+        final HDT indexed = HDTManager.mapIndexedHDT( compacted.getPath(), null );
+        try {
+            if ( useCountIndex )
+                HdtCountIndex.build( indexed, counts );
+        }
+        finally {
+            indexed.close();
+        }
+
+        synchronized ( updateLock ) {
+            if ( counts.isFile() )
+                move( counts, new File( hdtFile + HdtCountIndex.FILE_SUFFIX ) );
+            move( index, new File( hdtFile +
+                           HdtBasedRequestProcessorForTPFs.INDEX_SUFFIX ) );
+            move( compacted, hdt );
+
+            final State current = state;
+            final State next = rebase( snapshot, current,
+                    new HdtBasedRequestProcessorForTPFs( hdtFile,
+                            useCountIndex, skipIndexCapacity ) );
+            writeJournal( next );
+            if ( closed ) {
+                next.release();
+            }
+            else {
+                // requests in progress may still be reading from the
+                // previous HDT, which is closed once they are done
+                state = next;
+                current.release();
+            }
+        }
+    }
+
+    /**
+     * Compacts the delta in the background.
+     */
+    private class Compactor implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            try {
+                compactNow();
+            }
+            catch ( IOException e ) {
+                LOG.error( "Could not compact the changes into " + hdtFile, e );
+            }
+            finally {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the triples of the given state as N-Triples.
+     */
+    private static void writeTriples( final State state, final File file )
+                                                             throws IOException
+    {
+        try ( Writer out = new BufferedWriter( new OutputStreamWriter(
+                  new FileOutputStream( file ), StandardCharsets.UTF_8 ), 1 << 16 ) ) {
+            final HdtBasedRequestProcessorForTPFs base = state.base;
+            final IteratorTripleID matches = base.search( 0, 0, 0 );
+            while ( matches.hasNext() ) {
+                final Triple triple = base.toTriple( matches.next() );
+                if ( state.removed.size() == 0 || ! state.isRemoved( triple ) )
+                    writeTriple( out, triple );
+            }
+            final LayeredTripleIndex.Matches all = state.added.find( 0, 0, 0 );
+            final int[] ids = new int[3];
+            for ( long i = 0; i < all.size(); i++ )
+                writeTriple( out, state.toTriple( state.added.get( all, i, ids ) ) );
+        }
+    }
+
+    private static void writeTriple( final Writer out, final Triple triple )
+                                                             throws IOException
+    {
+        out.write( toString( triple.getSubject() ) );
+        out.write( ' ' );
+        out.write( toString( triple.getPredicate() ) );
+        out.write( ' ' );
+        out.write( toString( triple.getObject() ) );
+        out.write( " .\n" );
+    }
+
+    /**
+     * Formats a node as N-Triples, keeping the labels of blank nodes, which
+     * NodeFmtLib would encode.
+     */
+    private static String toString( final Node node )
+    {
+        return node.isBlank() ? toBlankNodeString( node ) : NodeFmtLib.str( node );
+    }
+
+    /**
+     * Replaces the journal by one that contains the delta of the given state.
+     */
+    private void writeJournal( final State state ) throws IOException
+    {
+        final File temp = new File( journal.getPath() + ".tmp" );
+        try ( Writer out = new BufferedWriter( new OutputStreamWriter(
+                  new FileOutputStream( temp ), StandardCharsets.UTF_8 ) ) ) {
+            final int[] ids = new int[3];
+            final LayeredTripleIndex.Matches added = state.added.find( 0, 0, 0 );
+            for ( long i = 0; i < added.size(); i++ ) {
+                out.write( "A " );
+                writeTriple( out, state.toTriple( state.added.get( added, i, ids ) ) );
+            }
+            final LayeredTripleIndex.Matches removed = state.removed.find( 0, 0, 0 );
+            for ( long i = 0; i < removed.size(); i++ ) {
+                out.write( "D " );
+                writeTriple( out, state.toTriple( state.removed.get( removed, i, ids ) ) );
+            }
+        }
+        move( temp, journal );
+    }
+
+    /**
+     * Computes the delta of the current state relative to a new HDT file that
+     * was generated from the given snapshot.
+     */
+    private static State rebase( final State snapshot, final State current,
+                                 final HdtBasedRequestProcessorForTPFs base )
+    {
+        // only triples that occur in either delta can differ
+        final Set<Triple> candidates = new LinkedHashSet<Triple>();
+        for ( State state : new State[] { snapshot, current } ) {
+            for ( LayeredTripleIndex index : new LayeredTripleIndex[] {
+                                                  state.added, state.removed } ) {
+                final LayeredTripleIndex.Matches all = index.find( 0, 0, 0 );
+                final int[] ids = new int[3];
+                for ( long i = 0; i < all.size(); i++ )
+                    candidates.add( state.toTriple( index.get( all, i, ids ) ) );
+            }
+        }
+
+        // blank nodes now refer to those of the new HDT file
+        final TermDictionary terms = new TermDictionary();
+        final Changes added = new Changes( LayeredTripleIndex.EMPTY );
+        final Changes removed = new Changes( LayeredTripleIndex.EMPTY );
+        for ( Triple triple : candidates ) {
+            final boolean inBase = current.isInBase( triple );
+            final boolean isCurrent = current.contains( triple, inBase );
+            final boolean isCompacted = snapshot.contains( triple, inBase );
+            if ( isCurrent && ! isCompacted )
+                added.add( new IdTriple( terms, resolve( base, triple ) ) );
+            else if ( ! isCurrent && isCompacted )
+                removed.add( new IdTriple( terms, resolve( base, triple ) ) );
+        }
+        return new State( base, terms, added.toIndex(), removed.toIndex() );
+    }
+
+    private static void move( final File source, final File target )
+                                                             throws IOException
+    {
+        Files.move( source.toPath(), target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * An HDT file with a delta on top of it.
+     */
+    protected static class State
+    {
+        final HdtBasedRequestProcessorForTPFs base;
+        final TermDictionary terms;
+        final LayeredTripleIndex added;
+        final LayeredTripleIndex removed;
+        private final BoundedCache<IdTriple, RemovedPositions> removedPositions =
+                new BoundedCache<IdTriple, RemovedPositions>( MAX_CACHED_POSITIONS );
+
+        /**
+         * The number of users of the HDT file, shared by all states on top
+         * of it; the request processor holds one until it swaps the file out
+         */
+        private final AtomicInteger references;
+
+        State( final HdtBasedRequestProcessorForTPFs base,
+               final TermDictionary terms,
+               final LayeredTripleIndex added,
+               final LayeredTripleIndex removed )
+        {
+            this.base = base;
+            this.terms = terms;
+            this.added = added;
+            this.removed = removed;
+            this.references = new AtomicInteger( 1 );
+        }
+
+        /**
+         * Creates a state with another delta on top of the same HDT file.
+         */
+        State( final State previous,
+               final LayeredTripleIndex added,
+               final LayeredTripleIndex removed )
+        {
+            this.base = previous.base;
+            this.terms = previous.terms;
+            this.added = added;
+            this.removed = removed;
+            this.references = previous.references;
+        }
+
+        /**
+         * Registers a user of the HDT file.
+         *
+         * @return false if the HDT file was closed already
+         */
+        boolean acquire()
+        {
+            while ( true ) {
+                final int count = references.get();
+                if ( count == 0 )
+                    return false;
+                if ( references.compareAndSet( count, count + 1 ) )
+                    return true;
+            }
+        }
+
+        /**
+         * Unregisters a user of the HDT file, closing it after the last one.
+         */
+        void release()
+        {
+            if ( references.decrementAndGet() == 0 )
+                base.close();
+        }
+
+        /**
+         * Returns the positions of the deleted matches of a pattern among
+         * its matches in the HDT file, as far as they have been looked up.
+         *
+         * @param ids the HDT IDs of the pattern
+         * @param matches the deleted matches of the pattern
+         */
+        RemovedPositions getRemovedPositions( final int[] ids,
+                                      final LayeredTripleIndex.Matches matches,
+                                      final CancellationToken cancellation )
+        {
+            final IdTriple key = new IdTriple( ids[0], ids[1], ids[2] );
+            final RemovedPositions cached = removedPositions.get( key );
+            if ( cached != null )
+                return cached;
+
+            // deleted triples are in the HDT file, so they all have HDT IDs
+            final Set<IdTriple> pending = new HashSet<IdTriple>();
+            final int[] triple = new int[3];
+            for ( long i = 0; i < matches.size(); i++ ) {
+                cancellation.check();
+                final Triple deleted = toTriple( removed.get( matches, i, triple ) );
+                pending.add( new IdTriple(
+                    base.dictionary.getIntID( deleted.getSubject(), TripleComponentRole.SUBJECT ),
+                    base.dictionary.getIntID( deleted.getPredicate(), TripleComponentRole.PREDICATE ),
+                    base.dictionary.getIntID( deleted.getObject(), TripleComponentRole.OBJECT ) ) );
+            }
+            return removedPositions.put( key, new RemovedPositions( pending,
+                               base.search( ids[0], ids[1], ids[2] ) ) );
+        }
+
+        boolean isInBase( final Triple triple )
+        {
+            final int s = base.dictionary.getIntID( triple.getSubject(),
+                                                    TripleComponentRole.SUBJECT );
+            final int p = base.dictionary.getIntID( triple.getPredicate(),
+                                                    TripleComponentRole.PREDICATE );
+            final int o = base.dictionary.getIntID( triple.getObject(),
+                                                    TripleComponentRole.OBJECT );
+            return s > 0 && p > 0 && o > 0 && base.search( s, p, o ).hasNext();
+        }
+
+        boolean isRemoved( final Triple triple )
+        {
+            final int s = terms.getId( triple.getSubject() );
+            final int p = terms.getId( triple.getPredicate() );
+            final int o = terms.getId( triple.getObject() );
+            return s > 0 && p > 0 && o > 0 && removed.contains( s, p, o );
+        }
+
+        boolean contains( final Triple triple, final boolean inBase )
+        {
+            final int s = terms.getId( triple.getSubject() );
+            final int p = terms.getId( triple.getPredicate() );
+            final int o = terms.getId( triple.getObject() );
+            final boolean inDelta = s > 0 && p > 0 && o > 0;
+            return inDelta && added.contains( s, p, o )
+                || inBase && ! ( inDelta && removed.contains( s, p, o ) );
+        }
+
+        Triple toTriple( final int[] ids )
+        {
+            return new Triple( terms.getNode( ids[0] ),
+                               terms.getNode( ids[1] ),
+                               terms.getNode( ids[2] ) );
+        }
+    }
+
+    /**
+     * The positions of the deleted matches of a pattern among its matches
+     * in the HDT file. The HDT matches are read only as far as the pages
+     * requested so far need, and the reading continues where it stopped,
+     * also after a cancelled request.
+     */
+    private static class RemovedPositions
+    {
+        private final Set<IdTriple> pending;
+        private final IteratorTripleID matches;
+        private long[] positions;
+        private int found = 0;
+        private long scanned = 0;
+
+        RemovedPositions( final Set<IdTriple> pending,
+                          final IteratorTripleID matches )
+        {
+            this.pending = pending;
+            this.matches = matches;
+            this.positions = new long[pending.size()];
+        }
+
+        /**
+         * Moves a range of live matches to the range of HDT matches that
+         * contains them, past the deleted matches before and in it.
+         *
+         * @param start the first live match
+         * @param end the live match after the last one
+         * @return the first HDT match and the HDT match after the last one
+         */
+        synchronized long[] skip( long start, long end,
+                                  final CancellationToken cancellation )
+        {
+            final long limit = end - start;
+            int i = 0;
+            for ( ; position( i, start, cancellation ) <= start; i++ )
+                start++;
+            end = start + limit;
+            for ( ; position( i, end - 1, cancellation ) < end; i++ )
+                end++;
+            return new long[] { start, end };
+        }
+
+        /**
+         * Returns the position of the given deleted match, reading the HDT
+         * matches up to the given bound at most, or Long.MAX_VALUE if the
+         * deleted match is not within the bound.
+         */
+        private long position( final int i, final long bound,
+                               final CancellationToken cancellation )
+        {
+            while ( found <= i && scanned <= bound &&
+                    found < positions.length && matches.hasNext() ) {
+                cancellation.check();
+                final TripleID match = matches.next();
+                if ( pending.contains( new IdTriple( match.getSubject(),
+                                 match.getPredicate(), match.getObject() ) ) )
+                    positions[found++] = scanned;
+                scanned++;
+            }
+            return i < found ? positions[i] : Long.MAX_VALUE;
+        }
+    }
+
+    private static class Update
+    {
+        final State state;
+        final long changes;
+
+        Update( final State state, final long changes )
+        {
+            this.state = state;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * Pending additions to and removals from a {@link TripleIndex}.
+     */
+    private static class Changes
+    {
+        private final LayeredTripleIndex original;
+        private final Set<IdTriple> plus = new HashSet<IdTriple>();
+        private final Set<IdTriple> minus = new HashSet<IdTriple>();
+
+        Changes( final LayeredTripleIndex original )
+        {
+            this.original = original;
+        }
+
+        boolean contains( final IdTriple t )
+        {
+            return plus.contains( t ) ||
+                   original.contains( t.s, t.p, t.o ) && ! minus.contains( t );
+        }
+
+        void add( final IdTriple t )
+        {
+            minus.remove( t );
+            if ( ! original.contains( t.s, t.p, t.o ) )
+                plus.add( t );
+        }
+
+        void remove( final IdTriple t )
+        {
+            plus.remove( t );
+            if ( original.contains( t.s, t.p, t.o ) )
+                minus.add( t );
+        }
+
+        LayeredTripleIndex toIndex()
+        {
+            return original.withChanges( toArray( plus ), toArray( minus ) );
+        }
+
+        private static int[] toArray( final Set<IdTriple> triples )
+        {
+            final int[] result = new int[triples.size() * 3];
+            int length = 0;
+            for ( IdTriple t : triples ) {
+                result[length++] = t.s;
+                result[length++] = t.p;
+                result[length++] = t.o;
+            }
+            return result;
+        }
+    }
+
+    private static class IdTriple
+    {
+        final int s;
+        final int p;
+        final int o;
+
+        IdTriple( final int s, final int p, final int o )
+        {
+            this.s = s;
+            this.p = p;
+            this.o = o;
+        }
+
+        IdTriple( final TermDictionary terms, final Triple triple )
+        {
+            this( terms.getOrAddId( triple.getSubject() ),
+                  terms.getOrAddId( triple.getPredicate() ),
+                  terms.getOrAddId( triple.getObject() ) );
+        }
+
+        @Override
+        public boolean equals( final Object other )
+        {
+            if ( ! ( other instanceof IdTriple ) )
+                return false;
+            final IdTriple that = (IdTriple) other;
+            return s == that.s && p == that.p && o == that.o;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ( s * 31 + p ) * 31 + o;
+        }
+    }
+
+    /**
+     * A parsed patch: triples, each marked as an addition or a deletion.
+     */
+    private static class Patch
+    {
+        final List<Triple> triples = new ArrayList<Triple>();
+        final List<Boolean> additions = new ArrayList<Boolean>();
+
+        static Patch parse( final Reader in ) throws IOException
+        {
+            final Patch patch = new Patch();
+
+            // blank nodes keep their labels, so that they can be matched
+            // with those of other patches and of the HDT file
+            final ParserProfile profile = RiotLib.profile( Lang.NTRIPLES, null );
+            profile.setLabelToNode( LabelToNode.createUseLabelAsGiven() );
+            final List<Triple> parsed = new ArrayList<Triple>( 1 );
+            final StreamRDFBase sink = new StreamRDFBase() {
+                @Override
+                public void triple( final Triple triple ) {
+                    parsed.add( triple );
+                }
+            };
+
+            final BufferedReader lines = new BufferedReader( in );
+            String line;
+            for ( int number = 1; ( line = lines.readLine() ) != null; number++ ) {
+                line = line.trim();
+                if ( line.isEmpty() || line.startsWith( "#" ) )
+                    continue;
+                final char operation = line.charAt( 0 );
+                if ( ( operation != 'A' && operation != 'D' ) || line.length() < 2 ||
+                     ! Character.isWhitespace( line.charAt( 1 ) ) )
+                    throw new IllegalArgumentException( "Line " + number +
+                            " does not start with A or D." );
+
+                // every line is parsed on its own, so that errors and
+                // lines with several triples are reported where they are
+                parsed.clear();
+                try {
+                    new LangNTriples( TokenizerFactory.makeTokenizerString(
+                                                    line.substring( 2 ) ),
+                                      profile, sink ).parse();
+                }
+                catch ( RiotException e ) {
+                    throw new IllegalArgumentException( "Line " + number +
+                            ": " + e.getMessage(), e );
+                }
+                if ( parsed.size() != 1 )
+                    throw new IllegalArgumentException( "Line " + number +
+                            " does not contain exactly one triple." );
+                patch.additions.add( operation == 'A' );
+                patch.triples.add( parsed.get( 0 ) );
+            }
+            return patch;
+        }
+
+        void write( final Writer out ) throws IOException
+        {
+            for ( int i = 0; i < triples.size(); i++ ) {
+                out.write( additions.get( i ) ? "A " : "D " );
+                writeTriple( out, triples.get( i ) );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.jena.graph.Triple;
+import org.linkeddatafragments.datasource.DataSourceBase;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.ILookupDataSource;
+import org.linkeddatafragments.fragments.IFragmentRequestParser;
+import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
+
+/**
+ * A data source of Basic Linked Data Fragments that unions several HDT files.
+ */
+public class HdtShardedDataSource extends DataSourceBase implements ILookupDataSource {
+
+    /**
+     * The request processor
+     * 
+     */
+    protected final HdtShardedRequestProcessorForTPFs requestProcessor;
+
+    /**
+     * Generates the missing indexes of the shards one at a time
+     */
+    private final ExecutorService indexExecutor;
+
+    /**
+     * Creates a new HdtShardedDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param hdtFiles the HDT datafiles, in paging order
+     * @param useCountIndex whether to use a {@link HdtCountIndex} for exact counts
+     * @param skipIndexCapacity the number of IDs kept by each {@link HdtSkipIndex}
+     * @throws IOException if a file cannot be loaded
+     */
+    public HdtShardedDataSource(String title, String description,
+                                List<String> hdtFiles, boolean useCountIndex,
+                                long skipIndexCapacity) throws IOException {
+        super(title, description);
+        indexExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r, "HDT index generator for " + title);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final List<HdtBasedRequestProcessorForTPFs> shards = new ArrayList<>();
+        try {
+            for (String hdtFile : hdtFiles) {
+                shards.add(new HdtBasedRequestProcessorForTPFs(hdtFile, useCountIndex,
+                                                               skipIndexCapacity,
+                                                               indexExecutor));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (HdtBasedRequestProcessorForTPFs shard : shards) {
+                shard.close();
+            }
+            indexExecutor.shutdownNow();
+            throw e;
+        }
+        requestProcessor = new HdtShardedRequestProcessorForTPFs( shards );
+    }
+
+    @Override
+    public IFragmentRequestParser getRequestParser()
+    {
+        return TPFRequestParserForJenaBackends.getInstance();
+    }
+
+    @Override
+    public IFragmentRequestProcessor getRequestProcessor()
+    {
+        return requestProcessor;
+    }
+
+    @Override
+    public void close() {
+        requestProcessor.close();
+        indexExecutor.shutdownNow();
+    }
+
+    @Override
+    public boolean contains(Triple triple) {
+        return requestProcessor.contains(triple);
+    }
+
+}
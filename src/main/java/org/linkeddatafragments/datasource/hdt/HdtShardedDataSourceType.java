@@ -0,0 +1,48 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.exceptions.DataSourceCreationException;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * The type of Triple Pattern Fragment data sources that are backed by the
+ * union of several HDT files, given as the <code>files</code> setting.
+ */
+public class HdtShardedDataSourceType implements IDataSourceType
+{
+    @Override
+    public IDataSource createDataSource( final String title,
+                                         final String description,
+                                         final JsonObject settings )
+                                                     throws DataSourceCreationException
+    {
+        final List<String> files = new ArrayList<>();
+        for ( JsonElement fname : settings.getAsJsonArray("files") ) {
+            files.add( new File( fname.getAsString() ).getAbsolutePath() );
+        }
+        if ( files.isEmpty() )
+            throw new DataSourceCreationException( title, "No HDT files given." );
+
+        final boolean useCountIndex = ! settings.has("countIndex")
+                || settings.getAsJsonPrimitive("countIndex").getAsBoolean();
+        final long skipIndexCapacity = settings.has("skipIndexCapacity")
+                ? settings.getAsJsonPrimitive("skipIndexCapacity").getAsLong()
+                : HdtSkipIndex.DEFAULT_CAPACITY;
+
+        try {
+            return new HdtShardedDataSource(title, description, files,
+                                            useCountIndex, skipIndexCapacity);
+        } catch (IOException ex) {
+            throw new DataSourceCreationException(ex);
+        }
+    }
+
+}
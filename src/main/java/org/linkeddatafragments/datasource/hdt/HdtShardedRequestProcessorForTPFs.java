@@ -0,0 +1,406 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+
+import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.fragments.CancellationToken;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+import org.linkeddatafragments.util.BoundedCache;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.rdfhdt.hdt.triples.IteratorTripleID;
+
+/**
+ * Implementation of {@link IFragmentRequestProcessor} that processes
+ * {@link ITriplePatternFragmentRequest}s over the union of several HDT files.
+ *
+ * The shards are searched in parallel. The matches of a triple pattern are
+ * paged through shard by shard, in the configured order of the shards, and
+ * the match counts of the shards determine which shards contribute to a page
+ * and from which offset. A deep page therefore never iterates over the
+ * matches of earlier shards.
+ *
+ * Exact counts are only needed for the shards that precede or overlap with
+ * the requested page; later shards contribute their HDT estimate to the total.
+ * Where HDT or the {@link HdtCountIndex} know the exact count, it is used
+ * directly; otherwise the matches are counted once and the count is cached
+ * per shard and pattern.
+ *
+ * The matches are paged through as a bag, in which a triple that is in
+ * several shards has a position in each of them, and the total counts every
+ * position. A triple is only served at its position in the first shard that
+ * contains it, so every triple is on exactly one page; pages with triples
+ * from later shards may therefore hold fewer than their number of positions,
+ * and the total is an upper bound if the shards overlap. Blank nodes are
+ * local to their shard, so blank nodes with the same label in different
+ * shards are different nodes.
+ */
+public class HdtShardedRequestProcessorForTPFs
+    extends AbstractRequestProcessorForTriplePatterns<RDFNode,String,String>
+{
+
+    /**
+     * The processors of the individual HDT files, in paging order
+     */
+    protected final List<HdtBasedRequestProcessorForTPFs> shards;
+
+    /**
+     * The maximum number of counted patterns that are cached
+     */
+    public static final int MAX_CACHED_COUNTS = 4096;
+
+    private final ExecutorService executor;
+    private final BoundedCache<CountKey, Long> counts =
+                               new BoundedCache<CountKey, Long>( MAX_CACHED_COUNTS );
+
+    /**
+     * Creates the request processor.
+     *
+     * @param shards the processors of the individual HDT files
+     */
+    public HdtShardedRequestProcessorForTPFs(
+                        final List<HdtBasedRequestProcessorForTPFs> shards )
+    {
+        this.shards = new ArrayList<HdtBasedRequestProcessorForTPFs>( shards );
+        this.executor = Executors.newFixedThreadPool(
+                Math.max( 1, Math.min( shards.size(),
+                          Runtime.getRuntime().availableProcessors() ) ),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread( final Runnable r ) {
+                        final Thread thread = new Thread( r, "HDT shard search" );
+                        thread.setDaemon( true );
+                        return thread;
+                    }
+                } );
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        for ( HdtBasedRequestProcessorForTPFs shard : shards )
+            shard.close();
+    }
+
+    /**
+     * Returns whether any shard contains the given triple.
+     *
+     * @param triple a triple without variables or blank nodes
+     * @return true if the triple is in a shard
+     */
+    public boolean contains( final Triple triple )
+    {
+        for ( HdtBasedRequestProcessorForTPFs shard : shards ) {
+            if ( shard.contains( triple ) )
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     *
+     * @param request
+     * @return
+     * @throws IllegalArgumentException
+     */
+    @Override
+    protected Worker getTPFSpecificWorker(
+            final ITriplePatternFragmentRequest<RDFNode,String,String> request )
+                                                throws IllegalArgumentException
+    {
+        return new Worker( request );
+    }
+
+    /**
+     * Worker class for sharded HDT
+     */
+    protected class Worker
+       extends AbstractRequestProcessorForTriplePatterns.Worker<RDFNode,String,String>
+    {
+
+        /**
+         * Create a Worker for sharded HDT
+         *
+         * @param req
+         */
+        public Worker(
+                final ITriplePatternFragmentRequest<RDFNode,String,String> req )
+        {
+            super( req );
+        }
+
+        /**
+         * Creates an {@link ILinkedDataFragment} from the HDT shards
+         *
+         * @param subject
+         * @param predicate
+         * @param object
+         * @param offset
+         * @param limit
+         * @return
+         */
+        @Override
+        protected ILinkedDataFragment createFragment(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final CancellationToken cancellation = request.getCancellationToken();
+
+            // look up the pattern in every shard, with its exact count if
+            // that is cheap and its estimate otherwise
+            final List<Future<ShardMatches>> lookups =
+                                         new ArrayList<Future<ShardMatches>>();
+            for ( int i = 0; i < shards.size(); i++ ) {
+                final int shardIndex = i;
+                final HdtBasedRequestProcessorForTPFs shard = shards.get( i );
+                lookups.add( executor.submit( new Callable<ShardMatches>() {
+                    @Override
+                    public ShardMatches call() {
+                        final int[] ids = shard.getIds( subject, predicate, object );
+                        return ids == null ? null
+                                 : lookUp( shardIndex, shard, ids );
+                    }
+                } ) );
+            }
+
+            // read the requested page from the shards that overlap with it;
+            // only the shards up to the end of the page need exact counts
+            final List<Future<Model>> pages = new ArrayList<Future<Model>>();
+            long totalSize = 0;
+            boolean isEstimate = false;
+            for ( Future<ShardMatches> lookup : lookups ) {
+                final ShardMatches matches = get( lookup, cancellation );
+                if ( matches == null )
+                    continue;
+
+                final long start = totalSize;
+                if ( start >= offset + limit && matches.count < 0 ) {
+                    totalSize += matches.estimate;
+                    isEstimate = isEstimate || matches.estimate > 0;
+                    continue;
+                }
+                totalSize += matches.count >= 0 ? matches.count
+                                                : count( matches, cancellation );
+                if ( totalSize > offset && start < offset + limit ) {
+                    final long shardOffset = Math.max( 0L, offset - start );
+                    final long shardLimit = Math.min( offset + limit, totalSize )
+                                          - ( start + shardOffset );
+                    pages.add( executor.submit( new Callable<Model>() {
+                        @Override
+                        public Model call() {
+                            final Model page = ModelFactory.createDefaultModel();
+                            matches.shard.readMatches( matches.ids[0],
+                                    matches.ids[1], matches.ids[2],
+                                    shardOffset, shardLimit, page,
+                                    cancellation );
+                            return firstOccurrences( matches.key.shardIndex,
+                                                     page, cancellation );
+                        }
+                    } ) );
+                }
+            }
+
+            final Model triples = ModelFactory.createDefaultModel();
+            for ( Future<Model> page : pages )
+                triples.add( get( page, cancellation ) );
+
+            // estimated shards beyond the page have matches, so this is not
+            // the last page
+            final boolean isLastPage = ! isEstimate && ( totalSize <= offset + limit );
+            return createTriplePatternFragment( triples, totalSize, isLastPage );
+        }
+
+    } // end of Worker
+
+    /**
+     * Finds the number of matches of a pattern in a shard, if it is known
+     * without iterating over them, and its estimate otherwise.
+     */
+    private ShardMatches lookUp( final int shardIndex,
+                                 final HdtBasedRequestProcessorForTPFs shard,
+                                 final int[] ids )
+    {
+        final CountKey key = new CountKey( shardIndex, ids );
+        final Long cached = counts.get( key );
+        if ( cached != null )
+            return new ShardMatches( shard, key, cached, cached );
+
+        final IteratorTripleID matches = shard.search( ids[0], ids[1], ids[2] );
+        final long exact = shard.getExactCount( matches, ids[0], ids[1], ids[2] );
+        if ( exact >= 0 )
+            return new ShardMatches( shard, key, exact, exact );
+
+        // estimates can be wrong; make sure they are 0 only without matches
+        final long estimate = matches.hasNext()
+                            ? Math.max( 1L, matches.estimatedNumResults() ) : 0L;
+        return new ShardMatches( shard, key, -1L, estimate );
+    }
+
+    /**
+     * Returns the triples of a page of the given shard that no earlier shard
+     * contains, with the blank nodes made local to the shard.
+     */
+    private Model firstOccurrences( final int shardIndex,
+                                    final Model page,
+                                    final CancellationToken cancellation )
+    {
+        final Model result = ModelFactory.createDefaultModel();
+        final Graph graph = result.getGraph();
+        final ExtendedIterator<Triple> triples =
+                          page.getGraph().find( Node.ANY, Node.ANY, Node.ANY );
+        try {
+            while ( triples.hasNext() ) {
+                final Triple triple = triples.next();
+                if ( triple.getSubject().isBlank() || triple.getObject().isBlank() ) {
+                    graph.add( new Triple( local( shardIndex, triple.getSubject() ),
+                                           triple.getPredicate(),
+                                           local( shardIndex, triple.getObject() ) ) );
+                    continue;
+                }
+                boolean isFirst = true;
+                for ( int i = 0; isFirst && i < shardIndex; i++ ) {
+                    cancellation.check();
+                    isFirst = ! shards.get( i ).contains( triple );
+                }
+                if ( isFirst )
+                    graph.add( triple );
+            }
+        }
+        finally {
+            triples.close();
+        }
+        return result;
+    }
+
+    /**
+     * Gives a blank node of the given shard a label that no blank node of
+     * another shard has.
+     */
+    private static Node local( final int shardIndex, final Node node )
+    {
+        if ( ! node.isBlank() )
+            return node;
+        return NodeFactory.createBlankNode( "shard" + shardIndex + "_"
+                                            + node.getBlankNodeLabel() );
+    }
+
+    /**
+     * Counts the matches of a pattern in a shard and caches the count.
+     */
+    private long count( final ShardMatches matches,
+                        final CancellationToken cancellation )
+    {
+        final int[] ids = matches.key.ids;
+        final long count = matches.shard.countMatches( ids[0], ids[1], ids[2],
+                                                       cancellation );
+        counts.put( matches.key, count );
+        return count;
+    }
+
+    /**
+     * Waits for the result of a shard task, passing on its exceptions; if it
+     * failed, the other tasks of the request are cancelled.
+     */
+    private static <T> T get( final Future<T> future,
+                              final CancellationToken cancellation )
+    {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException e ) {
+            cancellation.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }
+        catch ( ExecutionException e ) {
+            cancellation.cancel();
+            if ( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( e.getCause() );
+        }
+    }
+
+    /**
+     * The HDT IDs and match count of a pattern in one shard.
+     */
+    private static class ShardMatches
+    {
+        final HdtBasedRequestProcessorForTPFs shard;
+        final int[] ids;
+        final CountKey key;
+        final long count;
+        final long estimate;
+
+        /**
+         * @param count the exact count, or -1 if it is unknown
+         * @param estimate the estimated count
+         */
+        ShardMatches( final HdtBasedRequestProcessorForTPFs shard,
+                      final CountKey key,
+                      final long count,
+                      final long estimate )
+        {
+            this.shard = shard;
+            this.ids = key.ids;
+            this.key = key;
+            this.count = count;
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * Identifies a pattern of HDT IDs in one shard.
+     */
+    private static final class CountKey
+    {
+        final int shardIndex;
+        final int[] ids;
+        private final int hash;
+
+        CountKey( final int shardIndex, final int[] ids )
+        {
+            this.shardIndex = shardIndex;
+            this.ids = ids;
+            this.hash = 31 * shardIndex + Arrays.hashCode( ids );
+        }
+
+        @Override
+        public boolean equals( final Object other )
+        {
+            if ( ! ( other instanceof CountKey ) )
+                return false;
+            final CountKey that = (CountKey) other;
+            return shardIndex == that.shardIndex
+                && Arrays.equals( ids, that.ids );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,552 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+import org.linkeddatafragments.fragments.CancellationToken;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.triples.IteratorTripleID;
+import org.rdfhdt.hdt.triples.TripleID;
+
+/**
+ * Gives random access to the matches of triple patterns whose HDT iterator
+ * cannot jump to an offset ({@link IteratorTripleID#canGoTo()} is false).
+ *
+ * On the first request for a deep page of such a pattern, its matches are
+ * read once and their variable components are stored as delta-encoded IDs,
+ * with the position of every {@link #SAMPLE_INTERVAL}th match sampled, so
+ * that later pages of the same pattern are decoded from the nearest sample
+ * instead of stepping through all preceding matches.
+ *
+ * A pattern whose IDs do not fit into half of the capacity keeps the prefix
+ * of its matches that fits, which still serves the pages within it. When a
+ * request is cancelled while an entry is built, the matches read so far are
+ * kept together with the iterator, and the next request continues from
+ * there. Entries are kept in a least-recently-used cache that is bounded by
+ * their memory. Concurrent requests for a pattern that is being built wait
+ * for that build instead of repeating it.
+ */
+public class HdtSkipIndex
+{
+    /**
+     * Default maximum number of IDs kept in the cache (32MB)
+     */
+    public static final long DEFAULT_CAPACITY = 8L * 1024 * 1024;
+
+    /**
+     * Default offset from which a request counts as a deep page
+     */
+    public static final long DEFAULT_MINIMUM_OFFSET = 1000L;
+
+    /**
+     * The number of matches from one sampled position to the next
+     */
+    public static final int SAMPLE_INTERVAL = 64;
+
+    /**
+     * The memory counted for an entry besides its arrays, in bytes
+     */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    /**
+     * The time after which a request that waits for the build of another
+     * checks its own cancellation, in milliseconds
+     */
+    private static final long WAIT_INTERVAL = 50;
+
+    private final HDT hdt;
+    private final long capacity;
+    private final long maxEntrySize;
+    private final long minimumOffset;
+    private final LinkedHashMap<Pattern, Entry> entries =
+                                 new LinkedHashMap<Pattern, Entry>( 16, 0.75f, true );
+    private final ConcurrentMap<Pattern, FutureTask<Entry>> builds =
+                                 new ConcurrentHashMap<Pattern, FutureTask<Entry>>();
+    private long size = 0;
+
+    /**
+     * Creates a skip index over the given HDT.
+     *
+     * @param hdt the HDT
+     * @param capacity the maximum memory to use, as a number of 4-byte IDs
+     * @param minimumOffset the offset from which entries are built
+     */
+    public HdtSkipIndex( final HDT hdt,
+                         final long capacity,
+                         final long minimumOffset )
+    {
+        this.hdt = hdt;
+        this.capacity = capacity * 4;
+        this.maxEntrySize = Math.min( this.capacity / 2, Integer.MAX_VALUE - 8 );
+        this.minimumOffset = minimumOffset;
+    }
+
+    /**
+     * Returns the matches of the given pattern of HDT IDs (where 0 denotes a
+     * variable), building them if necessary.
+     *
+     * @param subjectId the subject ID, or 0
+     * @param predicateId the predicate ID, or 0
+     * @param objectId the object ID, or 0
+     * @param offset the requested offset
+     * @param limit the requested number of matches
+     * @param cancellation the token that is checked while the matches are
+     *                     read or the build of another request is awaited
+     * @return the matches, which are complete or contain the requested
+     *         page, or null if the offset is not deep enough or the page
+     *         is beyond the prefix of the matches that fits in memory
+     * @throws FragmentCancelledException if the request is cancelled
+     */
+    public Entry get( final int subjectId,
+                      final int predicateId,
+                      final int objectId,
+                      final long offset,
+                      final long limit,
+                      final CancellationToken cancellation )
+    {
+        if ( offset < minimumOffset )
+            return null;
+        if ( subjectId != 0 && predicateId != 0 && objectId != 0 )
+            return null;
+
+        final Pattern pattern = new Pattern( subjectId, predicateId, objectId );
+        final long end = offset + limit;
+        Entry entry;
+        synchronized ( entries ) {
+            entry = entries.get( pattern );
+        }
+        if ( entry == null || ( ! entry.contains( end ) && entry.isResumable() ) )
+            entry = buildOnce( pattern, cancellation );
+        return entry != null && entry.contains( end ) ? entry : null;
+    }
+
+    /**
+     * Returns the number of bytes used by the cached entries.
+     *
+     * @return the number of bytes
+     */
+    public long getMemoryUsage()
+    {
+        synchronized ( entries ) {
+            return size;
+        }
+    }
+
+    /**
+     * Builds or continues the entry of the given pattern outside of the
+     * cache lock, such that only one thread reads the matches of a pattern
+     * at a time and the others wait for its result. If the build of another
+     * request is cancelled, a waiting request continues it.
+     *
+     * @return the complete entry or the prefix that fits in memory, or null
+     *         if the waiting thread was interrupted
+     */
+    private Entry buildOnce( final Pattern pattern,
+                             final CancellationToken cancellation )
+    {
+        while ( true ) {
+            final FutureTask<Entry> task = new FutureTask<Entry>( new Callable<Entry>() {
+                @Override
+                public Entry call()
+                {
+                    // another build may have finished since the cache was read
+                    final Entry previous;
+                    synchronized ( entries ) {
+                        previous = entries.get( pattern );
+                    }
+                    if ( previous != null && ! previous.isResumable() )
+                        return previous;
+                    return build( pattern, previous, cancellation );
+                }
+            } );
+            final FutureTask<Entry> running = builds.putIfAbsent( pattern, task );
+            if ( running == null ) {
+                try {
+                    task.run();
+                }
+                finally {
+                    builds.remove( pattern, task );
+                }
+            }
+
+            try {
+                return await( running == null ? task : running, cancellation );
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            catch ( ExecutionException e ) {
+                final Throwable cause = e.getCause();
+                if ( cause instanceof FragmentCancelledException && running != null )
+                    continue;
+                if ( cause instanceof RuntimeException )
+                    throw (RuntimeException) cause;
+                if ( cause instanceof Error )
+                    throw (Error) cause;
+                throw new IllegalStateException( cause );
+            }
+        }
+    }
+
+    private static Entry await( final FutureTask<Entry> task,
+                                final CancellationToken cancellation )
+                           throws InterruptedException, ExecutionException
+    {
+        while ( true ) {
+            if ( cancellation.isCancelled() )
+                cancellation.check();
+            try {
+                return task.get( WAIT_INTERVAL, TimeUnit.MILLISECONDS );
+            }
+            catch ( TimeoutException e ) {
+                // check the cancellation again
+            }
+        }
+    }
+
+    /**
+     * Reads the matches of the given pattern into a new entry, continuing
+     * the given partial entry if there is one.
+     */
+    private Entry build( final Pattern pattern,
+                         final Entry previous,
+                         final CancellationToken cancellation )
+    {
+        final Builder builder;
+        if ( previous == null )
+            builder = new Builder( pattern, hdt.getTriples().search(
+                          new TripleID( pattern.subjectId, pattern.predicateId,
+                                        pattern.objectId ) ) );
+        else
+            builder = new Builder( pattern, previous );
+
+        try {
+            while ( builder.matches.hasNext() ) {
+                if ( builder.length > maxEntrySize - 5 * builder.last.length )
+                    return put( pattern, builder.finish( false ) );
+                cancellation.check();
+                builder.add( builder.matches.next() );
+            }
+            return put( pattern, builder.finish( true ) );
+        }
+        catch ( FragmentCancelledException e ) {
+            put( pattern, builder.suspend() );
+            throw e;
+        }
+    }
+
+    private Entry put( final Pattern pattern, final Entry entry )
+    {
+        synchronized ( entries ) {
+            final Entry previous = entries.put( pattern, entry );
+            if ( previous != null )
+                size -= previous.memory();
+            size += entry.memory();
+
+            final Iterator<Map.Entry<Pattern, Entry>> eldest =
+                                               entries.entrySet().iterator();
+            while ( size > capacity && eldest.hasNext() ) {
+                size -= eldest.next().getValue().memory();
+                eldest.remove();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Encodes the variable components of matches, each as the variable-length
+     * difference to the same component of the previous match, or to 0 at a
+     * sampled position.
+     */
+    private static class Builder
+    {
+        private final Pattern pattern;
+        private final IteratorTripleID matches;
+        private final int[] last;
+        private byte[] data;
+        private int length;
+        private int[] samples;
+        private long count;
+
+        Builder( final Pattern pattern, final IteratorTripleID matches )
+        {
+            this.pattern = pattern;
+            this.matches = matches;
+            this.last = new int[pattern.width()];
+            this.data = new byte[1024];
+            this.samples = new int[16];
+        }
+
+        Builder( final Pattern pattern, final Entry previous )
+        {
+            this.pattern = pattern;
+            this.matches = previous.rest;
+            this.last = previous.last.clone();
+            this.data = Arrays.copyOf( previous.data, previous.data.length * 2 + 1024 );
+            this.length = previous.data.length;
+            this.samples = Arrays.copyOf( previous.samples, previous.samples.length * 2 + 16 );
+            this.count = previous.size;
+            // the iterator moves on with this builder
+            previous.rest = null;
+        }
+
+        void add( final TripleID triple )
+        {
+            if ( count % SAMPLE_INTERVAL == 0 ) {
+                final int sample = (int) ( count / SAMPLE_INTERVAL );
+                if ( sample == samples.length )
+                    samples = Arrays.copyOf( samples, samples.length * 2 );
+                samples[sample] = length;
+                Arrays.fill( last, 0 );
+            }
+            if ( length + 5 * last.length > data.length )
+                data = Arrays.copyOf( data, (int) Math.min( Integer.MAX_VALUE - 8,
+                                                            data.length * 2L ) );
+            int c = 0;
+            if ( pattern.subjectId == 0 )
+                write( c++, triple.getSubject() );
+            if ( pattern.predicateId == 0 )
+                write( c++, triple.getPredicate() );
+            if ( pattern.objectId == 0 )
+                write( c, triple.getObject() );
+            count++;
+        }
+
+        private void write( final int component, final int id )
+        {
+            final int delta = id - last[component];
+            int zigzag = ( delta << 1 ) ^ ( delta >> 31 );
+            while ( ( zigzag & ~0x7F ) != 0 ) {
+                data[length++] = (byte) ( ( zigzag & 0x7F ) | 0x80 );
+                zigzag >>>= 7;
+            }
+            data[length++] = (byte) zigzag;
+            last[component] = id;
+        }
+
+        Entry finish( final boolean complete )
+        {
+            return new Entry( pattern, Arrays.copyOf( data, length ),
+                              Arrays.copyOf( samples, (int) ( ( count + SAMPLE_INTERVAL - 1 )
+                                                              / SAMPLE_INTERVAL ) ),
+                              count, complete, last, null );
+        }
+
+        Entry suspend()
+        {
+            return new Entry( pattern, Arrays.copyOf( data, length ),
+                              Arrays.copyOf( samples, (int) ( ( count + SAMPLE_INTERVAL - 1 )
+                                                              / SAMPLE_INTERVAL ) ),
+                              count, false, last, matches );
+        }
+    }
+
+    /**
+     * The matches of a single triple pattern, or a prefix of them.
+     */
+    public static class Entry
+    {
+        private final int subjectId;
+        private final int predicateId;
+        private final int objectId;
+        private final byte[] data;
+        private final int[] samples;
+        private final long size;
+        private final boolean complete;
+        private final int[] last;
+
+        /**
+         * The iterator from which a partial entry is continued, or null
+         */
+        private volatile IteratorTripleID rest;
+
+        Entry( final Pattern pattern, final byte[] data, final int[] samples,
+               final long size, final boolean complete, final int[] last,
+               final IteratorTripleID rest )
+        {
+            this.subjectId = pattern.subjectId;
+            this.predicateId = pattern.predicateId;
+            this.objectId = pattern.objectId;
+            this.data = data;
+            this.samples = samples;
+            this.size = size;
+            this.complete = complete;
+            this.last = last.clone();
+            this.rest = rest;
+        }
+
+        /**
+         * Returns the number of matches in this entry, which is the exact
+         * number of matches of the pattern if the entry is complete.
+         *
+         * @return the number of matches
+         */
+        public long size()
+        {
+            return size;
+        }
+
+        /**
+         * Returns whether this entry contains all matches of the pattern.
+         *
+         * @return true if the entry is complete
+         */
+        public boolean isComplete()
+        {
+            return complete;
+        }
+
+        /**
+         * Returns an iterator over the matches from the given position on.
+         *
+         * @param index the position of the first match
+         * @return the iterator
+         */
+        public Cursor cursor( final long index )
+        {
+            if ( index < 0 || index > size )
+                throw new IndexOutOfBoundsException( "No match at " + index );
+            final Cursor cursor = new Cursor( this, index );
+            final TripleID skipped = new TripleID();
+            for ( long i = index - index % SAMPLE_INTERVAL; i < index; i++ )
+                cursor.decode( skipped );
+            return cursor;
+        }
+
+        boolean contains( final long end )
+        {
+            return complete || end <= size;
+        }
+
+        boolean isResumable()
+        {
+            return ! complete && rest != null;
+        }
+
+        long memory()
+        {
+            return ENTRY_OVERHEAD + data.length + 4L * samples.length;
+        }
+    }
+
+    /**
+     * Decodes the matches of an entry one after the other.
+     */
+    public static class Cursor
+    {
+        private final Entry entry;
+        private final int[] last;
+        private long index;
+        private int position;
+
+        private Cursor( final Entry entry, final long index )
+        {
+            this.entry = entry;
+            this.last = new int[entry.last.length];
+            this.index = index - index % SAMPLE_INTERVAL;
+            this.position = this.index < entry.size
+                          ? entry.samples[(int) ( this.index / SAMPLE_INTERVAL )]
+                          : entry.data.length;
+        }
+
+        /**
+         * Returns whether the entry has more matches.
+         *
+         * @return true if there are more matches
+         */
+        public boolean hasNext()
+        {
+            return index < entry.size;
+        }
+
+        /**
+         * Copies the next match into the given triple.
+         *
+         * @param triple the triple to fill
+         * @return the given triple
+         */
+        public TripleID next( final TripleID triple )
+        {
+            if ( ! hasNext() )
+                throw new IndexOutOfBoundsException( "No match at " + index );
+            return decode( triple );
+        }
+
+        private TripleID decode( final TripleID triple )
+        {
+            if ( index % SAMPLE_INTERVAL == 0 )
+                Arrays.fill( last, 0 );
+            int c = 0;
+            final int s = entry.subjectId != 0 ? entry.subjectId : read( c++ );
+            final int p = entry.predicateId != 0 ? entry.predicateId : read( c++ );
+            final int o = entry.objectId != 0 ? entry.objectId : read( c );
+            triple.setAll( s, p, o );
+            index++;
+            return triple;
+        }
+
+        private int read( final int component )
+        {
+            int zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = entry.data[position++];
+                zigzag |= ( b & 0x7F ) << shift;
+                shift += 7;
+            } while ( b < 0 );
+            last[component] += ( zigzag >>> 1 ) ^ -( zigzag & 1 );
+            return last[component];
+        }
+    }
+
+    private static class Pattern
+    {
+        final int subjectId;
+        final int predicateId;
+        final int objectId;
+
+        Pattern( final int subjectId, final int predicateId, final int objectId )
+        {
+            this.subjectId = subjectId;
+            this.predicateId = predicateId;
+            this.objectId = objectId;
+        }
+
+        int width()
+        {
+            return ( subjectId == 0 ? 1 : 0 )
+                 + ( predicateId == 0 ? 1 : 0 )
+                 + ( objectId == 0 ? 1 : 0 );
+        }
+
+        @Override
+        public boolean equals( final Object other )
+        {
+            if ( ! ( other instanceof Pattern ) )
+                return false;
+            final Pattern that = (Pattern) other;
+            return subjectId == that.subjectId
+                && predicateId == that.predicateId
+                && objectId == that.objectId;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return ( subjectId * 31 + predicateId ) * 31 + objectId;
+        }
+    }
+
+}
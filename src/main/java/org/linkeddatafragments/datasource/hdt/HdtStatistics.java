@@ -0,0 +1,278 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
+import org.rdfhdt.hdt.dictionary.Dictionary;
+import org.rdfhdt.hdt.enums.TripleComponentRole;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.triples.IteratorTripleID;
+import org.rdfhdt.hdt.triples.TripleID;
+
+/**
+ * Computes the VoID statistics of an HDT in parallel over its IDs.
+ *
+ * The subjects are visited in SPO order, which yields the triples and
+ * distinct subjects per predicate and the instances per class. The objects
+ * are visited through the object index, which yields the distinct objects
+ * per predicate. Both passes are split into ranges of IDs that the threads
+ * take in turn, and only need memory proportional to the number of
+ * predicates. Without the object index, the objects are not visited and
+ * the distinct objects per predicate are left unknown.
+ */
+public class HdtStatistics
+{
+    /**
+     * Suffix appended to the name of the HDT file to obtain the sidecar file
+     */
+    public static final String FILE_SUFFIX = ".void.json";
+
+    private static final String RDF_TYPE =
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private HdtStatistics()
+    {
+    }
+
+    /**
+     * Computes the statistics of the given HDT, which must be indexed.
+     *
+     * @param hdt the HDT
+     * @param threads the number of threads to use
+     * @return the statistics
+     * @throws InterruptedException if the computation is interrupted
+     */
+    public static VoidStatistics compute( final HDT hdt, final int threads )
+                                                  throws InterruptedException
+    {
+        return compute( hdt, threads, true );
+    }
+
+    /**
+     * Computes the statistics of the given HDT.
+     *
+     * @param hdt the HDT
+     * @param threads the number of threads to use
+     * @param hasObjectIndex whether the HDT has the object index; if not,
+     *                       the distinct objects per predicate are reported
+     *                       as unknown
+     * @return the statistics
+     * @throws InterruptedException if the computation is interrupted
+     */
+    public static VoidStatistics compute( final HDT hdt, final int threads,
+                                          final boolean hasObjectIndex )
+                                                  throws InterruptedException
+    {
+        final Dictionary dictionary = hdt.getDictionary();
+        final int nPredicates = (int) dictionary.getNpredicates();
+        final int typeId = dictionary.stringToId( RDF_TYPE, TripleComponentRole.PREDICATE );
+
+        final List<Callable<SubjectCounts>> subjectTasks = new ArrayList<>();
+        final List<Callable<ObjectCounts>> objectTasks = new ArrayList<>();
+        final AtomicLong nextSubject = new AtomicLong( 1 );
+        final AtomicLong nextObject = new AtomicLong( 1 );
+        for ( int i = 0; i < Math.max( 1, threads ); i++ ) {
+            subjectTasks.add( new Callable<SubjectCounts>() {
+                @Override
+                public SubjectCounts call() throws InterruptedException
+                {
+                    return countSubjects( hdt, nPredicates, typeId, nextSubject );
+                }
+            } );
+            objectTasks.add( new Callable<ObjectCounts>() {
+                @Override
+                public ObjectCounts call() throws InterruptedException
+                {
+                    return countObjects( hdt, nPredicates, nextObject );
+                }
+            } );
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool( subjectTasks.size(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread( final Runnable r ) {
+                        final Thread thread = new Thread( r, "HDT statistics" );
+                        thread.setDaemon( true );
+                        return thread;
+                    }
+                } );
+        try {
+            final SubjectCounts subjects = new SubjectCounts( nPredicates );
+            for ( Future<SubjectCounts> partial : executor.invokeAll( subjectTasks ) )
+                subjects.add( get( partial ) );
+            final ObjectCounts objects = new ObjectCounts( nPredicates );
+            if ( hasObjectIndex ) {
+                for ( Future<ObjectCounts> partial : executor.invokeAll( objectTasks ) )
+                    objects.add( get( partial ) );
+            }
+
+            final Map<String, VoidStatistics.PropertyPartition> properties = new HashMap<>();
+            for ( int p = 1; p <= nPredicates; p++ ) {
+                properties.put( dictionary.idToString( p, TripleComponentRole.PREDICATE ).toString(),
+                                new VoidStatistics.PropertyPartition( subjects.triples[p],
+                                                                      subjects.subjects[p],
+                                                                      hasObjectIndex ? objects.objects[p]
+                                                                                     : VoidStatistics.UNKNOWN ) );
+            }
+            final Map<String, Long> classes = new HashMap<>();
+            for ( Map.Entry<Integer, Long> instances : subjects.classes.entrySet() ) {
+                final String term = dictionary.idToString( instances.getKey(),
+                                            TripleComponentRole.OBJECT ).toString();
+                // literals and blank nodes cannot be classes
+                if ( ! term.startsWith( "\"" ) && ! term.startsWith( "_:" ) )
+                    classes.put( term, instances.getValue() );
+            }
+
+            return new VoidStatistics( hdt.getTriples().getNumberOfElements(),
+                                       dictionary.getNsubjects(),
+                                       dictionary.getNobjects(),
+                                       properties, classes );
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static SubjectCounts countSubjects( final HDT hdt,
+                                                final int nPredicates,
+                                                final int typeId,
+                                                final AtomicLong next )
+                                                  throws InterruptedException
+    {
+        final SubjectCounts counts = new SubjectCounts( nPredicates );
+        final long nSubjects = hdt.getDictionary().getNsubjects();
+        long first;
+        while ( ( first = next.getAndAdd( CHUNK_SIZE ) ) <= nSubjects ) {
+            checkInterrupted();
+            final long last = Math.min( nSubjects, first + CHUNK_SIZE - 1 );
+            for ( long s = first; s <= last; s++ ) {
+                final IteratorTripleID matches = hdt.getTriples().search(
+                                          new TripleID( (int) s, 0, 0 ) );
+                // the triples of a subject are sorted by predicate
+                int previous = 0;
+                while ( matches.hasNext() ) {
+                    final TripleID triple = matches.next();
+                    final int p = triple.getPredicate();
+                    counts.triples[p]++;
+                    if ( p != previous ) {
+                        counts.subjects[p]++;
+                        previous = p;
+                    }
+                    if ( p == typeId )
+                        counts.addInstance( triple.getObject(), 1L );
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static ObjectCounts countObjects( final HDT hdt,
+                                              final int nPredicates,
+                                              final AtomicLong next )
+                                                  throws InterruptedException
+    {
+        final ObjectCounts counts = new ObjectCounts( nPredicates );
+        final int[] lastObject = new int[nPredicates + 1];
+        final long nObjects = hdt.getDictionary().getNobjects();
+        long first;
+        while ( ( first = next.getAndAdd( CHUNK_SIZE ) ) <= nObjects ) {
+            checkInterrupted();
+            final long last = Math.min( nObjects, first + CHUNK_SIZE - 1 );
+            for ( long o = first; o <= last; o++ ) {
+                final IteratorTripleID matches = hdt.getTriples().search(
+                                          new TripleID( 0, 0, (int) o ) );
+                while ( matches.hasNext() ) {
+                    final int p = matches.next().getPredicate();
+                    if ( lastObject[p] != o ) {
+                        lastObject[p] = (int) o;
+                        counts.objects[p]++;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void checkInterrupted() throws InterruptedException
+    {
+        if ( Thread.interrupted() )
+            throw new InterruptedException();
+    }
+
+    private static <T> T get( final Future<T> future ) throws InterruptedException
+    {
+        try {
+            return future.get();
+        }
+        catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof InterruptedException )
+                throw (InterruptedException) e.getCause();
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    /**
+     * The counts collected while visiting subjects, indexed by predicate ID.
+     */
+    private static class SubjectCounts
+    {
+        final long[] triples;
+        final long[] subjects;
+        final Map<Integer, Long> classes = new HashMap<>();
+
+        SubjectCounts( final int nPredicates )
+        {
+            triples = new long[nPredicates + 1];
+            subjects = new long[nPredicates + 1];
+        }
+
+        void addInstance( final int classId, final long count )
+        {
+            final Long previous = classes.get( classId );
+            classes.put( classId, previous == null ? count : previous + count );
+        }
+
+        void add( final SubjectCounts other )
+        {
+            for ( int p = 0; p < triples.length; p++ ) {
+                triples[p] += other.triples[p];
+                subjects[p] += other.subjects[p];
+            }
+            for ( Map.Entry<Integer, Long> instances : other.classes.entrySet() )
+                addInstance( instances.getKey(), instances.getValue() );
+        }
+    }
+
+    /**
+     * The counts collected while visiting objects, indexed by predicate ID.
+     */
+    private static class ObjectCounts
+    {
+        final long[] objects;
+
+        ObjectCounts( final int nPredicates )
+        {
+            objects = new long[nPredicates + 1];
+        }
+
+        void add( final ObjectCounts other )
+        {
+            for ( int p = 0; p < objects.length; p++ )
+                objects[p] += other.objects[p];
+        }
+    }
+
+}
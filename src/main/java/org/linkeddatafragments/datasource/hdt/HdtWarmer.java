@@ -0,0 +1,385 @@
+package org.linkeddatafragments.datasource.hdt;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads memory-mapped HDT files into the page cache after a restart, so the
+ * first requests do not all pay for major page faults.
+ *
+ * The files are read in chunks on a background thread at a limited rate.
+ * Chunks that the traffic of an earlier run kept resident (as recorded in the
+ * access profile next to the HDT file) are read first, followed by all other
+ * chunks in file order, which covers the dictionary and the triples.
+ *
+ * Java cannot observe page faults, so the profile approximates the accesses
+ * of the traffic by residency: after the warmup, the chunks that are resident
+ * are sampled every {@link #PROFILE_INTERVAL} milliseconds, and once more when
+ * the warmer is closed. Chunks that the traffic does not use are evicted
+ * first when the files do not fit in memory, so the chunks that are resident
+ * in most samples are recorded first. Until a sample has been taken, as when
+ * the warmer is closed during the warmup, the previous profile is kept.
+ */
+public class HdtWarmer implements Runnable
+{
+    /**
+     * Suffix appended to the name of the HDT file to obtain the profile file
+     */
+    public static final String PROFILE_SUFFIX = ".warmup";
+
+    /**
+     * The granularity of warmup and residency checks (8MB)
+     */
+    public static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The time between two samples of the resident chunks (10 minutes)
+     */
+    public static final long PROFILE_INTERVAL = 10L * 60 * 1000;
+
+    /**
+     * The time for which {@link #close()} waits for the warmup thread
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    private static final Logger LOG = LoggerFactory.getLogger( HdtWarmer.class );
+
+    private final File[] files;
+    private final File profile;
+    private final long bytesPerSecond;
+
+    /**
+     * For every file and chunk, the number of samples in which it was resident
+     */
+    private final int[][] residentCounts;
+    private int samples = 0;
+    private Thread thread;
+
+    /**
+     * Creates a warmer for the given HDT file and its index files.
+     *
+     * @param hdtFile the HDT file
+     * @param bytesPerSecond the maximum read rate of the warmup
+     */
+    public HdtWarmer( final File hdtFile, final long bytesPerSecond )
+    {
+        this.files = new File[] {
+            hdtFile,
+            new File( hdtFile.getPath() + HdtBasedRequestProcessorForTPFs.INDEX_SUFFIX ),
+            new File( hdtFile.getPath() + HdtCountIndex.FILE_SUFFIX ),
+        };
+        this.profile = new File( hdtFile.getPath() + PROFILE_SUFFIX );
+        this.bytesPerSecond = bytesPerSecond;
+        this.residentCounts = new int[files.length][];
+    }
+
+    /**
+     * Starts the warmup on a background thread, which then samples the
+     * resident chunks until the warmer is closed.
+     */
+    public synchronized void start()
+    {
+        thread = new Thread( this, "HDT warmup for " + files[0] );
+        thread.setDaemon( true );
+        thread.setPriority( Thread.MIN_PRIORITY );
+        thread.start();
+    }
+
+    /**
+     * Stops the warmup or the sampling, and saves the profile if the warmup
+     * was completed.
+     */
+    public void close()
+    {
+        final Thread running;
+        synchronized ( this ) {
+            running = thread;
+            thread = null;
+        }
+        if ( running == null )
+            return;
+        running.interrupt();
+        try {
+            running.join( CLOSE_TIMEOUT );
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        report( "before warmup" );
+        if ( ! warmup() )
+            return;
+        report( "after warmup" );
+
+        // sample until closed, and a last time when closed
+        boolean closed = false;
+        while ( ! closed ) {
+            try {
+                Thread.sleep( PROFILE_INTERVAL );
+            }
+            catch ( InterruptedException e ) {
+                closed = true;
+            }
+            try {
+                sample();
+                saveProfile();
+            }
+            catch ( IOException e ) {
+                LOG.warn( "Could not save the warmup profile {}: {}",
+                          profile, e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Reads the files at the configured rate.
+     *
+     * @return true if the warmup was completed, false if it was interrupted
+     */
+    private boolean warmup()
+    {
+        try {
+            final long start = System.nanoTime();
+            long bytesRead = 0;
+            final ByteBuffer buffer = ByteBuffer.allocateDirect( CHUNK_SIZE );
+            for ( File file : files ) {
+                if ( ! file.isFile() )
+                    continue;
+                try ( RandomAccessFile raf = new RandomAccessFile( file, "r" );
+                      FileChannel channel = raf.getChannel() ) {
+                    for ( long chunk : getChunkOrder( file, channel.size() ) ) {
+                        buffer.clear();
+                        channel.read( buffer, chunk * CHUNK_SIZE );
+                        bytesRead += buffer.position();
+                        throttle( start, bytesRead );
+                    }
+                }
+            }
+        }
+        catch ( ClosedByInterruptException e ) {
+            return false;
+        }
+        catch ( IOException e ) {
+            LOG.warn( "HDT warmup of {} failed: {}", files[0], e.getMessage() );
+        }
+        catch ( InterruptedException e ) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the chunks that are currently resident.
+     *
+     * @throws IOException if a file cannot be mapped
+     */
+    private synchronized void sample() throws IOException
+    {
+        for ( int f = 0; f < files.length; f++ ) {
+            if ( ! files[f].isFile() )
+                continue;
+            final boolean[] resident = getResidentChunks( files[f] );
+            if ( residentCounts[f] == null || residentCounts[f].length != resident.length )
+                residentCounts[f] = new int[resident.length];
+            for ( int i = 0; i < resident.length; i++ ) {
+                if ( resident[i] )
+                    residentCounts[f][i]++;
+            }
+        }
+        samples++;
+    }
+
+    /**
+     * Records the chunks that were resident in the samples taken so far,
+     * those that were resident most often first, so the next run can load
+     * them first. Nothing is written before the first sample.
+     *
+     * @throws IOException if the profile cannot be written
+     */
+    public synchronized void saveProfile() throws IOException
+    {
+        if ( samples == 0 )
+            return;
+        final List<long[]> chunks = new ArrayList<long[]>();
+        for ( int f = 0; f < files.length; f++ ) {
+            if ( residentCounts[f] == null )
+                continue;
+            for ( int i = 0; i < residentCounts[f].length; i++ ) {
+                if ( residentCounts[f][i] > 0 )
+                    chunks.add( new long[] { residentCounts[f][i], f, i } );
+            }
+        }
+        // the sort is stable, so equally frequent chunks stay in file order
+        Collections.sort( chunks, new Comparator<long[]>() {
+            @Override
+            public int compare( final long[] a, final long[] b )
+            {
+                return Long.compare( b[0], a[0] );
+            }
+        } );
+
+        final File temp = new File( profile.getPath() + ".tmp" );
+        try ( PrintWriter out = new PrintWriter( new FileWriter( temp ) ) ) {
+            for ( long[] chunk : chunks )
+                out.println( files[(int) chunk[1]].getName() + "\t" + chunk[2] );
+        }
+        if ( ( profile.exists() && ! profile.delete() ) || ! temp.renameTo( profile ) ) {
+            temp.delete();
+            throw new IOException( "Could not replace " + profile + "." );
+        }
+    }
+
+    /**
+     * Returns the chunks of the given file in the order in which they should
+     * be read: profiled chunks first, then all others.
+     */
+    private Set<Long> getChunkOrder( final File file, final long size )
+                                                             throws IOException
+    {
+        final long nChunks = ( size + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+        final Set<Long> order = new LinkedHashSet<Long>();
+        if ( profile.isFile() ) {
+            try ( BufferedReader in = new BufferedReader( new FileReader( profile ) ) ) {
+                String line;
+                while ( ( line = in.readLine() ) != null ) {
+                    final int tab = line.indexOf( '\t' );
+                    if ( tab > 0 && line.substring( 0, tab ).equals( file.getName() ) ) {
+                        final long chunk = Long.parseLong( line.substring( tab + 1 ) );
+                        if ( chunk < nChunks )
+                            order.add( chunk );
+                    }
+                }
+            }
+            catch ( NumberFormatException e ) {
+                // ignore a corrupt profile
+            }
+        }
+        for ( long chunk = 0; chunk < nChunks; chunk++ )
+            order.add( chunk );
+        return order;
+    }
+
+    private void throttle( final long start, final long bytesRead )
+                                                   throws InterruptedException
+    {
+        if ( bytesPerSecond <= 0 )
+            return;
+        final long expected = bytesRead * 1000L / bytesPerSecond;
+        final long elapsed = ( System.nanoTime() - start ) / 1000000L;
+        if ( expected > elapsed )
+            Thread.sleep( expected - elapsed );
+    }
+
+    /**
+     * Logs how much of each file is resident.
+     */
+    private void report( final String when )
+    {
+        for ( File file : files ) {
+            if ( ! file.isFile() )
+                continue;
+            try {
+                final boolean[] resident = getResidentChunks( file );
+                int nResident = 0;
+                for ( boolean r : resident )
+                    nResident += r ? 1 : 0;
+                LOG.info( "{} is {}% resident in memory {}",
+                          file, resident.length == 0 ? 100
+                                : nResident * 100 / resident.length, when );
+            }
+            catch ( IOException e ) {
+                // residency is informational only
+            }
+        }
+    }
+
+    /**
+     * Determines for every chunk of the given file whether it is completely
+     * resident in the page cache.
+     *
+     * @param file the file
+     * @return one flag per chunk
+     * @throws IOException if the file cannot be mapped
+     */
+    public static boolean[] getResidentChunks( final File file )
+                                                             throws IOException
+    {
+        try ( RandomAccessFile raf = new RandomAccessFile( file, "r" );
+              FileChannel channel = raf.getChannel() ) {
+            final long size = channel.size();
+            final boolean[] resident =
+                    new boolean[(int) ( ( size + CHUNK_SIZE - 1 ) / CHUNK_SIZE )];
+            for ( int i = 0; i < resident.length; i++ ) {
+                final long position = (long) i * CHUNK_SIZE;
+                final long length = Math.min( CHUNK_SIZE, size - position );
+                final MappedByteBuffer chunk =
+                     channel.map( FileChannel.MapMode.READ_ONLY, position, length );
+                try {
+                    resident[i] = chunk.isLoaded();
+                }
+                finally {
+                    unmap( chunk );
+                }
+            }
+            return resident;
+        }
+    }
+
+    /**
+     * Releases the given mapping right away instead of when it is garbage
+     * collected, which may take long for a buffer that is this cheap on the
+     * heap. Java has no public API for this, so the JDK internals are used
+     * if they are accessible; otherwise the mapping is left to the collector.
+     */
+    private static void unmap( final MappedByteBuffer buffer )
+    {
+        try {
+            // Java 9 and later
+            final Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+            final Method invokeCleaner =
+                      unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+            final Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+            theUnsafe.setAccessible( true );
+            invokeCleaner.invoke( theUnsafe.get( null ), buffer );
+            return;
+        }
+        catch ( ReflectiveOperationException | RuntimeException e ) {
+            // not available; try the Java 8 way
+        }
+        try {
+            final Method cleanerMethod = buffer.getClass().getMethod( "cleaner" );
+            cleanerMethod.setAccessible( true );
+            final Object cleaner = cleanerMethod.invoke( buffer );
+            if ( cleaner != null )
+                cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+        }
+        catch ( ReflectiveOperationException | RuntimeException e ) {
+            // the mapping is released when the buffer is collected
+        }
+    }
+
+}
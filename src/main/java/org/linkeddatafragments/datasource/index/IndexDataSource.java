@@ -1,10 +1,14 @@
 package org.linkeddatafragments.datasource.index;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.linkeddatafragments.datasource.DataSourceBase;
 import org.linkeddatafragments.datasource.IDataSource;
 import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
 import org.linkeddatafragments.fragments.IFragmentRequestParser;
 import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
 
@@ -22,14 +26,34 @@ public class IndexDataSource extends DataSourceBase {
      */
     protected final IndexRequestProcessorForTPFs requestProcessor;
 
+    /**
+     * The serialized first page of the index, per media type
+     */
+    private final ConcurrentHashMap<String, byte[]> responses = new ConcurrentHashMap<>();
+
+    private final int statisticsCount;
+
     /**
      *
      * @param baseUrl
      * @param datasources
      */
     public IndexDataSource(String baseUrl, HashMap<String, IDataSource> datasources) {
+        this(baseUrl, datasources, Collections.<String, VoidStatistics>emptyMap());
+    }
+
+    /**
+     *
+     * @param baseUrl
+     * @param datasources
+     * @param statistics the VoID statistics of the data sources for which
+     *                   they are available, by name
+     */
+    public IndexDataSource(String baseUrl, HashMap<String, IDataSource> datasources,
+                           Map<String, VoidStatistics> statistics) {
         super("Index", "List of all datasources");
-        requestProcessor = new IndexRequestProcessorForTPFs( baseUrl, datasources );
+        requestProcessor = new IndexRequestProcessorForTPFs( baseUrl, datasources, statistics );
+        statisticsCount = statistics.size();
     }
 
     @Override
@@ -44,4 +68,37 @@ public class IndexDataSource extends DataSourceBase {
         return requestProcessor;
     }
 
+    /**
+     * Returns the number of data sources whose statistics are in the index.
+     *
+     * @return the number of data sources
+     */
+    public int getStatisticsCount()
+    {
+        return statisticsCount;
+    }
+
+    /**
+     * Returns the serialized first page of the index in the given media type,
+     * if it has been stored before.
+     *
+     * @param mimeType the media type
+     * @return the response body, or null
+     */
+    public byte[] getResponse(String mimeType)
+    {
+        return responses.get(mimeType);
+    }
+
+    /**
+     * Stores the serialized first page of the index in the given media type.
+     *
+     * @param mimeType the media type
+     * @param body the response body
+     */
+    public void putResponse(String mimeType, byte[] body)
+    {
+        responses.putIfAbsent(mimeType, body);
+    }
+
 }
@@ -1,7 +1,11 @@
 package org.linkeddatafragments.datasource.index;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -9,13 +13,15 @@ import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
-import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.impl.PropertyImpl;
 import org.apache.jena.rdf.model.impl.ResourceImpl;
+import org.apache.jena.riot.out.NodeFmtLib;
 
 import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
 import org.linkeddatafragments.datasource.IDataSource;
 import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
 import org.linkeddatafragments.fragments.ILinkedDataFragment;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
@@ -36,7 +42,11 @@ public class IndexRequestProcessorForTPFs
     final static String DC = "http://purl.org/dc/terms/";
     final static String VOID = "http://rdfs.org/ns/void#";
 
-    private final Model model;
+    /**
+     * The matching statements of every pattern that has at least one match,
+     * keyed by {@link #toKey(Resource, Property, RDFNode)}
+     */
+    private final Map<String, List<Statement>> matches = new HashMap<>();
 
     /**
      *
@@ -47,7 +57,23 @@ public class IndexRequestProcessorForTPFs
                                final String baseUrl,
                                final HashMap<String, IDataSource> datasources )
     {
-        this.model = ModelFactory.createDefaultModel();
+        this( baseUrl, datasources,
+              Collections.<String, VoidStatistics>emptyMap() );
+    }
+
+    /**
+     *
+     * @param baseUrl
+     * @param datasources
+     * @param statistics the VoID statistics of the data sources for which
+     *                   they are available, by name
+     */
+    public IndexRequestProcessorForTPFs(
+                               final String baseUrl,
+                               final HashMap<String, IDataSource> datasources,
+                               final Map<String, VoidStatistics> statistics )
+    {
+        final Model model = ModelFactory.createDefaultModel();
 
         for (Map.Entry<String, IDataSource> entry : datasources.entrySet()) {
             String datasourceName = entry.getKey();
@@ -59,7 +85,44 @@ public class IndexRequestProcessorForTPFs
             model.add(datasourceUrl, new PropertyImpl(RDFS + "label"), datasource.getTitle());
             model.add(datasourceUrl, new PropertyImpl(DC + "title"), datasource.getTitle());
             model.add(datasourceUrl, new PropertyImpl(DC + "description"), datasource.getDescription());
+
+            final VoidStatistics datasourceStatistics = statistics.get(datasourceName);
+            if (datasourceStatistics != null) {
+                datasourceStatistics.addTo(model, datasourceUrl);
+            }
         }
+
+        // sort the statements so that pages are stable, and list them under
+        // each of the 8 patterns they match
+        final List<Statement> statements = model.listStatements().toList();
+        Collections.sort(statements, new Comparator<Statement>() {
+            @Override
+            public int compare(Statement a, Statement b) {
+                return a.asTriple().toString().compareTo(b.asTriple().toString());
+            }
+        });
+        for (Statement statement : statements) {
+            for (int mask = 0; mask < 8; mask++) {
+                final String key = toKey(
+                        (mask & 4) == 0 ? null : statement.getSubject(),
+                        (mask & 2) == 0 ? null : statement.getPredicate(),
+                        (mask & 1) == 0 ? null : statement.getObject());
+                List<Statement> list = matches.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    matches.put(key, list);
+                }
+                list.add(statement);
+            }
+        }
+    }
+
+    private static String toKey(final Resource subject,
+                                final Property predicate,
+                                final RDFNode object) {
+        return (subject == null ? "" : NodeFmtLib.str(subject.asNode())) + " "
+             + (predicate == null ? "" : NodeFmtLib.str(predicate.asNode())) + " "
+             + (object == null ? "" : NodeFmtLib.str(object.asNode()));
     }
 
     /**
@@ -124,21 +187,18 @@ public class IndexRequestProcessorForTPFs
             final RDFNode object     = o.isVariable() ? null
                                                       : o.asConstantTerm();
 
-            StmtIterator listStatements = model.listStatements(subject, predicate, object);
-            Model result = ModelFactory.createDefaultModel();
-
-            long index = 0;
-            while (listStatements.hasNext() && index < offset) {
-                listStatements.next();
-                index++;
+            final List<Statement> statements = matches.get(toKey(subject, predicate, object));
+            if (statements == null) {
+                return createEmptyTriplePatternFragment();
             }
 
-            while (listStatements.hasNext() && index < (offset + limit)) {
-                result.add(listStatements.next());
-            }
+            final Model result = ModelFactory.createDefaultModel();
+            final int size = statements.size();
+            result.add(statements.subList((int) Math.min(offset, size),
+                                          (int) Math.min(offset + limit, size)));
 
-            final boolean isLastPage = ( result.size() < offset + limit );
-            return createTriplePatternFragment( result, result.size(), isLastPage );
+            final boolean isLastPage = ( size <= offset + limit );
+            return createTriplePatternFragment( result, size, isLastPage );
         }
 
     } // end of class Worker
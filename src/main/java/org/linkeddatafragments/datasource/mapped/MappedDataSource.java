@@ -0,0 +1,60 @@
+package org.linkeddatafragments.datasource.mapped;
+
+import java.io.IOException;
+
+import org.apache.jena.graph.Triple;
+import org.linkeddatafragments.datasource.DataSourceBase;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.ILookupDataSource;
+import org.linkeddatafragments.fragments.IFragmentRequestParser;
+import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
+
+/**
+ * A data source of Basic Linked Data Fragments that is backed by a
+ * memory-mapped {@link MappedTripleStore} file.
+ */
+public class MappedDataSource extends DataSourceBase implements ILookupDataSource {
+
+    /**
+     * The request processor
+     * 
+     */
+    protected final MappedRequestProcessorForTPFs requestProcessor;
+
+    /**
+     * Creates a new MappedDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param file the triple store file
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedDataSource(String title, String description, String file)
+                                                             throws IOException {
+        super(title, description);
+        requestProcessor = new MappedRequestProcessorForTPFs( file );
+    }
+
+    @Override
+    public IFragmentRequestParser getRequestParser()
+    {
+        return TPFRequestParserForJenaBackends.getInstance();
+    }
+
+    @Override
+    public IFragmentRequestProcessor getRequestProcessor()
+    {
+        return requestProcessor;
+    }
+
+    @Override
+    public void close() {
+        requestProcessor.close();
+    }
+
+    @Override
+    public boolean contains(Triple triple) {
+        return requestProcessor.contains(triple);
+    }
+
+}
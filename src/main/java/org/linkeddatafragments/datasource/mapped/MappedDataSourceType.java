@@ -0,0 +1,34 @@
+package org.linkeddatafragments.datasource.mapped;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.exceptions.DataSourceCreationException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The type of Triple Pattern Fragment data sources that are backed by a
+ * {@link MappedTripleStore} file, built with {@link MappedTripleStoreBuilder}.
+ */
+public class MappedDataSourceType implements IDataSourceType
+{
+    @Override
+    public IDataSource createDataSource( final String title,
+                                         final String description,
+                                         final JsonObject settings )
+                                                     throws DataSourceCreationException
+    {
+        final String fname = settings.getAsJsonPrimitive("file").getAsString();
+        final File file = new File( fname );
+
+        try {
+            return new MappedDataSource(title, description, file.getAbsolutePath());
+        } catch (IOException ex) {
+            throw new DataSourceCreationException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.linkeddatafragments.datasource.mapped;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+
+import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+
+/**
+ * Implementation of {@link IFragmentRequestProcessor} that processes
+ * {@link ITriplePatternFragmentRequest}s over a {@link MappedTripleStore}.
+ *
+ * Matches are located by binary search in the mapped permutations, so the
+ * total is always exact and every page is read directly at its offset.
+ */
+public class MappedRequestProcessorForTPFs
+    extends AbstractRequestProcessorForTriplePatterns<RDFNode,String,String>
+{
+
+    /**
+     * The triple store
+     */
+    protected final MappedTripleStore store;
+
+    /**
+     * Creates the request processor.
+     *
+     * @param file the triple store file
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedRequestProcessorForTPFs( final String file ) throws IOException
+    {
+        store = new MappedTripleStore( new File( file ) );
+    }
+
+    @Override
+    public void close()
+    {
+        store.close();
+    }
+
+    /**
+     *
+     * @param request
+     * @return
+     * @throws IllegalArgumentException
+     */
+    @Override
+    protected Worker getTPFSpecificWorker(
+            final ITriplePatternFragmentRequest<RDFNode,String,String> request )
+                                                throws IllegalArgumentException
+    {
+        return new Worker( request );
+    }
+
+    /**
+     * Worker class for mapped triple stores
+     */
+    protected class Worker
+       extends AbstractRequestProcessorForTriplePatterns.Worker<RDFNode,String,String>
+    {
+
+        /**
+         * Create a Worker for mapped triple stores
+         *
+         * @param req
+         */
+        public Worker(
+                final ITriplePatternFragmentRequest<RDFNode,String,String> req )
+        {
+            super( req );
+        }
+
+        /**
+         * Creates an {@link ILinkedDataFragment} from the triple store
+         *
+         * @param subject
+         * @param predicate
+         * @param object
+         * @param offset
+         * @param limit
+         * @return
+         */
+        @Override
+        protected ILinkedDataFragment createFragment(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final long subjectId = getId( subject );
+            final long predicateId = getId( predicate );
+            final long objectId = getId( object );
+            if ( subjectId < 0 || predicateId < 0 || objectId < 0 ) {
+                return createEmptyTriplePatternFragment();
+            }
+
+            final MappedTripleStore.Range matches =
+                             store.find( subjectId, predicateId, objectId );
+            final long totalSize = matches.size();
+            final long end = Math.min( totalSize, offset + limit );
+
+            final Model triples = ModelFactory.createDefaultModel();
+            final long[] ids = new long[3];
+            for ( long i = offset; i < end; i++ ) {
+                store.get( matches, i, ids );
+                triples.add( triples.asStatement( new Triple(
+                                                    store.getNode( ids[0] ),
+                                                    store.getNode( ids[1] ),
+                                                    store.getNode( ids[2] ) ) ) );
+            }
+
+            final boolean isLastPage = ( totalSize <= offset + limit );
+            return createTriplePatternFragment( triples, totalSize, isLastPage );
+        }
+
+    } // end of Worker
+
+    /**
+     * Returns whether the store contains the given triple.
+     *
+     * @param triple a triple without variables
+     * @return true if the triple is in the store
+     */
+    public boolean contains( final Triple triple )
+    {
+        final long s = store.getId( triple.getSubject() );
+        final long p = store.getId( triple.getPredicate() );
+        final long o = store.getId( triple.getObject() );
+        return s > 0 && p > 0 && o > 0 && store.find( s, p, o ).size() > 0;
+    }
+
+    /**
+     * Returns the ID of a pattern element, 0 for a variable, or -1 if the
+     * constant does not occur in the store.
+     */
+    private long getId( final ITriplePatternElement<RDFNode,String,String> element )
+    {
+        return element.isVariable() ? 0L
+             : store.getId( element.asConstantTerm().asNode() );
+    }
+
+}
@@ -0,0 +1,413 @@
+package org.linkeddatafragments.datasource.mapped;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+
+/**
+ * Read access to a triple store file, which is memory-mapped so that opening
+ * it takes constant time and no data is copied onto the heap.
+ *
+ * The file consists of
+ * <ul>
+ * <li>a header: magic number, version, number of terms, number of triples;</li>
+ * <li>the dictionary: <code>terms + 1</code> long offsets followed by the
+ *     encoded terms (see {@link #encode(Node)}) in unsigned byte order, so
+ *     the ID of a term (starting at 1) is found by binary search;</li>
+ * <li>the triples as int IDs in three sorted permutations: SPO, POS, OSP.</li>
+ * </ul>
+ * All numbers are big-endian and all sections start at a multiple of 8.
+ */
+public class MappedTripleStore implements Closeable
+{
+    /**
+     * The usual file extension of triple store files
+     */
+    public static final String FILE_EXTENSION = ".ldfs";
+
+    static final int MAGIC = 0x4C444653; // "LDFS"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+
+    private static final byte URI = 'U';
+    private static final byte BLANK = 'B';
+    private static final byte LITERAL = 'L';
+
+    private static final int SPO = 0;
+    private static final int POS = 1;
+    private static final int OSP = 2;
+
+    /**
+     * The positions of S, P and O within a triple of each permutation
+     */
+    private static final int[][] POSITIONS = { { 0, 1, 2 },   // SPO
+                                               { 2, 0, 1 },   // POS
+                                               { 1, 2, 0 } }; // OSP
+
+    private final MappedFile file;
+    private final long numberOfTerms;
+    private final long numberOfTriples;
+    private final long termOffsets;
+    private final long[] permutations = new long[3];
+
+    /**
+     * Maps the given triple store file.
+     *
+     * @param path the triple store file
+     * @throws IOException if the file cannot be mapped or has another format
+     */
+    public MappedTripleStore( final File path ) throws IOException
+    {
+        file = new MappedFile( path );
+        if ( file.size() < HEADER_SIZE || file.getInt( 0 ) != MAGIC ||
+             file.getInt( 4 ) != VERSION )
+            throw new IOException( path + " is not a triple store file." );
+        numberOfTerms = file.getLong( 8 );
+        numberOfTriples = file.getLong( 16 );
+
+        termOffsets = HEADER_SIZE;
+        final long termData = termOffsets + ( numberOfTerms + 1 ) * 8;
+        permutations[SPO] = align( termData + file.getLong( termData - 8 ) );
+        permutations[POS] = permutations[SPO] + numberOfTriples * 12;
+        permutations[OSP] = permutations[POS] + numberOfTriples * 12;
+        if ( permutations[OSP] + numberOfTriples * 12 != file.size() )
+            throw new IOException( path + " is truncated." );
+    }
+
+    /**
+     * Returns the number of triples.
+     *
+     * @return the number of triples
+     */
+    public long size()
+    {
+        return numberOfTriples;
+    }
+
+    /**
+     * Returns the ID of the given term.
+     *
+     * @param node the term
+     * @return the ID, or -1 if the term does not occur
+     */
+    public long getId( final Node node )
+    {
+        final byte[] key = encode( node );
+        long low = 1;
+        long high = numberOfTerms;
+        while ( low <= high ) {
+            final long mid = ( low + high ) >>> 1;
+            final int cmp = compareTerm( mid, key );
+            if ( cmp < 0 )
+                low = mid + 1;
+            else if ( cmp > 0 )
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1L;
+    }
+
+    /**
+     * Returns the term with the given ID.
+     *
+     * @param id the ID
+     * @return the term
+     */
+    public Node getNode( final long id )
+    {
+        final long start = termStart( id );
+        final byte[] bytes = new byte[(int) ( termStart( id + 1 ) - start )];
+        file.get( start, bytes );
+        return decode( bytes );
+    }
+
+    /**
+     * Finds the range of the matches of the given pattern of IDs, where 0
+     * denotes a variable.
+     *
+     * @param s the subject ID, or 0
+     * @param p the predicate ID, or 0
+     * @param o the object ID, or 0
+     * @return the range of matches
+     */
+    public Range find( final long s, final long p, final long o )
+    {
+        final int perm;
+        if ( s != 0 )
+            perm = ( p == 0 && o != 0 ) ? OSP : SPO;
+        else if ( p != 0 )
+            perm = POS;
+        else
+            perm = o != 0 ? OSP : SPO;
+
+        final int[] positions = POSITIONS[perm];
+        final long[] key = new long[3];
+        key[positions[0]] = s;
+        key[positions[1]] = p;
+        key[positions[2]] = o;
+        int prefix = 0;
+        while ( prefix < 3 && key[prefix] != 0 )
+            prefix++;
+
+        if ( prefix == 0 )
+            return new Range( perm, 0, numberOfTriples );
+        return new Range( perm, search( perm, key, prefix, false ),
+                                search( perm, key, prefix, true ) );
+    }
+
+    /**
+     * Copies the match at the given offset of a range into the given array.
+     *
+     * @param range the range of matches
+     * @param offset the offset within the range
+     * @param triple an array of length 3 that receives the S, P and O IDs
+     * @return the given array
+     */
+    public long[] get( final Range range, final long offset, final long[] triple )
+    {
+        final int[] positions = POSITIONS[range.permutation];
+        final long position = permutations[range.permutation]
+                            + ( range.start + offset ) * 12;
+        triple[0] = id( position + positions[0] * 4 );
+        triple[1] = id( position + positions[1] * 4 );
+        triple[2] = id( position + positions[2] * 4 );
+        return triple;
+    }
+
+    @Override
+    public void close()
+    {
+        // the mappings are released when they are garbage collected
+    }
+
+    /**
+     * Finds the first triple of a permutation whose prefix is greater than or
+     * equal to (or, if <code>after</code> is true, greater than) the key.
+     */
+    private long search( final int perm, final long[] key,
+                         final int prefix, final boolean after )
+    {
+        final long base = permutations[perm];
+        long low = 0;
+        long high = numberOfTriples;
+        while ( low < high ) {
+            final long mid = ( low + high ) >>> 1;
+            int cmp = 0;
+            for ( int k = 0; k < prefix && cmp == 0; k++ )
+                cmp = Long.compare( id( base + mid * 12 + k * 4 ), key[k] );
+            if ( cmp < 0 || ( after && cmp == 0 ) )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private long id( final long position )
+    {
+        return file.getInt( position ) & 0xFFFFFFFFL;
+    }
+
+    private long termStart( final long id )
+    {
+        return termOffsets + ( numberOfTerms + 1 ) * 8
+             + file.getLong( termOffsets + ( id - 1 ) * 8 );
+    }
+
+    /**
+     * Compares the stored term with the given ID to an encoded term, byte
+     * by byte and without copying.
+     */
+    private int compareTerm( final long id, final byte[] key )
+    {
+        final long start = termStart( id );
+        final long length = termStart( id + 1 ) - start;
+        final long common = Math.min( length, key.length );
+        for ( long i = 0; i < common; i++ ) {
+            final int cmp = ( file.getByte( start + i ) & 0xFF )
+                          - ( key[(int) i] & 0xFF );
+            if ( cmp != 0 )
+                return cmp;
+        }
+        return Long.compare( length, key.length );
+    }
+
+    /**
+     * Encodes a term as a type byte followed by its UTF-8 representation.
+     * A literal is followed by the length of its lexical form and, after the
+     * lexical form, by <code>@</code> and its language or <code>^</code> and
+     * its datatype.
+     *
+     * @param node the term
+     * @return the encoded term
+     */
+    public static byte[] encode( final Node node )
+    {
+        if ( node.isURI() )
+            return tagged( URI, node.getURI() );
+        if ( node.isBlank() )
+            return tagged( BLANK, node.getBlankNodeLabel() );
+
+        final byte[] lexical = node.getLiteralLexicalForm()
+                                   .getBytes( StandardCharsets.UTF_8 );
+        final String language = node.getLiteralLanguage();
+        final String datatype = node.getLiteralDatatypeURI();
+        final byte[] suffix = language != null && ! language.isEmpty()
+                ? ( "@" + language ).getBytes( StandardCharsets.UTF_8 )
+                : datatype != null
+                ? ( "^" + datatype ).getBytes( StandardCharsets.UTF_8 )
+                : new byte[0];
+        return ByteBuffer.allocate( 5 + lexical.length + suffix.length )
+                         .put( LITERAL ).putInt( lexical.length )
+                         .put( lexical ).put( suffix ).array();
+    }
+
+    /**
+     * Decodes a term that was encoded with {@link #encode(Node)}.
+     *
+     * @param bytes the encoded term
+     * @return the term
+     */
+    public static Node decode( final byte[] bytes )
+    {
+        final String rest;
+        switch ( bytes[0] ) {
+            case URI:
+                return NodeFactory.createURI(
+                        new String( bytes, 1, bytes.length - 1, StandardCharsets.UTF_8 ) );
+            case BLANK:
+                return NodeFactory.createBlankNode(
+                        new String( bytes, 1, bytes.length - 1, StandardCharsets.UTF_8 ) );
+            case LITERAL:
+                final int length = ByteBuffer.wrap( bytes, 1, 4 ).getInt();
+                final String lexical = new String( bytes, 5, length, StandardCharsets.UTF_8 );
+                if ( 5 + length == bytes.length )
+                    return NodeFactory.createLiteral( lexical );
+                rest = new String( bytes, 6 + length, bytes.length - 6 - length,
+                                   StandardCharsets.UTF_8 );
+                if ( bytes[5 + length] == '@' )
+                    return NodeFactory.createLiteral( lexical, rest );
+                return NodeFactory.createLiteral( lexical,
+                        TypeMapper.getInstance().getSafeTypeByName( rest ) );
+            default:
+                throw new IllegalArgumentException( "Unknown term type " + bytes[0] );
+        }
+    }
+
+    private static byte[] tagged( final byte tag, final String value )
+    {
+        final byte[] utf8 = value.getBytes( StandardCharsets.UTF_8 );
+        final byte[] bytes = new byte[utf8.length + 1];
+        bytes[0] = tag;
+        System.arraycopy( utf8, 0, bytes, 1, utf8.length );
+        return bytes;
+    }
+
+    static long align( final long position )
+    {
+        return ( position + 7 ) & ~7L;
+    }
+
+    /**
+     * A contiguous range of matches in one of the permutations.
+     */
+    public static class Range
+    {
+        final int permutation;
+        final long start;
+        final long end;
+
+        Range( final int permutation, final long start, final long end )
+        {
+            this.permutation = permutation;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the number of matches in this range.
+         *
+         * @return the number of matches
+         */
+        public long size()
+        {
+            return end - start;
+        }
+    }
+
+    /**
+     * A read-only file that is mapped in chunks, because a single mapping is
+     * limited to 2GB. Chunks are 8-aligned, so aligned ints and longs never
+     * cross a chunk boundary.
+     */
+    static class MappedFile
+    {
+        private static final int CHUNK_BITS = 30; // 1GB
+        private static final long CHUNK_MASK = ( 1L << CHUNK_BITS ) - 1;
+
+        private final MappedByteBuffer[] chunks;
+        private final long size;
+
+        MappedFile( final File path ) throws IOException
+        {
+            try ( RandomAccessFile raf = new RandomAccessFile( path, "r" );
+                  FileChannel channel = raf.getChannel() ) {
+                size = channel.size();
+                chunks = new MappedByteBuffer[(int) ( ( size + CHUNK_MASK ) >>> CHUNK_BITS )];
+                for ( int i = 0; i < chunks.length; i++ ) {
+                    final long position = (long) i << CHUNK_BITS;
+                    chunks[i] = channel.map( FileChannel.MapMode.READ_ONLY, position,
+                                             Math.min( CHUNK_MASK + 1, size - position ) );
+                    chunks[i].order( ByteOrder.BIG_ENDIAN );
+                }
+            }
+        }
+
+        long size()
+        {
+            return size;
+        }
+
+        byte getByte( final long position )
+        {
+            return chunks[(int) ( position >>> CHUNK_BITS )]
+                         .get( (int) ( position & CHUNK_MASK ) );
+        }
+
+        int getInt( final long position )
+        {
+            return chunks[(int) ( position >>> CHUNK_BITS )]
+                         .getInt( (int) ( position & CHUNK_MASK ) );
+        }
+
+        long getLong( final long position )
+        {
+            return chunks[(int) ( position >>> CHUNK_BITS )]
+                         .getLong( (int) ( position & CHUNK_MASK ) );
+        }
+
+        void get( final long position, final byte[] bytes )
+        {
+            for ( int i = 0; i < bytes.length; ) {
+                final long p = position + i;
+                final ByteBuffer chunk = chunks[(int) ( p >>> CHUNK_BITS )].duplicate();
+                chunk.position( (int) ( p & CHUNK_MASK ) );
+                final int n = Math.min( bytes.length - i, chunk.remaining() );
+                chunk.get( bytes, i, n );
+                i += n;
+            }
+        }
+    }
+
+}
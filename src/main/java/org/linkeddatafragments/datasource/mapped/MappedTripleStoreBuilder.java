@@ -0,0 +1,615 @@
+package org.linkeddatafragments.datasource.mapped;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import org.linkeddatafragments.datasource.memory.TripleIndex;
+
+/**
+ * Builds a {@link MappedTripleStore} file from an RDF file (typically
+ * N-Triples) with a bounded amount of memory.
+ *
+ * The terms are sorted with an external merge sort to assign the IDs, after
+ * which the three permutations of the ID triples are sorted the same way.
+ * Sorted runs are written to a temporary directory, and merged at most
+ * {@link #MAX_FAN_IN} at a time, in several passes if there are more, so
+ * the number of open files stays bounded.
+ *
+ * Usage: <code>MappedTripleStoreBuilder input.nt output.ldfs [runSize]</code>
+ */
+public class MappedTripleStoreBuilder
+{
+    private static final int[][] POSITIONS = { { 0, 1, 2 },   // SPO
+                                               { 2, 0, 1 },   // POS
+                                               { 1, 2, 0 } }; // OSP
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The maximum number of runs that are merged at once
+     */
+    public static final int MAX_FAN_IN = 64;
+
+    private final File tempDirectory;
+    private final int runSize;
+
+    /**
+     * Creates a builder.
+     *
+     * @param tempDirectory the directory for the sorted runs
+     * @param runSize the number of terms or triples sorted in memory at once
+     */
+    public MappedTripleStoreBuilder( final File tempDirectory, final int runSize )
+    {
+        this.tempDirectory = tempDirectory;
+        this.runSize = runSize;
+    }
+
+    /**
+     *
+     * @param args input file, output file and optionally the run size
+     * @throws IOException
+     */
+    public static void main( final String[] args ) throws IOException
+    {
+        if ( args.length < 2 ) {
+            System.err.println( "Usage: MappedTripleStoreBuilder input.nt output"
+                                + MappedTripleStore.FILE_EXTENSION + " [runSize]" );
+            System.exit( 1 );
+        }
+        final File output = new File( args[1] ).getAbsoluteFile();
+        final int runSize = args.length > 2 ? Integer.parseInt( args[2] )
+                : (int) Math.min( 1 << 24, Math.max( 100000,
+                                  Runtime.getRuntime().maxMemory() / 256 ) );
+        new MappedTripleStoreBuilder( output.getParentFile(), runSize )
+                .build( new File( args[0] ), output );
+    }
+
+    /**
+     * Builds a triple store file. The file is replaced atomically once it has
+     * been written completely.
+     *
+     * @param input the RDF file
+     * @param output the triple store file
+     * @throws IOException if a file cannot be read or written
+     */
+    public void build( final File input, final File output ) throws IOException
+    {
+        final List<File> temps = new ArrayList<File>();
+        final List<File> termRuns = new ArrayList<File>();
+        try {
+            final long start = System.nanoTime();
+
+            // sort all term occurrences by term
+            final long nTriples = writeTermRuns( input, termRuns );
+            log( start, "Read " + nTriples + " triples" );
+
+            // assign IDs and write the triples as IDs in their original order
+            final File offsets = temp( temps, "offsets" );
+            final File terms = temp( temps, "terms" );
+            final File ids = temp( temps, "ids" );
+            final long nTerms = mergeTermRuns( termRuns, nTriples, offsets, terms, ids );
+            log( start, "Found " + nTerms + " distinct terms" );
+
+            // sort the permutations
+            final File[] permutations = new File[3];
+            long nDistinct = nTriples;
+            for ( int perm = 0; perm < 3; perm++ ) {
+                permutations[perm] = temp( temps, "permutation" + perm );
+                final long written = sortTriples( perm == 0 ? ids : permutations[0],
+                                                  perm == 0 ? nTriples : nDistinct,
+                                                  perm, permutations[perm], temps );
+                if ( perm == 0 ) {
+                    nDistinct = written;
+                    ids.delete();
+                }
+            }
+            log( start, "Sorted " + nDistinct + " distinct triples" );
+
+            // assemble the file
+            final File target = temp( temps, "store" );
+            try ( DataOutputStream out = openOutput( target ) ) {
+                out.writeInt( MappedTripleStore.MAGIC );
+                out.writeInt( MappedTripleStore.VERSION );
+                out.writeLong( nTerms );
+                out.writeLong( nDistinct );
+                long position = MappedTripleStore.HEADER_SIZE;
+                position += copy( offsets, out );
+                position += copy( terms, out );
+                for ( ; position < MappedTripleStore.align( position ); position++ )
+                    out.writeByte( 0 );
+                for ( File permutation : permutations )
+                    copy( permutation, out );
+            }
+            Files.move( target.toPath(), output.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+            log( start, "Wrote " + output + " (" + output.length() + " bytes)" );
+        }
+        catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        finally {
+            for ( File run : termRuns )
+                run.delete();
+            for ( File temp : temps )
+                temp.delete();
+        }
+    }
+
+    /**
+     * Parses the input and writes sorted runs of (term, occurrence) records,
+     * where an occurrence is the position of the term in the input triples.
+     */
+    private long writeTermRuns( final File input, final List<File> runs )
+    {
+        final TermRecord[] buffer = new TermRecord[runSize];
+        final long[] counter = new long[2]; // triples, buffered records
+        RDFDataMgr.parse( new StreamRDFBase() {
+            @Override
+            public void triple( final Triple triple ) {
+                final long occurrence = counter[0]++ * 3;
+                add( MappedTripleStore.encode( triple.getSubject() ), occurrence );
+                add( MappedTripleStore.encode( triple.getPredicate() ), occurrence + 1 );
+                add( MappedTripleStore.encode( triple.getObject() ), occurrence + 2 );
+            }
+
+            private void add( final byte[] term, final long occurrence ) {
+                buffer[(int) counter[1]++] = new TermRecord( term, occurrence );
+                if ( counter[1] == buffer.length ) {
+                    writeTermRun( buffer, (int) counter[1], runs );
+                    counter[1] = 0;
+                }
+            }
+        }, input.getPath() );
+        if ( counter[1] > 0 )
+            writeTermRun( buffer, (int) counter[1], runs );
+        return counter[0];
+    }
+
+    private void writeTermRun( final TermRecord[] records, final int length,
+                               final List<File> runs )
+    {
+        Arrays.sort( records, 0, length, TERM_ORDER );
+        try {
+            final File run = File.createTempFile( "terms", ".run", tempDirectory );
+            runs.add( run );
+            try ( DataOutputStream out = openOutput( run ) ) {
+                for ( int i = 0; i < length; i++ ) {
+                    out.writeInt( records[i].term.length );
+                    out.write( records[i].term );
+                    out.writeLong( records[i].occurrence );
+                    records[i] = null;
+                }
+            }
+        }
+        catch ( IOException e ) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * Merges the runs of term records, writing every distinct term to the
+     * dictionary and its ID to every position where it occurs.
+     */
+    private long mergeTermRuns( final List<File> runs, final long nTriples,
+                                final File offsets, final File terms,
+                                final File ids ) throws IOException
+    {
+        reduceTermRuns( runs );
+        final PriorityQueue<TermRunReader> queue = new PriorityQueue<TermRunReader>(
+                Math.max( 1, runs.size() ), TERM_RUN_ORDER );
+        try ( DataOutputStream offsetsOut = openOutput( offsets );
+              DataOutputStream termsOut = openOutput( terms );
+              MappedIntWriter idsOut = new MappedIntWriter( ids, nTriples * 3 ) ) {
+            openTermRuns( runs, queue );
+
+            long nTerms = 0;
+            long dataLength = 0;
+            byte[] previous = null;
+            offsetsOut.writeLong( 0L );
+            while ( ! queue.isEmpty() ) {
+                final TermRunReader reader = queue.poll();
+                final TermRecord record = reader.current;
+                if ( previous == null || ! Arrays.equals( previous, record.term ) ) {
+                    if ( ++nTerms > Integer.MAX_VALUE )
+                        throw new IOException( "Too many distinct terms." );
+                    termsOut.write( record.term );
+                    dataLength += record.term.length;
+                    offsetsOut.writeLong( dataLength );
+                    previous = record.term;
+                }
+                idsOut.put( record.occurrence, (int) nTerms );
+
+                if ( reader.next() )
+                    queue.add( reader );
+                else
+                    reader.close();
+            }
+            return nTerms;
+        }
+        finally {
+            for ( TermRunReader reader : queue )
+                reader.close();
+        }
+    }
+
+    /**
+     * Merges the runs of term records in groups of at most
+     * {@link #MAX_FAN_IN} until no more than that many are left, replacing
+     * the runs in the given list.
+     */
+    private void reduceTermRuns( final List<File> runs ) throws IOException
+    {
+        while ( runs.size() > MAX_FAN_IN ) {
+            final List<File> merged = new ArrayList<File>();
+            for ( int first = 0; first < runs.size(); first += MAX_FAN_IN ) {
+                final List<File> group = runs.subList( first,
+                                 Math.min( runs.size(), first + MAX_FAN_IN ) );
+                final File run = File.createTempFile( "terms", ".run", tempDirectory );
+                merged.add( run );
+                final PriorityQueue<TermRunReader> queue =
+                        new PriorityQueue<TermRunReader>( group.size(), TERM_RUN_ORDER );
+                try ( DataOutputStream out = openOutput( run ) ) {
+                    openTermRuns( group, queue );
+                    while ( ! queue.isEmpty() ) {
+                        final TermRunReader reader = queue.poll();
+                        out.writeInt( reader.current.term.length );
+                        out.write( reader.current.term );
+                        out.writeLong( reader.current.occurrence );
+                        if ( reader.next() )
+                            queue.add( reader );
+                        else
+                            reader.close();
+                    }
+                }
+                catch ( IOException | RuntimeException e ) {
+                    run.delete();
+                    throw e;
+                }
+                finally {
+                    for ( TermRunReader reader : queue )
+                        reader.close();
+                }
+            }
+            for ( File run : runs )
+                run.delete();
+            runs.clear();
+            runs.addAll( merged );
+        }
+    }
+
+    private static void openTermRuns( final List<File> runs,
+                                      final PriorityQueue<TermRunReader> queue )
+                                                             throws IOException
+    {
+        for ( File run : runs ) {
+            final TermRunReader reader = new TermRunReader( run );
+            if ( reader.next() )
+                queue.add( reader );
+            else
+                reader.close();
+        }
+    }
+
+    /**
+     * Sorts ID triples (stored in SPO order) into the given permutation,
+     * without duplicates, and returns the number of distinct triples.
+     */
+    private long sortTriples( final File input, final long nTriples,
+                              final int perm, final File output,
+                              final List<File> temps ) throws IOException
+    {
+        final int[] positions = POSITIONS[perm];
+        final List<File> runs = new ArrayList<File>();
+        try ( DataInputStream in = openInput( input ) ) {
+            final int[] buffer = new int[runSize * 3];
+            for ( long read = 0; read < nTriples; ) {
+                final int length = (int) Math.min( runSize, nTriples - read );
+                for ( int i = 0; i < length * 3; i += 3 ) {
+                    buffer[i + positions[0]] = in.readInt();
+                    buffer[i + positions[1]] = in.readInt();
+                    buffer[i + positions[2]] = in.readInt();
+                }
+                read += length;
+                TripleIndex.sort( buffer, 0, length );
+
+                final File run = File.createTempFile( "triples", ".run", tempDirectory );
+                runs.add( run );
+                temps.add( run );
+                try ( DataOutputStream out = openOutput( run ) ) {
+                    writeDistinct( buffer, length, out );
+                }
+            }
+        }
+
+        try {
+            // merge in several passes while there are too many runs
+            while ( runs.size() > MAX_FAN_IN ) {
+                final List<File> merged = new ArrayList<File>();
+                for ( int first = 0; first < runs.size(); first += MAX_FAN_IN ) {
+                    final File run = File.createTempFile( "triples", ".run", tempDirectory );
+                    merged.add( run );
+                    temps.add( run );
+                    mergeTripleRuns( runs.subList( first,
+                                     Math.min( runs.size(), first + MAX_FAN_IN ) ),
+                                     run );
+                }
+                for ( File run : runs )
+                    run.delete();
+                runs.clear();
+                runs.addAll( merged );
+            }
+            return mergeTripleRuns( runs, output );
+        }
+        finally {
+            for ( File run : runs )
+                run.delete();
+        }
+    }
+
+    /**
+     * Merges sorted runs of ID triples into a single run without duplicates
+     * and returns the number of triples in it.
+     */
+    private static long mergeTripleRuns( final List<File> runs, final File output )
+                                                             throws IOException
+    {
+        final PriorityQueue<TripleRunReader> queue = new PriorityQueue<TripleRunReader>(
+                Math.max( 1, runs.size() ), TRIPLE_RUN_ORDER );
+        long written = 0;
+        try ( DataOutputStream out = openOutput( output ) ) {
+            for ( File run : runs ) {
+                final TripleRunReader reader = new TripleRunReader( run );
+                if ( reader.next() )
+                    queue.add( reader );
+                else
+                    reader.close();
+            }
+            final int[] previous = new int[3];
+            while ( ! queue.isEmpty() ) {
+                final TripleRunReader reader = queue.poll();
+                if ( written == 0 || compareTriples( previous, reader.current ) != 0 ) {
+                    for ( int k = 0; k < 3; k++ )
+                        out.writeInt( previous[k] = reader.current[k] );
+                    written++;
+                }
+                if ( reader.next() )
+                    queue.add( reader );
+                else
+                    reader.close();
+            }
+        }
+        finally {
+            for ( TripleRunReader reader : queue )
+                reader.close();
+        }
+        return written;
+    }
+
+    private static void writeDistinct( final int[] sorted, final int length,
+                                       final DataOutputStream out ) throws IOException
+    {
+        for ( int i = 0; i < length * 3; i += 3 ) {
+            if ( i > 0 && sorted[i] == sorted[i - 3] && sorted[i + 1] == sorted[i - 2]
+                       && sorted[i + 2] == sorted[i - 1] )
+                continue;
+            out.writeInt( sorted[i] );
+            out.writeInt( sorted[i + 1] );
+            out.writeInt( sorted[i + 2] );
+        }
+    }
+
+    private static int compareTriples( final int[] a, final int[] b )
+    {
+        for ( int k = 0; k < 3; k++ ) {
+            if ( a[k] != b[k] )
+                return a[k] < b[k] ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Orders term records by their encoded term (as unsigned bytes, which is
+     * the order in which {@link MappedTripleStore} searches them), and then
+     * by occurrence.
+     */
+    private static final Comparator<TermRecord> TERM_ORDER = new Comparator<TermRecord>() {
+        @Override
+        public int compare( final TermRecord a, final TermRecord b ) {
+            final int common = Math.min( a.term.length, b.term.length );
+            for ( int i = 0; i < common; i++ ) {
+                final int cmp = ( a.term[i] & 0xFF ) - ( b.term[i] & 0xFF );
+                if ( cmp != 0 )
+                    return cmp;
+            }
+            if ( a.term.length != b.term.length )
+                return a.term.length - b.term.length;
+            return Long.compare( a.occurrence, b.occurrence );
+        }
+    };
+
+    private static final Comparator<TermRunReader> TERM_RUN_ORDER =
+                                            new Comparator<TermRunReader>() {
+        @Override
+        public int compare( final TermRunReader a, final TermRunReader b ) {
+            return TERM_ORDER.compare( a.current, b.current );
+        }
+    };
+
+    private static final Comparator<TripleRunReader> TRIPLE_RUN_ORDER =
+                                            new Comparator<TripleRunReader>() {
+        @Override
+        public int compare( final TripleRunReader a, final TripleRunReader b ) {
+            return compareTriples( a.current, b.current );
+        }
+    };
+
+    private File temp( final List<File> temps, final String name ) throws IOException
+    {
+        final File temp = File.createTempFile( name, ".tmp", tempDirectory );
+        temps.add( temp );
+        return temp;
+    }
+
+    private static void log( final long start, final String message )
+    {
+        System.out.println( String.format( "[%7.1fs] %s",
+                ( System.nanoTime() - start ) / 1e9, message ) );
+    }
+
+    private static DataOutputStream openOutput( final File file ) throws IOException
+    {
+        return new DataOutputStream( new BufferedOutputStream(
+                                 new FileOutputStream( file ), BUFFER_SIZE ) );
+    }
+
+    private static DataInputStream openInput( final File file ) throws IOException
+    {
+        return new DataInputStream( new BufferedInputStream(
+                                 new FileInputStream( file ), BUFFER_SIZE ) );
+    }
+
+    private static long copy( final File source, final DataOutputStream out )
+                                                             throws IOException
+    {
+        return Files.copy( source.toPath(), out );
+    }
+
+    private static class TermRecord
+    {
+        final byte[] term;
+        final long occurrence;
+
+        TermRecord( final byte[] term, final long occurrence )
+        {
+            this.term = term;
+            this.occurrence = occurrence;
+        }
+    }
+
+    private static class TermRunReader implements Closeable
+    {
+        private final DataInputStream in;
+        TermRecord current;
+
+        TermRunReader( final File run ) throws IOException
+        {
+            in = openInput( run );
+        }
+
+        boolean next() throws IOException
+        {
+            final int length;
+            try {
+                length = in.readInt();
+            }
+            catch ( EOFException e ) {
+                return false;
+            }
+            final byte[] term = new byte[length];
+            in.readFully( term );
+            current = new TermRecord( term, in.readLong() );
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+    private static class TripleRunReader implements Closeable
+    {
+        private final DataInputStream in;
+        final int[] current = new int[3];
+
+        TripleRunReader( final File run ) throws IOException
+        {
+            in = openInput( run );
+        }
+
+        boolean next() throws IOException
+        {
+            try {
+                current[0] = in.readInt();
+            }
+            catch ( EOFException e ) {
+                return false;
+            }
+            current[1] = in.readInt();
+            current[2] = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes ints at arbitrary positions of a file through read-write
+     * mappings of 1GB each.
+     */
+    private static class MappedIntWriter implements Closeable
+    {
+        private static final int CHUNK_BITS = 28; // 2^28 ints = 1GB
+
+        private final MappedByteBuffer[] chunks;
+
+        MappedIntWriter( final File file, final long length ) throws IOException
+        {
+            try ( RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+                  FileChannel channel = raf.getChannel() ) {
+                raf.setLength( length * 4 );
+                chunks = new MappedByteBuffer[(int) ( ( length + ( 1L << CHUNK_BITS ) - 1 )
+                                                      >>> CHUNK_BITS )];
+                for ( int i = 0; i < chunks.length; i++ ) {
+                    final long first = (long) i << CHUNK_BITS;
+                    chunks[i] = channel.map( FileChannel.MapMode.READ_WRITE, first * 4,
+                            Math.min( 1L << CHUNK_BITS, length - first ) * 4 );
+                }
+            }
+        }
+
+        void put( final long index, final int value )
+        {
+            chunks[(int) ( index >>> CHUNK_BITS )]
+                  .putInt( (int) ( index & ( ( 1L << CHUNK_BITS ) - 1 ) ) << 2, value );
+        }
+
+        @Override
+        public void close()
+        {
+            for ( MappedByteBuffer chunk : chunks )
+                chunk.force();
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+package org.linkeddatafragments.datasource.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable set of triples of integer IDs from which changed sets can be
+ * derived cheaply, because they share most of their data with it.
+ *
+ * The triples are kept in disjoint {@link TripleIndex}es (levels) of
+ * decreasing size. Added triples form a new level, and two levels are merged
+ * whenever the newer one is at least half as large as the older one. There
+ * are therefore at most logarithmically many levels, and every triple is
+ * sorted again a logarithmic number of times. Removing triples rebuilds only
+ * the levels that contain them.
+ */
+public class LayeredTripleIndex
+{
+    /**
+     * The empty index
+     */
+    public static final LayeredTripleIndex EMPTY =
+                               new LayeredTripleIndex( new TripleIndex[0] );
+
+    private final TripleIndex[] levels;
+    private final long size;
+
+    private LayeredTripleIndex( final TripleIndex[] levels )
+    {
+        this.levels = levels;
+        long size = 0;
+        for ( TripleIndex level : levels )
+            size += level.size();
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of triples.
+     *
+     * @return the number of triples
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Checks whether the given triple is in the index.
+     *
+     * @param s the subject ID
+     * @param p the predicate ID
+     * @param o the object ID
+     * @return true if the triple is in the index
+     */
+    public boolean contains( final int s, final int p, final int o )
+    {
+        for ( TripleIndex level : levels ) {
+            if ( level.contains( s, p, o ) )
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the exact number of triples matching the given pattern.
+     *
+     * @param s the subject ID, or 0 for a variable
+     * @param p the predicate ID, or 0 for a variable
+     * @param o the object ID, or 0 for a variable
+     * @return the number of matches
+     */
+    public long count( final int s, final int p, final int o )
+    {
+        long count = 0;
+        for ( TripleIndex level : levels )
+            count += level.count( s, p, o );
+        return count;
+    }
+
+    /**
+     * Finds the matches of the given pattern, so that they can be accessed
+     * with {@link #get(Matches, long, int[])}.
+     *
+     * @param s the subject ID, or 0 for a variable
+     * @param p the predicate ID, or 0 for a variable
+     * @param o the object ID, or 0 for a variable
+     * @return the matches
+     */
+    public Matches find( final int s, final int p, final int o )
+    {
+        final TripleIndex.Range[] ranges = new TripleIndex.Range[levels.length];
+        long size = 0;
+        for ( int i = 0; i < levels.length; i++ ) {
+            ranges[i] = levels[i].find( s, p, o );
+            size += ranges[i].size();
+        }
+        return new Matches( ranges, size );
+    }
+
+    /**
+     * Copies the match at the given offset into the given array.
+     *
+     * @param matches matches found in this index
+     * @param offset the offset within the matches
+     * @param triple an array of length 3 that receives the S, P and O IDs
+     * @return the given array
+     */
+    public int[] get( final Matches matches, long offset, final int[] triple )
+    {
+        for ( int i = 0; i < levels.length; i++ ) {
+            final long levelSize = matches.ranges[i].size();
+            if ( offset < levelSize )
+                return levels[i].get( matches.ranges[i], offset, triple );
+            offset -= levelSize;
+        }
+        throw new IndexOutOfBoundsException( "No match at this offset." );
+    }
+
+    /**
+     * Returns an index with the given changes applied to this one, which
+     * itself remains unchanged.
+     *
+     * @param additions triples that are not in this index, one after the other
+     * @param removals triples that are in this index, one after the other
+     * @return the changed index
+     */
+    public LayeredTripleIndex withChanges( final int[] additions,
+                                           final int[] removals )
+    {
+        if ( additions.length % 3 != 0 || removals.length % 3 != 0 )
+            throw new IllegalArgumentException( "Incomplete triple." );
+        if ( additions.length == 0 && removals.length == 0 )
+            return this;
+
+        final List<TripleIndex> result = new ArrayList<TripleIndex>( levels.length + 1 );
+        if ( removals.length == 0 ) {
+            result.addAll( Arrays.asList( levels ) );
+        }
+        else {
+            final int[] removed = removals.clone();
+            TripleIndex.sort( removed, 0, removed.length / 3 );
+            for ( TripleIndex level : levels ) {
+                if ( ! containsAny( level, removed ) )
+                    result.add( level );
+                else
+                    addLevel( result, new TripleIndex( subtract( level.toArray(),
+                                                                 removed ) ) );
+            }
+        }
+        addLevel( result, new TripleIndex( additions.clone() ) );
+
+        // merge the newest levels while they are not much smaller
+        int n = result.size();
+        while ( n >= 2 && result.get( n - 1 ).size() * 2 >= result.get( n - 2 ).size() ) {
+            final int[] older = result.get( n - 2 ).toArray();
+            final int[] newer = result.get( n - 1 ).toArray();
+            final int[] merged = Arrays.copyOf( older, older.length + newer.length );
+            System.arraycopy( newer, 0, merged, older.length, newer.length );
+            result.remove( --n );
+            result.set( n - 1, new TripleIndex( merged ) );
+        }
+        return new LayeredTripleIndex( result.toArray( new TripleIndex[n] ) );
+    }
+
+    private static void addLevel( final List<TripleIndex> levels,
+                                  final TripleIndex level )
+    {
+        if ( level.size() > 0 )
+            levels.add( level );
+    }
+
+    private static boolean containsAny( final TripleIndex level,
+                                        final int[] triples )
+    {
+        for ( int i = 0; i < triples.length; i += 3 ) {
+            if ( level.contains( triples[i], triples[i + 1], triples[i + 2] ) )
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the triples of the first sorted array that are not in the
+     * second sorted array.
+     */
+    private static int[] subtract( final int[] triples, final int[] removed )
+    {
+        final int[] result = new int[triples.length];
+        int length = 0;
+        int j = 0;
+        for ( int i = 0; i < triples.length; i += 3 ) {
+            while ( j < removed.length && compare( removed, j, triples, i ) < 0 )
+                j += 3;
+            if ( j < removed.length && compare( removed, j, triples, i ) == 0 )
+                continue;
+            result[length++] = triples[i];
+            result[length++] = triples[i + 1];
+            result[length++] = triples[i + 2];
+        }
+        return Arrays.copyOf( result, length );
+    }
+
+    private static int compare( final int[] a, final int i,
+                                final int[] b, final int j )
+    {
+        for ( int k = 0; k < 3; k++ ) {
+            if ( a[i + k] != b[j + k] )
+                return a[i + k] < b[j + k] ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * The matches of a pattern, as one range per level.
+     */
+    public static class Matches
+    {
+        final TripleIndex.Range[] ranges;
+        final long size;
+
+        Matches( final TripleIndex.Range[] ranges, final long size )
+        {
+            this.ranges = ranges;
+            this.size = size;
+        }
+
+        /**
+         * Returns the number of matches.
+         *
+         * @return the number of matches
+         */
+        public long size()
+        {
+            return size;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+package org.linkeddatafragments.datasource.memory;
+
+import java.util.Arrays;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+
+/**
+ * Implementation of {@link IFragmentRequestProcessor} that processes
+ * {@link ITriplePatternFragmentRequest}s over an RDF file that is loaded
+ * into memory.
+ *
+ * The terms are stored in a {@link TermDictionary} and the triples in a
+ * {@link TripleIndex}, so a page is found with two binary searches and the
+ * total is always exact. Only the triples of the page itself are turned
+ * into Jena objects.
+ */
+public class MemoryBasedRequestProcessorForTPFs
+    extends AbstractRequestProcessorForTriplePatterns<RDFNode,String,String>
+{
+
+    /**
+     * The dictionary of all terms
+     */
+    protected final TermDictionary dictionary = new TermDictionary();
+
+    /**
+     * The triples, as dictionary IDs
+     */
+    protected final TripleIndex triples;
+
+    /**
+     * Creates the request processor.
+     *
+     * @param file the RDF file, in a syntax that Jena recognizes by its
+     *             extension (such as N-Triples or Turtle)
+     */
+    public MemoryBasedRequestProcessorForTPFs( final String file )
+    {
+        final Loader loader = new Loader();
+        RDFDataMgr.parse( loader, file );
+        triples = new TripleIndex( Arrays.copyOf( loader.ids, loader.length ) );
+    }
+
+    /**
+     *
+     * @param request
+     * @return
+     * @throws IllegalArgumentException
+     */
+    @Override
+    protected Worker getTPFSpecificWorker(
+            final ITriplePatternFragmentRequest<RDFNode,String,String> request )
+                                                throws IllegalArgumentException
+    {
+        return new Worker( request );
+    }
+
+    /**
+     * Worker class for in-memory data
+     */
+    protected class Worker
+       extends AbstractRequestProcessorForTriplePatterns.Worker<RDFNode,String,String>
+    {
+
+        /**
+         * Create a Worker for in-memory data
+         *
+         * @param req
+         */
+        public Worker(
+                final ITriplePatternFragmentRequest<RDFNode,String,String> req )
+        {
+            super( req );
+        }
+
+        /**
+         * Creates an {@link ILinkedDataFragment} from the in-memory data
+         *
+         * @param subject
+         * @param predicate
+         * @param object
+         * @param offset
+         * @param limit
+         * @return
+         */
+        @Override
+        protected ILinkedDataFragment createFragment(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final int subjectId = getId( subject );
+            final int predicateId = getId( predicate );
+            final int objectId = getId( object );
+            if ( subjectId < 0 || predicateId < 0 || objectId < 0 ) {
+                return createEmptyTriplePatternFragment();
+            }
+
+            final TripleIndex.Range matches =
+                           triples.find( subjectId, predicateId, objectId );
+            final long totalSize = matches.size();
+            final long end = Math.min( totalSize, offset + limit );
+
+            final Model page = ModelFactory.createDefaultModel();
+            final int[] ids = new int[3];
+            for ( long i = offset; i < end; i++ ) {
+                triples.get( matches, i, ids );
+                page.add( page.asStatement( new Triple(
+                                              dictionary.getNode( ids[0] ),
+                                              dictionary.getNode( ids[1] ),
+                                              dictionary.getNode( ids[2] ) ) ) );
+            }
+
+            final boolean isLastPage = ( totalSize <= offset + limit );
+            return createTriplePatternFragment( page, totalSize, isLastPage );
+        }
+
+    } // end of Worker
+
+    /**
+     * Returns whether the data contains the given triple.
+     *
+     * @param triple a triple without variables
+     * @return true if the triple is in the data
+     */
+    public boolean contains( final Triple triple )
+    {
+        final int s = dictionary.getId( triple.getSubject() );
+        final int p = dictionary.getId( triple.getPredicate() );
+        final int o = dictionary.getId( triple.getObject() );
+        return s > 0 && p > 0 && o > 0 && triples.contains( s, p, o );
+    }
+
+    /**
+     * Returns the dictionary ID of a pattern element, 0 for a variable, or -1
+     * if the constant does not occur in the data.
+     */
+    private int getId( final ITriplePatternElement<RDFNode,String,String> element )
+    {
+        return element.isVariable() ? 0
+             : dictionary.getId( element.asConstantTerm().asNode() );
+    }
+
+    /**
+     * Encodes parsed triples as dictionary IDs.
+     */
+    private class Loader extends StreamRDFBase
+    {
+        int[] ids = new int[3 * 1024];
+        int length = 0;
+
+        @Override
+        public void triple( final Triple triple )
+        {
+            if ( length == ids.length ) {
+                if ( length > Integer.MAX_VALUE - 8 - length / 2 )
+                    throw new IllegalStateException( "Too many triples." );
+                ids = Arrays.copyOf( ids, length + length / 2 / 3 * 3 );
+            }
+            ids[length++] = dictionary.getOrAddId( triple.getSubject() );
+            ids[length++] = dictionary.getOrAddId( triple.getPredicate() );
+            ids[length++] = dictionary.getOrAddId( triple.getObject() );
+        }
+    }
+
+}
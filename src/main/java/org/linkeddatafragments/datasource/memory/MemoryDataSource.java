@@ -0,0 +1,50 @@
+package org.linkeddatafragments.datasource.memory;
+
+import org.apache.jena.graph.Triple;
+import org.linkeddatafragments.datasource.DataSourceBase;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.ILookupDataSource;
+import org.linkeddatafragments.fragments.IFragmentRequestParser;
+import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
+
+/**
+ * An in-memory data source of Basic Linked Data Fragments.
+ */
+public class MemoryDataSource extends DataSourceBase implements ILookupDataSource {
+
+    /**
+     * The request processor
+     * 
+     */
+    protected final MemoryBasedRequestProcessorForTPFs requestProcessor;
+
+    /**
+     * Creates a new MemoryDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param file the RDF file to load
+     */
+    public MemoryDataSource(String title, String description, String file) {
+        super(title, description);
+        requestProcessor = new MemoryBasedRequestProcessorForTPFs( file );
+    }
+
+    @Override
+    public IFragmentRequestParser getRequestParser()
+    {
+        return TPFRequestParserForJenaBackends.getInstance();
+    }
+
+    @Override
+    public IFragmentRequestProcessor getRequestProcessor()
+    {
+        return requestProcessor;
+    }
+
+    @Override
+    public boolean contains(Triple triple) {
+        return requestProcessor.contains(triple);
+    }
+
+}
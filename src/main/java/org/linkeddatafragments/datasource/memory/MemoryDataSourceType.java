@@ -0,0 +1,36 @@
+package org.linkeddatafragments.datasource.memory;
+
+import java.io.File;
+
+import org.apache.jena.riot.RiotException;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.exceptions.DataSourceCreationException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The type of Triple Pattern Fragment data sources that load an RDF file
+ * (N-Triples, Turtle, ...) into memory.
+ */
+public class MemoryDataSourceType implements IDataSourceType
+{
+    @Override
+    public IDataSource createDataSource( final String title,
+                                         final String description,
+                                         final JsonObject settings )
+                                                     throws DataSourceCreationException
+    {
+        final String fname = settings.getAsJsonPrimitive("file").getAsString();
+        final File file = new File( fname );
+        if ( ! file.isFile() )
+            throw new DataSourceCreationException( title, "File " + fname + " not found." );
+
+        try {
+            return new MemoryDataSource(title, description, file.getAbsolutePath());
+        } catch (RiotException | IllegalStateException ex) {
+            throw new DataSourceCreationException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.linkeddatafragments.datasource.memory;
+
+import java.util.Arrays;
+
+import org.apache.jena.graph.Node;
+
+/**
+ * Assigns consecutive integer IDs, starting at 1, to RDF terms, so triples
+ * can be stored in a {@link TripleIndex}.
+ *
+ * The IDs are kept in an open-addressing hash table of primitive ints, so
+ * a lookup allocates nothing. Terms are only ever added. Lookups do not
+ * block and may run concurrently with additions; an ID obtained from any
+ * thread can be resolved by all threads to which it has been published.
+ */
+public class TermDictionary
+{
+    private volatile int[] table = new int[2048]; // 0 marks an empty slot
+    private volatile Node[] nodes = new Node[1024];
+    private int size = 0;
+
+    /**
+     * Returns the ID of the given term.
+     *
+     * @param node the term
+     * @return the ID, or -1 if the term has no ID
+     */
+    public int getId( final Node node )
+    {
+        final int[] table = this.table;
+        final Node[] nodes = this.nodes;
+        final int mask = table.length - 1;
+        for ( int i = hash( node ) & mask; table[i] != 0; i = ( i + 1 ) & mask ) {
+            final int id = table[i];
+            // a concurrently added term may not be visible yet
+            if ( id < nodes.length && node.equals( nodes[id] ) )
+                return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ID of the given term, assigning a new one if necessary.
+     *
+     * @param node the term
+     * @return the ID
+     */
+    public int getOrAddId( final Node node )
+    {
+        final int id = getId( node );
+        if ( id > 0 )
+            return id;
+
+        synchronized ( this ) {
+            final int existing = getId( node );
+            if ( existing > 0 )
+                return existing;
+
+            // publish the term before its ID
+            final int newId = ++size;
+            if ( newId == nodes.length )
+                nodes = Arrays.copyOf( nodes, nodes.length * 2 );
+            nodes[newId] = node;
+            if ( newId * 2 > table.length )
+                table = rehash( table.length * 2 );
+            insert( table, newId );
+            return newId;
+        }
+    }
+
+    /**
+     * Returns the term with the given ID.
+     *
+     * @param id the ID
+     * @return the term
+     */
+    public Node getNode( final int id )
+    {
+        return nodes[id];
+    }
+
+    /**
+     * Returns the number of terms.
+     *
+     * @return the number of terms
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    private int[] rehash( final int capacity )
+    {
+        final int[] rehashed = new int[capacity];
+        for ( int id = 1; id < size; id++ )
+            insert( rehashed, id );
+        return rehashed;
+    }
+
+    private void insert( final int[] table, final int id )
+    {
+        final int mask = table.length - 1;
+        int i = hash( nodes[id] ) & mask;
+        while ( table[i] != 0 )
+            i = ( i + 1 ) & mask;
+        table[i] = id;
+    }
+
+    private static int hash( final Node node )
+    {
+        final int h = node.hashCode() * 0x9E3779B9;
+        return h ^ ( h >>> 16 );
+    }
+
+}
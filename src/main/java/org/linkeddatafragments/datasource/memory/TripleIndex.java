@@ -0,0 +1,324 @@
+package org.linkeddatafragments.datasource.memory;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of triples of integer IDs, kept in three sorted
+ * permutations (SPO, POS and OSP) of primitive arrays.
+ *
+ * Every triple pattern (where the ID 0 denotes a variable) corresponds to
+ * a contiguous range of one of the permutations, so matches are counted
+ * exactly with a binary search and the match at any offset is found in
+ * constant time.
+ */
+public class TripleIndex
+{
+    private static final int SPO = 0;
+    private static final int POS = 1;
+    private static final int OSP = 2;
+
+    /**
+     * The positions of S, P and O within a triple of each permutation
+     */
+    private static final int[][] POSITIONS = { { 0, 1, 2 },   // SPO
+                                               { 2, 0, 1 },   // POS
+                                               { 1, 2, 0 } }; // OSP
+
+    /**
+     * The empty index
+     */
+    public static final TripleIndex EMPTY = new TripleIndex( new int[0] );
+
+    private final int[][] permutations = new int[3][];
+    private final int size;
+
+    /**
+     * Creates an index of the given triples.
+     *
+     * @param triples subject, predicate and object IDs of the triples, one
+     *                triple after the other; the array is sorted in place,
+     *                and duplicates are ignored
+     */
+    public TripleIndex( final int[] triples )
+    {
+        if ( triples.length % 3 != 0 )
+            throw new IllegalArgumentException( "Incomplete triple." );
+
+        sort( triples, 0, triples.length / 3 );
+        final int[] spo = deduplicate( triples );
+        size = spo.length / 3;
+        permutations[SPO] = spo;
+        for ( int perm = POS; perm <= OSP; perm++ ) {
+            final int[] positions = POSITIONS[perm];
+            final int[] permuted = new int[spo.length];
+            for ( int i = 0; i < spo.length; i += 3 ) {
+                permuted[i + positions[0]] = spo[i];
+                permuted[i + positions[1]] = spo[i + 1];
+                permuted[i + positions[2]] = spo[i + 2];
+            }
+            sort( permuted, 0, size );
+            permutations[perm] = permuted;
+        }
+    }
+
+    /**
+     * Returns the number of triples.
+     *
+     * @return the number of triples
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the triples in SPO order, as a new array.
+     *
+     * @return subject, predicate and object IDs, one triple after the other
+     */
+    public int[] toArray()
+    {
+        return permutations[SPO].clone();
+    }
+
+    /**
+     * Checks whether the given triple is in the index.
+     *
+     * @param s the subject ID
+     * @param p the predicate ID
+     * @param o the object ID
+     * @return true if the triple is in the index
+     */
+    public boolean contains( final int s, final int p, final int o )
+    {
+        return count( s, p, o ) > 0;
+    }
+
+    /**
+     * Returns the exact number of triples matching the given pattern.
+     *
+     * @param s the subject ID, or 0 for a variable
+     * @param p the predicate ID, or 0 for a variable
+     * @param o the object ID, or 0 for a variable
+     * @return the number of matches
+     */
+    public long count( final int s, final int p, final int o )
+    {
+        final long range = findRange( s, p, o );
+        return (int) ( range >>> 32 ) - (int) range;
+    }
+
+    /**
+     * Finds the range of the matches of the given pattern, so that they can
+     * be accessed with {@link #get(Range, long, int[])}.
+     *
+     * @param s the subject ID, or 0 for a variable
+     * @param p the predicate ID, or 0 for a variable
+     * @param o the object ID, or 0 for a variable
+     * @return the range of matches
+     */
+    public Range find( final int s, final int p, final int o )
+    {
+        final long range = findRange( s, p, o );
+        return new Range( getPermutation( s, p, o ),
+                          (int) range, (int) ( range >>> 32 ) );
+    }
+
+    /**
+     * Copies the match at the given offset of a range into the given array.
+     *
+     * @param range the range of matches
+     * @param offset the offset within the range
+     * @param triple an array of length 3 that receives the S, P and O IDs
+     * @return the given array
+     */
+    public int[] get( final Range range, final long offset, final int[] triple )
+    {
+        final int[] permuted = permutations[range.permutation];
+        final int[] positions = POSITIONS[range.permutation];
+        final int i = ( range.start + (int) offset ) * 3;
+        triple[0] = permuted[i + positions[0]];
+        triple[1] = permuted[i + positions[1]];
+        triple[2] = permuted[i + positions[2]];
+        return triple;
+    }
+
+    /**
+     * Selects the permutation in which the bound components form a prefix.
+     */
+    private static int getPermutation( final int s, final int p, final int o )
+    {
+        if ( s != 0 )
+            return ( p == 0 && o != 0 ) ? OSP : SPO;
+        if ( p != 0 )
+            return POS;
+        if ( o != 0 )
+            return OSP;
+        return SPO;
+    }
+
+    /**
+     * Returns the end (high 32 bits) and start (low 32 bits) of the range of
+     * matches in the permutation selected by {@link #getPermutation}.
+     */
+    private long findRange( final int s, final int p, final int o )
+    {
+        final int perm = getPermutation( s, p, o );
+        final int[] positions = POSITIONS[perm];
+        final int[] key = new int[3];
+        key[positions[0]] = s;
+        key[positions[1]] = p;
+        key[positions[2]] = o;
+        int prefix = 0;
+        while ( prefix < 3 && key[prefix] != 0 )
+            prefix++;
+
+        final int[] permuted = permutations[perm];
+        final int start = prefix == 0 ? 0 : search( permuted, key, prefix, false );
+        final int end = prefix == 0 ? size : search( permuted, key, prefix, true );
+        return ( (long) end << 32 ) | start;
+    }
+
+    /**
+     * Finds the first triple whose prefix is greater than or equal to (or,
+     * if <code>after</code> is true, greater than) the prefix of the key.
+     */
+    private int search( final int[] permuted, final int[] key,
+                        final int prefix, final boolean after )
+    {
+        int low = 0;
+        int high = size;
+        while ( low < high ) {
+            final int mid = ( low + high ) >>> 1;
+            final int cmp = compare( permuted, mid * 3, key, prefix );
+            if ( cmp < 0 || ( after && cmp == 0 ) )
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static int compare( final int[] a, final int i,
+                                final int[] key, final int prefix )
+    {
+        for ( int k = 0; k < prefix; k++ ) {
+            if ( a[i + k] != key[k] )
+                return a[i + k] < key[k] ? -1 : 1;
+        }
+        return 0;
+    }
+
+    private static int[] deduplicate( final int[] sorted )
+    {
+        int length = 0;
+        for ( int i = 0; i < sorted.length; i += 3 ) {
+            if ( length == 0 || compareTriples( sorted, i, sorted, length - 3 ) != 0 ) {
+                sorted[length] = sorted[i];
+                sorted[length + 1] = sorted[i + 1];
+                sorted[length + 2] = sorted[i + 2];
+                length += 3;
+            }
+        }
+        return length == sorted.length ? sorted : Arrays.copyOf( sorted, length );
+    }
+
+    private static int compareTriples( final int[] a, final int i,
+                                       final int[] b, final int j )
+    {
+        for ( int k = 0; k < 3; k++ ) {
+            if ( a[i + k] != b[j + k] )
+                return a[i + k] < b[j + k] ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Sorts the triples from index <code>from</code> (inclusive) to index
+     * <code>to</code> (exclusive) lexicographically, without boxing.
+     *
+     * @param a the triples, one after the other
+     * @param from the first triple to sort
+     * @param to the triple after the last triple to sort
+     */
+    public static void sort( final int[] a, int from, int to )
+    {
+        while ( to - from > 16 ) {
+            // median-of-three pivot, moved to the first position
+            final int mid = ( from + to ) >>> 1;
+            if ( compareTriples( a, mid * 3, a, from * 3 ) < 0 )
+                swap( a, mid, from );
+            if ( compareTriples( a, ( to - 1 ) * 3, a, from * 3 ) < 0 )
+                swap( a, to - 1, from );
+            if ( compareTriples( a, ( to - 1 ) * 3, a, mid * 3 ) < 0 )
+                swap( a, to - 1, mid );
+            swap( a, from, mid );
+
+            // Hoare partition around the pivot at from
+            int i = from;
+            int j = to;
+            while ( true ) {
+                do { i++; } while ( i < to && compareTriples( a, i * 3, a, from * 3 ) < 0 );
+                do { j--; } while ( compareTriples( a, j * 3, a, from * 3 ) > 0 );
+                if ( i >= j )
+                    break;
+                swap( a, i, j );
+            }
+            swap( a, from, j );
+
+            // recurse into the smaller part, loop on the larger one
+            if ( j - from < to - j - 1 ) {
+                sort( a, from, j );
+                from = j + 1;
+            }
+            else {
+                sort( a, j + 1, to );
+                to = j;
+            }
+        }
+
+        // insertion sort for small ranges
+        for ( int i = from + 1; i < to; i++ ) {
+            for ( int j = i; j > from &&
+                  compareTriples( a, j * 3, a, ( j - 1 ) * 3 ) < 0; j-- )
+                swap( a, j, j - 1 );
+        }
+    }
+
+    private static void swap( final int[] a, final int i, final int j )
+    {
+        for ( int k = 0; k < 3; k++ ) {
+            final int t = a[i * 3 + k];
+            a[i * 3 + k] = a[j * 3 + k];
+            a[j * 3 + k] = t;
+        }
+    }
+
+    /**
+     * A contiguous range of matches in one of the permutations.
+     */
+    public static class Range
+    {
+        final int permutation;
+        final int start;
+        final int end;
+
+        Range( final int permutation, final int start, final int end )
+        {
+            this.permutation = permutation;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the number of matches in this range.
+         *
+         * @return the number of matches
+         */
+        public long size()
+        {
+            return end - start;
+        }
+    }
+
+}
@@ -0,0 +1,376 @@
+package org.linkeddatafragments.datasource.sparql;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.engine.http.QueryEngineHTTP;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.apache.jena.sparql.util.FmtUtils;
+
+import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.exceptions.DataSourceNotReadyException;
+import org.linkeddatafragments.fragments.CancellationToken;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+
+/**
+ * Implementation of {@link IFragmentRequestProcessor} that processes
+ * {@link ITriplePatternFragmentRequest}s by querying a remote SPARQL
+ * endpoint.
+ *
+ * Every page becomes a CONSTRUCT query and every pattern a COUNT query. Both
+ * are kept in a {@link SparqlCache}, so repeated requests, and concurrent
+ * requests for the same page, reach the endpoint only once. After a page has
+ * been served, the next page is fetched in the background.
+ *
+ * Pages are ordered by the variables of the pattern, because SPARQL does not
+ * guarantee that OFFSET and LIMIT slice the same sequence of solutions from
+ * one query to the next. Endpoints that are known to return a stable order
+ * can skip the sorting by disabling the <code>ordered</code> setting, at the
+ * risk of pages that overlap or miss triples. Queries that take
+ * longer than the timeout fail with a {@link DataSourceNotReadyException};
+ * counts that time out are replaced by an estimate. Upstream queries are
+ * also limited by the deadline of the request, and the triples of a page
+ * are read only while the request has not been cancelled.
+ */
+public class SparqlBasedRequestProcessorForTPFs
+    extends AbstractRequestProcessorForTriplePatterns<RDFNode,String,String>
+{
+    /**
+     * Default timeout of upstream queries, in milliseconds
+     */
+    public static final long DEFAULT_TIMEOUT = 10000L;
+
+    /**
+     * Default maximum number of cached triples
+     */
+    public static final long DEFAULT_CACHE_CAPACITY = 1000000L;
+
+    /**
+     * Maximum number of cached counts
+     */
+    private static final long COUNT_CACHE_CAPACITY = 100000L;
+
+    private final String endpoint;
+    private final long timeout;
+    private final boolean ordered;
+    private final ThreadPoolExecutor prefetcher;
+
+    private final SparqlCache<Model> pages;
+    private final SparqlCache<Long> counts =
+                                 new SparqlCache<Long>( COUNT_CACHE_CAPACITY );
+
+    /**
+     * Creates the request processor.
+     *
+     * @param endpoint the URL of the SPARQL endpoint
+     * @param timeout the timeout of upstream queries, in milliseconds
+     * @param cacheCapacity the maximum number of cached triples
+     * @param prefetch whether to fetch the next page in the background
+     * @param ordered whether pages are ordered by the variables of the pattern
+     */
+    public SparqlBasedRequestProcessorForTPFs( final String endpoint,
+                                               final long timeout,
+                                               final long cacheCapacity,
+                                               final boolean prefetch,
+                                               final boolean ordered )
+    {
+        this.endpoint = endpoint;
+        this.timeout = timeout;
+        this.ordered = ordered;
+        this.pages = new SparqlCache<Model>( cacheCapacity ) {
+            @Override
+            protected long weigh( final Model page ) {
+                return Math.max( 1, page.size() );
+            }
+        };
+
+        // prefetches that cannot be queued are dropped
+        this.prefetcher = ! prefetch ? null : new ThreadPoolExecutor( 2, 2,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>( 64 ),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread( final Runnable runnable ) {
+                        final Thread thread = new Thread( runnable, "SPARQL prefetch " + endpoint );
+                        thread.setDaemon( true );
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.DiscardPolicy() );
+    }
+
+    /**
+     *
+     * @param request
+     * @return
+     * @throws IllegalArgumentException
+     */
+    @Override
+    protected Worker getTPFSpecificWorker(
+            final ITriplePatternFragmentRequest<RDFNode,String,String> request )
+                                                throws IllegalArgumentException
+    {
+        return new Worker( request );
+    }
+
+    /**
+     * Stops fetching pages in the background.
+     */
+    @Override
+    public void close()
+    {
+        if ( prefetcher != null )
+            prefetcher.shutdownNow();
+    }
+
+    /**
+     * Worker class for SPARQL endpoints
+     */
+    protected class Worker
+       extends AbstractRequestProcessorForTriplePatterns.Worker<RDFNode,String,String>
+    {
+
+        /**
+         * Create a Worker for a SPARQL endpoint
+         *
+         * @param req
+         */
+        public Worker(
+                final ITriplePatternFragmentRequest<RDFNode,String,String> req )
+        {
+            super( req );
+        }
+
+        /**
+         * Creates an {@link ILinkedDataFragment} from the SPARQL endpoint
+         *
+         * @param subject
+         * @param predicate
+         * @param object
+         * @param offset
+         * @param limit
+         * @return
+         */
+        @Override
+        protected ILinkedDataFragment createFragment(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final Set<String> variables = new LinkedHashSet<String>();
+            final String pattern = toPattern( subject, predicate, object, variables );
+            final String orderBy = ordered && ! variables.isEmpty()
+                    ? "ORDER BY " + String.join( " ", variables ) + " " : "";
+            final CancellationToken cancellation = request.getCancellationToken();
+            final Model triples = getPage( pattern, orderBy, offset, limit,
+                                           cancellation );
+            if ( triples.isEmpty() ) {
+                // a page beyond the last one still reports the matches
+                final long count = offset > 0 ? getCount( pattern, cancellation ) : 0L;
+                return createTriplePatternFragment( triples,
+                                                    Math.max( 0L, count ), true );
+            }
+
+            // fall back to an estimate if the count is not known
+            final long size = triples.size();
+            long estimate = getCount( pattern, cancellation );
+            if ( estimate < offset + size ) {
+                estimate = ( size == limit ) ? offset + size + 1 : offset + size;
+            }
+
+            final boolean isLastPage = ( estimate <= offset + limit );
+            if ( ! isLastPage ) {
+                prefetch( pattern, orderBy, offset + limit, limit );
+            }
+            return createTriplePatternFragment( triples, estimate, isLastPage );
+        }
+
+    } // end of Worker
+
+    /**
+     * Returns a page of the matches of the given pattern, in the given order.
+     */
+    private Model getPage( final String pattern, final String orderBy,
+                           final long offset, final long limit,
+                           final CancellationToken cancellation )
+    {
+        return pages.get( pattern + " " + offset + " " + limit,
+                          new Callable<Model>() {
+            @Override
+            public Model call() {
+                final Query query = QueryFactory.create(
+                        "CONSTRUCT { " + pattern + " } WHERE { " + pattern + " } "
+                        + orderBy + "OFFSET " + offset + " LIMIT " + limit,
+                        Syntax.syntaxSPARQL_11 );
+                final QueryEngineHTTP execution = createExecution( query,
+                                                                   cancellation );
+                try {
+                    final Model page = ModelFactory.createDefaultModel();
+                    final Iterator<Triple> triples = execution.execConstructTriples();
+                    while ( triples.hasNext() ) {
+                        cancellation.check();
+                        page.getGraph().add( triples.next() );
+                    }
+                    return page;
+                }
+                catch ( QueryExceptionHTTP | HttpException | QueryCancelledException e ) {
+                    // the query may have failed because the deadline passed
+                    if ( cancellation.isCancelled() )
+                        cancellation.check();
+                    throw new DataSourceNotReadyException( "The SPARQL endpoint "
+                            + endpoint + " could not be queried: " + e.getMessage() );
+                }
+                finally {
+                    execution.close();
+                }
+            }
+        }, cancellation );
+    }
+
+    /**
+     * Returns the number of matches of the given pattern, or -1 if the
+     * endpoint could not count them.
+     */
+    private long getCount( final String pattern,
+                           final CancellationToken cancellation )
+    {
+        try {
+            return counts.get( pattern, new Callable<Long>() {
+                @Override
+                public Long call() {
+                    final Query query = QueryFactory.create(
+                            "SELECT (COUNT(*) AS ?count) WHERE { " + pattern + " }",
+                            Syntax.syntaxSPARQL_11 );
+                    final QueryEngineHTTP execution = createExecution( query,
+                                                                       cancellation );
+                    try {
+                        final ResultSet results = execution.execSelect();
+                        if ( ! results.hasNext() )
+                            throw new IllegalStateException( "No count returned." );
+                        final QuerySolution solution = results.nextSolution();
+                        return solution.getLiteral( "count" ).getLong();
+                    }
+                    finally {
+                        execution.close();
+                    }
+                }
+            }, cancellation );
+        }
+        catch ( RuntimeException e ) {
+            // a cancelled request does not need an estimate either
+            if ( cancellation.isCancelled() )
+                cancellation.check();
+            // not cached, so the next request tries again
+            return -1;
+        }
+    }
+
+    /**
+     * Fetches the given page in the background, unless the prefetcher is
+     * disabled or busy.
+     */
+    private void prefetch( final String pattern, final String orderBy,
+                           final long offset, final long limit )
+    {
+        if ( prefetcher == null )
+            return;
+        prefetcher.execute( new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getPage( pattern, orderBy, offset, limit,
+                             CancellationToken.NONE );
+                }
+                catch ( RuntimeException e ) {
+                    // the page is fetched again when it is requested
+                }
+            }
+        } );
+    }
+
+    /**
+     * Creates the execution of an upstream query, which times out at the
+     * deadline of the request if that comes first.
+     */
+    private QueryEngineHTTP createExecution( final Query query,
+                                             final CancellationToken cancellation )
+    {
+        if ( cancellation.isCancelled() )
+            cancellation.check();
+        final long remaining = cancellation.getRemainingMillis();
+        final long limit = timeout > 0 && timeout < remaining ? timeout
+                         : remaining == Long.MAX_VALUE ? timeout
+                         : Math.max( 1L, remaining );
+        final QueryEngineHTTP execution = new QueryEngineHTTP( endpoint, query );
+        execution.setTimeout( limit, limit );
+        return execution;
+    }
+
+    /**
+     * Writes the pattern as a SPARQL triple pattern. Unspecific variables
+     * become ?s, ?p and ?o; specific variables are numbered, so that a
+     * variable that occurs more than once still joins. The variables of the
+     * pattern are added to the given set.
+     */
+    private static String toPattern(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final Set<String> patternVariables )
+    {
+        final Map<String, String> variables = new HashMap<String, String>();
+        final String[] terms = {
+            toTerm( subject, "?s", variables ),
+            toTerm( predicate, "?p", variables ),
+            toTerm( object, "?o", variables ) };
+        for ( String term : terms ) {
+            if ( term.startsWith( "?" ) )
+                patternVariables.add( term );
+        }
+        return terms[0] + " " + terms[1] + " " + terms[2];
+    }
+
+    private static String toTerm(
+                   final ITriplePatternElement<RDFNode,String,String> element,
+                   final String unspecificVariable,
+                   final Map<String, String> variables )
+    {
+        if ( ! element.isVariable() )
+            return FmtUtils.stringForNode( element.asConstantTerm().asNode() );
+        if ( ! element.isSpecificVariable() )
+            return unspecificVariable;
+
+        final String name = element.isNamedVariable()
+                ? "?" + element.asNamedVariable()
+                : "_:" + element.asAnonymousVariable();
+        String variable = variables.get( name );
+        if ( variable == null ) {
+            variable = "?v" + variables.size();
+            variables.put( name, variable );
+        }
+        return variable;
+    }
+
+}
@@ -0,0 +1,157 @@
+package org.linkeddatafragments.datasource.sparql;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+import org.linkeddatafragments.fragments.CancellationToken;
+
+/**
+ * A least-recently-used cache of upstream results that coalesces concurrent
+ * requests: while a value is being loaded, other requests for the same key
+ * wait for that load instead of starting their own.
+ *
+ * The cache is bounded by the total weight of its values, which is 1 per
+ * value unless {@link #weigh(Object)} is overridden. Failed loads are not
+ * cached. A request that waits for a load stops waiting when its own
+ * {@link CancellationToken} is cancelled, and takes the load over if the
+ * request that started it was cancelled instead.
+ *
+ * @param <V> the type of the cached values
+ */
+public class SparqlCache<V>
+{
+    /**
+     * The time between two checks of the token while waiting, in ms
+     */
+    private static final long WAIT_INTERVAL = 50L;
+
+    private final long capacity;
+    private final LinkedHashMap<String, V> entries =
+                                 new LinkedHashMap<String, V>( 16, 0.75f, true );
+    private final ConcurrentHashMap<String, FutureTask<V>> loading =
+                                 new ConcurrentHashMap<String, FutureTask<V>>();
+    private long size = 0;
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity the maximum total weight of the cached values
+     */
+    public SparqlCache( final long capacity )
+    {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cached value for the given key, loading it if necessary.
+     *
+     * @param key the key
+     * @param loader loads the value if it is neither cached nor being loaded
+     * @param cancellation the token of the request that needs the value
+     * @return the value
+     * @throws FragmentCancelledException if the request was cancelled
+     * @throws RuntimeException if the load failed
+     */
+    public V get( final String key, final Callable<V> loader,
+                  final CancellationToken cancellation )
+    {
+        while ( true ) {
+            synchronized ( entries ) {
+                final V value = entries.get( key );
+                if ( value != null )
+                    return value;
+            }
+
+            // a load that completes right before this point is repeated,
+            // which is rare and harmless
+            final FutureTask<V> task = new FutureTask<V>( loader );
+            final FutureTask<V> running = loading.putIfAbsent( key, task );
+            if ( running != null ) {
+                try {
+                    return await( running, cancellation );
+                }
+                catch ( FragmentCancelledException e ) {
+                    if ( cancellation.isCancelled() )
+                        throw e;
+                    // the request that started the load was cancelled
+                    continue;
+                }
+            }
+
+            try {
+                task.run();
+                final V value = await( task, CancellationToken.NONE );
+                put( key, value );
+                return value;
+            }
+            finally {
+                loading.remove( key, task );
+            }
+        }
+    }
+
+    /**
+     * Returns the weight of the given value.
+     *
+     * @param value the value
+     * @return the weight
+     */
+    protected long weigh( final V value )
+    {
+        return 1;
+    }
+
+    private void put( final String key, final V value )
+    {
+        final long weight = weigh( value );
+        if ( weight > capacity )
+            return;
+        synchronized ( entries ) {
+            final V previous = entries.put( key, value );
+            if ( previous != null )
+                size -= weigh( previous );
+            size += weight;
+
+            final Iterator<Map.Entry<String, V>> eldest =
+                                               entries.entrySet().iterator();
+            while ( size > capacity && eldest.hasNext() ) {
+                size -= weigh( eldest.next().getValue() );
+                eldest.remove();
+            }
+        }
+    }
+
+    private static <V> V await( final FutureTask<V> task,
+                                final CancellationToken cancellation )
+    {
+        try {
+            while ( true ) {
+                try {
+                    return task.get( WAIT_INTERVAL, TimeUnit.MILLISECONDS );
+                }
+                catch ( TimeoutException e ) {
+                    if ( cancellation.isCancelled() )
+                        cancellation.check();
+                }
+            }
+        }
+        catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }
+        catch ( ExecutionException e ) {
+            if ( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( e.getCause() );
+        }
+    }
+
+}
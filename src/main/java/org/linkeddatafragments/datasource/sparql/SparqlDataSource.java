@@ -0,0 +1,56 @@
+package org.linkeddatafragments.datasource.sparql;
+
+import org.linkeddatafragments.datasource.DataSourceBase;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.fragments.IFragmentRequestParser;
+import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
+
+/**
+ * A data source of Basic Linked Data Fragments that caches the answers of
+ * a remote SPARQL endpoint.
+ */
+public class SparqlDataSource extends DataSourceBase {
+
+    /**
+     * The request processor
+     * 
+     */
+    protected final SparqlBasedRequestProcessorForTPFs requestProcessor;
+
+    /**
+     * Creates a new SparqlDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param endpoint the URL of the SPARQL endpoint
+     * @param timeout the timeout of upstream queries, in milliseconds
+     * @param cacheCapacity the maximum number of cached triples
+     * @param prefetch whether to fetch the next page in the background
+     * @param ordered whether pages are ordered by the variables of the pattern
+     */
+    public SparqlDataSource(String title, String description, String endpoint,
+                            long timeout, long cacheCapacity, boolean prefetch,
+                            boolean ordered) {
+        super(title, description);
+        requestProcessor = new SparqlBasedRequestProcessorForTPFs(
+                                endpoint, timeout, cacheCapacity, prefetch, ordered );
+    }
+
+    @Override
+    public IFragmentRequestParser getRequestParser()
+    {
+        return TPFRequestParserForJenaBackends.getInstance();
+    }
+
+    @Override
+    public IFragmentRequestProcessor getRequestProcessor()
+    {
+        return requestProcessor;
+    }
+
+    @Override
+    public void close() {
+        requestProcessor.close();
+    }
+
+}
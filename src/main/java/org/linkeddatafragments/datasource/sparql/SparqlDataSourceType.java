@@ -0,0 +1,45 @@
+package org.linkeddatafragments.datasource.sparql;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.exceptions.DataSourceCreationException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The type of Triple Pattern Fragment data sources that are backed by a
+ * remote SPARQL endpoint, given by the <code>endpoint</code> setting.
+ *
+ * Pages are requested with an ORDER BY clause, so that consecutive pages
+ * neither overlap nor miss triples. Setting <code>ordered</code> to false
+ * drops that clause for endpoints whose unordered results are stable and
+ * for which sorting is too expensive.
+ */
+public class SparqlDataSourceType implements IDataSourceType
+{
+    @Override
+    public IDataSource createDataSource( final String title,
+                                         final String description,
+                                         final JsonObject settings )
+                                                     throws DataSourceCreationException
+    {
+        if ( ! settings.has("endpoint") )
+            throw new DataSourceCreationException( title, "No SPARQL endpoint given." );
+
+        final String endpoint = settings.getAsJsonPrimitive("endpoint").getAsString();
+        final long timeout = settings.has("timeout")
+                ? settings.getAsJsonPrimitive("timeout").getAsLong()
+                : SparqlBasedRequestProcessorForTPFs.DEFAULT_TIMEOUT;
+        final long cacheCapacity = settings.has("cacheCapacity")
+                ? settings.getAsJsonPrimitive("cacheCapacity").getAsLong()
+                : SparqlBasedRequestProcessorForTPFs.DEFAULT_CACHE_CAPACITY;
+        final boolean prefetch = ! settings.has("prefetch")
+                || settings.getAsJsonPrimitive("prefetch").getAsBoolean();
+        final boolean ordered = ! settings.has("ordered")
+                || settings.getAsJsonPrimitive("ordered").getAsBoolean();
+
+        return new SparqlDataSource(title, description, endpoint,
+                                    timeout, cacheCapacity, prefetch, ordered);
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.linkeddatafragments.datasource.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IStatisticsDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides the VoID statistics of a set of data sources, reading them from
+ * their sidecar files where these are up to date and computing (and
+ * persisting) them otherwise. Statistics with unknown counts are used, but
+ * not persisted, so that they are computed again on the next start.
+ */
+public class StatisticsJob implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatisticsJob.class);
+
+    private final Map<String, IStatisticsDataSource> dataSources = new LinkedHashMap<>();
+    private final int threads;
+    private final ConcurrentHashMap<String, VoidStatistics> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the job.
+     *
+     * @param dataSources the data sources by name; those that cannot compute
+     *                    statistics are ignored
+     * @param threads the number of threads to compute statistics with
+     */
+    public StatisticsJob(Map<String, ? extends IDataSource> dataSources,
+                         int threads) {
+        for (Map.Entry<String, ? extends IDataSource> entry : dataSources.entrySet()) {
+            if (entry.getValue() instanceof IStatisticsDataSource) {
+                this.dataSources.put(entry.getKey(),
+                                     (IStatisticsDataSource) entry.getValue());
+            }
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the statistics that are available so far.
+     *
+     * @return the statistics by data source name
+     */
+    public Map<String, VoidStatistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Reads the statistics of all data sources whose sidecar file is up to
+     * date; this is cheap enough to do before serving requests.
+     */
+    public void loadPersisted() {
+        for (Map.Entry<String, IStatisticsDataSource> entry : dataSources.entrySet()) {
+            final IStatisticsDataSource dataSource = entry.getValue();
+            final File file = dataSource.getStatisticsFile();
+            if (file.isFile() && file.lastModified() >= dataSource.getLastModified()) {
+                try {
+                    statistics.put(entry.getKey(), VoidStatistics.read(file));
+                } catch (IOException e) {
+                    // the statistics are computed again
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes and persists the statistics of all data sources that have
+     * none yet, one data source at a time.
+     */
+    @Override
+    public void run() {
+        for (Map.Entry<String, IStatisticsDataSource> entry : dataSources.entrySet()) {
+            final String name = entry.getKey();
+            if (statistics.containsKey(name)) {
+                continue;
+            }
+            try {
+                final long start = System.currentTimeMillis();
+                final VoidStatistics computed = entry.getValue().computeStatistics(threads);
+                statistics.put(name, computed);
+                LOG.info("Computed the statistics of {} in {}s ({} triples)",
+                         name, String.format("%.1f", (System.currentTimeMillis() - start) / 1000.0),
+                         computed.getTriples());
+                if (computed.isComplete()) {
+                    computed.write(entry.getValue().getStatisticsFile());
+                } else {
+                    LOG.warn("The statistics of {} are incomplete and are not persisted", name);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOG.error("Could not compute the statistics of " + name, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,258 @@
+package org.linkeddatafragments.datasource.statistics;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+
+/**
+ * VoID statistics of a data source: the number of triples and of distinct
+ * subjects and objects, a property partition per predicate and a class
+ * partition per class.
+ *
+ * @see <a href="https://www.w3.org/TR/void/#statistics">VoID statistics</a>
+ */
+public class VoidStatistics {
+
+    /**
+     * The VoID namespace
+     */
+    public final static String VOID = "http://rdfs.org/ns/void#";
+
+    /**
+     * The value of counts that are not known; these are left out of the
+     * VoID description
+     */
+    public final static long UNKNOWN = -1;
+
+    private final static Gson GSON = new Gson();
+
+    private final long triples;
+    private final long distinctSubjects;
+    private final long distinctObjects;
+    private final SortedMap<String, PropertyPartition> properties;
+    private final SortedMap<String, Long> classes;
+
+    /**
+     * Creates statistics.
+     *
+     * @param triples the number of triples
+     * @param distinctSubjects the number of distinct subjects
+     * @param distinctObjects the number of distinct objects
+     * @param properties the property partitions, by predicate URI
+     * @param classes the number of instances, by class URI
+     */
+    public VoidStatistics(long triples, long distinctSubjects,
+                          long distinctObjects,
+                          Map<String, PropertyPartition> properties,
+                          Map<String, Long> classes) {
+        this.triples = triples;
+        this.distinctSubjects = distinctSubjects;
+        this.distinctObjects = distinctObjects;
+        this.properties = new TreeMap<>(properties);
+        this.classes = new TreeMap<>(classes);
+    }
+
+    /**
+     * @return the number of triples
+     */
+    public long getTriples() {
+        return triples;
+    }
+
+    /**
+     * @return the number of distinct subjects
+     */
+    public long getDistinctSubjects() {
+        return distinctSubjects;
+    }
+
+    /**
+     * @return the number of distinct objects
+     */
+    public long getDistinctObjects() {
+        return distinctObjects;
+    }
+
+    /**
+     * @return the property partitions, by predicate URI
+     */
+    public SortedMap<String, PropertyPartition> getProperties() {
+        return Collections.unmodifiableSortedMap(properties);
+    }
+
+    /**
+     * @return the number of instances, by class URI
+     */
+    public SortedMap<String, Long> getClasses() {
+        return Collections.unmodifiableSortedMap(classes);
+    }
+
+    /**
+     * @return whether all counts are known
+     */
+    public boolean isComplete() {
+        if (triples < 0 || distinctSubjects < 0 || distinctObjects < 0) {
+            return false;
+        }
+        for (PropertyPartition counts : properties.values()) {
+            if (counts.triples < 0 || counts.distinctSubjects < 0
+                    || counts.distinctObjects < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the statistics to a model as VoID descriptions of a dataset. The
+     * partitions are identified by fragment URIs relative to the dataset.
+     *
+     * @param model the model
+     * @param dataset the dataset, which must be a URI resource
+     */
+    public void addTo(Model model, Resource dataset) {
+        addCount(model, dataset, "triples", triples);
+        addCount(model, dataset, "distinctSubjects", distinctSubjects);
+        addCount(model, dataset, "distinctObjects", distinctObjects);
+        addCount(model, dataset, "properties", properties.size());
+        addCount(model, dataset, "classes", classes.size());
+
+        int index = 0;
+        for (Map.Entry<String, PropertyPartition> property : properties.entrySet()) {
+            final Resource partition = model.createResource(
+                    dataset.getURI() + "#property" + index++);
+            final PropertyPartition counts = property.getValue();
+            model.add(dataset, model.createProperty(VOID, "propertyPartition"), partition);
+            model.add(partition, model.createProperty(VOID, "property"),
+                      model.createResource(property.getKey()));
+            addCount(model, partition, "triples", counts.getTriples());
+            addCount(model, partition, "distinctSubjects", counts.getDistinctSubjects());
+            addCount(model, partition, "distinctObjects", counts.getDistinctObjects());
+        }
+
+        index = 0;
+        for (Map.Entry<String, Long> instances : classes.entrySet()) {
+            final Resource partition = model.createResource(
+                    dataset.getURI() + "#class" + index++);
+            model.add(dataset, model.createProperty(VOID, "classPartition"), partition);
+            model.add(partition, model.createProperty(VOID, "class"),
+                      model.createResource(instances.getKey()));
+            addCount(model, partition, "entities", instances.getValue());
+        }
+    }
+
+    private static void addCount(Model model, Resource subject, String name,
+                                 long count) {
+        if (count == UNKNOWN) {
+            return;
+        }
+        final Property property = model.createProperty(VOID, name);
+        model.add(subject, property, String.valueOf(count), XSDDatatype.XSDinteger);
+    }
+
+    /**
+     * Writes the statistics to a file, which is replaced atomically.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        final File temp = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp),
+                                                    StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        }
+        if (file.exists() && !file.delete()) {
+            temp.delete();
+            throw new IOException("Could not replace " + file + ".");
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Could not create " + file + ".");
+        }
+    }
+
+    /**
+     * Reads statistics from a file.
+     *
+     * @param file the file
+     * @return the statistics
+     * @throws IOException if the file cannot be read or has no statistics
+     */
+    public static VoidStatistics read(File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file),
+                                                   StandardCharsets.UTF_8)) {
+            final VoidStatistics statistics = GSON.fromJson(reader, VoidStatistics.class);
+            if (statistics == null || statistics.properties == null
+                    || statistics.classes == null) {
+                throw new IOException(file + " contains no statistics.");
+            }
+            return statistics;
+        } catch (JsonParseException e) {
+            throw new IOException(file + " contains no statistics.", e);
+        }
+    }
+
+    /**
+     * The statistics of the triples with one predicate.
+     */
+    public static class PropertyPartition {
+
+        private final long triples;
+        private final long distinctSubjects;
+        private final long distinctObjects;
+
+        /**
+         * Creates a property partition.
+         *
+         * @param triples the number of triples
+         * @param distinctSubjects the number of distinct subjects
+         * @param distinctObjects the number of distinct objects
+         */
+        public PropertyPartition(long triples, long distinctSubjects,
+                                 long distinctObjects) {
+            this.triples = triples;
+            this.distinctSubjects = distinctSubjects;
+            this.distinctObjects = distinctObjects;
+        }
+
+        /**
+         * @return the number of triples
+         */
+        public long getTriples() {
+            return triples;
+        }
+
+        /**
+         * @return the number of distinct subjects
+         */
+        public long getDistinctSubjects() {
+            return distinctSubjects;
+        }
+
+        /**
+         * @return the number of distinct objects
+         */
+        public long getDistinctObjects() {
+            return distinctObjects;
+        }
+    }
+
+}
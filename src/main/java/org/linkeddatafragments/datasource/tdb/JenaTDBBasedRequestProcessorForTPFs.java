@@ -1,8 +1,10 @@
 package org.linkeddatafragments.datasource.tdb;
 
 import java.io.File;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QueryFactory;
@@ -18,6 +20,9 @@ import org.apache.jena.tdb.TDBFactory;
 
 import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
 import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+import org.linkeddatafragments.fragments.CancellationToken;
 import org.linkeddatafragments.fragments.ILinkedDataFragment;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
@@ -111,9 +116,13 @@ public class JenaTDBBasedRequestProcessorForTPFs
             query.setLimit(limit);
 
             Model triples = ModelFactory.createDefaultModel();
+            final CancellationToken cancellation = request.getCancellationToken();
 
             try (QueryExecution qexec = QueryExecutionFactory.create(query, model, map)) {
+                limitTime(qexec, cancellation);
                 qexec.execConstruct(triples);
+            } catch (QueryCancelledException e) {
+                throw cancelled(e, cancellation);
             }
 
             if (triples.isEmpty()) {
@@ -125,12 +134,15 @@ public class JenaTDBBasedRequestProcessorForTPFs
             long estimate = -1;
 
             try (QueryExecution qexec = QueryExecutionFactory.create(countQuery, model, map)) {
+                limitTime(qexec, cancellation);
                 ResultSet results = qexec.execSelect();
                 if (results.hasNext()) {
                     QuerySolution soln = results.nextSolution() ;
                     Literal literal = soln.getLiteral("count");
                     estimate = literal.getLong();
                 }
+            } catch (QueryCancelledException e) {
+                throw cancelled(e, cancellation);
             }
 
             /*GraphStatisticsHandler stats = model.getGraph().getStatisticsHandler();
@@ -151,6 +163,38 @@ public class JenaTDBBasedRequestProcessorForTPFs
             return createTriplePatternFragment( triples, estimate, isLastPage );
         }
 
+        /**
+         * Lets Jena abort the query when the deadline of the request passes.
+         *
+         * @param qexec
+         * @param cancellation
+         */
+        private void limitTime(QueryExecution qexec, CancellationToken cancellation) {
+            final long remaining = cancellation.getRemainingMillis();
+            if (remaining != Long.MAX_VALUE) {
+                qexec.setTimeout(Math.max(1L, remaining));
+            }
+        }
+
+        /**
+         * Translates an aborted query into the cancellation of the request;
+         * Jena only aborts queries when their time limit passes, which may
+         * be just before the token notices the deadline.
+         *
+         * @param e
+         * @param cancellation
+         * @return
+         */
+        private FragmentCancelledException cancelled(QueryCancelledException e,
+                                                     CancellationToken cancellation) {
+            if (cancellation.isCancelled()) {
+                cancellation.check();
+            }
+            return new FragmentCancelledException(
+                    "The fragment could not be computed within "
+                    + "the time limit of the data source.");
+        }
+
     } // end of class Worker
 
 
@@ -162,4 +206,25 @@ public class JenaTDBBasedRequestProcessorForTPFs
     public JenaTDBBasedRequestProcessorForTPFs(File tdbdir) {
         this.tdb = TDBFactory.createDataset(tdbdir.getAbsolutePath());
     }
+
+    /**
+     * Computes the VoID statistics of the default graph.
+     *
+     * @param threads the number of threads to use
+     * @return the statistics
+     * @throws InterruptedException if the computation is interrupted
+     */
+    public VoidStatistics computeStatistics(int threads) throws InterruptedException {
+        return JenaTDBStatistics.compute(tdb, threads);
+    }
+
+    /**
+     * Returns whether the default graph contains the given triple.
+     *
+     * @param triple a triple without variables
+     * @return true if the triple is in the default graph
+     */
+    public boolean contains(Triple triple) {
+        return tdb.getDefaultModel().getGraph().contains(triple);
+    }
 }
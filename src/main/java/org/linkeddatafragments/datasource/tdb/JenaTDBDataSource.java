@@ -2,8 +2,12 @@ package org.linkeddatafragments.datasource.tdb;
 
 import java.io.File;
 
+import org.apache.jena.graph.Triple;
 import org.linkeddatafragments.datasource.DataSourceBase;
 import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.ILookupDataSource;
+import org.linkeddatafragments.datasource.IStatisticsDataSource;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
 import org.linkeddatafragments.fragments.IFragmentRequestParser;
 import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
 
@@ -13,7 +17,8 @@ import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
  * @author <a href="mailto:bart.hanssens@fedict.be">Bart Hanssens</a>
  * @author <a href="http://olafhartig.de">Olaf Hartig</a>
  */
-public class JenaTDBDataSource extends DataSourceBase {
+public class JenaTDBDataSource extends DataSourceBase
+                               implements IStatisticsDataSource, ILookupDataSource {
 
     /**
      * The request processor
@@ -21,6 +26,8 @@ public class JenaTDBDataSource extends DataSourceBase {
      */
     protected final JenaTDBBasedRequestProcessorForTPFs requestProcessor;
 
+    private final File tdbdir;
+
     @Override
     public IFragmentRequestParser getRequestParser()
     {
@@ -42,6 +49,39 @@ public class JenaTDBDataSource extends DataSourceBase {
      */
     public JenaTDBDataSource(String title, String description, File tdbdir) {
         super(title, description);
+        this.tdbdir = tdbdir;
         requestProcessor = new JenaTDBBasedRequestProcessorForTPFs( tdbdir );
     }
+
+    @Override
+    public File getStatisticsFile() {
+        return new File(tdbdir.getPath() + JenaTDBStatistics.FILE_SUFFIX);
+    }
+
+    /**
+     * Returns when any of the files of the dataset was last modified.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    @Override
+    public long getLastModified() {
+        long lastModified = tdbdir.lastModified();
+        final File[] files = tdbdir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                lastModified = Math.max(lastModified, file.lastModified());
+            }
+        }
+        return lastModified;
+    }
+
+    @Override
+    public VoidStatistics computeStatistics(int threads) throws InterruptedException {
+        return requestProcessor.computeStatistics(threads);
+    }
+
+    @Override
+    public boolean contains(Triple triple) {
+        return requestProcessor.contains(triple);
+    }
 }
@@ -0,0 +1,220 @@
+package org.linkeddatafragments.datasource.tdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.jena.atlas.lib.Tuple;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.tdb.store.NodeId;
+import org.apache.jena.tdb.store.nodetable.NodeTable;
+import org.apache.jena.tdb.store.nodetupletable.NodeTupleTable;
+import org.apache.jena.tdb.store.tupletable.TupleIndex;
+import org.apache.jena.tdb.sys.TDBInternal;
+import org.apache.jena.vocabulary.RDF;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
+
+/**
+ * Computes the VoID statistics of the default graph of a Jena TDB dataset
+ * by scanning two of its triple indexes.
+ *
+ * The SPO index yields the triples and distinct subjects per predicate and
+ * the instances per class; the OSP index yields the distinct objects per
+ * predicate. Since both are sorted, a distinct term is counted when it
+ * differs from the previous one, so only memory proportional to the number
+ * of predicates and classes is needed. The two scans run in parallel if
+ * more than one thread is allowed.
+ */
+public class JenaTDBStatistics {
+
+    /**
+     * Suffix appended to the name of the TDB directory to obtain the sidecar file
+     */
+    public static final String FILE_SUFFIX = ".void.json";
+
+    /**
+     * The number of tuples after which a scan checks for interruption
+     */
+    private static final int CHECK_INTERVAL = 1 << 16;
+
+    private JenaTDBStatistics() {
+    }
+
+    /**
+     * Computes the statistics of the default graph of the given dataset.
+     *
+     * @param tdb the dataset
+     * @param threads the number of threads to use; at most two are used
+     * @return the statistics
+     * @throws InterruptedException if the computation is interrupted
+     */
+    public static VoidStatistics compute(Dataset tdb, int threads)
+            throws InterruptedException {
+        final NodeTupleTable table = TDBInternal.getDatasetGraphTDB(tdb)
+                .getTripleTable().getNodeTupleTable();
+        final NodeTable nodes = table.getNodeTable();
+        final TupleIndex spo = getIndex(table, "SPO");
+        final TupleIndex osp = getIndex(table, "OSP");
+        final NodeId typeId = nodes.getNodeIdForNode(RDF.type.asNode());
+
+        final List<Callable<Counts>> scans = new ArrayList<>();
+        scans.add(new Callable<Counts>() {
+            @Override
+            public Counts call() throws InterruptedException {
+                return countSubjects(spo, typeId);
+            }
+        });
+        scans.add(new Callable<Counts>() {
+            @Override
+            public Counts call() throws InterruptedException {
+                return countObjects(osp);
+            }
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(scans.size(), threads)));
+        try {
+            final List<Future<Counts>> results = executor.invokeAll(scans);
+            final Counts subjects = get(results.get(0));
+            final Counts objects = get(results.get(1));
+
+            final Map<String, VoidStatistics.PropertyPartition> properties = new HashMap<>();
+            for (Map.Entry<NodeId, long[]> entry : subjects.perPredicate.entrySet()) {
+                final long[] counts = entry.getValue();
+                final long[] objectCounts = objects.perPredicate.get(entry.getKey());
+                properties.put(nodes.getNodeForNodeId(entry.getKey()).getURI(),
+                        new VoidStatistics.PropertyPartition(counts[0], counts[1],
+                                objectCounts == null ? 0 : objectCounts[0]));
+            }
+
+            final Map<String, Long> classes = new HashMap<>();
+            for (Map.Entry<NodeId, long[]> entry : subjects.classes.entrySet()) {
+                final Node node = nodes.getNodeForNodeId(entry.getKey());
+                // literals and blank nodes cannot be classes
+                if (node.isURI()) {
+                    classes.put(node.getURI(), entry.getValue()[0]);
+                }
+            }
+
+            return new VoidStatistics(subjects.triples, subjects.distinct,
+                                      objects.distinct, properties, classes);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Counts the triples, the distinct subjects and, per predicate, the
+     * triples and distinct subjects, as well as the instances per class.
+     */
+    private static Counts countSubjects(TupleIndex spo, NodeId typeId)
+            throws InterruptedException {
+        final Counts counts = new Counts();
+        NodeId previousSubject = null;
+        NodeId previousPredicate = null;
+        final Iterator<Tuple<NodeId>> tuples = spo.all();
+        while (tuples.hasNext()) {
+            final Tuple<NodeId> tuple = tuples.next();
+            final NodeId s = tuple.get(0);
+            final NodeId p = tuple.get(1);
+            if (!s.equals(previousSubject)) {
+                counts.distinct++;
+                previousSubject = s;
+                previousPredicate = null;
+            }
+            // the triples of a subject are sorted by predicate
+            final long[] predicate = counts.get(counts.perPredicate, p, 2);
+            predicate[0]++;
+            if (!p.equals(previousPredicate)) {
+                predicate[1]++;
+                previousPredicate = p;
+            }
+            if (p.equals(typeId)) {
+                counts.get(counts.classes, tuple.get(2), 1)[0]++;
+            }
+            checkInterrupted(++counts.triples);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the distinct objects, overall and per predicate.
+     */
+    private static Counts countObjects(TupleIndex osp)
+            throws InterruptedException {
+        final Counts counts = new Counts();
+        final Map<NodeId, NodeId> lastObjects = new HashMap<>();
+        NodeId previousObject = null;
+        final Iterator<Tuple<NodeId>> tuples = osp.all();
+        while (tuples.hasNext()) {
+            final Tuple<NodeId> tuple = tuples.next();
+            final NodeId p = tuple.get(1);
+            final NodeId o = tuple.get(2);
+            if (!o.equals(previousObject)) {
+                counts.distinct++;
+                previousObject = o;
+            }
+            // the predicates of an object are not sorted, so the last object
+            // of every predicate is kept
+            if (!o.equals(lastObjects.put(p, o))) {
+                counts.get(counts.perPredicate, p, 1)[0]++;
+            }
+            checkInterrupted(++counts.triples);
+        }
+        return counts;
+    }
+
+    private static TupleIndex getIndex(NodeTupleTable table, String name) {
+        for (TupleIndex index : table.getTupleTable().getIndexes()) {
+            if (index.getName().equalsIgnoreCase(name)) {
+                return index;
+            }
+        }
+        throw new IllegalStateException("The TDB dataset has no " + name + " index.");
+    }
+
+    private static void checkInterrupted(long tuples) throws InterruptedException {
+        if (tuples % CHECK_INTERVAL == 0 && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InterruptedException) {
+                throw (InterruptedException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * The counts collected by one scan.
+     */
+    private static class Counts {
+        long triples;
+        long distinct;
+        final Map<NodeId, long[]> perPredicate = new HashMap<>();
+        final Map<NodeId, long[]> classes = new HashMap<>();
+
+        long[] get(Map<NodeId, long[]> map, NodeId key, int width) {
+            long[] counts = map.get(key);
+            if (counts == null) {
+                counts = new long[width];
+                map.put(key, counts);
+            }
+            return counts;
+        }
+    }
+
+}
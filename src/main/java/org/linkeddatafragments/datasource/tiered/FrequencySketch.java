@@ -0,0 +1,84 @@
+package org.linkeddatafragments.datasource.tiered;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estimates how often keys have been seen recently, in a fixed amount of
+ * memory, with a count-min sketch of four rows.
+ *
+ * After a number of increments proportional to the width, all counters are
+ * halved, so that the frequencies reflect recent accesses and patterns that
+ * have cooled down can be demoted.
+ */
+public class FrequencySketch
+{
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B,
+                                         0xC2B2AE35, 0x27D4EB2F };
+
+    private final AtomicIntegerArray counters;
+    private final int mask;
+    private final long sampleSize;
+    private final AtomicLong increments = new AtomicLong();
+
+    /**
+     * Creates a sketch.
+     *
+     * @param width the number of counters per row, rounded up to a power of 2
+     */
+    public FrequencySketch( final int width )
+    {
+        final int rowWidth = Integer.highestOneBit( Math.max( 16, width - 1 ) ) << 1;
+        this.counters = new AtomicIntegerArray( DEPTH * rowWidth );
+        this.mask = rowWidth - 1;
+        this.sampleSize = 10L * rowWidth;
+    }
+
+    /**
+     * Records an access to the given key.
+     *
+     * @param key the key
+     */
+    public void increment( final Object key )
+    {
+        final int hash = key.hashCode();
+        for ( int row = 0; row < DEPTH; row++ )
+            counters.incrementAndGet( index( hash, row ) );
+        if ( increments.incrementAndGet() % sampleSize == 0 )
+            age();
+    }
+
+    /**
+     * Returns the estimated recent number of accesses to the given key.
+     *
+     * @param key the key
+     * @return the estimate, which is never too low except through aging
+     */
+    public int frequency( final Object key )
+    {
+        final int hash = key.hashCode();
+        int frequency = Integer.MAX_VALUE;
+        for ( int row = 0; row < DEPTH; row++ )
+            frequency = Math.min( frequency, counters.get( index( hash, row ) ) );
+        return frequency;
+    }
+
+    private int index( final int hash, final int row )
+    {
+        int h = hash * SEEDS[row];
+        h ^= h >>> 16;
+        return row * ( mask + 1 ) + ( h & mask );
+    }
+
+    private void age()
+    {
+        for ( int i = 0; i < counters.length(); i++ ) {
+            int value;
+            do {
+                value = counters.get( i );
+            } while ( ! counters.compareAndSet( i, value, value >>> 1 ) );
+        }
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.linkeddatafragments.datasource.tiered;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+
+/**
+ * All matches of a triple pattern, kept in memory in the order of the pages
+ * of the backing data source, so that a page served from memory holds the
+ * same triples as the backing page it replaces.
+ *
+ * The distinct terms are stored once per pattern and the triples as indexes
+ * into them.
+ */
+public class HotPattern
+{
+    private final Node[] terms;
+    private final int[] ids;         // 3 per triple
+    private final int[] pageStarts;  // index of the first triple of each page
+    private final long bytes;
+
+    private HotPattern( final Node[] terms, final int[] ids,
+                        final int[] pageStarts, final long bytes )
+    {
+        this.terms = terms;
+        this.ids = ids;
+        this.pageStarts = pageStarts;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Returns the number of matches.
+     *
+     * @return the number of matches
+     */
+    public int size()
+    {
+        return ids.length / 3;
+    }
+
+    /**
+     * Returns the number of pages.
+     *
+     * @return the number of pages
+     */
+    public int getPageCount()
+    {
+        return pageStarts.length;
+    }
+
+    /**
+     * Returns the estimated number of bytes this pattern occupies.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * Returns the triples of a page.
+     *
+     * @param page the page index, starting at 0
+     * @return the triples, which are empty beyond the last page
+     */
+    public Model getPage( final int page )
+    {
+        final Model model = ModelFactory.createDefaultModel();
+        if ( page >= pageStarts.length )
+            return model;
+        final int end = page + 1 < pageStarts.length ? pageStarts[page + 1] : size();
+        for ( int i = pageStarts[page]; i < end; i++ )
+            model.add( model.asStatement( getTriple( i ) ) );
+        return model;
+    }
+
+    /**
+     * Returns the matches that also match the given, more specific, pattern.
+     *
+     * @param subject the subject, or null for a variable
+     * @param predicate the predicate, or null for a variable
+     * @param object the object, or null for a variable
+     * @return the matches
+     */
+    public Model filter( final Node subject, final Node predicate,
+                         final Node object )
+    {
+        final Model model = ModelFactory.createDefaultModel();
+        for ( int i = 0; i < size(); i++ ) {
+            final Triple triple = getTriple( i );
+            if ( ( subject == null || subject.equals( triple.getSubject() ) )
+                 && ( predicate == null || predicate.equals( triple.getPredicate() ) )
+                 && ( object == null || object.equals( triple.getObject() ) ) )
+                model.add( model.asStatement( triple ) );
+        }
+        return model;
+    }
+
+    private Triple getTriple( final int i )
+    {
+        return new Triple( terms[ids[3 * i]], terms[ids[3 * i + 1]],
+                           terms[ids[3 * i + 2]] );
+    }
+
+    /**
+     * Collects the pages of a pattern.
+     */
+    public static class Builder
+    {
+        private final Map<Node, Integer> termIds = new HashMap<Node, Integer>();
+        private Node[] terms = new Node[64];
+        private int[] ids = new int[3 * 64];
+        private int[] pageStarts = new int[4];
+        private int nTriples = 0;
+        private int nPages = 0;
+        private long termBytes = 0;
+
+        /**
+         * Starts the next page.
+         */
+        public void startPage()
+        {
+            if ( nPages == pageStarts.length )
+                pageStarts = Arrays.copyOf( pageStarts, nPages * 2 );
+            pageStarts[nPages++] = nTriples;
+        }
+
+        /**
+         * Adds a triple to the current page.
+         *
+         * @param triple the triple
+         */
+        public void add( final Triple triple )
+        {
+            if ( 3 * nTriples == ids.length )
+                ids = Arrays.copyOf( ids, ids.length * 2 );
+            ids[3 * nTriples] = getId( triple.getSubject() );
+            ids[3 * nTriples + 1] = getId( triple.getPredicate() );
+            ids[3 * nTriples + 2] = getId( triple.getObject() );
+            nTriples++;
+        }
+
+        /**
+         * Returns the number of triples added so far.
+         *
+         * @return the number of triples
+         */
+        public int size()
+        {
+            return nTriples;
+        }
+
+        /**
+         * Builds the pattern.
+         *
+         * @return the pattern
+         */
+        public HotPattern build()
+        {
+            final int nTerms = termIds.size();
+            final long bytes = 64 + termBytes + 8L * nTerms
+                             + 4L * 3 * nTriples + 4L * nPages;
+            return new HotPattern( Arrays.copyOf( terms, nTerms ),
+                                   Arrays.copyOf( ids, 3 * nTriples ),
+                                   Arrays.copyOf( pageStarts, nPages ),
+                                   bytes );
+        }
+
+        private int getId( final Node node )
+        {
+            final Integer id = termIds.get( node );
+            if ( id != null )
+                return id;
+
+            final int newId = termIds.size();
+            if ( newId == terms.length )
+                terms = Arrays.copyOf( terms, newId * 2 );
+            terms[newId] = node;
+            termIds.put( node, newId );
+            // object headers and the characters of the lexical form
+            termBytes += 64 + 2L * node.toString().length();
+            return newId;
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.linkeddatafragments.datasource.tiered;
+
+import org.linkeddatafragments.datasource.DataSourceBase;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.fragments.IFragmentRequestParser;
+import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
+
+/**
+ * A data source of Basic Linked Data Fragments that keeps the most
+ * requested patterns of another data source in memory.
+ */
+public class TieredDataSource extends DataSourceBase {
+
+    /**
+     * The request processor
+     * 
+     */
+    protected final TieredRequestProcessorForTPFs requestProcessor;
+
+    /**
+     * Creates a new TieredDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param backing the name of the backing data source
+     * @param heapBudget the number of bytes the hot tier may occupy
+     * @param promotionThreshold the number of recent requests after which a
+     *                           pattern is promoted
+     * @param maxPatternSize the maximum number of matches of a hot pattern
+     */
+    public TieredDataSource(String title, String description, String backing,
+                            long heapBudget, int promotionThreshold,
+                            int maxPatternSize) {
+        super(title, description);
+        requestProcessor = new TieredRequestProcessorForTPFs( backing,
+                heapBudget, promotionThreshold, maxPatternSize );
+    }
+
+    @Override
+    public IFragmentRequestParser getRequestParser()
+    {
+        return TPFRequestParserForJenaBackends.getInstance();
+    }
+
+    @Override
+    public IFragmentRequestProcessor getRequestProcessor()
+    {
+        return requestProcessor;
+    }
+
+    /**
+     * Returns the fraction of requests answered from the hot tier.
+     *
+     * @return the hit ratio
+     */
+    public double getHitRatio() {
+        return requestProcessor.getHitRatio();
+    }
+
+    @Override
+    public void close() {
+        requestProcessor.close();
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.linkeddatafragments.datasource.tiered;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.exceptions.DataSourceCreationException;
+
+import com.google.gson.JsonObject;
+
+/**
+ * The type of Triple Pattern Fragment data sources that keep the hot
+ * patterns of the data source named in the <code>backing</code> setting in
+ * memory. The hot tier is limited to <code>heapBudget</code> MB.
+ */
+public class TieredDataSourceType implements IDataSourceType
+{
+    @Override
+    public IDataSource createDataSource( final String title,
+                                         final String description,
+                                         final JsonObject settings )
+                                                     throws DataSourceCreationException
+    {
+        if ( ! settings.has("backing") )
+            throw new DataSourceCreationException( title, "No backing data source given." );
+
+        final String backing = settings.getAsJsonPrimitive("backing").getAsString();
+        final long heapBudget = settings.has("heapBudget")
+                ? settings.getAsJsonPrimitive("heapBudget").getAsLong() * 1024 * 1024
+                : TieredRequestProcessorForTPFs.DEFAULT_HEAP_BUDGET;
+        final int promotionThreshold = settings.has("promotionThreshold")
+                ? settings.getAsJsonPrimitive("promotionThreshold").getAsInt()
+                : TieredRequestProcessorForTPFs.DEFAULT_PROMOTION_THRESHOLD;
+        final int maxPatternSize = settings.has("maxPatternSize")
+                ? settings.getAsJsonPrimitive("maxPatternSize").getAsInt()
+                : TieredRequestProcessorForTPFs.DEFAULT_MAX_PATTERN_SIZE;
+
+        return new TieredDataSource(title, description, backing, heapBudget,
+                                    promotionThreshold, maxPatternSize);
+    }
+
+}
@@ -0,0 +1,485 @@
+package org.linkeddatafragments.datasource.tiered;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.out.NodeFmtLib;
+
+import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
+import org.linkeddatafragments.datasource.DataSourceRegistry;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link IFragmentRequestProcessor} that processes
+ * {@link ITriplePatternFragmentRequest}s from a hot tier in memory when it
+ * can, and from a backing data source, looked up by name in the
+ * {@link DataSourceRegistry}, otherwise.
+ *
+ * The accesses to every pattern are counted in a {@link FrequencySketch}.
+ * Once a pattern has been requested often enough and has few enough
+ * matches, all its pages are copied into a {@link HotPattern} in the
+ * background. It is admitted to the hot tier if that fits the heap budget,
+ * possibly after demoting the least frequently accessed patterns, but only
+ * if those are all less frequent than the new one. Single-page requests for
+ * a more specific pattern of a hot subject (<code>s ? ?</code>) are answered
+ * from that subject's matches as well.
+ *
+ * The hit ratio of the hot tier is logged whenever a pattern is admitted
+ * and when the data source is closed.
+ *
+ * The backing data is assumed not to change.
+ */
+public class TieredRequestProcessorForTPFs
+    extends AbstractRequestProcessorForTriplePatterns<RDFNode,String,String>
+{
+    /**
+     * Default number of bytes for the hot tier (64MB)
+     */
+    public static final long DEFAULT_HEAP_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Default number of recent requests after which a pattern is promoted
+     */
+    public static final int DEFAULT_PROMOTION_THRESHOLD = 8;
+
+    /**
+     * Default maximum number of matches of a promoted pattern
+     */
+    public static final int DEFAULT_MAX_PATTERN_SIZE = 10000;
+
+    private static final String VARIABLE = "?";
+
+    private static final Logger LOG =
+                LoggerFactory.getLogger( TieredRequestProcessorForTPFs.class );
+
+    private final String backingName;
+    private final long heapBudget;
+    private final int promotionThreshold;
+    private final int maxPatternSize;
+
+    private final FrequencySketch sketch = new FrequencySketch( 1 << 16 );
+    private final ConcurrentHashMap<String, HotPattern> hot =
+                                 new ConcurrentHashMap<String, HotPattern>();
+    private final Set<String> loading =
+                     Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+    private final ThreadPoolExecutor loader;
+    private long hotBytes = 0;
+
+    private final AtomicLong hotRequests = new AtomicLong();
+    private final AtomicLong coldRequests = new AtomicLong();
+
+    private volatile IDataSource backing;
+
+    /**
+     * Creates the request processor.
+     *
+     * @param backingName the name of the backing data source
+     * @param heapBudget the number of bytes the hot tier may occupy
+     * @param promotionThreshold the number of recent requests after which a
+     *                           pattern is promoted
+     * @param maxPatternSize the maximum number of matches of a hot pattern
+     */
+    public TieredRequestProcessorForTPFs( final String backingName,
+                                          final long heapBudget,
+                                          final int promotionThreshold,
+                                          final int maxPatternSize )
+    {
+        this.backingName = backingName;
+        this.heapBudget = heapBudget;
+        this.promotionThreshold = promotionThreshold;
+        this.maxPatternSize = maxPatternSize;
+        this.loader = new ThreadPoolExecutor( 1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>( 16 ), new ThreadFactory() {
+                    @Override
+                    public Thread newThread( final Runnable r ) {
+                        final Thread thread = new Thread( r, "Hot tier loader " + backingName );
+                        thread.setDaemon( true );
+                        return thread;
+                    }
+                } );
+    }
+
+    @Override
+    public void close()
+    {
+        // the backing data source is closed by its owner
+        loader.shutdownNow();
+        LOG.info( "Hot tier of {}: {} hot and {} cold requests, hit ratio {}",
+                  backingName, getHotRequests(), getColdRequests(),
+                  String.format( "%.3f", getHitRatio() ) );
+    }
+
+    /**
+     * Waits until the patterns that are being promoted have been loaded.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all pending promotions have completed, false if the
+     *         timeout elapsed first
+     * @throws InterruptedException if the thread was interrupted
+     */
+    public boolean awaitPromotions( final long timeout, final TimeUnit unit )
+                                                   throws InterruptedException
+    {
+        // the loader runs its tasks in order, so this one runs after them
+        final Future<?> marker;
+        try {
+            marker = loader.submit( new Runnable() {
+                @Override
+                public void run() {
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e ) {
+            return false;
+        }
+        try {
+            marker.get( timeout, unit );
+            return true;
+        }
+        catch ( ExecutionException | TimeoutException e ) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of requests answered from the hot tier.
+     *
+     * @return the number of requests
+     */
+    public long getHotRequests()
+    {
+        return hotRequests.get();
+    }
+
+    /**
+     * Returns the number of requests answered by the backing data source.
+     *
+     * @return the number of requests
+     */
+    public long getColdRequests()
+    {
+        return coldRequests.get();
+    }
+
+    /**
+     * Returns the fraction of requests answered from the hot tier.
+     *
+     * @return the hit ratio, or 0 if there were no requests yet
+     */
+    public double getHitRatio()
+    {
+        final long hits = hotRequests.get();
+        final long total = hits + coldRequests.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of patterns in the hot tier.
+     *
+     * @return the number of patterns
+     */
+    public int getHotPatternCount()
+    {
+        return hot.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes the hot tier occupies.
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getHotBytes()
+    {
+        return hotBytes;
+    }
+
+    /**
+     *
+     * @param request
+     * @return
+     * @throws IllegalArgumentException
+     */
+    @Override
+    protected Worker getTPFSpecificWorker(
+            final ITriplePatternFragmentRequest<RDFNode,String,String> request )
+                                                throws IllegalArgumentException
+    {
+        return new Worker( request );
+    }
+
+    /**
+     * Worker class for tiered data
+     */
+    protected class Worker
+       extends AbstractRequestProcessorForTriplePatterns.Worker<RDFNode,String,String>
+    {
+
+        /**
+         * Create a Worker for tiered data
+         *
+         * @param req
+         */
+        public Worker(
+                final ITriplePatternFragmentRequest<RDFNode,String,String> req )
+        {
+            super( req );
+        }
+
+        /**
+         * Creates an {@link ILinkedDataFragment} from the hot tier or from
+         * the backing data source
+         *
+         * @param subject
+         * @param predicate
+         * @param object
+         * @param offset
+         * @param limit
+         * @return
+         */
+        @Override
+        protected ILinkedDataFragment createFragment(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final String key = toKey( subject ) + " " + toKey( predicate )
+                             + " " + toKey( object );
+            sketch.increment( key );
+
+            // the pattern itself is hot
+            final HotPattern pattern = hot.get( key );
+            if ( pattern != null ) {
+                hotRequests.incrementAndGet();
+                final int page = (int) Math.min( Integer.MAX_VALUE, offset / limit );
+                return createTriplePatternFragment( pattern.getPage( page ),
+                        pattern.size(), page + 1 >= pattern.getPageCount() );
+            }
+
+            // the pattern fits on one page of a hot subject
+            final ILinkedDataFragment fromSubject =
+                    createFragmentFromSubject( subject, predicate, object, offset, limit );
+            if ( fromSubject != null ) {
+                hotRequests.incrementAndGet();
+                return fromSubject;
+            }
+
+            coldRequests.incrementAndGet();
+            final IDataSource backing = getBacking();
+            final ILinkedDataFragment fragment =
+                    backing.getRequestProcessor().createRequestedFragment( request );
+            if ( fragment instanceof ITriplePatternFragment
+                 && ((ITriplePatternFragment) fragment).getTotalSize() <= maxPatternSize
+                 && sketch.frequency( key ) >= promotionThreshold ) {
+                promote( key, backing, subject, predicate, object );
+            }
+            return fragment;
+        }
+
+        private ILinkedDataFragment createFragmentFromSubject(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            if ( offset > 0 || subject.isVariable()
+                 || predicate.isSpecificVariable() || object.isSpecificVariable() )
+                return null;
+
+            final HotPattern neighbourhood = hot.get(
+                    toKey( subject ) + " " + VARIABLE + " " + VARIABLE );
+            if ( neighbourhood == null )
+                return null;
+
+            final Model triples = neighbourhood.filter( null,
+                    predicate.isVariable() ? null : predicate.asConstantTerm().asNode(),
+                    object.isVariable() ? null : object.asConstantTerm().asNode() );
+            if ( triples.size() > limit )
+                return null;
+            if ( triples.isEmpty() )
+                return createEmptyTriplePatternFragment();
+            return createTriplePatternFragment( triples, triples.size(), true );
+        }
+
+    } // end of Worker
+
+    /**
+     * Loads the given pattern in the background, unless it is being loaded
+     * already or the loader is busy.
+     */
+    private void promote( final String key, final IDataSource backing,
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object )
+    {
+        if ( hot.containsKey( key ) || ! loading.add( key ) )
+            return;
+        try {
+            loader.execute( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final HotPattern pattern = load( backing, subject, predicate, object );
+                        if ( pattern != null )
+                            admit( key, pattern );
+                    }
+                    catch ( RuntimeException e ) {
+                        // the pattern stays cold and may be promoted later
+                    }
+                    finally {
+                        loading.remove( key );
+                    }
+                }
+            } );
+        }
+        catch ( RejectedExecutionException e ) {
+            loading.remove( key );
+        }
+    }
+
+    /**
+     * Copies all pages of a pattern from the backing data source.
+     *
+     * @return the pattern, or null if it has too many matches
+     */
+    private HotPattern load( final IDataSource backing,
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object )
+    {
+        final HotPattern.Builder builder = new HotPattern.Builder();
+        for ( long page = 1; ; page++ ) {
+            final ITriplePatternFragment fragment = (ITriplePatternFragment)
+                backing.getRequestProcessor().createRequestedFragment(
+                    new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "", "", true, page, subject, predicate, object ) );
+            try {
+                final int before = builder.size();
+                builder.startPage();
+                final StmtIterator triples = fragment.getTriples();
+                while ( triples.hasNext() )
+                    builder.add( triples.next().asTriple() );
+                if ( builder.size() > maxPatternSize )
+                    return null;
+                if ( fragment.isLastPage() || builder.size() == before )
+                    return builder.build();
+            }
+            finally {
+                try {
+                    fragment.close();
+                }
+                catch ( IOException e ) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a pattern to the hot tier if it fits the budget after demoting
+     * patterns that are accessed less frequently.
+     */
+    private synchronized void admit( final String key, final HotPattern pattern )
+    {
+        if ( pattern.getBytes() > heapBudget )
+            return;
+
+        final int frequency = sketch.frequency( key );
+        final List<String> victims = new ArrayList<String>();
+        long freed = 0;
+        if ( hotBytes + pattern.getBytes() > heapBudget ) {
+            final List<String> residents = new ArrayList<String>( hot.keySet() );
+            final int[] frequencies = new int[residents.size()];
+            for ( int i = 0; i < frequencies.length; i++ )
+                frequencies[i] = sketch.frequency( residents.get( i ) );
+            final List<Integer> order = new ArrayList<Integer>();
+            for ( int i = 0; i < frequencies.length; i++ )
+                order.add( i );
+            Collections.sort( order, new Comparator<Integer>() {
+                @Override
+                public int compare( final Integer a, final Integer b ) {
+                    return Integer.compare( frequencies[a], frequencies[b] );
+                }
+            } );
+
+            for ( int i : order ) {
+                if ( hotBytes - freed + pattern.getBytes() <= heapBudget )
+                    break;
+                if ( frequencies[i] >= frequency )
+                    return;
+                victims.add( residents.get( i ) );
+                freed += hot.get( residents.get( i ) ).getBytes();
+            }
+        }
+
+        for ( String victim : victims )
+            hot.remove( victim );
+        final HotPattern previous = hot.put( key, pattern );
+        if ( previous != null )
+            freed += previous.getBytes();
+        hotBytes += pattern.getBytes() - freed;
+        LOG.info( "Promoted {} of {} ({} triples) after demoting {} patterns; "
+                  + "{} patterns and {} bytes are hot, hit ratio {}",
+                  key, backingName, pattern.size(), victims.size(), hot.size(),
+                  hotBytes, String.format( "%.3f", getHitRatio() ) );
+    }
+
+    /**
+     * Returns the backing data source, looking it up on first use.
+     */
+    private IDataSource getBacking()
+    {
+        IDataSource resolved = backing;
+        if ( resolved == null ) {
+            resolved = DataSourceRegistry.get( backingName );
+            if ( resolved == null )
+                throw new IllegalStateException( "Unknown backing data source '" + backingName + "'." );
+            backing = resolved;
+        }
+        return resolved;
+    }
+
+    private static String toKey(
+                   final ITriplePatternElement<RDFNode,String,String> element )
+    {
+        if ( ! element.isVariable() ) {
+            final Node node = element.asConstantTerm().asNode();
+            return NodeFmtLib.str( node );
+        }
+        if ( element.isNamedVariable() )
+            return "?" + element.asNamedVariable();
+        if ( element.isAnonymousVariable() )
+            return "_:" + element.asAnonymousVariable();
+        return VARIABLE;
+    }
+
+}
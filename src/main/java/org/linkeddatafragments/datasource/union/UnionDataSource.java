@@ -0,0 +1,56 @@
+package org.linkeddatafragments.datasource.union;
+
+import java.util.List;
+
+import org.linkeddatafragments.datasource.DataSourceBase;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.fragments.IFragmentRequestParser;
+import org.linkeddatafragments.fragments.tpf.TPFRequestParserForJenaBackends;
+
+/**
+ * A data source of Basic Linked Data Fragments over the union of other
+ * configured data sources.
+ */
+public class UnionDataSource extends DataSourceBase {
+
+    /**
+     * The request processor
+     * 
+     */
+    protected final UnionRequestProcessorForTPFs requestProcessor;
+
+    /**
+     * Creates a new UnionDataSource.
+     *
+     * @param title title of the datasource
+     * @param description datasource description
+     * @param members the names of the member data sources
+     * @param deduplicate whether to drop triples that earlier members contain
+     * @param threads the number of threads that search the members
+     */
+    public UnionDataSource(String title, String description,
+                           List<String> members, boolean deduplicate,
+                           int threads) {
+        super(title, description);
+        requestProcessor = new UnionRequestProcessorForTPFs( members, deduplicate,
+                                                             threads );
+    }
+
+    @Override
+    public IFragmentRequestParser getRequestParser()
+    {
+        return TPFRequestParserForJenaBackends.getInstance();
+    }
+
+    @Override
+    public IFragmentRequestProcessor getRequestProcessor()
+    {
+        return requestProcessor;
+    }
+
+    @Override
+    public void close() {
+        requestProcessor.close();
+    }
+
+}
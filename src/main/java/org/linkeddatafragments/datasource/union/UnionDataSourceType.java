@@ -0,0 +1,49 @@
+package org.linkeddatafragments.datasource.union;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.exceptions.DataSourceCreationException;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * The type of Triple Pattern Fragment data sources that combine the data
+ * sources named in the <code>members</code> setting. Duplicate triples are
+ * removed if <code>deduplicate</code> is true. The members are searched by
+ * at most <code>threads</code> threads.
+ */
+public class UnionDataSourceType implements IDataSourceType
+{
+    @Override
+    public IDataSource createDataSource( final String title,
+                                         final String description,
+                                         final JsonObject settings )
+                                                     throws DataSourceCreationException
+    {
+        if ( ! settings.has("members") || ! settings.get("members").isJsonArray() )
+            throw new DataSourceCreationException( title, "No member data sources given." );
+
+        final List<String> members = new ArrayList<String>();
+        for ( JsonElement member : settings.getAsJsonArray("members") ) {
+            members.add( member.getAsString() );
+        }
+        if ( members.isEmpty() )
+            throw new DataSourceCreationException( title, "No member data sources given." );
+
+        final boolean deduplicate = settings.has("deduplicate")
+                && settings.getAsJsonPrimitive("deduplicate").getAsBoolean();
+
+        final int threads = settings.has("threads")
+                ? settings.getAsJsonPrimitive("threads").getAsInt()
+                : UnionRequestProcessorForTPFs.DEFAULT_THREADS;
+        if ( threads < 1 )
+            throw new DataSourceCreationException( title, "At least one thread is needed." );
+
+        return new UnionDataSource(title, description, members, deduplicate, threads);
+    }
+
+}
@@ -0,0 +1,392 @@
+package org.linkeddatafragments.datasource.union;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.rdf.model.impl.StmtIteratorImpl;
+
+import org.linkeddatafragments.datasource.AbstractRequestProcessorForTriplePatterns;
+import org.linkeddatafragments.datasource.DataSourceRegistry;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.ILookupDataSource;
+import org.linkeddatafragments.fragments.CancellationToken;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.TriplePatternElementFactory;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentBase;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+
+/**
+ * Implementation of {@link IFragmentRequestProcessor} that processes
+ * {@link ITriplePatternFragmentRequest}s over the union of other configured
+ * data sources, which are looked up by name in the
+ * {@link DataSourceRegistry} for every request, so that members that are
+ * registered again are picked up.
+ *
+ * Page <i>n</i> of the union consists of page <i>n</i> of every member, in
+ * the configured order of the members, so a page holds up to
+ * {@link ILinkedDataFragmentRequest#TRIPLESPERPAGE} triples per member and
+ * every member is asked for exactly one page, in parallel. This does not
+ * depend on the totals of the members, which may be estimates. The total of
+ * the union is the sum of their totals. Without the removal of duplicates,
+ * the union is a bag: a triple that several members contain is served once
+ * per member, also if these occurrences end up on the same page.
+ *
+ * The members are searched by a bounded pool of threads, which is shut down
+ * with the data source. If all threads are busy and the queue is full, the
+ * requesting thread searches the member itself; once the pool is shut down,
+ * requests fail.
+ *
+ * If duplicates are removed, a triple of a member is dropped when an earlier
+ * member contains it as well. Members that are an {@link ILookupDataSource}
+ * look the triple up directly; other members are asked for the fragment of
+ * the triple. The total then remains an upper bound.
+ */
+public class UnionRequestProcessorForTPFs
+    extends AbstractRequestProcessorForTriplePatterns<RDFNode,String,String>
+{
+
+    /**
+     * Default number of threads that search the members
+     */
+    public static final int DEFAULT_THREADS =
+                                 Runtime.getRuntime().availableProcessors();
+
+    private static final int QUEUE_SIZE = 256;
+
+    private static final TriplePatternElementFactory<RDFNode,String,String> elements =
+                            new TriplePatternElementFactory<RDFNode,String,String>();
+
+    private final List<String> memberNames;
+    private final boolean deduplicate;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates the request processor.
+     *
+     * @param memberNames the names of the member data sources, in paging order
+     * @param deduplicate whether to drop triples that earlier members contain
+     * @param threads the number of threads that search the members
+     */
+    public UnionRequestProcessorForTPFs( final List<String> memberNames,
+                                         final boolean deduplicate,
+                                         final int threads )
+    {
+        this.memberNames = new ArrayList<String>( memberNames );
+        this.deduplicate = deduplicate;
+        this.executor = new ThreadPoolExecutor( threads, threads,
+                60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>( QUEUE_SIZE ),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread( final Runnable r ) {
+                        final Thread thread = new Thread( r, "Union member search" );
+                        thread.setDaemon( true );
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy() );
+        this.executor.allowCoreThreadTimeOut( true );
+    }
+
+    @Override
+    public void close()
+    {
+        // the members are closed by their owner; requests that wait for
+        // searches that never started fail instead of waiting forever
+        for ( Runnable search : executor.shutdownNow() ) {
+            if ( search instanceof Future<?> )
+                ( (Future<?>) search ).cancel( false );
+        }
+    }
+
+    /**
+     * Submits a member search to the pool, or runs it in the requesting
+     * thread if the pool is busy.
+     */
+    private <T> Future<T> submit( final Callable<T> search )
+    {
+        try {
+            return executor.submit( search );
+        }
+        catch ( RejectedExecutionException e ) {
+            if ( executor.isShutdown() )
+                throw new IllegalStateException( "The data source was closed.", e );
+            final FutureTask<T> task = new FutureTask<T>( search );
+            task.run();
+            return task;
+        }
+    }
+
+    /**
+     *
+     * @param request
+     * @return
+     * @throws IllegalArgumentException
+     */
+    @Override
+    protected Worker getTPFSpecificWorker(
+            final ITriplePatternFragmentRequest<RDFNode,String,String> request )
+                                                throws IllegalArgumentException
+    {
+        return new Worker( request );
+    }
+
+    /**
+     * Worker class for unions
+     */
+    protected class Worker
+       extends AbstractRequestProcessorForTriplePatterns.Worker<RDFNode,String,String>
+    {
+
+        /**
+         * Create a Worker for a union
+         *
+         * @param req
+         */
+        public Worker(
+                final ITriplePatternFragmentRequest<RDFNode,String,String> req )
+        {
+            super( req );
+        }
+
+        /**
+         * Creates an {@link ILinkedDataFragment} from the members
+         *
+         * @param subject
+         * @param predicate
+         * @param object
+         * @param offset
+         * @param limit
+         * @return
+         */
+        @Override
+        protected ILinkedDataFragment createFragment(
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long offset,
+                   final long limit )
+        {
+            final List<IDataSource> members = getMembers();
+            final long pageNumber = offset / limit + 1;
+
+            // request the same page from every member
+            final List<Future<MemberPage>> requests = new ArrayList<Future<MemberPage>>();
+            for ( int i = 0; i < members.size(); i++ ) {
+                final List<IDataSource> earlier = members.subList( 0, i );
+                final IDataSource member = members.get( i );
+                requests.add( submit( new Callable<MemberPage>() {
+                    @Override
+                    public MemberPage call() {
+                        return getPage( member, earlier, subject, predicate,
+                                        object, pageNumber );
+                    }
+                } ) );
+            }
+
+            // a list rather than a model, which would merge the triples
+            // that several members serve on this page
+            final List<Statement> triples = new ArrayList<Statement>();
+            long totalSize = 0;
+            boolean isLastPage = true;
+            for ( Future<MemberPage> page : requests ) {
+                final MemberPage memberPage = get( page, request.getCancellationToken() );
+                triples.addAll( memberPage.triples );
+                totalSize += memberPage.totalSize;
+                isLastPage &= memberPage.isLastPage;
+            }
+
+            if ( totalSize == 0 ) {
+                return createEmptyTriplePatternFragment();
+            }
+            return new UnionFragment( triples, totalSize, request.getFragmentURL(),
+                                      request.getDatasetURL(), pageNumber,
+                                      isLastPage, members.size() );
+        }
+
+        private MemberPage getPage( final IDataSource member,
+                   final List<IDataSource> earlier,
+                   final ITriplePatternElement<RDFNode,String,String> subject,
+                   final ITriplePatternElement<RDFNode,String,String> predicate,
+                   final ITriplePatternElement<RDFNode,String,String> object,
+                   final long pageNumber )
+        {
+            final ITriplePatternFragment fragment = (ITriplePatternFragment)
+                    member.getRequestProcessor().createRequestedFragment(
+                        new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                            request.getFragmentURL(), request.getDatasetURL(),
+                            true, pageNumber, subject, predicate, object,
+                            request.getCancellationToken() ) );
+            try {
+                final List<Statement> triples = new ArrayList<Statement>();
+                final StmtIterator statements = fragment.getTriples();
+                while ( statements.hasNext() ) {
+                    request.getCancellationToken().check();
+                    final Statement statement = statements.next();
+                    if ( ! deduplicate || ! containedInAny( earlier, statement ) )
+                        triples.add( statement );
+                }
+                return new MemberPage( triples, fragment.getTotalSize(),
+                                       fragment.isLastPage() );
+            }
+            finally {
+                close( fragment );
+            }
+        }
+
+        private boolean containedInAny( final List<IDataSource> dataSources,
+                                        final Statement statement )
+        {
+            // blank nodes are local to a data source
+            if ( statement.getSubject().isAnon() || statement.getObject().isAnon() )
+                return false;
+
+            for ( IDataSource dataSource : dataSources ) {
+                if ( dataSource instanceof ILookupDataSource ) {
+                    if ( ( (ILookupDataSource) dataSource ).contains(
+                                                       statement.asTriple() ) )
+                        return true;
+                    continue;
+                }
+                final ILinkedDataFragment fragment =
+                    dataSource.getRequestProcessor().createRequestedFragment(
+                        new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                            request.getFragmentURL(), request.getDatasetURL(), false, 1L,
+                            elements.createConstantRDFTerm( statement.getSubject() ),
+                            elements.createConstantRDFTerm( statement.getPredicate() ),
+                            elements.createConstantRDFTerm( statement.getObject() ),
+                            request.getCancellationToken() ) );
+                try {
+                    if ( fragment.getTriples().hasNext() )
+                        return true;
+                }
+                finally {
+                    close( fragment );
+                }
+            }
+            return false;
+        }
+
+    } // end of Worker
+
+    /**
+     * Returns the members as they are currently registered.
+     */
+    private List<IDataSource> getMembers()
+    {
+        final List<IDataSource> resolved = new ArrayList<IDataSource>( memberNames.size() );
+        for ( String name : memberNames ) {
+            final IDataSource member = DataSourceRegistry.get( name );
+            if ( member == null )
+                throw new IllegalStateException( "Unknown member data source '" + name + "'." );
+            if ( member instanceof UnionDataSource )
+                throw new IllegalStateException( "The member data source '" + name + "' is a union itself." );
+            resolved.add( member );
+        }
+        return resolved;
+    }
+
+    private static void close( final ILinkedDataFragment fragment )
+    {
+        try {
+            fragment.close();
+        }
+        catch ( IOException e ) {
+            // ignore
+        }
+    }
+
+    /**
+     * Waits for the result of a member request, passing on its exceptions;
+     * if it failed, the other member requests are cancelled.
+     */
+    private static <T> T get( final Future<T> future,
+                              final CancellationToken cancellation )
+    {
+        try {
+            return future.get();
+        }
+        catch ( InterruptedException e ) {
+            cancellation.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( e );
+        }
+        catch ( ExecutionException e ) {
+            cancellation.cancel();
+            if ( e.getCause() instanceof RuntimeException )
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException( e.getCause() );
+        }
+        catch ( CancellationException e ) {
+            cancellation.cancel();
+            throw new IllegalStateException( "The data source was closed.", e );
+        }
+    }
+
+    /**
+     * The triples and metadata of a page of one member
+     */
+    private static class MemberPage
+    {
+        final List<Statement> triples;
+        final long totalSize;
+        final boolean isLastPage;
+
+        MemberPage( final List<Statement> triples, final long totalSize,
+                    final boolean isLastPage )
+        {
+            this.triples = triples;
+            this.totalSize = totalSize;
+            this.isLastPage = isLastPage;
+        }
+    }
+
+    /**
+     * A page of the union, which holds a page of every member.
+     */
+    private static class UnionFragment extends TriplePatternFragmentBase
+    {
+        private final List<Statement> triples;
+        private final int nMembers;
+
+        UnionFragment( final List<Statement> triples, final long totalSize,
+                       final String fragmentURL, final String datasetURL,
+                       final long pageNumber, final boolean isLastPage,
+                       final int nMembers )
+        {
+            super( totalSize, fragmentURL, datasetURL, pageNumber, isLastPage );
+            this.triples = triples;
+            this.nMembers = nMembers;
+        }
+
+        @Override
+        protected StmtIterator getNonEmptyStmtIterator()
+        {
+            return new StmtIteratorImpl( triples.iterator() );
+        }
+
+        @Override
+        public long getMaxPageSize()
+        {
+            return nMembers * ILinkedDataFragmentRequest.TRIPLESPERPAGE;
+        }
+    }
+
+}
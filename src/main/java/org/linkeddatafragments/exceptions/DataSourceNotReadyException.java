@@ -0,0 +1,17 @@
+package org.linkeddatafragments.exceptions;
+
+/**
+ * Exception thrown when a data source cannot answer a request yet, for
+ * instance because its indexes are still being generated.
+ * The request may succeed when it is retried later.
+ */
+public class DataSourceNotReadyException extends IllegalStateException {
+
+    /**
+     *
+     * @param message
+     */
+    public DataSourceNotReadyException(String message) {
+        super(message);
+    }
+}
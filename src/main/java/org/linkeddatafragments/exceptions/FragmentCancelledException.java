@@ -0,0 +1,16 @@
+package org.linkeddatafragments.exceptions;
+
+/**
+ * Exception thrown when the computation of a fragment is abandoned, because
+ * its deadline passed or it was cancelled.
+ */
+public class FragmentCancelledException extends IllegalStateException {
+
+    /**
+     *
+     * @param message
+     */
+    public FragmentCancelledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,117 @@
+package org.linkeddatafragments.fragments;
+
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+
+/**
+ * Signals that the computation of a fragment should stop, because its
+ * deadline passed or it was cancelled, for instance because the computation
+ * of another part of the fragment failed.
+ *
+ * Processors call {@link #check()} inside their loops, so that abandoned
+ * work stops within a few iterations; the clock is only read on every
+ * {@link #CLOCK_INTERVAL}th check.
+ */
+public final class CancellationToken
+{
+    /**
+     * A token without deadline that cannot be cancelled, for requests that
+     * are not made on behalf of a client
+     */
+    public final static CancellationToken NONE = new CancellationToken( 0L, false );
+
+    /**
+     * The number of checks per reading of the clock
+     */
+    public final static int CLOCK_INTERVAL = 64;
+
+    private final long timeout;
+    private final long deadline;
+    private final boolean cancellable;
+    private volatile boolean cancelled;
+    private volatile boolean expired;
+    private int checks;
+
+    /**
+     * Creates a token.
+     *
+     * @param timeout the time after which the computation is abandoned, in
+     *                milliseconds, or 0 for no deadline
+     */
+    public CancellationToken( final long timeout )
+    {
+        this( timeout, true );
+    }
+
+    private CancellationToken( final long timeout, final boolean cancellable )
+    {
+        this.timeout = Math.max( 0L, timeout );
+        this.deadline = System.nanoTime() + this.timeout * 1000000L;
+        this.cancellable = cancellable;
+    }
+
+    /**
+     * Cancels the computation; does nothing for {@link #NONE}.
+     */
+    public void cancel()
+    {
+        if ( cancellable )
+            cancelled = true;
+    }
+
+    /**
+     * Returns true if the computation was cancelled or its deadline passed.
+     *
+     * @return
+     */
+    public boolean isCancelled()
+    {
+        if ( cancelled || expired )
+            return true;
+        if ( timeout > 0 && System.nanoTime() - deadline >= 0 )
+            expired = true;
+        return expired;
+    }
+
+    /**
+     * Returns true if the computation was abandoned because its deadline
+     * passed, rather than because it was cancelled.
+     *
+     * @return
+     */
+    public boolean isExpired()
+    {
+        return isCancelled() && expired;
+    }
+
+    /**
+     * Returns the time left until the deadline.
+     *
+     * @return the time in milliseconds, or {@link Long#MAX_VALUE} if there
+     *         is no deadline
+     */
+    public long getRemainingMillis()
+    {
+        if ( timeout == 0 )
+            return Long.MAX_VALUE;
+        return Math.max( 0L, ( deadline - System.nanoTime() ) / 1000000L );
+    }
+
+    /**
+     * Throws an exception if the computation should stop; meant to be called
+     * for every step of a loop.
+     *
+     * @throws FragmentCancelledException if the computation was cancelled or
+     *                                    its deadline passed
+     */
+    public void check() throws FragmentCancelledException
+    {
+        // the count may get lost under contention, which only delays the
+        // reading of the clock
+        if ( cancelled || expired
+             || ( timeout > 0 && checks++ % CLOCK_INTERVAL == 0 && isCancelled() ) )
+            throw new FragmentCancelledException( expired
+                    ? "The fragment could not be computed within " + timeout + " ms."
+                    : "The computation of the fragment was cancelled." );
+    }
+
+}
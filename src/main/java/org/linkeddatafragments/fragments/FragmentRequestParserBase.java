@@ -1,5 +1,8 @@
 package org.linkeddatafragments.fragments;
 
+import java.util.List;
+import java.util.Locale;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.linkeddatafragments.config.ConfigReader;
@@ -118,6 +121,10 @@ abstract public class FragmentRequestParserBase implements IFragmentRequestParse
     // ----- HELPERS ---------
 
     /**
+     * Returns the configured base URL, or else the one the request was
+     * addressed to. The host name is normalized to lower case without a
+     * trailing dot, and replaced by the first configured host if it is not
+     * one of the configured hosts.
      *
      * @param request
      * @param config
@@ -128,14 +135,22 @@ abstract public class FragmentRequestParserBase implements IFragmentRequestParse
                                          final ConfigReader config ) {
         if (config.getBaseURL() != null) {
             return config.getBaseURL();
-        } else if ((request.getServerPort() == 80)
-                || (request.getServerPort() == 443)) {
-            return request.getScheme() + "://"
-                    + request.getServerName();
-        } else {
-            return request.getScheme() + "://"
-                    + request.getServerName() + ":" + request.getServerPort();
         }
+
+        String host = request.getServerName().toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if ((request.getServerPort() != 80)
+                && (request.getServerPort() != 443)) {
+            host = host + ":" + request.getServerPort();
+        }
+
+        final List<String> hosts = config.getHosts();
+        if (!hosts.isEmpty() && !hosts.contains(host)) {
+            host = hosts.get(0);
+        }
+        return request.getScheme().toLowerCase(Locale.ROOT) + "://" + host;
     }
 
 }
@@ -1,7 +1,12 @@
 package org.linkeddatafragments.fragments;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.rdf.model.impl.StmtIteratorImpl;
 
 /**
  * Represents any possible Linked Data Fragment.
@@ -75,4 +80,45 @@ public interface ILinkedDataFragment extends Closeable
      * @return 
      */
     StmtIterator getControls();
+
+    /**
+     * Returns the URI of the dataset to which this fragment belongs, or
+     * null if it is not known, in which case writers do not reuse the
+     * {@link #getDatasetDescription()} of other fragments.
+     *
+     * This default implementation returns null.
+     * @return
+     */
+    default String getDatasetURI() {
+        return null;
+    }
+
+    /**
+     * Returns an iterator over the part of the metadata and controls that
+     * describes the dataset rather than this fragment, such as its search
+     * form. It is the same for all fragments with the same
+     * {@link #getDatasetURI()}, so writers may serialize it once per dataset.
+     *
+     * This default implementation returns no statements, which leaves all
+     * metadata and controls to {@link #getFragmentDescription()}.
+     * @return
+     */
+    default StmtIterator getDatasetDescription() {
+        return new StmtIteratorImpl( Collections.<Statement>emptyIterator() );
+    }
+
+    /**
+     * Returns an iterator over the metadata and controls that are not part
+     * of {@link #getDatasetDescription()}, such as the size of this fragment
+     * and the links to its other pages.
+     *
+     * This default implementation returns the statements of
+     * {@link #getMetadata()} followed by those of {@link #getControls()}.
+     * @return
+     */
+    default StmtIterator getFragmentDescription() {
+        final List<Statement> output = new ArrayList<>( getMetadata().toList() );
+        output.addAll( getControls().toList() );
+        return new StmtIteratorImpl( output.iterator() );
+    }
 }
@@ -45,4 +45,29 @@ public interface ILinkedDataFragmentRequest
      * @return 
      */
     long getPageNumber();
+
+    /**
+     * Returns the token through which the computation of the requested LDF
+     * is abandoned when its deadline passes or it is cancelled.
+     *
+     * This default implementation returns {@link CancellationToken#NONE}.
+     * @return
+     */
+    default CancellationToken getCancellationToken() {
+        return CancellationToken.NONE;
+    }
+
+    /**
+     * Returns a request for the same LDF as this one, with the given token;
+     * requests are immutable and may be shared, so the token of each HTTP
+     * request is set on a copy.
+     *
+     * This default implementation returns this request, which keeps the
+     * computation of requests that do not support tokens unbounded.
+     * @param token
+     * @return
+     */
+    default ILinkedDataFragmentRequest withCancellationToken( CancellationToken token ) {
+        return this;
+    }
 }
@@ -1,13 +1,16 @@
 package org.linkeddatafragments.fragments;
 
-import org.apache.jena.rdf.model.Literal;
-import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.apache.http.client.utils.URIBuilder;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.rdf.model.impl.StmtIteratorImpl;
 import org.linkeddatafragments.util.CommonResources;
 
 
@@ -88,101 +91,175 @@ public abstract class LinkedDataFragmentBase implements ILinkedDataFragment
     }
 
     /**
-     * This implementation uses {@link #addMetadata(Model)}, which should be
-     * overridden in subclasses (instead of overriding this method). 
+     * This implementation uses {@link #addDatasetMetadata(List)} and
+     * {@link #addMetadata(List)}, which should be overridden in subclasses
+     * (instead of overriding this method).
      * @return 
      */
     @Override
     public StmtIterator getMetadata()
     {
-        final Model output = ModelFactory.createDefaultModel();
+        final List<Statement> output = new ArrayList<>();
+        addDatasetMetadata( output );
         addMetadata( output );
-        return output.listStatements();
+        return new StmtIteratorImpl( output.iterator() );
     }
 
     /**
-     * This implementation uses {@link #addControls(Model)}, which should be
-     * overridden in subclasses (instead of overriding this method). 
+     * This implementation uses {@link #addControls(List)} and
+     * {@link #addDatasetControls(List)}, which should be overridden in
+     * subclasses (instead of overriding this method).
      * @return 
      */
     @Override
     public StmtIterator getControls()
     {
-        final Model output = ModelFactory.createDefaultModel();
+        final List<Statement> output = new ArrayList<>();
+        addControls( output );
+        addDatasetControls( output );
+        return new StmtIteratorImpl( output.iterator() );
+    }
+
+    /**
+     * This implementation uses {@link #addDatasetMetadata(List)} and
+     * {@link #addDatasetControls(List)}.
+     * @return 
+     */
+    @Override
+    public StmtIterator getDatasetDescription()
+    {
+        final List<Statement> output = new ArrayList<>();
+        addDatasetMetadata( output );
+        addDatasetControls( output );
+        return new StmtIteratorImpl( output.iterator() );
+    }
+
+    /**
+     * This implementation uses {@link #addMetadata(List)} and
+     * {@link #addControls(List)}.
+     * @return 
+     */
+    @Override
+    public StmtIterator getFragmentDescription()
+    {
+        final List<Statement> output = new ArrayList<>();
+        addMetadata( output );
         addControls( output );
-        return output.listStatements();
+        return new StmtIteratorImpl( output.iterator() );
     }
 
     /**
-     * Adds some basic metadata to the given RDF model.
+     * Adds the metadata about the dataset to the given list; these must only
+     * depend on {@link #getDatasetURI()}.
      * This method may be overridden in subclasses.
-     * @param model
+     * @param statements
      */
-    public void addMetadata( final Model model )
+    protected void addDatasetMetadata( final List<Statement> statements )
     {
-        final Resource datasetId = model.createResource( getDatasetURI() );
-        final Resource fragmentId = model.createResource( fragmentURL );
-
-        datasetId.addProperty( CommonResources.RDF_TYPE, CommonResources.VOID_DATASET );
-        datasetId.addProperty( CommonResources.RDF_TYPE, CommonResources.HYDRA_COLLECTION );
-        datasetId.addProperty( CommonResources.VOID_SUBSET, fragmentId );
-        
-        Literal itemsPerPage = model.createTypedLiteral(this.getMaxPageSize());
-        datasetId.addProperty( CommonResources.HYDRA_ITEMSPERPAGE, itemsPerPage);
-
-        fragmentId.addProperty( CommonResources.RDF_TYPE, CommonResources.HYDRA_COLLECTION );
-        fragmentId.addProperty( CommonResources.RDF_TYPE, CommonResources.HYDRA_PAGEDCOLLECTION );
+        final Resource datasetId = ResourceFactory.createResource( getDatasetURI() );
+
+        statements.add( createStatement( datasetId, CommonResources.RDF_TYPE, CommonResources.VOID_DATASET ) );
+        statements.add( createStatement( datasetId, CommonResources.RDF_TYPE, CommonResources.HYDRA_COLLECTION ) );
     }
 
     /**
-     * Adds an RDF description of page links to the given RDF model.
+     * Adds some basic metadata about this fragment to the given list.
      * This method may be overridden in subclasses.
-     * @param model
+     * @param statements
      */
-    public void addControls( final Model model )
+    protected void addMetadata( final List<Statement> statements )
     {
-        final URIBuilder pagedURL;
-        try {
-            pagedURL = new URIBuilder( fragmentURL );
-        }
-        catch ( URISyntaxException e ) {
-            throw new IllegalArgumentException( e );
-        }
+        final Resource datasetId = ResourceFactory.createResource( getDatasetURI() );
+        final Resource fragmentId = ResourceFactory.createResource( fragmentURL );
+
+        statements.add( createStatement( datasetId, CommonResources.VOID_SUBSET, fragmentId ) );
 
-        final Resource fragmentId = model.createResource( fragmentURL );
+        Literal itemsPerPage = ResourceFactory.createTypedLiteral( this.getMaxPageSize() );
+        statements.add( createStatement( datasetId, CommonResources.HYDRA_ITEMSPERPAGE, itemsPerPage ) );
 
-        final Resource firstPageId =
-                model.createResource(
-                        pagedURL.setParameter(ILinkedDataFragmentRequest.PARAMETERNAME_PAGE,
-                                              "1").toString() );
+        statements.add( createStatement( fragmentId, CommonResources.RDF_TYPE, CommonResources.HYDRA_COLLECTION ) );
+        statements.add( createStatement( fragmentId, CommonResources.RDF_TYPE, CommonResources.HYDRA_PAGEDCOLLECTION ) );
+    }
 
-        fragmentId.addProperty( CommonResources.HYDRA_FIRSTPAGE, firstPageId );
+    /**
+     * Adds the controls of the dataset to the given list; these must only
+     * depend on {@link #getDatasetURI()}. Does nothing by default.
+     * This method may be overridden in subclasses.
+     * @param statements
+     */
+    protected void addDatasetControls( final List<Statement> statements ) {}
+
+    /**
+     * Adds an RDF description of page links to the given list.
+     * This method may be overridden in subclasses.
+     * @param statements
+     */
+    protected void addControls( final List<Statement> statements )
+    {
+        final String pageURL = getPageURLPrefix( fragmentURL ) +
+                               ILinkedDataFragmentRequest.PARAMETERNAME_PAGE + "=";
+        final Resource fragmentId = ResourceFactory.createResource( fragmentURL );
+
+        final Resource firstPageId = ResourceFactory.createResource( pageURL + "1" );
+        statements.add( createStatement( fragmentId, CommonResources.HYDRA_FIRSTPAGE, firstPageId ) );
 
         if ( pageNumber > 1) {
-            final String prevPageNumber = Long.toString( pageNumber - 1 );
             final Resource prevPageId =
-                    model.createResource(
-                            pagedURL.setParameter(ILinkedDataFragmentRequest.PARAMETERNAME_PAGE,
-                                                  prevPageNumber).toString() );
+                    ResourceFactory.createResource( pageURL + ( pageNumber - 1 ) );
 
-            fragmentId.addProperty( CommonResources.HYDRA_PREVIOUSPAGE, prevPageId );
+            statements.add( createStatement( fragmentId, CommonResources.HYDRA_PREVIOUSPAGE, prevPageId ) );
         }
 
         if ( ! isLastPage ) {
-            final String nextPageNumber = Long.toString( pageNumber + 1 );
             final Resource nextPageId =
-                    model.createResource(
-                            pagedURL.setParameter(ILinkedDataFragmentRequest.PARAMETERNAME_PAGE,
-                                                  nextPageNumber).toString() );
+                    ResourceFactory.createResource( pageURL + ( pageNumber + 1 ) );
 
-            fragmentId.addProperty( CommonResources.HYDRA_NEXTPAGE, nextPageId );
+            statements.add( createStatement( fragmentId, CommonResources.HYDRA_NEXTPAGE, nextPageId ) );
         }
     }
 
     /**
-     *
+     * Creates a statement that belongs to no model.
+     * @param subject
+     * @param predicate
+     * @param object
      * @return
      */
+    protected static Statement createStatement( final Resource subject,
+                                                final Property predicate,
+                                                final RDFNode object )
+    {
+        return ResourceFactory.createStatement( subject, predicate, object );
+    }
+
+    /**
+     * Returns the given URL without its page parameter, ending with the
+     * character after which a new parameter can be appended.
+     */
+    private static String getPageURLPrefix( final String url )
+    {
+        final int query = url.indexOf( '?' );
+        if ( query < 0 )
+            return url + "?";
+
+        final String name = ILinkedDataFragmentRequest.PARAMETERNAME_PAGE;
+        final StringBuilder prefix = new StringBuilder( url.length() + 1 );
+        prefix.append( url, 0, query + 1 );
+        int start = query + 1;
+        while ( start < url.length() ) {
+            int end = url.indexOf( '&', start );
+            if ( end < 0 )
+                end = url.length();
+            final boolean isPage = url.startsWith( name, start ) &&
+                    ( start + name.length() == end || url.charAt( start + name.length() ) == '=' );
+            if ( end > start && ! isPage )
+                prefix.append( url, start, end ).append( '&' );
+            start = end + 1;
+        }
+        return prefix.toString();
+    }
+
+    @Override
     public String getDatasetURI() {
         return datasetURL + "#dataset";
     }
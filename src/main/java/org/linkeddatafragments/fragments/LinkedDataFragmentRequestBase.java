@@ -28,6 +28,11 @@ public abstract class LinkedDataFragmentRequestBase
      *
      */
     public final long pageNumber;
+
+    /**
+     *
+     */
+    public final CancellationToken cancellationToken;
     
     /**
      *
@@ -40,11 +45,30 @@ public abstract class LinkedDataFragmentRequestBase
                                           final String datasetURL,
                                           final boolean pageNumberWasRequested,
                                           final long pageNumber )
+    {
+        this( fragmentURL, datasetURL, pageNumberWasRequested, pageNumber,
+              CancellationToken.NONE );
+    }
+
+    /**
+     *
+     * @param fragmentURL
+     * @param datasetURL
+     * @param pageNumberWasRequested
+     * @param pageNumber
+     * @param cancellationToken
+     */
+    public LinkedDataFragmentRequestBase( final String fragmentURL,
+                                          final String datasetURL,
+                                          final boolean pageNumberWasRequested,
+                                          final long pageNumber,
+                                          final CancellationToken cancellationToken )
     {
         this.fragmentURL = fragmentURL;
         this.datasetURL = datasetURL;
         this.pageNumberWasRequested = pageNumberWasRequested;
         this.pageNumber = (pageNumberWasRequested) ? pageNumber : 1L;
+        this.cancellationToken = cancellationToken;
     }
 
     @Override
@@ -67,6 +91,11 @@ public abstract class LinkedDataFragmentRequestBase
         return pageNumber;
     }
 
+    @Override
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
     @Override
     public String toString()
     {
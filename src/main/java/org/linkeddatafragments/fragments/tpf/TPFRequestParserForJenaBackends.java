@@ -11,7 +11,14 @@ import org.linkeddatafragments.util.TriplePatternElementParserForJena;
 public class TPFRequestParserForJenaBackends
     extends TPFRequestParser<RDFNode,String,String>
 {
-    private static TPFRequestParserForJenaBackends instance = null;
+    /**
+     * Holds the instance, which is created when it is first requested.
+     */
+    private static class InstanceHolder
+    {
+        static final TPFRequestParserForJenaBackends instance =
+                                         new TPFRequestParserForJenaBackends();
+    }
 
     /**
      *
@@ -19,10 +26,7 @@ public class TPFRequestParserForJenaBackends
      */
     public static TPFRequestParserForJenaBackends getInstance()
     {
-        if ( instance == null ) {
-            instance = new TPFRequestParserForJenaBackends();
-        }
-        return instance;
+        return InstanceHolder.instance;
     }
 
     /**
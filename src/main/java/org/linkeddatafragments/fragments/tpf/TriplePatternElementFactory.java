@@ -16,6 +16,11 @@ package org.linkeddatafragments.fragments.tpf;
  */
 public class TriplePatternElementFactory<CTT,NVT,AVT>
 {
+    /**
+     * Unspecified variables carry no state, so all of them are the same.
+     */
+    private final ITriplePatternElement<CTT,NVT,AVT> unspecifiedVariable =
+                                         new UnspecifiedVariable<CTT,NVT,AVT>();
 
     /**
      *
@@ -23,7 +28,7 @@ public class TriplePatternElementFactory<CTT,NVT,AVT>
      */
     public ITriplePatternElement<CTT,NVT,AVT> createUnspecifiedVariable()
     {
-        return new UnspecifiedVariable<CTT,NVT,AVT>();
+        return unspecifiedVariable;
     }
 
     /**
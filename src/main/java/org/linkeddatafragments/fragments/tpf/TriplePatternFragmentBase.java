@@ -1,10 +1,11 @@
 package org.linkeddatafragments.fragments.tpf;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 import org.apache.jena.datatypes.xsd.XSDDatatype;
 import org.apache.jena.rdf.model.Literal;
-import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.util.iterator.NiceIterator;
@@ -86,49 +87,55 @@ abstract public class TriplePatternFragmentBase extends LinkedDataFragmentBase
     }
 
     @Override
-    public void addMetadata( final Model model )
+    protected void addMetadata( final List<Statement> statements )
     {
-        super.addMetadata( model );
+        super.addMetadata( statements );
 
-        final Resource fragmentId = model.createResource( fragmentURL );
+        final Resource fragmentId = ResourceFactory.createResource( fragmentURL );
 
-        final Literal totalTyped = model.createTypedLiteral( totalSize,
-                                                      XSDDatatype.XSDinteger );
-        final Literal limitTyped = model.createTypedLiteral( getMaxPageSize(),
-                                                      XSDDatatype.XSDinteger );
+        final Literal totalTyped = ResourceFactory.createTypedLiteral(
+                Long.toString( totalSize ), XSDDatatype.XSDinteger );
+        final Literal limitTyped = ResourceFactory.createTypedLiteral(
+                Long.toString( getMaxPageSize() ), XSDDatatype.XSDinteger );
 
-        fragmentId.addLiteral( CommonResources.VOID_TRIPLES, totalTyped );
-        fragmentId.addLiteral( CommonResources.HYDRA_TOTALITEMS, totalTyped );
-        fragmentId.addLiteral( CommonResources.HYDRA_ITEMSPERPAGE, limitTyped );
+        statements.add( createStatement( fragmentId, CommonResources.VOID_TRIPLES, totalTyped ) );
+        statements.add( createStatement( fragmentId, CommonResources.HYDRA_TOTALITEMS, totalTyped ) );
+        statements.add( createStatement( fragmentId, CommonResources.HYDRA_ITEMSPERPAGE, limitTyped ) );
     }
 
     @Override
-    public void addControls( final Model model )
+    protected void addDatasetControls( final List<Statement> statements )
     {
-        super.addControls( model );
+        super.addDatasetControls( statements );
 
-        final Resource datasetId = model.createResource( getDatasetURI() );
+        final Resource datasetId = ResourceFactory.createResource( getDatasetURI() );
 
-        final Resource triplePattern = model.createResource();
-        final Resource subjectMapping = model.createResource();
-        final Resource predicateMapping = model.createResource();
-        final Resource objectMapping = model.createResource();
+        final Resource triplePattern = ResourceFactory.createResource();
+        final Resource subjectMapping = ResourceFactory.createResource();
+        final Resource predicateMapping = ResourceFactory.createResource();
+        final Resource objectMapping = ResourceFactory.createResource();
 
-        datasetId.addProperty( CommonResources.HYDRA_SEARCH, triplePattern );
+        statements.add( createStatement( datasetId, CommonResources.HYDRA_SEARCH, triplePattern ) );
 
-        triplePattern.addProperty( CommonResources.HYDRA_TEMPLATE, getTemplate() );
-        triplePattern.addProperty( CommonResources.HYDRA_MAPPING, subjectMapping );
-        triplePattern.addProperty( CommonResources.HYDRA_MAPPING, predicateMapping );
-        triplePattern.addProperty( CommonResources.HYDRA_MAPPING, objectMapping );
+        statements.add( createStatement( triplePattern, CommonResources.HYDRA_TEMPLATE,
+                ResourceFactory.createPlainLiteral( getTemplate() ) ) );
+        statements.add( createStatement( triplePattern, CommonResources.HYDRA_MAPPING, subjectMapping ) );
+        statements.add( createStatement( triplePattern, CommonResources.HYDRA_MAPPING, predicateMapping ) );
+        statements.add( createStatement( triplePattern, CommonResources.HYDRA_MAPPING, objectMapping ) );
 
-        subjectMapping.addProperty( CommonResources.HYDRA_VARIABLE, ITriplePatternFragmentRequest.PARAMETERNAME_SUBJ );
-        subjectMapping.addProperty( CommonResources.HYDRA_PROPERTY, CommonResources.RDF_SUBJECT );
+        addMapping( statements, subjectMapping, ITriplePatternFragmentRequest.PARAMETERNAME_SUBJ, CommonResources.RDF_SUBJECT );
+        addMapping( statements, predicateMapping, ITriplePatternFragmentRequest.PARAMETERNAME_PRED, CommonResources.RDF_PREDICATE );
+        addMapping( statements, objectMapping, ITriplePatternFragmentRequest.PARAMETERNAME_OBJ, CommonResources.RDF_OBJECT );
+    }
 
-        predicateMapping.addProperty( CommonResources.HYDRA_VARIABLE, ITriplePatternFragmentRequest.PARAMETERNAME_PRED );
-        predicateMapping.addProperty( CommonResources.HYDRA_PROPERTY, CommonResources.RDF_PREDICATE );
-        
-        objectMapping.addProperty( CommonResources.HYDRA_VARIABLE, ITriplePatternFragmentRequest.PARAMETERNAME_OBJ );
-        objectMapping.addProperty( CommonResources.HYDRA_PROPERTY, CommonResources.RDF_OBJECT );
+    private static void addMapping( final List<Statement> statements,
+                                    final Resource mapping,
+                                    final String variable,
+                                    final Resource property )
+    {
+        statements.add( createStatement( mapping, CommonResources.HYDRA_VARIABLE,
+                ResourceFactory.createPlainLiteral( variable ) ) );
+        statements.add( createStatement( mapping, CommonResources.HYDRA_PROPERTY, property ) );
     }
 
     /**
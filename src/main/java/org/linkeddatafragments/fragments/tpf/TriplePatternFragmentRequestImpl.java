@@ -1,5 +1,6 @@
 package org.linkeddatafragments.fragments.tpf;
 
+import org.linkeddatafragments.fragments.CancellationToken;
 import org.linkeddatafragments.fragments.LinkedDataFragmentRequestBase;
 
 /**
@@ -48,7 +49,32 @@ public class TriplePatternFragmentRequestImpl<CTT,NVT,AVT>
                                              final ITriplePatternElement<CTT,NVT,AVT> predicate,
                                              final ITriplePatternElement<CTT,NVT,AVT> object )
     {
-        super( fragmentURL, datasetURL, pageNumberWasRequested, pageNumber );
+        this( fragmentURL, datasetURL, pageNumberWasRequested, pageNumber,
+              subject, predicate, object, CancellationToken.NONE );
+    }
+
+    /**
+     *
+     * @param fragmentURL
+     * @param datasetURL
+     * @param pageNumberWasRequested
+     * @param pageNumber
+     * @param subject
+     * @param predicate
+     * @param object
+     * @param cancellationToken
+     */
+    public TriplePatternFragmentRequestImpl( final String fragmentURL,
+                                             final String datasetURL,
+                                             final boolean pageNumberWasRequested,
+                                             final long pageNumber,
+                                             final ITriplePatternElement<CTT,NVT,AVT> subject,
+                                             final ITriplePatternElement<CTT,NVT,AVT> predicate,
+                                             final ITriplePatternElement<CTT,NVT,AVT> object,
+                                             final CancellationToken cancellationToken )
+    {
+        super( fragmentURL, datasetURL, pageNumberWasRequested, pageNumber,
+               cancellationToken );
 
         if ( subject == null )
             throw new IllegalArgumentException();
@@ -79,6 +105,15 @@ public class TriplePatternFragmentRequestImpl<CTT,NVT,AVT>
         return object;
     }
 
+    @Override
+    public TriplePatternFragmentRequestImpl<CTT,NVT,AVT> withCancellationToken(
+                                          final CancellationToken token )
+    {
+        return new TriplePatternFragmentRequestImpl<CTT,NVT,AVT>( fragmentURL,
+                datasetURL, pageNumberWasRequested, pageNumber,
+                subject, predicate, object, token );
+    }
+
     @Override
     public String toString()
     {
@@ -5,8 +5,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -16,17 +18,30 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.riot.Lang;
+import org.eclipse.jetty.io.EofException;
 import org.linkeddatafragments.config.ConfigReader;
 import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceRegistry;
 import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
 import org.linkeddatafragments.datasource.IDataSource;
 import org.linkeddatafragments.datasource.IDataSourceType;
+import org.linkeddatafragments.datasource.IUpdatableDataSource;
 import org.linkeddatafragments.datasource.index.IndexDataSource;
+import org.linkeddatafragments.datasource.statistics.StatisticsJob;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
 import org.linkeddatafragments.exceptions.DataSourceNotFoundException;
+import org.linkeddatafragments.exceptions.DataSourceNotReadyException;
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+import org.linkeddatafragments.fragments.CancellationToken;
 import org.linkeddatafragments.fragments.FragmentRequestParserBase;
 import org.linkeddatafragments.fragments.ILinkedDataFragment;
 import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
-import org.linkeddatafragments.util.MIMEParse;
+import org.linkeddatafragments.util.BoundedCache;
+import org.linkeddatafragments.util.ByteArrayServletOutputStream;
+import org.linkeddatafragments.util.MediaTypeRegistry;
+import org.linkeddatafragments.util.ResponseBuffer;
+import org.linkeddatafragments.util.ResponseBufferPool;
+import org.linkeddatafragments.views.BinaryRdf;
 import org.linkeddatafragments.views.ILinkedDataFragmentWriter;
 import org.linkeddatafragments.views.LinkedDataFragmentWriterFactory;
 
@@ -50,7 +65,59 @@ public class LinkedDataFragmentServlet extends HttpServlet {
 
     private ConfigReader config;
     private final HashMap<String, IDataSource> dataSources = new HashMap<>();
-    private final Collection<String> mimeTypes = new ArrayList<>();
+
+    /**
+     * The time within which fragments of a data source must be computed, in
+     * milliseconds, for the data sources that are configured with a timeout
+     */
+    private final HashMap<IDataSource, Long> timeouts = new HashMap<>();
+
+    private MediaTypeRegistry<ILinkedDataFragmentWriter> writers;
+
+    /**
+     * The maximum number of distinct Accept headers whose negotiated
+     * mimeType is remembered
+     */
+    private final static int MAX_ACCEPT_HEADERS = 256;
+
+    /**
+     * The maximum number of base URLs for which an index is kept; the base URL
+     * depends on the Host header unless it or the allowed hosts are
+     * configured, so the least recently used indexes are dropped.
+     */
+    private final static int MAX_INDEXES = 16;
+
+    private final Map<String, IndexDataSource> indexes =
+            new LinkedHashMap<String, IndexDataSource>(MAX_INDEXES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, IndexDataSource> eldest) {
+                    return size() > MAX_INDEXES;
+                }
+            };
+
+    private StatisticsJob statistics;
+    private Thread statisticsThread;
+
+    /**
+     * The number of arrays kept for assembling responses, and the size of
+     * the largest response that is assembled before it is sent.
+     */
+    private final static int RESPONSE_BUFFERS = 64;
+    private final static int MAX_BUFFERED_RESPONSE = 1024 * 1024;
+
+    private final ResponseBufferPool responseBuffers =
+            new ResponseBufferPool(RESPONSE_BUFFERS, MAX_BUFFERED_RESPONSE);
+
+    /**
+     * The maximum number of parsed requests that are kept, and the length of
+     * the longest query string whose request is kept; long query strings
+     * rarely repeat.
+     */
+    private final static int MAX_PARSED_REQUESTS = 4096;
+    private final static int MAX_CACHED_QUERY_LENGTH = 2048;
+
+    private final BoundedCache<ParsedRequestKey, ILinkedDataFragmentRequest> parsedRequests =
+            new BoundedCache<>(MAX_PARSED_REQUESTS);
 
     private File getConfigFile(ServletConfig config) throws IOException {
         String path = config.getServletContext().getRealPath("/");
@@ -91,15 +158,52 @@ public class LinkedDataFragmentServlet extends HttpServlet {
 
             // register data sources
             for (Entry<String, JsonObject> dataSource : config.getDataSources().entrySet()) {
-                dataSources.put(dataSource.getKey(), DataSourceFactory.create(dataSource.getValue()));
+                final IDataSource created = DataSourceFactory.create(dataSource.getValue());
+                dataSources.put(dataSource.getKey(), created);
+                if (dataSource.getValue().has("timeout")) {
+                    timeouts.put(created, dataSource.getValue().get("timeout").getAsLong());
+                }
+                DataSourceRegistry.register(dataSource.getKey(), created);
             }
 
-            // register content types
-            MIMEParse.register("text/html");
-            MIMEParse.register(Lang.TTL.getHeaderString());
-            MIMEParse.register(Lang.JSONLD.getHeaderString());
-            MIMEParse.register(Lang.NTRIPLES.getHeaderString());
-            MIMEParse.register(Lang.RDFXML.getHeaderString());
+            // read the persisted statistics, and compute the missing ones in
+            // the background if this is enabled; the indexes are rebuilt
+            // whenever some are added
+            statistics = new StatisticsJob(dataSources, config.getStatisticsThreads());
+            statistics.loadPersisted();
+            if (config.getStatisticsThreads() > 0) {
+                statisticsThread = new Thread(statistics, "VoID statistics");
+                statisticsThread.setDaemon(true);
+                statisticsThread.setPriority(Thread.MIN_PRIORITY);
+                statisticsThread.start();
+            }
+
+            // forget what was parsed for the data sources of an earlier
+            // configuration, and build the index up front when its base URL
+            // is known
+            parsedRequests.clear();
+            synchronized (indexes) {
+                indexes.clear();
+            }
+            if (config.getBaseURL() != null) {
+                getIndex(config.getBaseURL());
+            }
+
+            // register content types; text/html comes first, because it is
+            // the fallback, and the binary format is never the best match
+            // for wildcards, which go to the last one
+            final List<String> mimeTypes = new ArrayList<>();
+            mimeTypes.add("text/html");
+            mimeTypes.add(BinaryRdf.MIME_TYPE);
+            mimeTypes.add(Lang.TTL.getHeaderString());
+            mimeTypes.add(Lang.JSONLD.getHeaderString());
+            mimeTypes.add(Lang.NTRIPLES.getHeaderString());
+            mimeTypes.add(Lang.RDFXML.getHeaderString());
+
+            // create the writers, which are shared by all requests
+            writers = new MediaTypeRegistry<>(
+                    LinkedDataFragmentWriterFactory.createAll(config.getPrefixes(), dataSources, mimeTypes),
+                    MAX_ACCEPT_HEADERS);
         } catch (Exception e) {
             throw new ServletException(e);
         }
@@ -111,6 +215,12 @@ public class LinkedDataFragmentServlet extends HttpServlet {
     @Override
     public void destroy()
     {
+        if ( statisticsThread != null ) {
+            statisticsThread.interrupt();
+        }
+        for ( String name : dataSources.keySet() ) {
+            DataSourceRegistry.unregister( name );
+        }
         for ( IDataSource dataSource : dataSources.values() ) {
             try {
                 dataSource.close();
@@ -119,6 +229,8 @@ public class LinkedDataFragmentServlet extends HttpServlet {
                 // ignore
             }
         }   
+        // the parsed requests refer to the closed data sources
+        parsedRequests.clear();
     }
 
     /**
@@ -138,7 +250,7 @@ public class LinkedDataFragmentServlet extends HttpServlet {
 
         if (path.equals("/") || path.isEmpty()) {
             final String baseURL = FragmentRequestParserBase.extractBaseURL(request, config);
-            return new IndexDataSource(baseURL, dataSources);
+            return getIndex(baseURL);
         }
 
         String dataSourceName = path.substring(1);
@@ -149,6 +261,127 @@ public class LinkedDataFragmentServlet extends HttpServlet {
         return dataSource;
     }
 
+    /**
+     * Get the index of all data sources for the given base URL
+     *
+     * @param baseURL
+     * @return
+     */
+    private IndexDataSource getIndex(String baseURL) {
+        final Map<String, VoidStatistics> available = statistics.getStatistics();
+        synchronized (indexes) {
+            final IndexDataSource index = indexes.get(baseURL);
+            if (index != null && index.getStatisticsCount() == available.size()) {
+                return index;
+            }
+        }
+
+        final IndexDataSource created = new IndexDataSource(baseURL, dataSources,
+                new HashMap<>(available));
+        synchronized (indexes) {
+            indexes.put(baseURL, created);
+        }
+        return created;
+    }
+
+    /**
+     * Parses the request for a fragment of the given data source, or returns
+     * the request that was parsed before for the same query string and base
+     * URL; parsed requests are immutable, so they can be shared.
+     *
+     * @param dataSource
+     * @param request
+     * @return
+     */
+    private ILinkedDataFragmentRequest parseRequest(IDataSource dataSource,
+                                                    HttpServletRequest request) {
+        final String query = request.getQueryString();
+        if (query != null && query.length() > MAX_CACHED_QUERY_LENGTH) {
+            return dataSource.getRequestParser().parseIntoFragmentRequest(request, config);
+        }
+        final ParsedRequestKey key = new ParsedRequestKey(dataSource, query,
+                FragmentRequestParserBase.extractBaseURL(request, config));
+        final ILinkedDataFragmentRequest parsed = parsedRequests.get(key);
+        if (parsed != null) {
+            return parsed;
+        }
+        return parsedRequests.put(key,
+                dataSource.getRequestParser().parseIntoFragmentRequest(request, config));
+    }
+
+    /**
+     * Identifies a parsed request by everything that it is parsed from: the
+     * data source, which determines the path, the query string and the base
+     * URL.
+     */
+    private static final class ParsedRequestKey {
+
+        private final IDataSource dataSource;
+        private final String query;
+        private final String baseURL;
+        private final int hash;
+
+        ParsedRequestKey(IDataSource dataSource, String query, String baseURL) {
+            this.dataSource = dataSource;
+            this.query = query;
+            this.baseURL = baseURL;
+            this.hash = (System.identityHashCode(dataSource) * 31
+                         + (query == null ? 0 : query.hashCode())) * 31
+                         + baseURL.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ParsedRequestKey)) {
+                return false;
+            }
+            final ParsedRequestKey key = (ParsedRequestKey) other;
+            return dataSource == key.dataSource
+                    && hash == key.hash
+                    && (query == null ? key.query == null : query.equals(key.query))
+                    && baseURL.equals(key.baseURL);
+        }
+    }
+
+    /**
+     * Writes the first page of the index, which is serialized only once per
+     * media type.
+     *
+     * @param index
+     * @param request
+     * @param response
+     * @param writer
+     * @param mimeType
+     * @throws Exception
+     */
+    private void writeIndex(IndexDataSource index, HttpServletRequest request,
+                            HttpServletResponse response,
+                            ILinkedDataFragmentWriter writer, String mimeType)
+            throws Exception {
+        byte[] body = index.getResponse(mimeType);
+        if (body == null) {
+            final ILinkedDataFragmentRequest ldfRequest =
+                    index.getRequestParser().parseIntoFragmentRequest(request, config);
+            final ILinkedDataFragment fragment =
+                    index.getRequestProcessor().createRequestedFragment(ldfRequest);
+            final ByteArrayServletOutputStream buffer = new ByteArrayServletOutputStream(8192);
+            try {
+                writer.writeFragment(buffer, index, fragment, ldfRequest);
+            } finally {
+                fragment.close();
+            }
+            body = buffer.toByteArray();
+            index.putResponse(mimeType, body);
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
     /**
      *
      * @param request
@@ -160,28 +393,64 @@ public class LinkedDataFragmentServlet extends HttpServlet {
         ILinkedDataFragment fragment = null;
         try {
             // do conneg
-            String bestMatch = MIMEParse.bestMatch(request.getHeader("Accept"));
+            final Map.Entry<String, ILinkedDataFragmentWriter> match =
+                    writers.select(request.getHeader("Accept"));
+            String bestMatch = match.getKey();
 
             // set additional response headers
             response.setHeader("Server", "Linked Data Fragments Server");
             response.setContentType(bestMatch);
             response.setCharacterEncoding("utf-8");
             
-            // create a writer depending on the best matching mimeType
-            ILinkedDataFragmentWriter writer = LinkedDataFragmentWriterFactory.create(config.getPrefixes(), dataSources, bestMatch);
+            // get the writer for the best matching mimeType
+            ILinkedDataFragmentWriter writer = match.getValue();
             
             try {
             
                 final IDataSource dataSource = getDataSource( request );
 
+                if ( dataSource instanceof IndexDataSource
+                     && request.getQueryString() == null ) {
+                    writeIndex( (IndexDataSource) dataSource, request, response,
+                                writer, bestMatch );
+                    return;
+                }
+
+                // parsed requests are shared, so each gets its own token
+                final Long timeout = timeouts.get( dataSource );
+                final CancellationToken cancellation =
+                        new CancellationToken( timeout == null ? 0L : timeout );
                 final ILinkedDataFragmentRequest ldfRequest =
-                        dataSource.getRequestParser()
-                                  .parseIntoFragmentRequest( request, config );
+                        parseRequest( dataSource, request )
+                                .withCancellationToken( cancellation );
 
                 fragment = dataSource.getRequestProcessor()
                                   .createRequestedFragment( ldfRequest );
 
-                writer.writeFragment(response.getOutputStream(), dataSource, fragment, ldfRequest);
+                // HTML pages flush their top early, so they are streamed;
+                // other responses are sent at once, with a Content-Length;
+                // if the client is gone, or part of the response was sent
+                // already, neither an error status nor an error page can
+                // reach it anymore; other failures are server errors
+                try {
+                    if ( bestMatch.equals( "text/html" ) ) {
+                        writer.writeFragment(response.getOutputStream(), dataSource, fragment, ldfRequest);
+                    } else {
+                        final ResponseBuffer body = responseBuffers.acquire( response );
+                        try {
+                            writer.writeFragment(body, dataSource, fragment, ldfRequest);
+                            body.send();
+                        } finally {
+                            body.release();
+                        }
+                    }
+                } catch (IOException e) {
+                    if (e instanceof EofException || response.isCommitted()) {
+                        return;
+                    }
+                    response.resetBuffer();
+                    throw e;
+                }
             
             } catch (DataSourceNotFoundException ex) {
                 try {
@@ -190,6 +459,13 @@ public class LinkedDataFragmentServlet extends HttpServlet {
                 } catch (Exception ex1) {
                     throw new ServletException(ex1);
                 }
+            } catch (FragmentCancelledException e) {
+                response.setStatus(503);
+                writer.writeError(response.getOutputStream(), e);
+            } catch (DataSourceNotReadyException e) {
+                response.setStatus(503);
+                response.setHeader("Retry-After", "60");
+                writer.writeError(response.getOutputStream(), e);
             } catch (Exception e) {
                 response.setStatus(500);
                 writer.writeError(response.getOutputStream(), e);
@@ -211,4 +487,47 @@ public class LinkedDataFragmentServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Applies a patch to an {@link IUpdatableDataSource}.
+     *
+     * @param request
+     * @param response
+     * @throws ServletException
+     */
+    @Override
+    public void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException {
+        try {
+            response.setHeader("Server", "Linked Data Fragments Server");
+            final IDataSource dataSource;
+            try {
+                dataSource = getDataSource(request);
+            } catch (DataSourceNotFoundException ex) {
+                response.sendError(404, ex.getMessage());
+                return;
+            }
+            if (!(dataSource instanceof IUpdatableDataSource)) {
+                response.setHeader("Allow", "GET");
+                response.sendError(405, "This data source cannot be changed.");
+                return;
+            }
+
+            final IUpdatableDataSource updatable = (IUpdatableDataSource) dataSource;
+            if (!updatable.isAuthorized(request.getHeader("Authorization"))) {
+                response.setHeader("WWW-Authenticate", "Bearer");
+                response.sendError(401);
+                return;
+            }
+            try {
+                final long changes = updatable.applyPatch(request.getReader());
+                response.setContentType("text/plain");
+                response.setCharacterEncoding("utf-8");
+                response.getWriter().println(changes + " triples changed");
+            } catch (IllegalArgumentException e) {
+                response.sendError(400, e.getMessage());
+            }
+        } catch (IOException e) {
+            throw new ServletException(e);
+        }
+    }
+
 }
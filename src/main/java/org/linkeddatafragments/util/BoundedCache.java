@@ -0,0 +1,126 @@
+package org.linkeddatafragments.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe cache that holds about a given number of entries; when it is
+ * full, adding an entry evicts one that was not used recently.
+ *
+ * Lookups do not lock: they only mark the entry as used. Eviction follows
+ * the clock algorithm, where a hand sweeps over the entries, spares those
+ * that were used since its last pass and removes the first one that was not.
+ * Only adding an entry to a full cache waits for the hand, so the cache can
+ * hold values that are needed on every request. Concurrent additions may
+ * exceed the capacity briefly.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public class BoundedCache<K, V> {
+
+    private final int capacity;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final Object handLock = new Object();
+    private Iterator<Map.Entry<K, Entry<V>>> hand;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the maximum number of entries
+     */
+    public BoundedCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the value cached for the given key, and marks it as used.
+     *
+     * @param key the key
+     * @return the value, or null if none is cached
+     */
+    public V get(K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        entry.used = true;
+        return entry.value;
+    }
+
+    /**
+     * Caches a value for the given key, unless a value is cached already.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the value that is cached for the key now
+     */
+    public V put(K key, V value) {
+        final Entry<V> cached = entries.putIfAbsent(key, new Entry<>(value));
+        if (cached != null) {
+            cached.used = true;
+            return cached.value;
+        }
+        if (entries.size() > capacity) {
+            evict();
+        }
+        return value;
+    }
+
+    /**
+     * Moves the hand until the cache is within its capacity.
+     */
+    private void evict() {
+        synchronized (handLock) {
+            while (entries.size() > capacity) {
+                if (hand == null || !hand.hasNext()) {
+                    hand = entries.entrySet().iterator();
+                    if (!hand.hasNext()) {
+                        return;
+                    }
+                }
+                final Map.Entry<K, Entry<V>> next = hand.next();
+                final Entry<V> entry = next.getValue();
+                if (entry.used) {
+                    entry.used = false;
+                } else {
+                    entries.remove(next.getKey(), entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * A cached value with the flag that spares it from the hand.
+     */
+    private static class Entry<V> {
+        final V value;
+        volatile boolean used;
+
+        Entry(V value) {
+            this.value = value;
+        }
+    }
+
+}
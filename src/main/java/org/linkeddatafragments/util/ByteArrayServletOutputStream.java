@@ -0,0 +1,60 @@
+package org.linkeddatafragments.util;
+
+import java.io.ByteArrayOutputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * A {@link ServletOutputStream} that collects everything written to it in
+ * memory, so that a response can be rendered once and sent many times.
+ */
+public class ByteArrayServletOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream buffer;
+
+    /**
+     * Creates a stream with a buffer of the given initial size.
+     *
+     * @param size the initial size of the buffer
+     */
+    public ByteArrayServletOutputStream(int size) {
+        buffer = new ByteArrayOutputStream(size);
+    }
+
+    @Override
+    public void write(int b) {
+        buffer.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        buffer.write(b, off, len);
+    }
+
+    /**
+     * Returns a copy of the bytes written so far.
+     *
+     * @return the bytes
+     */
+    public byte[] toByteArray() {
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Discards the bytes written so far.
+     */
+    public void reset() {
+        buffer.reset();
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException("Writes never block.");
+    }
+
+}
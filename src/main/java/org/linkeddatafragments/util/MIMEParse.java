@@ -31,17 +31,6 @@ import org.apache.commons.lang.math.NumberUtils;
  */
 public final class MIMEParse
 {
-    private final static List<String> mimeTypes = new ArrayList<>();
-    
-    /**
-     * Register mimeType in collection
-     * @param mimeType 
-     */
-    public static void register(String mimeType) {
-        mimeTypes.add(mimeType);
-    }
-    
-
     /**
      * Parse results container
      */
@@ -174,10 +163,23 @@ public final class MIMEParse
      */
     protected static FitnessAndQuality fitnessAndQualityParsed(String mimeType,
             Collection<ParseResults> parsedRanges)
+    {
+        return fitnessAndQualityParsed(parseMediaRange(mimeType), parsedRanges);
+    }
+
+    /**
+     * Same as {@link #fitnessAndQualityParsed(String, Collection)}, for a
+     * mime-type that has already been parsed by parseMediaRange().
+     *
+     * @param target
+     * @param parsedRanges
+     * @return
+     */
+    protected static FitnessAndQuality fitnessAndQualityParsed(ParseResults target,
+            Collection<ParseResults> parsedRanges)
     {
         int bestFitness = -1;
         float bestFitQ = 0;
-        ParseResults target = parseMediaRange(mimeType);
 
         for (ParseResults range : parsedRanges)
         {
@@ -282,14 +284,52 @@ public final class MIMEParse
     }
     
     /**
+     * Parses the media ranges of an HTTP Accept header, skipping the ones
+     * that are not of the form type/subtype.
+     *
+     * @param header
+     * @return
+     */
+    protected static List<ParseResults> parseAcceptHeader(String header)
+    {
+        final List<ParseResults> results = new ArrayList<>();
+        for (String r : StringUtils.split(header, ','))
+        {
+            final String fullType = StringUtils.substringBefore(r, ";").trim();
+            if (fullType.equals("*") || StringUtils.split(fullType, "/").length == 2)
+                results.add(parseMediaRange(r));
+        }
+        return results;
+    }
+
+    /**
+     * Same as {@link #bestMatch(List, String)}, for mime-types that have
+     * already been parsed by parseMediaRange(), but returns the index of the
+     * best match; a header without acceptable types matches the first one.
      *
+     * @param supported
      * @param header
      * @return
-     * @throws NoRegisteredMimeTypesException
      */
-    public static String bestMatch(String header) throws NoRegisteredMimeTypesException
+    protected static int bestMatchIndex(List<ParseResults> supported, String header)
     {
-        return bestMatch(mimeTypes, header);
+        final List<ParseResults> parseResults = parseAcceptHeader(header);
+        int best = 0;
+        FitnessAndQuality bestFitnessAndQuality = null;
+        for (int i = 0; i < supported.size(); i++)
+        {
+            final FitnessAndQuality fitnessAndQuality =
+                    fitnessAndQualityParsed(supported.get(i), parseResults);
+            // on ties, the last one wins, as with the sort in bestMatch()
+            if (bestFitnessAndQuality == null
+                    || fitnessAndQuality.compareTo(bestFitnessAndQuality) >= 0)
+            {
+                best = i;
+                bestFitnessAndQuality = fitnessAndQuality;
+            }
+        }
+        return bestFitnessAndQuality != null
+                && NumberUtils.compare(bestFitnessAndQuality.quality, 0) != 0 ? best : 0;
     }
 
     // hidden
@@ -0,0 +1,89 @@
+package org.linkeddatafragments.util;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.linkeddatafragments.exceptions.NoRegisteredMimeTypesException;
+
+/**
+ * An immutable registry of the supported mime-types, each with the object
+ * that handles it, which negotiates the mime-type of responses.
+ *
+ * The mime-types are parsed once, and the decision for every Accept header
+ * is cached, since clients send only a few distinct headers; negotiation
+ * then costs a single lookup. The rules are those of
+ * {@link MIMEParse#bestMatch(List, String)}.
+ *
+ * @param <T> type of the objects that handle the mime-types
+ */
+public final class MediaTypeRegistry<T> {
+
+    /**
+     * Headers longer than this are negotiated without caching the decision
+     */
+    private final static int MAX_CACHED_HEADER_LENGTH = 1024;
+
+    private final List<Map.Entry<String, T>> entries;
+    private final List<MIMEParse.ParseResults> parsed;
+    private final BoundedCache<String, Map.Entry<String, T>> decisions;
+
+    /**
+     * Creates a registry.
+     *
+     * @param handlers the objects by mime-type, in the order of
+     *                 registration; the first is used when a request accepts
+     *                 none of them
+     * @param cacheSize the maximum number of Accept headers whose decision
+     *                  is cached
+     * @throws NoRegisteredMimeTypesException if there are no mime-types
+     */
+    public MediaTypeRegistry(Map<String, T> handlers, int cacheSize) throws NoRegisteredMimeTypesException {
+        if (handlers.isEmpty()) {
+            throw new NoRegisteredMimeTypesException();
+        }
+        final List<Map.Entry<String, T>> entryList = new ArrayList<>(handlers.size());
+        final List<MIMEParse.ParseResults> parsedList = new ArrayList<>(handlers.size());
+        for (Map.Entry<String, T> handler : handlers.entrySet()) {
+            entryList.add(new AbstractMap.SimpleImmutableEntry<>(handler));
+            parsedList.add(MIMEParse.parseMediaRange(handler.getKey()));
+        }
+        this.entries = Collections.unmodifiableList(entryList);
+        this.parsed = Collections.unmodifiableList(parsedList);
+        this.decisions = new BoundedCache<>(cacheSize);
+    }
+
+    /**
+     * Returns the mime-type that best matches the given Accept header, with
+     * the object that handles it.
+     *
+     * @param header the value of the Accept header, or null if there is none
+     * @return the mime-type and its handler
+     */
+    public Map.Entry<String, T> select(String header) {
+        if (header == null) {
+            return entries.get(0);
+        }
+        final Map.Entry<String, T> decision = decisions.get(header);
+        if (decision != null) {
+            return decision;
+        }
+        final Map.Entry<String, T> match = entries.get(MIMEParse.bestMatchIndex(parsed, header));
+        return header.length() > MAX_CACHED_HEADER_LENGTH ? match : decisions.put(header, match);
+    }
+
+    /**
+     * Returns the registered mime-types, in the order of registration.
+     *
+     * @return the mime-types
+     */
+    public List<String> getMimeTypes() {
+        final List<String> mimeTypes = new ArrayList<>(entries.size());
+        for (Map.Entry<String, T> entry : entries) {
+            mimeTypes.add(entry.getKey());
+        }
+        return mimeTypes;
+    }
+
+}
@@ -1,6 +1,5 @@
 package org.linkeddatafragments.util;
 
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -14,7 +13,9 @@ abstract public class RDFTermParser<TermType>
 {
 
     /**
-     *
+     * The syntax of literals; {@link #parseIntoRDFNode(String)} scans
+     * literals by hand rather than with this pattern, but accepts exactly
+     * the strings that it matches.
      */
     public static final Pattern STRINGPATTERN
                   = Pattern.compile("^\"(.*)\"(?:@(.*)|\\^\\^<?([^<>]*)>?)?$");
@@ -39,27 +40,13 @@ abstract public class RDFTermParser<TermType>
 
             // angular brackets indicate a URI
             case '<':
+                if ( param.length() < 2 )
+                    return handleUnparsableParameter( param );
                 return createURI( param.substring(1, param.length()-1) );
 
             // quotes indicate a string
             case '"':
-                Matcher matcher = STRINGPATTERN.matcher( param );
-                if ( matcher.matches() ) {
-                    String label   = matcher.group(1);
-                    String langTag = matcher.group(2);
-                    String typeURI = matcher.group(3);
-
-                    if ( langTag != null )
-                        return createLanguageLiteral( label, langTag );
-
-                    else if ( typeURI != null )
-                        return createTypedLiteral( label, typeURI );
-
-                    else
-                        return createPlainLiteral( label );
-                }
-                else
-                    return handleUnparsableParameter( param );
+                return parseLiteral( param );
 
             // assume it is a URI without angular brackets
             default:
@@ -67,6 +54,85 @@ abstract public class RDFTermParser<TermType>
         }
     }
 
+    /**
+     * Parses a quoted literal without allocating anything but the parts of
+     * the literal. Like {@link #STRINGPATTERN}, the label extends to the last
+     * quote that is followed by nothing, by a language tag, or by a datatype
+     * URI, and neither the label nor the language tag may span lines.
+     *
+     * @param param
+     * @return
+     */
+    protected TermType parseLiteral( final String param )
+    {
+        final int length = param.length();
+        final int lineEnd = indexOfLineTerminator( param );
+
+        int quote = param.lastIndexOf( '"', lineEnd < 0 ? length - 1 : lineEnd );
+        for ( ; quote > 0; quote = param.lastIndexOf('"', quote - 1) )
+        {
+            final String label;
+            final int suffix = quote + 1;
+
+            // plain literal
+            if ( suffix == length ) {
+                return createPlainLiteral( param.substring(1, quote) );
+            }
+
+            switch ( param.charAt(suffix) )
+            {
+                // language tag
+                case '@':
+                    if ( lineEnd >= 0 )
+                        break;
+                    label = param.substring( 1, quote );
+                    return createLanguageLiteral( label,
+                                                  param.substring(suffix + 1) );
+
+                // datatype URI, possibly without angular brackets
+                case '^':
+                    if ( suffix + 1 == length || param.charAt(suffix + 1) != '^' )
+                        break;
+                    int start = suffix + 2;
+                    if ( start < length && param.charAt(start) == '<' )
+                        start++;
+                    int end = start;
+                    while ( end < length && param.charAt(end) != '<'
+                                         && param.charAt(end) != '>' )
+                        end++;
+                    if ( end == length || ( end == length - 1
+                                            && param.charAt(end) == '>' ) ) {
+                        label = param.substring( 1, quote );
+                        return createTypedLiteral( label,
+                                                   param.substring(start, end) );
+                    }
+                    break;
+            }
+        }
+        return handleUnparsableParameter( param );
+    }
+
+    /**
+     * Returns the index of the first character that the dot of a regular
+     * expression does not match, or -1 if there is none.
+     */
+    private static int indexOfLineTerminator( final String s )
+    {
+        for ( int i = 0; i < s.length(); i++ )
+        {
+            switch ( s.charAt(i) )
+            {
+                case '\n':
+                case '\r':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      *
      * @param label
@@ -0,0 +1,122 @@
+package org.linkeddatafragments.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A {@link ServletOutputStream} that assembles a response in an array from a
+ * {@link ResponseBufferPool}, so that it can be sent with a Content-Length
+ * header in a single write, instead of in chunks.
+ *
+ * Responses that outgrow the maximum size of the pool are streamed from
+ * then on. Flushing does nothing, because writers flush when they are done;
+ * the response is only sent by {@link #send()}.
+ */
+public class ResponseBuffer extends ServletOutputStream {
+
+    private final ResponseBufferPool pool;
+    private final HttpServletResponse response;
+    private byte[] bytes;
+    private int length;
+    private long size;
+    private ServletOutputStream stream;
+
+    ResponseBuffer(ResponseBufferPool pool, HttpServletResponse response, byte[] bytes) {
+        this.pool = pool;
+        this.response = response;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (length == bytes.length && !grow(length + 1)) {
+            stream();
+        }
+        if (stream != null) {
+            stream.write(b);
+        } else {
+            bytes[length++] = (byte) b;
+        }
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (stream == null && length + len > bytes.length && !grow(length + len)) {
+            stream();
+        }
+        if (stream != null) {
+            stream.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, bytes, length, len);
+            length += len;
+        }
+        size += len;
+    }
+
+    /**
+     * Grows the array to hold at least the given number of bytes, unless
+     * that exceeds the maximum size.
+     */
+    private boolean grow(int needed) {
+        if (needed > pool.getMaxSize() || needed < 0) {
+            return false;
+        }
+        int newLength = bytes.length;
+        while (newLength < needed) {
+            newLength *= 2;
+        }
+        bytes = Arrays.copyOf(bytes, Math.min(newLength, pool.getMaxSize()));
+        return true;
+    }
+
+    /**
+     * Writes the buffered bytes to the response, and everything else as soon
+     * as it is written.
+     */
+    private void stream() throws IOException {
+        if (stream == null) {
+            stream = response.getOutputStream();
+            stream.write(bytes, 0, length);
+            length = 0;
+        }
+    }
+
+    /**
+     * Sends the buffered response and returns the array to the pool.
+     *
+     * @throws IOException if the response could not be written
+     */
+    public void send() throws IOException {
+        if (stream == null) {
+            response.setContentLength(length);
+            response.getOutputStream().write(bytes, 0, length);
+        }
+        release();
+    }
+
+    /**
+     * Returns the array to the pool, discarding the buffered bytes; does
+     * nothing if it was returned already.
+     */
+    public void release() {
+        if (bytes != null) {
+            pool.release(bytes, size);
+            bytes = null;
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        throw new UnsupportedOperationException("Responses are sent at once.");
+    }
+
+}
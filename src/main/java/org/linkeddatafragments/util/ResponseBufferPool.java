@@ -0,0 +1,73 @@
+package org.linkeddatafragments.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A pool of the byte arrays in which {@link ResponseBuffer}s assemble
+ * responses.
+ *
+ * New arrays are sized after the average size of the recent responses, so
+ * that most responses fit without growing their array; arrays are returned
+ * to the pool after the response is sent.
+ */
+public class ResponseBufferPool {
+
+    private final static int MIN_SIZE = 4 * 1024;
+
+    private final ArrayBlockingQueue<byte[]> arrays;
+    private final int maxSize;
+
+    /**
+     * The exponential moving average of the sizes of the responses; updates
+     * may get lost under contention, which only makes it less accurate.
+     */
+    private volatile int averageSize = MIN_SIZE;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity the maximum number of arrays in the pool
+     * @param maxSize the size of the largest response that is buffered;
+     *                larger responses are streamed
+     */
+    public ResponseBufferPool(int capacity, int maxSize) {
+        this.arrays = new ArrayBlockingQueue<>(capacity);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns an empty buffer for the given response.
+     *
+     * @param response the response to send the buffered bytes to
+     * @return the buffer
+     */
+    public ResponseBuffer acquire(HttpServletResponse response) {
+        final int size = averageSize;
+        byte[] array = arrays.poll();
+        if (array == null || array.length < size) {
+            // leave room for responses that are larger than average
+            array = new byte[Math.min(Integer.highestOneBit(size + size / 2) << 1, maxSize)];
+        }
+        return new ResponseBuffer(this, response, array);
+    }
+
+    /**
+     * Returns the size of the largest response that is buffered.
+     *
+     * @return the size in bytes
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Takes back an array after a response of the given size was sent.
+     */
+    void release(byte[] array, long size) {
+        final int average = averageSize;
+        averageSize = (int) Math.max(MIN_SIZE, Math.min(maxSize, average + (size - average) / 16));
+        arrays.offer(array);
+    }
+
+}
@@ -13,7 +13,26 @@ import org.apache.jena.rdf.model.ResourceFactory;
 public class TriplePatternElementParserForJena
     extends TriplePatternElementParser<RDFNode,String,String>
 {
-    private static TriplePatternElementParserForJena instance = null;
+    /**
+     * The maximum number of datatype URIs whose datatype is reused
+     */
+    public final static int MAX_INTERNED_DATATYPES = 256;
+
+    /**
+     * Holds the instance, which is created when it is first requested.
+     */
+    private static class InstanceHolder
+    {
+        static final TriplePatternElementParserForJena instance =
+                                       new TriplePatternElementParserForJena();
+    }
+
+    /**
+     * The datatypes of recently parsed literals; looking them up in the
+     * shared {@link TypeMapper} is comparatively expensive.
+     */
+    private final BoundedCache<String,RDFDatatype> datatypes =
+                                new BoundedCache<>( MAX_INTERNED_DATATYPES );
 
     /**
      *
@@ -21,10 +40,7 @@ public class TriplePatternElementParserForJena
      */
     public static TriplePatternElementParserForJena getInstance()
     {
-        if ( instance == null ) {
-            instance = new TriplePatternElementParserForJena();
-        }
-        return instance;
+        return InstanceHolder.instance;
     }
 
     /**
@@ -86,8 +102,11 @@ public class TriplePatternElementParserForJena
     public RDFNode createTypedLiteral( final String label,
                                        final String typeURI )
     {
-        final RDFDatatype dt = TypeMapper.getInstance()
-                                         .getSafeTypeByName( typeURI );
+        RDFDatatype dt = datatypes.get( typeURI );
+        if ( dt == null ) {
+            dt = datatypes.put( typeURI, TypeMapper.getInstance()
+                                            .getSafeTypeByName(typeURI) );
+        }
         return ResourceFactory.createTypedLiteral( label, dt );
     }
 
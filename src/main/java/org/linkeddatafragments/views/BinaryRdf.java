@@ -0,0 +1,77 @@
+package org.linkeddatafragments.views;
+
+/**
+ * A compact binary format for pages of triples, in which every term is
+ * written once and referenced by number afterwards.
+ *
+ * A page starts with the bytes of {@link #MAGIC} and the {@link #VERSION},
+ * followed by triples. Every triple is three terms; a term is written as an
+ * unsigned LEB128 varint code:
+ * <ul>
+ * <li>{@link #END} (only in place of a subject) ends the page;</li>
+ * <li>{@link #NEW_TERM} is followed by a term, which gets the next number,
+ *     starting at 0: a kind byte, then its strings, each as the varint
+ *     length of its UTF-8 bytes followed by these bytes; the datatype of a
+ *     typed literal is written after its lexical form, as a term;</li>
+ * <li>any higher code <i>n</i> refers to term number <i>n</i> - 2.</li>
+ * </ul>
+ *
+ * @see BinaryRdfReader
+ */
+public final class BinaryRdf {
+
+    /**
+     * The media type of the format
+     */
+    public final static String MIME_TYPE = "application/x-ldf-binary";
+
+    /**
+     * The bytes with which a page starts
+     */
+    public final static byte[] MAGIC = { 'L', 'D', 'F', 'B' };
+
+    /**
+     * The version of the format
+     */
+    public final static int VERSION = 1;
+
+    /**
+     * The code that ends a page
+     */
+    public final static int END = 0;
+
+    /**
+     * The code that precedes a new term
+     */
+    public final static int NEW_TERM = 1;
+
+    /**
+     * The kind of an IRI, followed by the IRI
+     */
+    public final static int IRI = 0;
+
+    /**
+     * The kind of a blank node, which is identified by its term number
+     */
+    public final static int BLANK_NODE = 1;
+
+    /**
+     * The kind of a simple literal, followed by its lexical form
+     */
+    public final static int STRING = 2;
+
+    /**
+     * The kind of a language-tagged literal, followed by its lexical form
+     * and language tag
+     */
+    public final static int LANG_STRING = 3;
+
+    /**
+     * The kind of a typed literal, followed by its lexical form and datatype
+     */
+    public final static int TYPED_LITERAL = 4;
+
+    private BinaryRdf() {
+    }
+
+}
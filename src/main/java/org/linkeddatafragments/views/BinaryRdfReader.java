@@ -0,0 +1,152 @@
+package org.linkeddatafragments.views;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+
+/**
+ * Reference decoder of the {@link BinaryRdf} format.
+ */
+public class BinaryRdfReader {
+
+    private final DataInputStream in;
+    private final List<Node> terms = new ArrayList<>();
+    private byte[] buffer = new byte[256];
+
+    private BinaryRdfReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    /**
+     * Reads a page into a new model.
+     *
+     * @param in the page
+     * @return the triples of the page
+     * @throws IOException if the page cannot be read or is malformed
+     */
+    public static Model read(InputStream in) throws IOException {
+        final Model model = ModelFactory.createDefaultModel();
+        parse(in, StreamRDFLib.graph(model.getGraph()));
+        return model;
+    }
+
+    /**
+     * Reads a page and sends its triples to the given stream.
+     *
+     * @param in the page
+     * @param output the stream that receives the triples
+     * @throws IOException if the page cannot be read or is malformed
+     */
+    public static void parse(InputStream in, StreamRDF output) throws IOException {
+        new BinaryRdfReader(in).parse(output);
+    }
+
+    private void parse(StreamRDF output) throws IOException {
+        final byte[] magic = new byte[BinaryRdf.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryRdf.MAGIC)) {
+            throw new IOException("Not a binary RDF page.");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != BinaryRdf.VERSION) {
+            throw new IOException("Unsupported binary RDF version " + version + ".");
+        }
+
+        output.start();
+        int code;
+        while ((code = readVarint()) != BinaryRdf.END) {
+            final Node subject = readTerm(code);
+            final Node predicate = readTerm(readVarint());
+            final Node object = readTerm(readVarint());
+            output.triple(Triple.create(subject, predicate, object));
+        }
+        output.finish();
+    }
+
+    private Node readTerm(int code) throws IOException {
+        if (code != BinaryRdf.NEW_TERM) {
+            final int number = code - 2;
+            // a term that is still being read, such as a typed literal
+            // referring to itself as its datatype, is not known yet either
+            if (number < 0 || number >= terms.size() || terms.get(number) == null) {
+                throw new IOException("Unknown term " + number + ".");
+            }
+            return terms.get(number);
+        }
+
+        // reserve the number before reading a datatype, which is numbered after
+        final int number = terms.size();
+        terms.add(null);
+        final Node term;
+        final int kind = in.readUnsignedByte();
+        switch (kind) {
+            case BinaryRdf.IRI:
+                term = NodeFactory.createURI(readString());
+                break;
+            case BinaryRdf.BLANK_NODE:
+                term = NodeFactory.createBlankNode();
+                break;
+            case BinaryRdf.STRING:
+                term = NodeFactory.createLiteral(readString());
+                break;
+            case BinaryRdf.LANG_STRING:
+                final String value = readString();
+                term = NodeFactory.createLiteral(value, readString());
+                break;
+            case BinaryRdf.TYPED_LITERAL:
+                final String lexicalForm = readString();
+                final Node datatype = readTerm(readVarint());
+                if (!datatype.isURI()) {
+                    throw new IOException("Datatype " + datatype + " is not an IRI.");
+                }
+                term = NodeFactory.createLiteral(lexicalForm,
+                        NodeFactory.getType(datatype.getURI()));
+                break;
+            default:
+                throw new IOException("Unknown term kind " + kind + ".");
+        }
+        terms.set(number, term);
+        return term;
+    }
+
+    private String readString() throws IOException {
+        final int length = readVarint();
+        if (length < 0) {
+            throw new IOException("Malformed string length.");
+        }
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        in.readFully(buffer, 0, length);
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+}
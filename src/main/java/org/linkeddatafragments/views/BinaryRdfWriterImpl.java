@@ -0,0 +1,163 @@
+package org.linkeddatafragments.views;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ServletOutputStream;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.XSD;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.util.BoundedCache;
+
+/**
+ * Serializes an {@link ILinkedDataFragment} to the {@link BinaryRdf} format
+ * while iterating over its statements.
+ *
+ * The header and the description of the dataset are the same for every
+ * page of a dataset, so they are encoded once per dataset, together with
+ * the numbers of their terms.
+ */
+class BinaryRdfWriterImpl extends RdfWriterImpl {
+
+    private final static String XSD_STRING = XSD.xstring.getURI();
+
+    private final BoundedCache<String, Head> heads = new BoundedCache<>(MAX_DATASETS);
+
+    public BinaryRdfWriterImpl(Map<String, String> prefixes, HashMap<String, IDataSource> datasources, String mimeType) {
+        super(prefixes, datasources, mimeType);
+    }
+
+    @Override
+    public void writeFragment(ServletOutputStream outputStream, IDataSource datasource, ILinkedDataFragment fragment, ILinkedDataFragmentRequest ldfRequest) throws Exception {
+        final Head head = getHead(fragment);
+        final OutputBuffer out = OutputBuffer.acquire(outputStream);
+        out.append(head.bytes);
+
+        final TermWriter terms = new TermWriter(out, new HashMap<>(head.numbers));
+        terms.write(fragment.getFragmentDescription());
+        terms.write(fragment.getTriples());
+        writeVarint(out, BinaryRdf.END);
+
+        out.flush();
+    }
+
+    /**
+     * Returns the header and the description of the dataset of the given
+     * fragment, which start every page of the dataset.
+     */
+    private Head getHead(ILinkedDataFragment fragment) throws IOException {
+        final String datasetURI = fragment.getDatasetURI();
+        final Head head = datasetURI == null ? null : heads.get(datasetURI);
+        if (head != null) {
+            return head;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final OutputBuffer out = OutputBuffer.allocate(bytes);
+        for (byte b : BinaryRdf.MAGIC) {
+            out.appendByte(b);
+        }
+        out.appendByte(BinaryRdf.VERSION);
+        final TermWriter terms = new TermWriter(out, new HashMap<Node, Integer>());
+        terms.write(fragment.getDatasetDescription());
+        out.flush();
+        final Head encoded = new Head(bytes.toByteArray(), terms.numbers);
+        return datasetURI == null ? encoded : heads.put(datasetURI, encoded);
+    }
+
+    private static void writeVarint(OutputBuffer out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.appendByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.appendByte(value);
+    }
+
+    private static void writeString(OutputBuffer out, String value) throws IOException {
+        writeVarint(out, OutputBuffer.utf8Length(value));
+        out.append(value);
+    }
+
+    /**
+     * The start of every page of a dataset, and the numbers of its terms.
+     */
+    private static class Head {
+
+        final byte[] bytes;
+        final Map<Node, Integer> numbers;
+
+        Head(byte[] bytes, Map<Node, Integer> numbers) {
+            this.bytes = bytes;
+            this.numbers = numbers;
+        }
+    }
+
+    /**
+     * Writes triples, numbering their terms in order of appearance.
+     */
+    private static class TermWriter {
+
+        private final OutputBuffer out;
+        private final Map<Node, Integer> numbers;
+
+        /**
+         * @param out the buffer to write to
+         * @param numbers the numbers of the terms written already
+         */
+        TermWriter(OutputBuffer out, Map<Node, Integer> numbers) {
+            this.out = out;
+            this.numbers = numbers;
+        }
+
+        void write(StmtIterator statements) throws IOException {
+            try {
+                while (statements.hasNext()) {
+                    final Statement statement = statements.next();
+                    write(statement.getSubject().asNode());
+                    write(statement.getPredicate().asNode());
+                    write(statement.getObject().asNode());
+                }
+            } finally {
+                statements.close();
+            }
+        }
+
+        private void write(Node node) throws IOException {
+            final Integer number = numbers.get(node);
+            if (number != null) {
+                writeVarint(out, number + 2);
+                return;
+            }
+            numbers.put(node, numbers.size());
+            writeVarint(out, BinaryRdf.NEW_TERM);
+
+            if (node.isURI()) {
+                out.appendByte(BinaryRdf.IRI);
+                writeString(out, node.getURI());
+            } else if (node.isBlank()) {
+                out.appendByte(BinaryRdf.BLANK_NODE);
+            } else {
+                final String language = node.getLiteralLanguage();
+                final String datatype = node.getLiteralDatatypeURI();
+                if (!language.isEmpty()) {
+                    out.appendByte(BinaryRdf.LANG_STRING);
+                    writeString(out, node.getLiteralLexicalForm());
+                    writeString(out, language);
+                } else if (datatype == null || datatype.equals(XSD_STRING)) {
+                    out.appendByte(BinaryRdf.STRING);
+                    writeString(out, node.getLiteralLexicalForm());
+                } else {
+                    out.appendByte(BinaryRdf.TYPED_LITERAL);
+                    writeString(out, node.getLiteralLexicalForm());
+                    write(NodeFactory.createURI(datatype));
+                }
+            }
+        }
+    }
+
+}
@@ -6,6 +6,10 @@ import freemarker.template.TemplateException;
 import freemarker.template.TemplateExceptionHandler;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -18,25 +22,56 @@ import org.apache.jena.rdf.model.StmtIterator;
 import org.linkeddatafragments.datasource.IDataSource;
 import org.linkeddatafragments.datasource.index.IndexDataSource;
 import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+import org.linkeddatafragments.util.BoundedCache;
 
 //TODO: Refactor to a composable & flexible architecture using DataSource types, fragments types and request types
 
 /**
  * Serializes an {@link ILinkedDataFragment} to the HTML format
  *
+ * The index is rendered with FreeMarker templates. The pages of other
+ * datasources are rendered from datasource.ftl.html once per datasource,
+ * with markers in place of the search values, counts, triples and page
+ * links; per page, only the counts and links are rendered, and the triples
+ * are streamed into a pre-rendered row. The top of the page is flushed
+ * before the triples are read, so browsers can start rendering.
+ *
  * @author Miel Vander Sande
  */
 public class HtmlTriplePatternFragmentWriterImpl extends TriplePatternFragmentWriterBase implements ILinkedDataFragmentWriter {
-    private final Configuration cfg;
+    /**
+     * The configuration, which caches the parsed templates for all writers
+     */
+    private static Configuration cfg;
     
     private final Template indexTemplate;
     private final Template datasourceTemplate;
     private final Template notfoundTemplate;
     private final Template errorTemplate;
+    private final Template countsTemplate;
+    private final Template linksTemplate;
     
     private final String HYDRA = "http://www.w3.org/ns/hydra/core#"; 
+
+    /**
+     * The numbers of the values of the pre-rendered pages and rows
+     */
+    private final static int SUBJECT = 0, PREDICATE = 1, OBJECT = 2, ROW_VALUES = 3,
+                             COUNTS = 3, TRIPLES = 4, LINKS = 5, PAGE_VALUES = 6;
+
+    /**
+     * The pre-rendered rows of triples with a literal and other objects
+     */
+    private final TemplateChunks literalRow;
+    private final TemplateChunks resourceRow;
+
+    /**
+     * The layouts of the pages of the datasources, by dataset URL
+     */
+    private final BoundedCache<String, Layout> layouts = new BoundedCache<>(RdfWriterImpl.MAX_DATASETS);
     
     /**
      *
@@ -47,17 +82,33 @@ public class HtmlTriplePatternFragmentWriterImpl extends TriplePatternFragmentWr
     public HtmlTriplePatternFragmentWriterImpl(Map<String, String> prefixes, HashMap<String, IDataSource> datasources) throws IOException {
         super(prefixes, datasources);
         
-        cfg = new Configuration(Configuration.VERSION_2_3_22);
-        cfg.setClassForTemplateLoading(getClass(), "/views");
-        cfg.setDefaultEncoding("UTF-8");
-        cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-        
+        final Configuration cfg = getConfiguration();
         indexTemplate = cfg.getTemplate("index.ftl.html");
         datasourceTemplate = cfg.getTemplate("datasource.ftl.html");
         notfoundTemplate = cfg.getTemplate("notfound.ftl.html");
         errorTemplate = cfg.getTemplate("error.ftl.html");
+        countsTemplate = createPartTemplate(cfg, "counts");
+        linksTemplate = createPartTemplate(cfg, "pageLinks");
+        literalRow = renderRow(cfg, true);
+        resourceRow = renderRow(cfg, false);
     }
     
+    /**
+     * Returns the FreeMarker configuration, creating it the first time.
+     *
+     * @return the configuration
+     */
+    private static synchronized Configuration getConfiguration() {
+        if (cfg == null) {
+            cfg = new Configuration(Configuration.VERSION_2_3_22);
+            cfg.setClassForTemplateLoading(HtmlTriplePatternFragmentWriterImpl.class, "/views");
+            cfg.setDefaultEncoding("UTF-8");
+            cfg.setURLEscapingCharset("UTF-8");
+            cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+        }
+        return cfg;
+    }
+
     /**
      *
      * @param outputStream
@@ -69,7 +120,11 @@ public class HtmlTriplePatternFragmentWriterImpl extends TriplePatternFragmentWr
      */
     @Override
     public void writeFragment(ServletOutputStream outputStream, IDataSource datasource, ITriplePatternFragment fragment,  ITriplePatternFragmentRequest tpfRequest) throws IOException, TemplateException{
-        Map data = new HashMap();
+        if (!(datasource instanceof IndexDataSource)) {
+            writeDatasourceFragment(outputStream, datasource, fragment, tpfRequest);
+            return;
+        }
+        Map<String, Object> data = new HashMap<>();
         
         // base.ftl.html
         data.put("assetsPath", "assets/");
@@ -104,41 +159,200 @@ public class HtmlTriplePatternFragmentWriterImpl extends TriplePatternFragmentWr
         
         // Calculate start and end triple number
         Long start = ((tpfRequest.getPageNumber() - 1) * fragment.getMaxPageSize()) + 1;
+        data.put("count", triples.size());
         data.put("start", start);
-        data.put("end", start + (triples.size() < fragment.getMaxPageSize() ? triples.size() : fragment.getMaxPageSize()));
+        data.put("end", start - 1 + (triples.size() < fragment.getMaxPageSize() ? triples.size() : fragment.getMaxPageSize()));
         
         // Compose query object
-        Map query = new HashMap();
-        query.put("subject", !tpfRequest.getSubject().isVariable() ? tpfRequest.getSubject().asConstantTerm() : "");
-        query.put("predicate", !tpfRequest.getPredicate().isVariable() ? tpfRequest.getPredicate().asConstantTerm() : "");
-        query.put("object", !tpfRequest.getObject().isVariable() ? tpfRequest.getObject().asConstantTerm() : "");
+        Map<String, String> query = new HashMap<>();
+        query.put("subject", getValue(tpfRequest.getSubject()));
+        query.put("predicate", getValue(tpfRequest.getPredicate()));
+        query.put("object", getValue(tpfRequest.getObject()));
         data.put("query", query);
        
-        // Get the template (uses cache internally)
-        Template temp = datasource instanceof IndexDataSource ? indexTemplate : datasourceTemplate;
-
         // Merge data-model with template
-        temp.process(data, new OutputStreamWriter(outputStream));
+        indexTemplate.process(data, new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the page of a fragment of a datasource from the pre-rendered
+     * layout of its pages: the parts up to the counts are sent before the
+     * triples are read, and the triples are rendered into the pre-rendered
+     * row while iterating over them.
+     */
+    private void writeDatasourceFragment(ServletOutputStream outputStream, IDataSource datasource, ITriplePatternFragment fragment, ITriplePatternFragmentRequest<?,?,?> tpfRequest) throws IOException, TemplateException {
+        final Layout layout = getLayout(datasource, tpfRequest.getDatasetURL());
+        final String[] values = new String[PAGE_VALUES];
+        values[SUBJECT] = getValue(tpfRequest.getSubject());
+        values[PREDICATE] = getValue(tpfRequest.getPredicate());
+        values[OBJECT] = getValue(tpfRequest.getObject());
+
+        final OutputBuffer out = OutputBuffer.acquire(outputStream);
+        final int position = layout.page.write(out, 0, values);
+        out.flush();
+        outputStream.flush();
+
+        // the triples, which have to be counted before the counts are written
+        final StringBuilder rows = new StringBuilder(16 * 1024);
+        final String[] row = new String[ROW_VALUES];
+        long count = 0;
+        final StmtIterator triples = fragment.getTriples();
+        try {
+            while (triples.hasNext()) {
+                final Statement triple = triples.next();
+                row[SUBJECT] = triple.getSubject().asNode().toString();
+                row[PREDICATE] = triple.getPredicate().asNode().toString();
+                row[OBJECT] = triple.getObject().asNode().toString();
+                (triple.getObject().isLiteral() ? literalRow : resourceRow).append(rows, row);
+                count++;
+            }
+        } finally {
+            triples.close();
+        }
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put("datasource", datasource);
+        addPageLinks(data, fragment.getFragmentDescription());
+        data.put("totalEstimate", fragment.getTotalSize());
+        data.put("itemsPerPage", fragment.getMaxPageSize());
+        final long start = (tpfRequest.getPageNumber() - 1) * fragment.getMaxPageSize() + 1;
+        data.put("count", count);
+        data.put("start", start);
+        data.put("end", start + count - 1);
+
+        values[COUNTS] = render(countsTemplate, data);
+        values[TRIPLES] = rows.toString();
+        values[LINKS] = render(linksTemplate, data);
+        layout.page.write(out, position, values);
+        out.flush();
+    }
+
+    /**
+     * Returns the layout of the pages of the given datasource, rendering it
+     * if it is not cached or was rendered in another year.
+     */
+    private Layout getLayout(IDataSource datasource, String datasetURL) throws IOException, TemplateException {
+        final int year = Calendar.getInstance().get(Calendar.YEAR);
+        final Layout layout = layouts.get(datasetURL);
+        if (layout != null && layout.year == year) {
+            return layout;
+        }
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put("assetsPath", "assets/");
+        data.put("header", datasource.getTitle());
+        data.put("date", new Date());
+        data.put("datasourceUrl", datasetURL);
+        data.put("datasource", datasource);
+
+        final Map<String, String> query = new HashMap<>();
+        query.put("subject", TemplateChunks.text(SUBJECT));
+        query.put("predicate", TemplateChunks.text(PREDICATE));
+        query.put("object", TemplateChunks.text(OBJECT));
+        data.put("query", query);
+
+        final Map<String, String> slots = new HashMap<>();
+        slots.put("counts", TemplateChunks.markup(COUNTS));
+        slots.put("triples", TemplateChunks.markup(TRIPLES));
+        slots.put("links", TemplateChunks.markup(LINKS));
+        data.put("slots", slots);
+
+        return layouts.put(datasetURL, new Layout(new TemplateChunks(render(datasourceTemplate, data)), year));
+    }
+
+    /**
+     * Pre-renders the row of a triple with the tripleRow macro.
+     *
+     * @param cfg the configuration
+     * @param literal whether the object is a literal
+     */
+    private static TemplateChunks renderRow(Configuration cfg, boolean literal) throws IOException {
+        final Map<String, Object> data = new HashMap<>();
+        data.put("subject", TemplateChunks.text(SUBJECT));
+        data.put("predicate", TemplateChunks.text(PREDICATE));
+        data.put("object", TemplateChunks.text(OBJECT));
+        data.put("literal", literal);
+        try {
+            return new TemplateChunks(render(createPartTemplate(cfg, "tripleRow subject=subject "
+                    + "predicate=predicate object=object literal=literal"), data));
+        } catch (TemplateException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Creates a template that renders one macro of fragment-parts.ftl.html.
+     */
+    private static Template createPartTemplate(Configuration cfg, String call) throws IOException {
+        return new Template(call, new StringReader(
+                "<#include \"fragment-parts.ftl.html\"><@" + call + "/>"), cfg);
+    }
+
+    private static String render(Template template, Map<String, Object> data) throws IOException, TemplateException {
+        final StringWriter html = new StringWriter();
+        template.process(data, html);
+        return html.toString();
+    }
+
+    /**
+     * Adds the URLs of the page links in the given statements to the data
+     * model, named after their Hydra properties.
+     */
+    private void addPageLinks(Map<String, Object> data, StmtIterator statements) {
+        try {
+            while (statements.hasNext()) {
+                final Statement statement = statements.next();
+                final String predicate = statement.getPredicate().getURI();
+                final RDFNode object = statement.getObject();
+                if (object.isURIResource() && predicate.startsWith(HYDRA)) {
+                    data.put(predicate.substring(HYDRA.length()), object.asResource().getURI());
+                }
+            }
+        } finally {
+            statements.close();
+        }
+    }
+
+    /**
+     * Returns the constant term of a search field, or an empty string if it
+     * is a variable.
+     */
+    private static String getValue(ITriplePatternElement<?,?,?> element) {
+        return element.isVariable() ? "" : String.valueOf(element.asConstantTerm());
+    }
+
+    /**
+     * The pre-rendered pages of a datasource, and the year in their footer.
+     */
+    private static class Layout {
+
+        final TemplateChunks page;
+        final int year;
+
+        Layout(TemplateChunks page, int year) {
+            this.page = page;
+            this.year = year;
+        }
     }
 
     @Override
     public void writeNotFound(ServletOutputStream outputStream, HttpServletRequest request) throws Exception {
-        Map data = new HashMap();
+        Map<String, Object> data = new HashMap<>();
         data.put("assetsPath", "assets/");
         data.put("datasources", getDatasources());
         data.put("date", new Date());
         data.put("url", request.getRequestURL().toString());
         
-        notfoundTemplate.process(data, new OutputStreamWriter(outputStream));
+        notfoundTemplate.process(data, new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
     }
 
     @Override
     public void writeError(ServletOutputStream outputStream, Exception ex)  throws Exception {
-        Map data = new HashMap();
+        Map<String, Object> data = new HashMap<>();
         data.put("assetsPath", "assets/");
         data.put("date", new Date());
         data.put("error", ex);
 
-        errorTemplate.process(data, new OutputStreamWriter(outputStream));
+        errorTemplate.process(data, new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
     }
 }
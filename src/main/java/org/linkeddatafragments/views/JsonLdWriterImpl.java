@@ -0,0 +1,223 @@
+package org.linkeddatafragments.views;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletOutputStream;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.XSD;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.util.BoundedCache;
+
+/**
+ * Serializes an {@link ILinkedDataFragment} to JSON-LD while iterating over
+ * its statements, instead of building and compacting a JSON-LD document.
+ *
+ * The <code>@context</code> is fixed and consists of the configured
+ * prefixes, which are used to compact IRIs. Consecutive statements with the
+ * same subject are written as one node object; a subject that reappears
+ * later gets another node object with the same <code>@id</code>, which
+ * JSON-LD processors merge.
+ *
+ * The start of the document up to the description of the dataset is the
+ * same for every page of a dataset, so it is encoded once per dataset.
+ */
+class JsonLdWriterImpl extends RdfWriterImpl {
+
+    private final static String XSD_STRING = XSD.xstring.getURI();
+
+    private final String context;
+    private final List<Map.Entry<String, String>> namespaces;
+    private final BoundedCache<String, byte[]> heads = new BoundedCache<>(MAX_DATASETS);
+
+    public JsonLdWriterImpl(Map<String, String> prefixes, HashMap<String, IDataSource> datasources, String mimeType) throws IOException {
+        super(prefixes, datasources, mimeType);
+
+        // try the longest namespaces first, so that IRIs get the shortest names
+        namespaces = new ArrayList<>(prefixes.entrySet());
+        Collections.sort(namespaces, new Comparator<Map.Entry<String, String>>() {
+            @Override
+            public int compare(Map.Entry<String, String> a, Map.Entry<String, String> b) {
+                return b.getValue().length() - a.getValue().length();
+            }
+        });
+
+        final StringWriter contextWriter = new StringWriter();
+        final JsonWriter json = new JsonWriter(contextWriter);
+        json.beginObject();
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            json.name(prefix.getKey()).value(prefix.getValue());
+        }
+        json.endObject();
+        json.flush();
+        context = contextWriter.toString();
+    }
+
+    @Override
+    public void writeFragment(ServletOutputStream outputStream, IDataSource datasource, ILinkedDataFragment fragment, ILinkedDataFragmentRequest ldfRequest) throws Exception {
+        final byte[] head = getHead(fragment);
+        outputStream.write(head);
+
+        final Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        final NodeWriter nodes = new NodeWriter(writer, head[head.length - 1] != '[');
+        nodes.write(fragment.getFragmentDescription());
+        nodes.write(fragment.getTriples());
+        nodes.flush();
+
+        writer.write("]}");
+        writer.flush();
+    }
+
+    /**
+     * Returns the start of the document up to and including the nodes that
+     * describe the dataset of the given fragment, which start every page of
+     * the dataset.
+     */
+    private byte[] getHead(ILinkedDataFragment fragment) throws IOException {
+        final String datasetURI = fragment.getDatasetURI();
+        final byte[] head = datasetURI == null ? null : heads.get(datasetURI);
+        if (head != null) {
+            return head;
+        }
+        final StringWriter writer = new StringWriter();
+        writer.write("{\"@context\":");
+        writer.write(context);
+        writer.write(",\"@graph\":[");
+        final NodeWriter nodes = new NodeWriter(writer, false);
+        nodes.write(fragment.getDatasetDescription());
+        nodes.flush();
+        final byte[] encoded = writer.toString().getBytes(StandardCharsets.UTF_8);
+        return datasetURI == null ? encoded : heads.put(datasetURI, encoded);
+    }
+
+    /**
+     * Returns the compact IRI of the given IRI, or the IRI itself if no
+     * prefix applies.
+     */
+    private String compact(String iri) {
+        for (Map.Entry<String, String> namespace : namespaces) {
+            final String prefix = namespace.getKey();
+            final String uri = namespace.getValue();
+            if (iri.startsWith(uri) && !iri.startsWith("//", uri.length())
+                    && !prefix.isEmpty() && !prefix.equals("_")) {
+                return prefix + ":" + iri.substring(uri.length());
+            }
+        }
+        return iri;
+    }
+
+    private String toId(Resource resource) {
+        return resource.isAnon() ? "_:" + resource.getId().getLabelString()
+                                 : compact(resource.getURI());
+    }
+
+    /**
+     * Writes statements as comma-separated node objects, grouping the
+     * statements of consecutive equal subjects.
+     */
+    private class NodeWriter {
+
+        private final Writer writer;
+        private final JsonWriter json;
+        private final Map<Property, List<RDFNode>> properties = new LinkedHashMap<>();
+        private Resource subject;
+        private boolean separate;
+
+        /**
+         * @param writer the writer to write to
+         * @param separate whether a node has been written already
+         */
+        NodeWriter(Writer writer, boolean separate) {
+            this.writer = writer;
+            this.separate = separate;
+            // the nodes are written as a sequence of top-level values
+            this.json = new JsonWriter(writer);
+            this.json.setLenient(true);
+        }
+
+        void write(StmtIterator statements) throws IOException {
+            try {
+                while (statements.hasNext()) {
+                    final Statement statement = statements.next();
+                    if (!statement.getSubject().equals(subject)) {
+                        flush();
+                        subject = statement.getSubject();
+                    }
+                    List<RDFNode> objects = properties.get(statement.getPredicate());
+                    if (objects == null) {
+                        objects = new ArrayList<>(1);
+                        properties.put(statement.getPredicate(), objects);
+                    }
+                    objects.add(statement.getObject());
+                }
+            } finally {
+                statements.close();
+            }
+        }
+
+        void flush() throws IOException {
+            if (subject == null) {
+                return;
+            }
+            if (separate) {
+                writer.write(',');
+            }
+            separate = true;
+            json.beginObject();
+            json.name("@id").value(toId(subject));
+            for (Map.Entry<Property, List<RDFNode>> property : properties.entrySet()) {
+                json.name(compact(property.getKey().getURI()));
+                json.beginArray();
+                for (RDFNode object : property.getValue()) {
+                    writeObject(object);
+                }
+                json.endArray();
+            }
+            json.endObject();
+            properties.clear();
+            subject = null;
+        }
+
+        private void writeObject(RDFNode object) throws IOException {
+            if (object.isResource()) {
+                json.beginObject().name("@id").value(toId(object.asResource())).endObject();
+                return;
+            }
+            final Literal literal = object.asLiteral();
+            final String language = literal.getLanguage();
+            final String datatype = literal.getDatatypeURI();
+            if (!language.isEmpty()) {
+                json.beginObject()
+                    .name("@value").value(literal.getLexicalForm())
+                    .name("@language").value(language)
+                    .endObject();
+            } else if (datatype == null || datatype.equals(XSD_STRING)) {
+                json.value(literal.getLexicalForm());
+            } else {
+                json.beginObject()
+                    .name("@value").value(literal.getLexicalForm())
+                    .name("@type").value(compact(datatype))
+                    .endObject();
+            }
+        }
+    }
+
+}
@@ -1,17 +1,22 @@
 package org.linkeddatafragments.views;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import org.linkeddatafragments.datasource.IDataSource;
 
 /**
  * Base class of any implementation of {@link ILinkedDataFragmentWriter}.
  *
+ * Writers are created once per media type and shared by all requests, so
+ * implementations must be thread-safe.
+ *
  * @author Miel Vander Sande
  */
 public abstract class LinkedDataFragmentWriterBase implements ILinkedDataFragmentWriter {
     private final Map<String, String> prefixes;
-    private final HashMap<String, IDataSource> datasources;
+    private final Map<String, IDataSource> datasources;
 
     /**
      *
@@ -19,8 +24,8 @@ public abstract class LinkedDataFragmentWriterBase implements ILinkedDataFragmen
      * @param datasources
      */
     public LinkedDataFragmentWriterBase(Map<String, String> prefixes, HashMap<String, IDataSource> datasources) {
-        this.prefixes = prefixes;
-        this.datasources = datasources;
+        this.prefixes = Collections.unmodifiableMap(new LinkedHashMap<>(prefixes));
+        this.datasources = Collections.unmodifiableMap(new LinkedHashMap<>(datasources));
     }
 
     /**
@@ -35,7 +40,7 @@ public abstract class LinkedDataFragmentWriterBase implements ILinkedDataFragmen
      *
      * @return
      */
-    public HashMap<String, IDataSource> getDatasources() {
+    public Map<String, IDataSource> getDatasources() {
         return datasources;
     }
 }
@@ -1,7 +1,10 @@
 package org.linkeddatafragments.views;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import org.linkeddatafragments.datasource.IDataSource;
 
@@ -13,6 +16,10 @@ import org.linkeddatafragments.datasource.IDataSource;
 public class LinkedDataFragmentWriterFactory {
     
     private final static String HTML = "text/html";
+
+    private final static String JSONLD = "application/ld+json";
+
+    private final static String TURTLE = "text/turtle";
     
     /**
      * Creates {@link ILinkedDataFragmentWriter} for a given mimeType
@@ -27,8 +34,32 @@ public class LinkedDataFragmentWriterFactory {
         switch (mimeType) {
             case HTML:
                 return new HtmlTriplePatternFragmentWriterImpl(prefixes, datasources);
+            case JSONLD:
+                return new JsonLdWriterImpl(prefixes, datasources, mimeType);
+            case TURTLE:
+                return new TurtleWriterImpl(prefixes, datasources, mimeType);
+            case BinaryRdf.MIME_TYPE:
+                return new BinaryRdfWriterImpl(prefixes, datasources, mimeType);
             default:
                 return new RdfWriterImpl(prefixes, datasources, mimeType);
         }
     }
+
+    /**
+     * Creates one {@link ILinkedDataFragmentWriter} for each of the given
+     * mimeTypes; writers are thread-safe, so these can serve all requests.
+     *
+     * @param prefixes Configured prefixes to be used in serialization
+     * @param datasources Configured datasources
+     * @param mimeTypes mimeTypes to create writers for
+     * @return the writers by mimeType
+     * @throws IOException
+     */
+    public static Map<String, ILinkedDataFragmentWriter> createAll(Map <String, String> prefixes, HashMap<String, IDataSource> datasources, Collection<String> mimeTypes) throws IOException {
+        final Map<String, ILinkedDataFragmentWriter> writers = new LinkedHashMap<>();
+        for (String mimeType : mimeTypes) {
+            writers.put(mimeType, create(prefixes, datasources, mimeType));
+        }
+        return Collections.unmodifiableMap(writers);
+    }
 }
@@ -0,0 +1,202 @@
+package org.linkeddatafragments.views;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A byte buffer into which text is encoded as UTF-8, and which is written to
+ * an output stream whenever it is full.
+ *
+ * Every thread has its own buffer, which is reused for all the responses the
+ * thread writes, so writing a page allocates no intermediate strings or
+ * byte arrays.
+ */
+final class OutputBuffer {
+
+    private final static int SIZE = 16 * 1024;
+
+    private final static ThreadLocal<OutputBuffer> POOL = new ThreadLocal<OutputBuffer>() {
+        @Override
+        protected OutputBuffer initialValue() {
+            return new OutputBuffer();
+        }
+    };
+
+    private final byte[] bytes = new byte[SIZE];
+    private int length;
+    private OutputStream out;
+
+    private OutputBuffer() {
+    }
+
+    /**
+     * Returns the buffer of the current thread, emptied and writing to the
+     * given stream.
+     *
+     * @param out the stream to write to
+     * @return the buffer
+     */
+    static OutputBuffer acquire(OutputStream out) {
+        final OutputBuffer buffer = POOL.get();
+        buffer.out = out;
+        buffer.length = 0;
+        return buffer;
+    }
+
+    /**
+     * Returns a new buffer, which is not shared with other responses, that
+     * writes to the given stream.
+     *
+     * @param out the stream to write to
+     * @return the buffer
+     */
+    static OutputBuffer allocate(OutputStream out) {
+        final OutputBuffer buffer = new OutputBuffer();
+        buffer.out = out;
+        return buffer;
+    }
+
+    /**
+     * Appends encoded bytes.
+     *
+     * @param b the bytes
+     * @return this buffer
+     * @throws IOException if the buffer could not be written
+     */
+    OutputBuffer append(byte[] b) throws IOException {
+        if (length + b.length > SIZE) {
+            flush();
+            if (b.length > SIZE) {
+                out.write(b);
+                return this;
+            }
+        }
+        System.arraycopy(b, 0, bytes, length, b.length);
+        length += b.length;
+        return this;
+    }
+
+    /**
+     * Appends a character sequence.
+     *
+     * @param text the characters
+     * @return this buffer
+     * @throws IOException if the buffer could not be written
+     */
+    OutputBuffer append(CharSequence text) throws IOException {
+        final int n = text.length();
+        for (int i = 0; i < n; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80 && length < SIZE) {
+                bytes[length++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n
+                       && Character.isLowSurrogate(text.charAt(i + 1))) {
+                appendCodePoint(Character.toCodePoint(c, text.charAt(++i)));
+            } else {
+                appendCodePoint(c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends a character, which must not be a surrogate.
+     *
+     * @param c the character
+     * @return this buffer
+     * @throws IOException if the buffer could not be written
+     */
+    OutputBuffer append(char c) throws IOException {
+        appendCodePoint(c);
+        return this;
+    }
+
+    /**
+     * Appends a byte.
+     *
+     * @param b the byte, in the lowest 8 bits
+     * @return this buffer
+     * @throws IOException if the buffer could not be written
+     */
+    OutputBuffer appendByte(int b) throws IOException {
+        if (length == SIZE) {
+            flush();
+        }
+        bytes[length++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * Appends a Unicode code point.
+     *
+     * @param c the code point
+     * @return this buffer
+     * @throws IOException if the buffer could not be written
+     */
+    OutputBuffer appendCodePoint(int c) throws IOException {
+        if (length + 4 > SIZE) {
+            flush();
+        }
+        if (c < 0x80) {
+            bytes[length++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[length++] = (byte) (0xC0 | c >> 6);
+            bytes[length++] = (byte) (0x80 | c & 0x3F);
+        } else if (c < 0x10000) {
+            // unpaired surrogates are replaced, as String.getBytes does
+            if (c >= 0xD800 && c <= 0xDFFF) {
+                c = '?';
+                bytes[length++] = (byte) c;
+                return this;
+            }
+            bytes[length++] = (byte) (0xE0 | c >> 12);
+            bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+            bytes[length++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            bytes[length++] = (byte) (0xF0 | c >> 18);
+            bytes[length++] = (byte) (0x80 | c >> 12 & 0x3F);
+            bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+            bytes[length++] = (byte) (0x80 | c & 0x3F);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of bytes of the UTF-8 encoding of the given text.
+     *
+     * @param text the characters
+     * @return the number of bytes
+     */
+    static int utf8Length(CharSequence text) {
+        final int n = text.length();
+        int bytes = n;
+        for (int i = 0; i < n; i++) {
+            final char c = text.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < n
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    bytes += 2;
+                    i++;
+                } else if (c < 0xD800 || c > 0xDFFF) {
+                    bytes += 2;
+                }
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream and empties the buffer.
+     *
+     * @throws IOException if the bytes could not be written
+     */
+    void flush() throws IOException {
+        if (length > 0) {
+            out.write(bytes, 0, length);
+            length = 0;
+        }
+    }
+
+}
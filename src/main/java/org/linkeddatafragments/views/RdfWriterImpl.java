@@ -21,6 +21,12 @@ import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
  */
 class RdfWriterImpl extends LinkedDataFragmentWriterBase implements ILinkedDataFragmentWriter {
 
+    /**
+     * The maximum number of datasets for which writers cache the start of
+     * their pages
+     */
+    final static int MAX_DATASETS = 64;
+
     private final Lang contentType;
 
     public RdfWriterImpl(Map<String, String> prefixes, HashMap<String, IDataSource> datasources, String mimeType) {
@@ -0,0 +1,202 @@
+package org.linkeddatafragments.views;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The output of a template that was rendered with markers in place of some
+ * of its values, split at these markers, so that the template is rendered
+ * once and its output is completed with different values many times.
+ *
+ * Values are numbered. A text value is passed to the template as
+ * {@link #text(int)}, and may be output as is, escaped with
+ * <code>?html</code> or <code>?url</code>, or through the
+ * <code>shortName</code> function of <code>fragment-parts.ftl.html</code>;
+ * it is escaped the same way when it is filled in. A markup value is passed
+ * as {@link #markup(int)} and is filled in unchanged.
+ */
+final class TemplateChunks {
+
+    private final static int MARKUP = 0;
+    private final static int TEXT = 1;
+    private final static int SHORT_NAME = 2;
+    private final static int URL = 3;
+
+    private final static Pattern MARKER = Pattern.compile(
+            "ldf-markup:(\\d+);"
+            + "|ldf-text:(\\d+)/ldf-short:\\2;"
+            + "|ldf-short:(\\d+);"
+            + "|ldf-text%3A(\\d+)%2Fldf-short%3A\\4%3B");
+
+    private final static char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final String[] parts;
+    private final byte[][] encodedParts;
+    private final int[] values;
+    private final int[] kinds;
+
+    /**
+     * Splits the given output at its markers.
+     *
+     * @param output the output of a template
+     */
+    TemplateChunks(String output) {
+        final List<String> parts = new ArrayList<>();
+        final List<int[]> slots = new ArrayList<>();
+        final Matcher marker = MARKER.matcher(output);
+        int start = 0;
+        while (marker.find()) {
+            parts.add(output.substring(start, marker.start()));
+            for (int kind = MARKUP; kind <= URL; kind++) {
+                if (marker.group(kind + 1) != null) {
+                    slots.add(new int[] { Integer.parseInt(marker.group(kind + 1)), kind });
+                }
+            }
+            start = marker.end();
+        }
+        parts.add(output.substring(start));
+
+        this.parts = parts.toArray(new String[parts.size()]);
+        this.encodedParts = new byte[this.parts.length][];
+        for (int i = 0; i < this.parts.length; i++) {
+            encodedParts[i] = this.parts[i].getBytes(StandardCharsets.UTF_8);
+        }
+        this.values = new int[slots.size()];
+        this.kinds = new int[slots.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = slots.get(i)[0];
+            kinds[i] = slots.get(i)[1];
+        }
+    }
+
+    /**
+     * Returns the marker of a text value.
+     *
+     * @param value the number of the value
+     * @return the marker
+     */
+    static String text(int value) {
+        return "ldf-text:" + value + "/ldf-short:" + value + ";";
+    }
+
+    /**
+     * Returns the marker of a markup value.
+     *
+     * @param value the number of the value
+     * @return the marker
+     */
+    static String markup(int value) {
+        return "ldf-markup:" + value + ";";
+    }
+
+    /**
+     * Appends the output completed with the given values.
+     *
+     * @param html the text to append to
+     * @param values the values by number
+     */
+    void append(StringBuilder html, String[] values) {
+        html.append(parts[0]);
+        for (int i = 0; i < this.values.length; i++) {
+            appendValue(html, kinds[i], values[this.values[i]]);
+            html.append(parts[i + 1]);
+        }
+    }
+
+    /**
+     * Writes the output completed with the given values, from the given
+     * position up to the first value that is null.
+     *
+     * @param out the buffer to write to
+     * @param position the position returned by the previous call, or 0
+     * @param values the values by number
+     * @return the position at which to continue when the missing value is
+     *         known, or -1 if the output is complete
+     * @throws IOException if the output could not be written
+     */
+    int write(OutputBuffer out, int position, String[] values) throws IOException {
+        if (position == 0) {
+            out.append(encodedParts[0]);
+        }
+        for (int i = Math.max(0, position - 1); i < this.values.length; i++) {
+            final String value = values[this.values[i]];
+            if (value == null) {
+                return i + 1;
+            }
+            if (kinds[i] == MARKUP) {
+                out.append(value);
+            } else {
+                final StringBuilder escaped = new StringBuilder(value.length() + 16);
+                appendValue(escaped, kinds[i], value);
+                out.append(escaped);
+            }
+            out.append(encodedParts[i + 1]);
+        }
+        return -1;
+    }
+
+    private static void appendValue(StringBuilder html, int kind, String value) {
+        switch (kind) {
+            case TEXT:
+                appendEscaped(html, value);
+                break;
+            case SHORT_NAME:
+                appendEscaped(html, value.substring(value.lastIndexOf('/') + 1));
+                break;
+            case URL:
+                appendUrlEncoded(html, value);
+                break;
+            default:
+                html.append(value);
+        }
+    }
+
+    /**
+     * Appends text escaped like FreeMarker's <code>?html</code>.
+     */
+    private static void appendEscaped(StringBuilder html, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    html.append("&amp;");
+                    break;
+                case '<':
+                    html.append("&lt;");
+                    break;
+                case '>':
+                    html.append("&gt;");
+                    break;
+                case '"':
+                    html.append("&quot;");
+                    break;
+                default:
+                    html.append(c);
+            }
+        }
+    }
+
+    /**
+     * Appends text as a UTF-8 URL query component, leaving the same
+     * characters unencoded as FreeMarker's <code>?url</code>.
+     */
+    private static void appendUrlEncoded(StringBuilder html, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80 && (Character.isLetterOrDigit(c) || "_-.!~*'()".indexOf(c) >= 0)) {
+                html.append(c);
+                continue;
+            }
+            final int end = Character.isHighSurrogate(c) && i + 1 < text.length() ? i + 2 : i + 1;
+            for (byte b : text.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                html.append('%').append(HEX[b >> 4 & 0xF]).append(HEX[b & 0xF]);
+            }
+            i = end - 1;
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package org.linkeddatafragments.views;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletOutputStream;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.XSD;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.util.BoundedCache;
+
+/**
+ * Serializes an {@link ILinkedDataFragment} to Turtle while iterating over
+ * its statements, instead of analysing a complete model first.
+ *
+ * The configured prefixes are declared once and used for IRIs whose local
+ * name is simple enough. Consecutive statements with the same subject are
+ * abbreviated with <code>;</code>, and those that also share the predicate
+ * with <code>,</code>; statements are never reordered.
+ *
+ * The prefix declarations and the description of the dataset are the same
+ * for every page of a dataset, so they are encoded once per dataset.
+ */
+class TurtleWriterImpl extends RdfWriterImpl {
+
+    private final static String XSD_STRING = XSD.xstring.getURI();
+
+    private final String prefixDeclarations;
+    private final List<Map.Entry<String, String>> namespaces;
+    private final BoundedCache<String, byte[]> heads = new BoundedCache<>(MAX_DATASETS);
+
+    public TurtleWriterImpl(Map<String, String> prefixes, HashMap<String, IDataSource> datasources, String mimeType) {
+        super(prefixes, datasources, mimeType);
+
+        // try the longest namespaces first, so that IRIs get the shortest names
+        namespaces = new ArrayList<>();
+        final StringBuilder declarations = new StringBuilder();
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            if (isLocalName(prefix.getKey()) && Character.isLetter(prefix.getKey().charAt(0))) {
+                namespaces.add(prefix);
+                declarations.append("@prefix ").append(prefix.getKey()).append(": <")
+                            .append(prefix.getValue()).append("> .\n");
+            }
+        }
+        Collections.sort(namespaces, new Comparator<Map.Entry<String, String>>() {
+            @Override
+            public int compare(Map.Entry<String, String> a, Map.Entry<String, String> b) {
+                return b.getValue().length() - a.getValue().length();
+            }
+        });
+        prefixDeclarations = declarations.append('\n').toString();
+    }
+
+    @Override
+    public void writeFragment(ServletOutputStream outputStream, IDataSource datasource, ILinkedDataFragment fragment, ILinkedDataFragmentRequest ldfRequest) throws Exception {
+        final byte[] head = getHead(fragment);
+        final OutputBuffer out = OutputBuffer.acquire(outputStream);
+        out.append(head);
+
+        final StatementWriter statements = new StatementWriter(out);
+        statements.write(fragment.getFragmentDescription());
+        statements.write(fragment.getTriples());
+        statements.end();
+
+        out.flush();
+    }
+
+    /**
+     * Returns the prefix declarations and the description of the dataset of
+     * the given fragment, which start every page of the dataset.
+     */
+    private byte[] getHead(ILinkedDataFragment fragment) throws IOException {
+        final String datasetURI = fragment.getDatasetURI();
+        final byte[] head = datasetURI == null ? null : heads.get(datasetURI);
+        if (head != null) {
+            return head;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final OutputBuffer out = OutputBuffer.allocate(bytes);
+        out.append(prefixDeclarations);
+        final StatementWriter statements = new StatementWriter(out);
+        statements.write(fragment.getDatasetDescription());
+        statements.end();
+        out.flush();
+        return datasetURI == null ? bytes.toByteArray()
+                                  : heads.put(datasetURI, bytes.toByteArray());
+    }
+
+    /**
+     * Writes statements, abbreviating consecutive ones with the same subject
+     * (and predicate).
+     */
+    private class StatementWriter {
+
+        private final OutputBuffer out;
+        private Resource subject;
+        private Property predicate;
+
+        StatementWriter(OutputBuffer out) {
+            this.out = out;
+        }
+
+        void write(StmtIterator statements) throws IOException {
+            try {
+                while (statements.hasNext()) {
+                    write(statements.next());
+                }
+            } finally {
+                statements.close();
+            }
+        }
+
+        void write(Statement statement) throws IOException {
+            if (!statement.getSubject().equals(subject)) {
+                end();
+                subject = statement.getSubject();
+                predicate = statement.getPredicate();
+                writeResource(subject);
+                out.append(' ');
+                writePredicate(predicate);
+            } else if (!statement.getPredicate().equals(predicate)) {
+                predicate = statement.getPredicate();
+                out.append(" ;\n    ");
+                writePredicate(predicate);
+            } else {
+                out.append(" ,\n        ");
+            }
+            out.append(' ');
+            writeObject(statement.getObject());
+        }
+
+        void end() throws IOException {
+            if (subject != null) {
+                out.append(" .\n");
+                subject = null;
+                predicate = null;
+            }
+        }
+
+        private void writePredicate(Property property) throws IOException {
+            if (property.equals(RDF.type)) {
+                out.append('a');
+            } else {
+                writeIri(property.getURI());
+            }
+        }
+
+        private void writeResource(Resource resource) throws IOException {
+            if (resource.isAnon()) {
+                writeBlankNode(resource.getId().getLabelString());
+            } else {
+                writeIri(resource.getURI());
+            }
+        }
+
+        private void writeObject(RDFNode object) throws IOException {
+            if (object.isResource()) {
+                writeResource(object.asResource());
+                return;
+            }
+            final Literal literal = object.asLiteral();
+            writeString(literal.getLexicalForm());
+            final String language = literal.getLanguage();
+            final String datatype = literal.getDatatypeURI();
+            if (!language.isEmpty()) {
+                out.append('@').append(language);
+            } else if (datatype != null && !datatype.equals(XSD_STRING)) {
+                out.append("^^");
+                writeIri(datatype);
+            }
+        }
+
+        private void writeIri(String iri) throws IOException {
+            for (Map.Entry<String, String> namespace : namespaces) {
+                final String uri = namespace.getValue();
+                if (iri.startsWith(uri)) {
+                    final String localName = iri.substring(uri.length());
+                    if (isLocalName(localName)) {
+                        out.append(namespace.getKey()).append(':').append(localName);
+                        return;
+                    }
+                }
+            }
+            out.append('<');
+            for (int i = 0; i < iri.length(); i++) {
+                final char c = iri.charAt(i);
+                if (c <= 0x20 || c == '<' || c == '>' || c == '"' || c == '{'
+                        || c == '}' || c == '|' || c == '^' || c == '`' || c == '\\') {
+                    out.append(String.format("\\u%04X", (int) c));
+                } else if (Character.isHighSurrogate(c) && i + 1 < iri.length()) {
+                    out.appendCodePoint(Character.toCodePoint(c, iri.charAt(++i)));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('>');
+        }
+
+        /**
+         * Writes a blank node label, encoding the characters that labels
+         * cannot contain, and the escape character itself, in hexadecimal.
+         */
+        private void writeBlankNode(String label) throws IOException {
+            out.append("_:b");
+            for (int i = 0; i < label.length(); i++) {
+                final char c = label.charAt(i);
+                if (c < 0x80 && Character.isLetterOrDigit(c)) {
+                    out.append(c);
+                } else {
+                    out.append('_').append(Integer.toHexString(c)).append('_');
+                }
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    default:
+                        if (Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                            out.appendCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+                        } else {
+                            out.append(c);
+                        }
+                }
+            }
+            out.append('"');
+        }
+    }
+
+    /**
+     * Checks whether a string can be written as the prefix or the local part
+     * of a prefixed name without escaping; this is a conservative subset of
+     * what Turtle allows.
+     */
+    private static boolean isLocalName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            final boolean letterOrDigit = c < 0x80 && Character.isLetterOrDigit(c);
+            if (!letterOrDigit && c != '_' && (c != '-' || i == 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
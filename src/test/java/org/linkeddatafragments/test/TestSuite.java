@@ -3,8 +3,26 @@ package org.linkeddatafragments.test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
+import org.linkeddatafragments.test.datasource.HdtCountIndexTest;
 import org.linkeddatafragments.test.datasource.HdtDataSourceTest;
+import org.linkeddatafragments.test.datasource.HdtDeltaDataSourceTest;
+import org.linkeddatafragments.test.datasource.HdtShardedDataSourceTest;
+import org.linkeddatafragments.test.datasource.HdtSkipIndexTest;
 import org.linkeddatafragments.test.datasource.JenaTDBDataSourceTest;
+import org.linkeddatafragments.test.datasource.MappedDataSourceTest;
+import org.linkeddatafragments.test.datasource.MemoryDataSourceTest;
+import org.linkeddatafragments.test.datasource.SparqlDataSourceTest;
+import org.linkeddatafragments.test.datasource.TieredDataSourceTest;
+import org.linkeddatafragments.test.datasource.UnionDataSourceTest;
+import org.linkeddatafragments.test.util.BoundedCacheTest;
+import org.linkeddatafragments.test.util.MediaTypeRegistryTest;
+import org.linkeddatafragments.test.util.RDFTermParserTest;
+import org.linkeddatafragments.test.util.ResponseBufferTest;
+import org.linkeddatafragments.test.util.TriplePatternElementParserForJenaTest;
+import org.linkeddatafragments.test.views.BinaryRdfWriterTest;
+import org.linkeddatafragments.test.views.HtmlWriterTest;
+import org.linkeddatafragments.test.views.JsonLdWriterTest;
+import org.linkeddatafragments.test.views.TurtleWriterTest;
 
 /**
  *
@@ -12,8 +30,26 @@ import org.linkeddatafragments.test.datasource.JenaTDBDataSourceTest;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+   HdtCountIndexTest.class,
    HdtDataSourceTest.class,
-   JenaTDBDataSourceTest.class
+   HdtDeltaDataSourceTest.class,
+   HdtShardedDataSourceTest.class,
+   HdtSkipIndexTest.class,
+   JenaTDBDataSourceTest.class,
+   MappedDataSourceTest.class,
+   MemoryDataSourceTest.class,
+   SparqlDataSourceTest.class,
+   TieredDataSourceTest.class,
+   UnionDataSourceTest.class,
+   BinaryRdfWriterTest.class,
+   HtmlWriterTest.class,
+   JsonLdWriterTest.class,
+   TurtleWriterTest.class,
+   BoundedCacheTest.class,
+   MediaTypeRegistryTest.class,
+   RDFTermParserTest.class,
+   ResponseBufferTest.class,
+   TriplePatternElementParserForJenaTest.class
 })
 public class TestSuite {
     
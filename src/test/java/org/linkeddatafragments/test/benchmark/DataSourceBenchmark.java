@@ -0,0 +1,125 @@
+package org.linkeddatafragments.test.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFBase;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.hdt.HdtDataSource;
+import org.linkeddatafragments.datasource.memory.MemoryDataSource;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.test.datasource.DataSourceTest;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+import org.rdfhdt.hdt.enums.RDFNotation;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.hdt.HDTManager;
+import org.rdfhdt.hdt.options.HDTSpecification;
+
+/**
+ * Compares the time to create fragments of the in-memory and the HDT data
+ * source, for pattern shapes sampled from an N-Triples file.
+ *
+ * Usage: <code>DataSourceBenchmark [file.nt [requests]]</code>; without a
+ * file, the demo data of the tests is used.
+ */
+public class DataSourceBenchmark {
+
+    private static final String[] SHAPES = { "???", "s??", "?p?", "??o", "?po", "s?o" };
+
+    /**
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final File ntFile = args.length > 0 ? new File(args[0])
+                                            : DataSourceTest.getResourceAsFile();
+        final int requests = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        // sample triples to build patterns from
+        final List<Triple> sample = new ArrayList<>();
+        final Random random = new Random(42);
+        RDFDataMgr.parse(new StreamRDFBase() {
+            private long seen = 0;
+            @Override
+            public void triple(Triple triple) {
+                // reservoir sampling
+                if (sample.size() < 1000)
+                    sample.add(triple);
+                else if (random.nextInt((int) Math.min(++seen, Integer.MAX_VALUE)) < 1000)
+                    sample.set(random.nextInt(1000), triple);
+            }
+        }, ntFile.getAbsolutePath());
+
+        final File hdtFile = File.createTempFile("ldf-benchmark", ".hdt");
+        try {
+            long start = System.nanoTime();
+            final HDT hdt = HDTManager.generateHDT(ntFile.getAbsolutePath(),
+                    "http://linkeddatafragments.org", RDFNotation.NTRIPLES,
+                    new HDTSpecification(), null);
+            hdt.saveToHDT(hdtFile.getAbsolutePath(), null);
+            hdt.close();
+            final IDataSource hdtSource = new HdtDataSource("hdt", "", hdtFile.getAbsolutePath());
+            report("HDT", "load", System.nanoTime() - start, 1);
+
+            start = System.nanoTime();
+            final IDataSource memorySource = new MemoryDataSource("memory", "", ntFile.getAbsolutePath());
+            report("memory", "load", System.nanoTime() - start, 1);
+
+            for (String shape : SHAPES) {
+                for (IDataSource source : new IDataSource[] { hdtSource, memorySource }) {
+                    run(source, shape, sample, requests / 10); // warmup
+                    start = System.nanoTime();
+                    run(source, shape, sample, requests);
+                    report(source.getTitle(), shape, System.nanoTime() - start, requests);
+                }
+            }
+        } finally {
+            hdtFile.delete();
+            new File(hdtFile.getPath() + ".index").delete();
+            new File(hdtFile.getPath() + ".counts").delete();
+        }
+    }
+
+    private static void run(IDataSource source, String shape,
+                            List<Triple> sample, int requests) {
+        final TriplePatternElementParser<RDFNode,String,String> parser =
+                TriplePatternElementParserForJena.getInstance();
+        for (int i = 0; i < requests; i++) {
+            final Triple triple = sample.get(i % sample.size());
+            final long page = shape.equals("???") ? 1 + i % 10 : 1;
+            final ITriplePatternFragment fragment = (ITriplePatternFragment)
+                source.getRequestProcessor().createRequestedFragment(
+                    new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "http://example.org/f", "http://example.org/", true, page,
+                        parser.parseIntoTriplePatternElement(term(shape, 0, triple.getSubject())),
+                        parser.parseIntoTriplePatternElement(term(shape, 1, triple.getPredicate())),
+                        parser.parseIntoTriplePatternElement(term(shape, 2, triple.getObject()))));
+            fragment.getTotalSize();
+        }
+    }
+
+    private static String term(String shape, int position, Node node) {
+        if (shape.charAt(position) == '?' || node.isBlank())
+            return null;
+        if (node.isURI())
+            return node.getURI();
+        final String language = node.getLiteralLanguage();
+        return "\"" + node.getLiteralLexicalForm() + "\"" + (language.isEmpty()
+                ? "^^" + node.getLiteralDatatypeURI() : "@" + language);
+    }
+
+    private static void report(String source, String task, long nanos, int count) {
+        System.out.println(String.format("%-8s %-5s %12.1f us", source, task,
+                                         nanos / 1000.0 / count));
+    }
+}
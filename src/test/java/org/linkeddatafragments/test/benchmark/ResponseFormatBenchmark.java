@@ -0,0 +1,121 @@
+package org.linkeddatafragments.test.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.memory.MemoryDataSource;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.test.datasource.DataSourceTest;
+import org.linkeddatafragments.util.ByteArrayServletOutputStream;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+import org.linkeddatafragments.views.BinaryRdf;
+import org.linkeddatafragments.views.BinaryRdfReader;
+import org.linkeddatafragments.views.ILinkedDataFragmentWriter;
+import org.linkeddatafragments.views.LinkedDataFragmentWriterFactory;
+
+/**
+ * Compares the response formats by the size of the pages of an N-Triples
+ * file and by the time a client needs to decode them.
+ *
+ * Usage: <code>ResponseFormatBenchmark [file.nt [rounds]]</code>; without a
+ * file, the demo data of the tests is used.
+ */
+public class ResponseFormatBenchmark {
+
+    private static final String[] MIME_TYPES = { Lang.NTRIPLES.getHeaderString(),
+                                                 Lang.TTL.getHeaderString(),
+                                                 Lang.JSONLD.getHeaderString(),
+                                                 BinaryRdf.MIME_TYPE };
+
+    /**
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final File ntFile = args.length > 0 ? new File(args[0])
+                                            : DataSourceTest.getResourceAsFile();
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        final IDataSource source = new MemoryDataSource("memory", "", ntFile.getAbsolutePath());
+
+        final HashMap<String, String> prefixes = new HashMap<>();
+        prefixes.put("rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#");
+        prefixes.put("xsd", "http://www.w3.org/2001/XMLSchema#");
+        prefixes.put("hydra", "http://www.w3.org/ns/hydra/core#");
+        prefixes.put("void", "http://rdfs.org/ns/void#");
+
+        for (String mimeType : MIME_TYPES) {
+            final ILinkedDataFragmentWriter writer = LinkedDataFragmentWriterFactory.create(
+                    prefixes, new HashMap<String, IDataSource>(), mimeType);
+
+            // encode the first pages of all triples
+            final List<byte[]> pages = new ArrayList<>();
+            long encodeNanos = 0;
+            long triples = 0;
+            for (long page = 1; page <= 10; page++) {
+                final ILinkedDataFragmentRequest request = request(page);
+                final ByteArrayServletOutputStream out = new ByteArrayServletOutputStream(1 << 16);
+                for (int i = 0; i < rounds; i++) {
+                    out.reset();
+                    final ILinkedDataFragment fragment =
+                            source.getRequestProcessor().createRequestedFragment(request);
+                    final long start = System.nanoTime();
+                    writer.writeFragment(out, source, fragment, request);
+                    encodeNanos += System.nanoTime() - start;
+                }
+                pages.add(out.toByteArray());
+                triples += decode(mimeType, out.toByteArray()).size();
+            }
+
+            long bytes = 0;
+            long decodeNanos = 0;
+            for (byte[] page : pages) {
+                bytes += page.length;
+                for (int i = 0; i < rounds; i++) {
+                    final long start = System.nanoTime();
+                    decode(mimeType, page);
+                    decodeNanos += System.nanoTime() - start;
+                }
+            }
+
+            System.out.println(String.format(
+                    "%-26s %8d bytes/page %6.1f bytes/triple %9.1f us encode %9.1f us decode",
+                    mimeType, bytes / pages.size(), bytes / (double) triples,
+                    encodeNanos / 1000.0 / rounds / pages.size(),
+                    decodeNanos / 1000.0 / rounds / pages.size()));
+        }
+    }
+
+    private static Model decode(String mimeType, byte[] page) throws Exception {
+        if (mimeType.equals(BinaryRdf.MIME_TYPE))
+            return BinaryRdfReader.read(new ByteArrayInputStream(page));
+        final Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(page),
+                        RDFLanguages.contentTypeToLang(mimeType));
+        return model;
+    }
+
+    private static ILinkedDataFragmentRequest request(long page) {
+        final TriplePatternElementParser<RDFNode,String,String> parser =
+                TriplePatternElementParserForJena.getInstance();
+        return new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                "http://example.org/f", "http://example.org/", true, page,
+                parser.parseIntoTriplePatternElement(null),
+                parser.parseIntoTriplePatternElement(null),
+                parser.parseIntoTriplePatternElement(null));
+    }
+}
@@ -0,0 +1,175 @@
+package org.linkeddatafragments.test.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.apache.jena.datatypes.TypeMapper;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.RDFDataMgr;
+
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.test.datasource.DataSourceTest;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+
+/**
+ * Compares the parser of triple pattern parameters with the regular
+ * expression based parser that it replaced, on the parameters that clients
+ * send for the terms of an N-Triples file.
+ *
+ * Usage: <code>TriplePatternParserBenchmark [file.nt [rounds]]</code>;
+ * without a file, the demo data of the tests is used. Each parser is timed
+ * after as many warm-up rounds as there are measured rounds.
+ */
+public class TriplePatternParserBenchmark {
+
+    /**
+     *
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        final File ntFile = args.length > 0 ? new File(args[0])
+                                            : DataSourceTest.getResourceAsFile();
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        final String[] params = parameters(RDFDataMgr.loadModel(ntFile.getAbsolutePath()));
+
+        final TriplePatternElementParser<RDFNode,String,String> current =
+                TriplePatternElementParserForJena.getInstance();
+        final TriplePatternElementParser<RDFNode,String,String> previous =
+                new RegexParser();
+
+        // both parsers must agree before their speed means anything
+        for (String param : params) {
+            final String expected = previous.parseIntoTriplePatternElement(param).toString();
+            final String actual = current.parseIntoTriplePatternElement(param).toString();
+            if (!expected.equals(actual)) {
+                throw new IllegalStateException("Parsers disagree on " + param + ": "
+                                                + expected + " vs " + actual);
+            }
+        }
+
+        System.out.println(params.length + " parameters, " + rounds + " rounds");
+        report("regular expression", previous, params, rounds);
+        report("scanner", current, params, rounds);
+    }
+
+    private static void report(String name,
+                               TriplePatternElementParser<RDFNode,String,String> parser,
+                               String[] params, int rounds) {
+        time(parser, params, rounds);
+        final long nanos = time(parser, params, rounds);
+        System.out.println(String.format("%-20s %8.1f ns/parameter",
+                                         name, nanos / (double) rounds / params.length));
+    }
+
+    private static long time(TriplePatternElementParser<RDFNode,String,String> parser,
+                             String[] params, int rounds) {
+        int variables = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (String param : params) {
+                final ITriplePatternElement<RDFNode,String,String> element =
+                        parser.parseIntoTriplePatternElement(param);
+                if (element.isVariable()) {
+                    variables++;
+                }
+            }
+        }
+        final long nanos = System.nanoTime() - start;
+        if (variables < 0) {
+            System.out.println(variables);
+        }
+        return nanos;
+    }
+
+    /**
+     * Returns the parameters that select the triples of the given model by
+     * subject, predicate or object, in the syntax of the HTML form, along
+     * with variables.
+     */
+    private static String[] parameters(Model model) {
+        final List<String> params = new ArrayList<>();
+        final StmtIterator statements = model.listStatements();
+        while (statements.hasNext()) {
+            final Statement statement = statements.next();
+            if (statement.getSubject().isURIResource()) {
+                params.add(statement.getSubject().getURI());
+            }
+            params.add(statement.getPredicate().getURI());
+            params.add(parameter(statement.getObject()));
+        }
+        params.add("?s");
+        params.add("?o");
+        params.add("_:b");
+        params.add("");
+        return params.toArray(new String[params.size()]);
+    }
+
+    private static String parameter(RDFNode node) {
+        if (node.isURIResource()) {
+            return "<" + node.asResource().getURI() + ">";
+        }
+        if (node.isAnon()) {
+            return "_:" + node.asResource().getId();
+        }
+        final Literal literal = node.asLiteral();
+        final String label = '"' + literal.getLexicalForm() + '"';
+        if (!literal.getLanguage().isEmpty()) {
+            return label + "@" + literal.getLanguage();
+        }
+        if (literal.getDatatypeURI() != null
+                && !literal.getDatatypeURI().endsWith("#string")) {
+            return label + "^^<" + literal.getDatatypeURI() + ">";
+        }
+        return label;
+    }
+
+    /**
+     * The parser as it was before literals were scanned by hand and terms
+     * were reused.
+     */
+    private static class RegexParser extends TriplePatternElementParserForJena {
+
+        @Override
+        public RDFNode parseIntoRDFNode(String param) {
+            if (param == null || param.isEmpty())
+                return handleUnparsableParameter(param);
+            switch (param.charAt(0)) {
+                case '_':
+                    return createBlankNode(param);
+                case '<':
+                    return createURI(param.substring(1, param.length() - 1));
+                case '"':
+                    final Matcher matcher = STRINGPATTERN.matcher(param);
+                    if (!matcher.matches())
+                        return handleUnparsableParameter(param);
+                    if (matcher.group(2) != null)
+                        return createLanguageLiteral(matcher.group(1), matcher.group(2));
+                    if (matcher.group(3) != null)
+                        return createTypedLiteral(matcher.group(1), matcher.group(3));
+                    return createPlainLiteral(matcher.group(1));
+                default:
+                    return createURI(param);
+            }
+        }
+
+        @Override
+        public RDFNode createURI(String uri) {
+            return ResourceFactory.createResource(uri);
+        }
+
+        @Override
+        public RDFNode createTypedLiteral(String label, String typeURI) {
+            return ResourceFactory.createTypedLiteral(
+                    label, TypeMapper.getInstance().getSafeTypeByName(typeURI));
+        }
+    }
+}
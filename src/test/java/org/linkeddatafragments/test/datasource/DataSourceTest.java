@@ -14,6 +14,8 @@ import org.junit.Test;
 
 import org.linkeddatafragments.datasource.IDataSource;
 import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+import org.linkeddatafragments.fragments.CancellationToken;
 import org.linkeddatafragments.fragments.ILinkedDataFragment;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
 import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
@@ -121,6 +123,32 @@ public abstract class DataSourceTest<ConstantTermType,NamedVarType,AnonVarType>
 
     }
 
+    /**
+     * Test that a cancelled request is not processed.
+     *
+     */
+    @Test(expected = FragmentCancelledException.class)
+    public void testCancelled() {
+        final TriplePatternElementParser<ConstantTermType,NamedVarType,AnonVarType> tpeParser =
+                                               getTriplePatternElementParser();
+
+        final CancellationToken cancellation = new CancellationToken(0L);
+        cancellation.cancel();
+
+        final ITriplePatternFragmentRequest<ConstantTermType,NamedVarType,AnonVarType> request =
+                new TriplePatternFragmentRequestImpl<ConstantTermType,NamedVarType,AnonVarType>(
+                        "http://example.org/f", // fragmentURL
+                        "http://example.org/",  // datasetURL,
+                        true, // pageNumberWasRequested,
+                        1L, //pageNumber,
+                        tpeParser.parseIntoTriplePatternElement(null), // subject,
+                        tpeParser.parseIntoTriplePatternElement(null), // predicate,
+                        tpeParser.parseIntoTriplePatternElement(null), // object,
+                        cancellation );
+
+        getDatasource().getRequestProcessor().createRequestedFragment( request );
+    }
+
     /**
      * Test if estimate seems reasonable.
      */
@@ -0,0 +1,189 @@
+package org.linkeddatafragments.test.datasource;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.hdt.HdtCountIndex;
+import org.rdfhdt.hdt.enums.RDFNotation;
+import org.rdfhdt.hdt.enums.ResultEstimationType;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.hdt.HDTManager;
+import org.rdfhdt.hdt.options.HDTSpecification;
+import org.rdfhdt.hdt.triples.IteratorTripleID;
+import org.rdfhdt.hdt.triples.TripleID;
+
+/**
+ * Checks the counts of the count index against the matches that HDT
+ * iterates, and the persistence of the index next to the HDT file.
+ */
+public class HdtCountIndexTest {
+
+    private static File hdtfile;
+    private static HDT hdt;
+
+    private File countsfile;
+
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        File temp = DataSourceTest.getResourceAsFile();
+        HDT generated = HDTManager.generateHDT(temp.getAbsolutePath(),
+                        "http://linkeddatafragments.org",
+                        RDFNotation.NTRIPLES, new HDTSpecification(), null);
+        hdtfile = File.createTempFile("ldf-hdt-counts-test", ".hdt");
+        generated.saveToHDT(hdtfile.getAbsolutePath(), null);
+        generated.close();
+        temp.getAbsoluteFile().delete();
+
+        // the object index is needed to count (?,?,o) and (?,p,o)
+        hdt = HDTManager.mapIndexedHDT(hdtfile.getAbsolutePath(), null);
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (hdt != null) {
+            hdt.close();
+        }
+        if (hdtfile != null) {
+            new File(hdtfile.getPath() + ".index").delete();
+            new File(hdtfile.getPath() + ".index.v1-1").delete();
+            hdtfile.delete();
+        }
+    }
+
+    /**
+     *
+     */
+    @Before
+    public void setUp() {
+        countsfile = new File(hdtfile.getPath() + HdtCountIndex.FILE_SUFFIX);
+        countsfile.delete();
+    }
+
+    /**
+     *
+     */
+    @After
+    public void tearDown() {
+        countsfile.delete();
+    }
+
+    /**
+     * The counts must equal the number of matches for every pattern shape,
+     * whether or not HDT estimates them exactly.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExactCounts() throws Exception {
+        HdtCountIndex.build(hdt, countsfile);
+        HdtCountIndex index = new HdtCountIndex(countsfile);
+        assertCounts(index);
+
+        // subject-bound patterns are left to HDT
+        Assert.assertEquals(-1, index.count(1, 0, 0));
+
+        // IDs beyond the dictionary have no matches
+        long nPredicates = hdt.getDictionary().getNpredicates();
+        long nObjects = hdt.getDictionary().getNobjects();
+        Assert.assertEquals(0, index.count(0, (int) nPredicates + 1, 0));
+        Assert.assertEquals(0, index.count(0, 0, (int) nObjects + 1));
+    }
+
+    /**
+     * A built index is reused by a later open, and survives a reload.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReload() throws Exception {
+        Assert.assertNull(HdtCountIndex.openIfUpToDate(hdt, hdtfile));
+
+        HdtCountIndex built = HdtCountIndex.openOrBuild(hdt, hdtfile);
+        Assert.assertTrue(countsfile.isFile());
+        long modified = countsfile.lastModified();
+
+        HdtCountIndex reloaded = HdtCountIndex.openIfUpToDate(hdt, hdtfile);
+        Assert.assertNotNull(reloaded);
+        assertCounts(reloaded);
+
+        HdtCountIndex reopened = HdtCountIndex.openOrBuild(hdt, hdtfile);
+        Assert.assertEquals(modified, countsfile.lastModified());
+        Assert.assertEquals(built.count(0, 0, 0), reopened.count(0, 0, 0));
+    }
+
+    /**
+     * An index that is older than the HDT file is not used.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStale() throws Exception {
+        HdtCountIndex.build(hdt, countsfile);
+        Assert.assertTrue(countsfile.setLastModified(hdtfile.lastModified() - 10000));
+        Assert.assertNull(HdtCountIndex.openIfUpToDate(hdt, hdtfile));
+
+        HdtCountIndex rebuilt = HdtCountIndex.openOrBuild(hdt, hdtfile);
+        Assert.assertTrue(countsfile.lastModified() >= hdtfile.lastModified());
+        assertCounts(rebuilt);
+    }
+
+    /**
+     * A truncated index is not used.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        HdtCountIndex.build(hdt, countsfile);
+        try (RandomAccessFile raf = new RandomAccessFile(countsfile, "rw")) {
+            raf.setLength(raf.length() - 8);
+        }
+        Assert.assertNull(HdtCountIndex.openIfUpToDate(hdt, hdtfile));
+    }
+
+    private static void assertCounts(HdtCountIndex index) {
+        Assert.assertEquals(countMatches(0, 0, 0), index.count(0, 0, 0));
+
+        int nPredicates = (int) hdt.getDictionary().getNpredicates();
+        int nObjects = (int) hdt.getDictionary().getNobjects();
+        for (int p = 1; p <= nPredicates; p++) {
+            Assert.assertEquals(countMatches(0, p, 0), index.count(0, p, 0));
+        }
+        for (int o = 1; o <= nObjects; o++) {
+            Assert.assertEquals(countMatches(0, 0, o), index.count(0, 0, o));
+            for (int p = 1; p <= nPredicates; p++) {
+                Assert.assertEquals(countMatches(0, p, o), index.count(0, p, o));
+            }
+        }
+    }
+
+    private static long countMatches(int s, int p, int o) {
+        IteratorTripleID matches = hdt.getTriples().search(new TripleID(s, p, o));
+        boolean exact = matches.numResultEstimation() == ResultEstimationType.EXACT;
+        long estimate = matches.estimatedNumResults();
+        long count = 0;
+        while (matches.hasNext()) {
+            matches.next();
+            count++;
+        }
+        // where HDT claims an exact estimate, both must agree
+        if (exact) {
+            Assert.assertEquals(count, estimate);
+        }
+        return count;
+    }
+}
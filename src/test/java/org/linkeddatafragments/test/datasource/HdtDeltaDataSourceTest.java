@@ -0,0 +1,319 @@
+package org.linkeddatafragments.test.datasource;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.IUpdatableDataSource;
+import org.linkeddatafragments.datasource.hdt.HdtBasedRequestProcessorForTPFs;
+import org.linkeddatafragments.datasource.hdt.HdtCountIndex;
+import org.linkeddatafragments.datasource.hdt.HdtDeltaDataSourceType;
+import org.linkeddatafragments.datasource.hdt.HdtDeltaRequestProcessorForTPFs;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+import org.rdfhdt.hdt.enums.RDFNotation;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.hdt.HDTManager;
+import org.rdfhdt.hdt.options.HDTSpecification;
+
+/**
+ * Tests the HDT data source with a delta of patches.
+ */
+public class HdtDeltaDataSourceTest extends DataSourceTest<RDFNode,String,String> {
+
+    private static File hdtfile;
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected TriplePatternElementParser<RDFNode,String,String>
+                                               getTriplePatternElementParser()
+    {
+        return TriplePatternElementParserForJena.getInstance();
+    }
+    
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final String typeName = "HdtDeltaTestSourceType";
+        if ( ! DataSourceTypesRegistry.isRegistered(typeName) ) {
+            DataSourceTypesRegistry.register( typeName, new HdtDeltaDataSourceType() );
+        }
+
+        // HDT does not seem to support an InputReader, so write to temp file
+        File temp = getResourceAsFile();
+        
+        HDT mgr = HDTManager.generateHDT(temp.getAbsolutePath(),
+                        "http://linkeddatafragments.org",
+                        RDFNotation.NTRIPLES, new HDTSpecification(), null);
+        hdtfile = File.createTempFile("ldf-hdt-delta-test", ".hdt");
+        mgr.saveToHDT(hdtfile.getAbsolutePath(), null);
+        
+        temp.getAbsoluteFile().delete();
+        
+        // Everything is in place, now create the LDF datasource
+        JsonObject config = createConfig("hdt delta test", "hdt delta test", typeName);
+        
+        JsonObject settings = new JsonObject();
+        settings.addProperty("file", hdtfile.getAbsolutePath());
+        settings.addProperty("patchToken", "secret");
+        config.add("settings", settings);
+        
+        setDatasource(DataSourceFactory.create(config));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (hdtfile != null) {
+            new File(hdtfile.getAbsolutePath() +
+                     HdtDeltaRequestProcessorForTPFs.JOURNAL_SUFFIX).delete();
+            hdtfile.delete();
+        }
+    }
+
+    /**
+     * Test that added and deleted triples are counted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPatch() throws Exception {
+        final IUpdatableDataSource ds = (IUpdatableDataSource) getDatasource();
+        Assert.assertFalse(ds.isAuthorized(null));
+        Assert.assertTrue(ds.isAuthorized("Bearer secret"));
+
+        final String triple = "<http://added.ldf.org> <http://example.org/p> \"x\" .";
+        Assert.assertEquals(1, ds.applyPatch(new StringReader("A " + triple)));
+        Assert.assertEquals(0, ds.applyPatch(new StringReader("A " + triple)));
+        Assert.assertEquals(1, countAdded());
+
+        Assert.assertEquals(1, ds.applyPatch(new StringReader("D " + triple)));
+        Assert.assertEquals(0, countAdded());
+    }
+
+    /**
+     * Test that pages stay full when triples in and before them are deleted,
+     * and that the added triples follow the remaining ones.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPagingAcrossRemoved() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 250; i++) {
+            lines.add(triple("http://s.ldf.org/" + i, "\"" + i + "\""));
+        }
+        final File file = createHdt(lines);
+        final HdtDeltaRequestProcessorForTPFs processor = createProcessor(file);
+        try {
+            final Set<String> expected = new HashSet<String>();
+            final StringBuilder patch = new StringBuilder();
+            for (int i = 0; i < 250; i++) {
+                if (i % 3 == 0 || (i > 100 && i < 130)) {
+                    patch.append("D ").append(lines.get(i)).append('\n');
+                } else {
+                    expected.add("http://s.ldf.org/" + i);
+                }
+            }
+            for (int i = 0; i < 20; i++) {
+                patch.append("A ").append(triple("http://added.ldf.org/" + i, "\"x\""))
+                     .append('\n');
+                expected.add("http://added.ldf.org/" + i);
+            }
+            processor.applyPatch(new StringReader(patch.toString()));
+
+            Assert.assertEquals(expected, getSubjects(processor));
+        } finally {
+            processor.close();
+            delete(file);
+        }
+    }
+
+    /**
+     * Test that compaction applies the delta to the HDT file and empties it,
+     * also after a restart.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            lines.add(triple("http://s.ldf.org/" + i, "\"" + i + "\""));
+        }
+        final File file = createHdt(lines);
+        HdtDeltaRequestProcessorForTPFs processor = createProcessor(file);
+        try {
+            processor.applyPatch(new StringReader("D " + lines.get(0) + "\n" +
+                    "A " + triple("http://added.ldf.org/", "\"x\"") + "\n"));
+            final Set<String> expected = getSubjects(processor);
+            Assert.assertEquals(2, processor.getDeltaSize());
+
+            processor.compact();
+            Assert.assertEquals(0, processor.getDeltaSize());
+            Assert.assertEquals(expected, getSubjects(processor));
+            Assert.assertEquals(0, journal(file).length());
+
+            processor.close();
+            processor = createProcessor(file);
+            Assert.assertEquals(0, processor.getDeltaSize());
+            Assert.assertEquals(expected, getSubjects(processor));
+        } finally {
+            processor.close();
+            delete(file);
+        }
+    }
+
+    /**
+     * Test that blank nodes in patches match those of earlier patches and
+     * of the HDT file, before and after compaction.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBlankNodes() throws Exception {
+        final List<String> lines = new ArrayList<String>();
+        lines.add("_:base <http://example.org/p> \"x\" .");
+        lines.add(triple("http://s.ldf.org/", "_:base"));
+        final File file = createHdt(lines);
+        HdtDeltaRequestProcessorForTPFs processor = createProcessor(file);
+        try {
+            Assert.assertEquals(1, processor.applyPatch(
+                    new StringReader("D _:base <http://example.org/p> \"x\" .")));
+            Assert.assertEquals(1, countAll(processor));
+
+            final String added = "_:added <http://example.org/p> \"y\" .";
+            Assert.assertEquals(1, processor.applyPatch(new StringReader("A " + added)));
+            Assert.assertEquals(0, processor.applyPatch(new StringReader("A " + added)));
+            Assert.assertEquals(2, countAll(processor));
+
+            processor.compact();
+            Assert.assertEquals(0, processor.getDeltaSize());
+            Assert.assertEquals(2, countAll(processor));
+            Assert.assertEquals(1, processor.applyPatch(new StringReader("D " + added)));
+            Assert.assertEquals(1, countAll(processor));
+
+            // the journal refers to the blank node by its label
+            processor.close();
+            processor = createProcessor(file);
+            Assert.assertEquals(1, countAll(processor));
+        } finally {
+            processor.close();
+            delete(file);
+        }
+    }
+
+    private static String triple(String subject, String object) {
+        return "<" + subject + "> <http://example.org/p> " + object + " .";
+    }
+
+    private static File createHdt(List<String> lines) throws Exception {
+        final File nt = File.createTempFile("ldf-hdt-delta-test", ".nt");
+        Files.write(nt.toPath(), lines, StandardCharsets.UTF_8);
+        final File file = File.createTempFile("ldf-hdt-delta-test", ".hdt");
+        final HDT hdt = HDTManager.generateHDT(nt.getAbsolutePath(),
+                        "http://linkeddatafragments.org",
+                        RDFNotation.NTRIPLES, new HDTSpecification(), null);
+        hdt.saveToHDT(file.getAbsolutePath(), null);
+        hdt.close();
+        nt.delete();
+        return file;
+    }
+
+    private static HdtDeltaRequestProcessorForTPFs createProcessor(File file)
+                                                          throws Exception {
+        return new HdtDeltaRequestProcessorForTPFs(file.getAbsolutePath(),
+                                                   false, 0L, 0L);
+    }
+
+    private static File journal(File file) {
+        return new File(file.getAbsolutePath() +
+                        HdtDeltaRequestProcessorForTPFs.JOURNAL_SUFFIX);
+    }
+
+    private static void delete(File file) {
+        journal(file).delete();
+        new File(file.getAbsolutePath() +
+                 HdtBasedRequestProcessorForTPFs.INDEX_SUFFIX).delete();
+        new File(file.getAbsolutePath() + HdtCountIndex.FILE_SUFFIX).delete();
+        file.delete();
+    }
+
+    /**
+     * Pages through all triples, checking that every page but the last one
+     * is full, and returns their subjects.
+     */
+    private Set<String> getSubjects(HdtDeltaRequestProcessorForTPFs processor) {
+        final Set<String> subjects = new HashSet<String>();
+        boolean isLastPage = false;
+        for (long page = 1; !isLastPage; page++) {
+            final ITriplePatternFragment tpf = getPage(processor, page);
+            final List<Statement> triples = tpf.getTriples().toList();
+            isLastPage = tpf.isLastPage();
+            if (!isLastPage) {
+                Assert.assertEquals("Page " + page,
+                        ILinkedDataFragmentRequest.TRIPLESPERPAGE, triples.size());
+            }
+            for (Statement triple : triples) {
+                Assert.assertTrue("Duplicate " + triple,
+                                  subjects.add(triple.getSubject().toString()));
+            }
+        }
+        return subjects;
+    }
+
+    private long countAll(HdtDeltaRequestProcessorForTPFs processor) {
+        return getPage(processor, 1L).getTotalSize();
+    }
+
+    private ITriplePatternFragment getPage(HdtDeltaRequestProcessorForTPFs processor,
+                                           long page) {
+        final TriplePatternElementParser<RDFNode,String,String> tpeParser =
+                                               getTriplePatternElementParser();
+        return (ITriplePatternFragment) processor.createRequestedFragment(
+                    new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "http://example.org/f", "http://example.org/", true, page,
+                        tpeParser.parseIntoTriplePatternElement(null),
+                        tpeParser.parseIntoTriplePatternElement(null),
+                        tpeParser.parseIntoTriplePatternElement(null) ) );
+    }
+
+    private long countAdded() {
+        final TriplePatternElementParser<RDFNode,String,String> tpeParser =
+                                               getTriplePatternElementParser();
+        final ITriplePatternFragment tpf = (ITriplePatternFragment)
+                getDatasource().getRequestProcessor().createRequestedFragment(
+                    new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "http://example.org/f", "http://example.org/", true, 1L,
+                        tpeParser.parseIntoTriplePatternElement("http://added.ldf.org"),
+                        tpeParser.parseIntoTriplePatternElement(null),
+                        tpeParser.parseIntoTriplePatternElement(null) ) );
+        return tpf.getTotalSize();
+    }
+}
@@ -0,0 +1,178 @@
+package org.linkeddatafragments.test.datasource;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.hdt.HdtShardedDataSourceType;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+import org.rdfhdt.hdt.enums.RDFNotation;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.hdt.HDTManager;
+import org.rdfhdt.hdt.options.HDTSpecification;
+
+/**
+ * Tests the sharded HDT data source with the demo data split over two
+ * shards, such that a page falls across the boundary between them.
+ */
+public class HdtShardedDataSourceTest extends DataSourceTest<RDFNode,String,String> {
+
+    /**
+     * The number of lines of the demo data in the first shard; this is not a
+     * multiple of the page size
+     */
+    private static final int FIRST_SHARD_LINES = 150;
+
+    private static File[] hdtfiles = new File[2];
+    private static Model[] shards = new Model[2];
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected TriplePatternElementParser<RDFNode,String,String>
+                                               getTriplePatternElementParser()
+    {
+        return TriplePatternElementParserForJena.getInstance();
+    }
+    
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final String typeName = "HdtShardedTestSourceType";
+        if ( ! DataSourceTypesRegistry.isRegistered(typeName) ) {
+            DataSourceTypesRegistry.register( typeName, new HdtShardedDataSourceType() );
+        }
+
+        // HDT does not seem to support an InputReader, so write to temp file
+        File temp = getResourceAsFile();
+
+        List<String> lines = Files.readAllLines(temp.toPath(), StandardCharsets.UTF_8);
+        List<List<String>> parts = new ArrayList<List<String>>();
+        parts.add(lines.subList(0, FIRST_SHARD_LINES));
+        parts.add(lines.subList(FIRST_SHARD_LINES, lines.size()));
+
+        JsonArray files = new JsonArray();
+        for (int i = 0; i < hdtfiles.length; i++) {
+            File part = File.createTempFile("ldf-hdt-shard-test", ".nt");
+            Files.write(part.toPath(), parts.get(i), StandardCharsets.UTF_8);
+            shards[i] = RDFDataMgr.loadModel(part.getAbsolutePath());
+
+            HDT mgr = HDTManager.generateHDT(part.getAbsolutePath(),
+                            "http://linkeddatafragments.org",
+                            RDFNotation.NTRIPLES, new HDTSpecification(), null);
+            hdtfiles[i] = File.createTempFile("ldf-hdt-shard-test", ".hdt");
+            mgr.saveToHDT(hdtfiles[i].getAbsolutePath(), null);
+            files.add(new JsonPrimitive(hdtfiles[i].getAbsolutePath()));
+            part.delete();
+        }
+        
+        temp.getAbsoluteFile().delete();
+        
+        // Everything is in place, now create the LDF datasource
+        JsonObject config = createConfig("hdt shard test", "hdt shard test", typeName);
+        
+        JsonObject settings = new JsonObject();
+        settings.add("files", files);
+        config.add("settings", settings);
+        
+        setDatasource(DataSourceFactory.create(config));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        for (File hdtfile : hdtfiles) {
+            if (hdtfile != null) {
+                hdtfile.delete();
+            }
+        }
+    }
+
+    /**
+     * Pages through all triples: every page but the last is full, the page
+     * on the shard boundary takes triples from both shards, and together the
+     * pages contain every triple of both shards exactly once.
+     */
+    @Test
+    public void testPagingAcrossShards() {
+        final long pageSize = ILinkedDataFragmentRequest.TRIPLESPERPAGE;
+        final long boundaryPage = shards[0].size() / pageSize + 1;
+        Assert.assertTrue("The boundary must fall inside a page",
+                          shards[0].size() % pageSize != 0);
+
+        final Set<Statement> all = new HashSet<Statement>();
+        long expectedTotal = shards[0].size() + shards[1].size();
+        boolean isLastPage = false;
+        for (long page = 1; !isLastPage; page++) {
+            ITriplePatternFragment tpf = getPage(page);
+            List<Statement> triples = tpf.getTriples().toList();
+            isLastPage = tpf.isLastPage();
+
+            if (!isLastPage) {
+                Assert.assertEquals("Page " + page, pageSize, triples.size());
+            }
+            if (page == boundaryPage) {
+                Assert.assertTrue(containsAny(shards[0], triples));
+                Assert.assertTrue(containsAny(shards[1], triples));
+            }
+            for (Statement triple : triples) {
+                Assert.assertTrue("Duplicate " + triple, all.add(triple));
+            }
+            Assert.assertTrue("Too many pages", page <= expectedTotal / pageSize + 1);
+        }
+
+        Assert.assertEquals(expectedTotal, all.size());
+        Assert.assertEquals(expectedTotal, getPage(boundaryPage).getTotalSize());
+    }
+
+    private ITriplePatternFragment getPage(long page) {
+        final TriplePatternElementParser<RDFNode,String,String> tpeParser =
+                                               getTriplePatternElementParser();
+        return (ITriplePatternFragment) getDatasource().getRequestProcessor()
+                .createRequestedFragment(
+                    new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "http://example.org/f", "http://example.org/",
+                        true, page,
+                        tpeParser.parseIntoTriplePatternElement(null),
+                        tpeParser.parseIntoTriplePatternElement(null),
+                        tpeParser.parseIntoTriplePatternElement(null)));
+    }
+
+    private static boolean containsAny(Model model, List<Statement> triples) {
+        for (Statement triple : triples) {
+            if (model.contains(triple)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
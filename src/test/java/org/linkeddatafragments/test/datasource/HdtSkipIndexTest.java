@@ -0,0 +1,232 @@
+package org.linkeddatafragments.test.datasource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.hdt.HdtSkipIndex;
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+import org.linkeddatafragments.fragments.CancellationToken;
+import org.rdfhdt.hdt.enums.ResultEstimationType;
+import org.rdfhdt.hdt.enums.TripleComponentOrder;
+import org.rdfhdt.hdt.hdt.HDT;
+import org.rdfhdt.hdt.triples.IteratorTripleID;
+import org.rdfhdt.hdt.triples.TripleID;
+import org.rdfhdt.hdt.triples.Triples;
+
+/**
+ * Checks deep pages of a pattern whose iterator cannot jump to an offset
+ * against a plain iteration over its matches.
+ */
+public class HdtSkipIndexTest {
+
+    private static final int PREDICATE = 7;
+    private static final int MATCHES = 20000;
+
+    private final List<int[]> triples = new ArrayList<>();
+    private int reads;
+    private CancellationToken cancelAfter;
+    private int cancelAt;
+
+    /**
+     * Creates the matches of (?, PREDICATE, ?), with increasing subjects
+     * and objects that jump around.
+     */
+    private HDT createHDT() {
+        final Random random = new Random(42);
+        int subject = 1;
+        for (int i = 0; i < MATCHES; i++) {
+            subject += random.nextInt(3);
+            triples.add(new int[] { subject, PREDICATE, 1 + random.nextInt(i % 100 == 0 ? 1 << 30 : 500) });
+        }
+        final Triples hdtTriples = proxy(Triples.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Assert.assertEquals("search", method.getName());
+                return new Matches((TripleID) args[0]);
+            }
+        });
+        return proxy(HDT.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Assert.assertEquals("getTriples", method.getName());
+                return hdtTriples;
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(),
+                                                new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Iterates over the matches of a pattern without being able to jump.
+     */
+    private class Matches implements IteratorTripleID {
+        private final TripleID pattern;
+        private int position;
+
+        Matches(TripleID pattern) {
+            this.pattern = pattern;
+            skip();
+        }
+
+        private void skip() {
+            while (position < triples.size() && !matches(triples.get(position))) {
+                position++;
+            }
+        }
+
+        private boolean matches(int[] triple) {
+            return (pattern.getSubject() == 0 || pattern.getSubject() == triple[0])
+                && (pattern.getPredicate() == 0 || pattern.getPredicate() == triple[1])
+                && (pattern.getObject() == 0 || pattern.getObject() == triple[2]);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < triples.size();
+        }
+
+        @Override
+        public TripleID next() {
+            if (cancelAfter != null && ++reads == cancelAt) {
+                cancelAfter.cancel();
+            }
+            final int[] triple = triples.get(position++);
+            skip();
+            return new TripleID(triple[0], triple[1], triple[2]);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return false;
+        }
+
+        @Override
+        public TripleID previous() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void goToStart() {
+            position = 0;
+            skip();
+        }
+
+        @Override
+        public boolean canGoTo() {
+            return false;
+        }
+
+        @Override
+        public void goTo(long pos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long estimatedNumResults() {
+            return triples.size();
+        }
+
+        @Override
+        public ResultEstimationType numResultEstimation() {
+            return ResultEstimationType.APPROXIMATE;
+        }
+
+        @Override
+        public TripleComponentOrder getOrder() {
+            return null;
+        }
+    }
+
+    private void assertPage(HdtSkipIndex.Entry entry, long offset, long limit) {
+        final HdtSkipIndex.Cursor cursor = entry.cursor(offset);
+        final TripleID triple = new TripleID();
+        for (long i = offset; i < Math.min(offset + limit, MATCHES); i++) {
+            Assert.assertTrue(cursor.hasNext());
+            final int[] expected = triples.get((int) i);
+            cursor.next(triple);
+            Assert.assertEquals("Subject of match " + i, expected[0], triple.getSubject());
+            Assert.assertEquals("Predicate of match " + i, expected[1], triple.getPredicate());
+            Assert.assertEquals("Object of match " + i, expected[2], triple.getObject());
+        }
+        Assert.assertEquals(offset + limit < entry.size(), cursor.hasNext());
+    }
+
+    /**
+     * Check that deep pages are the same as those of a plain iteration.
+     */
+    @Test
+    public void testDeepPages() {
+        final HdtSkipIndex index = new HdtSkipIndex(createHDT(), 1 << 20, 100);
+        Assert.assertNull(index.get(0, PREDICATE, 0, 99, 100, CancellationToken.NONE));
+
+        for (long offset : new long[] { 100, 12345, 64 * 100, 64 * 100 - 1, MATCHES - 10, MATCHES }) {
+            final HdtSkipIndex.Entry entry =
+                    index.get(0, PREDICATE, 0, offset, 100, CancellationToken.NONE);
+            Assert.assertNotNull(entry);
+            Assert.assertTrue(entry.isComplete());
+            Assert.assertEquals(MATCHES, entry.size());
+            assertPage(entry, offset, 100);
+        }
+        // the IDs are stored in less memory than their plain arrays
+        Assert.assertTrue(index.getMemoryUsage() < MATCHES * 2 * 4);
+    }
+
+    /**
+     * Check that a pattern that does not fit keeps the prefix that does,
+     * and that pages beyond it are not served.
+     */
+    @Test
+    public void testPrefix() {
+        final HdtSkipIndex index = new HdtSkipIndex(createHDT(), 8192, 100);
+        final HdtSkipIndex.Entry entry =
+                index.get(0, PREDICATE, 0, 1000, 100, CancellationToken.NONE);
+        Assert.assertNotNull(entry);
+        Assert.assertFalse(entry.isComplete());
+        Assert.assertTrue(entry.size() > 1100 && entry.size() < MATCHES);
+        assertPage(entry, 1000, 100);
+        Assert.assertNull(index.get(0, PREDICATE, 0, MATCHES - 100, 100, CancellationToken.NONE));
+        Assert.assertTrue(index.getMemoryUsage() <= 8192 * 4);
+    }
+
+    /**
+     * Check that the matches read by a cancelled request are continued by
+     * the next request for the pattern.
+     */
+    @Test
+    public void testCancelled() {
+        final HdtSkipIndex index = new HdtSkipIndex(createHDT(), 1 << 20, 100);
+        cancelAfter = new CancellationToken(0);
+        cancelAt = 5000;
+        try {
+            index.get(0, PREDICATE, 0, 10000, 100, cancelAfter);
+            Assert.fail("The request was not cancelled.");
+        } catch (FragmentCancelledException e) {
+            // expected
+        }
+        Assert.assertEquals(5000, reads);
+
+        // the prefix serves the pages within it
+        final HdtSkipIndex.Entry prefix =
+                index.get(0, PREDICATE, 0, 1000, 100, CancellationToken.NONE);
+        Assert.assertFalse(prefix.isComplete());
+        assertPage(prefix, 1000, 100);
+
+        cancelAfter = null;
+        final HdtSkipIndex.Entry entry =
+                index.get(0, PREDICATE, 0, 10000, 100, CancellationToken.NONE);
+        Assert.assertTrue(entry.isComplete());
+        Assert.assertEquals(MATCHES, entry.size());
+        for (long offset = 0; offset < MATCHES; offset += 997) {
+            assertPage(entry, offset, 100);
+        }
+    }
+}
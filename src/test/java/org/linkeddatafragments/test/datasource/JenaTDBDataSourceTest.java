@@ -4,23 +4,35 @@ import com.google.gson.JsonObject;
 
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.vocabulary.RDF;
 
 import java.io.File;
 import java.io.InputStream;
-import org.apache.jena.rdf.model.RDFNode;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 
 import org.junit.After;
 import org.junit.AfterClass;
+import org.junit.Assert;
 
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Test;
 
 import org.linkeddatafragments.datasource.DataSourceFactory;
 import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.IStatisticsDataSource;
+import org.linkeddatafragments.datasource.statistics.VoidStatistics;
 import org.linkeddatafragments.datasource.tdb.JenaTDBDataSourceType;
 import org.linkeddatafragments.util.TriplePatternElementParser;
 import org.linkeddatafragments.util.TriplePatternElementParserForJena;
@@ -94,6 +106,64 @@ public class JenaTDBDataSourceTest extends DataSourceTest<RDFNode,String,String>
  
     }
 
+    /**
+     * Test that the statistics match the data, and survive being persisted.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStatistics() throws Exception {
+        final VoidStatistics statistics =
+            ((IStatisticsDataSource) getDatasource()).computeStatistics(2);
+        final Model model = dataset.getDefaultModel();
+
+        Assert.assertEquals(model.size(), statistics.getTriples());
+        Assert.assertEquals(model.listSubjects().toList().size(),
+                            statistics.getDistinctSubjects());
+        Assert.assertEquals(model.listObjects().toList().size(),
+                            statistics.getDistinctObjects());
+        for (Map.Entry<String, VoidStatistics.PropertyPartition> entry :
+                 statistics.getProperties().entrySet()) {
+            final Property property = model.createProperty(entry.getKey());
+            final Set<RDFNode> subjects = new HashSet<>();
+            final Set<RDFNode> objects = new HashSet<>();
+            long triples = 0;
+            for (Statement statement : model.listStatements(null, property, (RDFNode) null).toList()) {
+                subjects.add(statement.getSubject());
+                objects.add(statement.getObject());
+                triples++;
+            }
+            Assert.assertEquals(triples, entry.getValue().getTriples());
+            Assert.assertEquals(subjects.size(), entry.getValue().getDistinctSubjects());
+            Assert.assertEquals(objects.size(), entry.getValue().getDistinctObjects());
+        }
+        final Map<String, Long> classes = new HashMap<>();
+        for (Statement statement : model.listStatements(null, RDF.type, (RDFNode) null).toList()) {
+            if (statement.getObject().isURIResource()) {
+                final String uri = statement.getResource().getURI();
+                classes.put(uri, classes.containsKey(uri) ? classes.get(uri) + 1 : 1L);
+            }
+        }
+        Assert.assertEquals(classes, statistics.getClasses());
+
+        final File file = File.createTempFile("ldf-void-test", ".json");
+        try {
+            statistics.write(file);
+            final VoidStatistics read = VoidStatistics.read(file);
+            Assert.assertEquals(statistics.getTriples(), read.getTriples());
+            Assert.assertEquals(statistics.getProperties().keySet(),
+                                read.getProperties().keySet());
+        } finally {
+            file.delete();
+        }
+
+        final Model description = ModelFactory.createDefaultModel();
+        statistics.addTo(description, description.createResource("http://example.org/tdb"));
+        Assert.assertEquals(statistics.getProperties().size(), description.listStatements(
+            null, description.createProperty(VoidStatistics.VOID, "propertyPartition"),
+            (RDFNode) null).toList().size());
+    }
+
     /**
      *
      * @throws Exception
@@ -0,0 +1,112 @@
+package org.linkeddatafragments.test.datasource;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.rdf.model.RDFNode;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.mapped.MappedDataSourceType;
+import org.linkeddatafragments.datasource.mapped.MappedTripleStore;
+import org.linkeddatafragments.datasource.mapped.MappedTripleStoreBuilder;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+
+/**
+ * Tests the data source backed by a memory-mapped triple store file.
+ */
+public class MappedDataSourceTest extends DataSourceTest<RDFNode,String,String> {
+
+    private static File storefile;
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected TriplePatternElementParser<RDFNode,String,String>
+                                               getTriplePatternElementParser()
+    {
+        return TriplePatternElementParserForJena.getInstance();
+    }
+    
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final String typeName = "MappedTestSourceType";
+        if ( ! DataSourceTypesRegistry.isRegistered(typeName) ) {
+            DataSourceTypesRegistry.register( typeName, new MappedDataSourceType() );
+        }
+
+        // the store is built from the demo triples
+        File temp = getResourceAsFile();
+        storefile = File.createTempFile("ldf-mapped-test", MappedTripleStore.FILE_EXTENSION);
+        new MappedTripleStoreBuilder(storefile.getParentFile(), 10000)
+                .build(temp, storefile);
+        temp.getAbsoluteFile().delete();
+        
+        JsonObject config = createConfig("mapped test", "mapped test", typeName);
+        
+        JsonObject settings = new JsonObject();
+        settings.addProperty("file", storefile.getAbsolutePath());
+        config.add("settings", settings);
+        
+        setDatasource(DataSourceFactory.create(config));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (storefile != null) {
+            storefile.delete();
+        }
+    }
+
+    /**
+     * Check that merging the runs in several passes, when there are more
+     * than can be merged at once, builds the same file.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testManyRuns() throws Exception {
+        // blank nodes get new labels whenever the input is parsed
+        File temp = getResourceAsFile();
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(temp.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.contains("_:")) {
+                lines.add(line);
+            }
+        }
+        Files.write(temp.toPath(), lines, StandardCharsets.UTF_8);
+
+        File once = File.createTempFile("ldf-mapped-test", MappedTripleStore.FILE_EXTENSION);
+        File passes = File.createTempFile("ldf-mapped-test", MappedTripleStore.FILE_EXTENSION);
+        try {
+            new MappedTripleStoreBuilder(once.getParentFile(), 10000)
+                    .build(temp, once);
+            new MappedTripleStoreBuilder(passes.getParentFile(), 5)
+                    .build(temp, passes);
+            Assert.assertArrayEquals(Files.readAllBytes(once.toPath()),
+                                     Files.readAllBytes(passes.toPath()));
+        } finally {
+            temp.delete();
+            once.delete();
+            passes.delete();
+        }
+    }
+}
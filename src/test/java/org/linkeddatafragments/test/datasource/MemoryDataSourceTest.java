@@ -0,0 +1,65 @@
+package org.linkeddatafragments.test.datasource;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import org.apache.jena.rdf.model.RDFNode;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.memory.MemoryDataSourceType;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+
+/**
+ * Tests the in-memory data source.
+ */
+public class MemoryDataSourceTest extends DataSourceTest<RDFNode,String,String> {
+
+    private static File rdffile;
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected TriplePatternElementParser<RDFNode,String,String>
+                                               getTriplePatternElementParser()
+    {
+        return TriplePatternElementParserForJena.getInstance();
+    }
+    
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final String typeName = "MemoryTestSourceType";
+        if ( ! DataSourceTypesRegistry.isRegistered(typeName) ) {
+            DataSourceTypesRegistry.register( typeName, new MemoryDataSourceType() );
+        }
+
+        rdffile = getResourceAsFile();
+        
+        JsonObject config = createConfig("memory test", "memory test", typeName);
+        
+        JsonObject settings = new JsonObject();
+        settings.addProperty("file", rdffile.getAbsolutePath());
+        config.add("settings", settings);
+        
+        setDatasource(DataSourceFactory.create(config));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        if (rdffile != null) {
+            rdffile.delete();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.linkeddatafragments.test.datasource;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.sparql.SparqlDataSourceType;
+import org.linkeddatafragments.exceptions.FragmentCancelledException;
+import org.linkeddatafragments.fragments.CancellationToken;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+
+/**
+ * Tests the SPARQL data source against a stub endpoint that answers queries
+ * over the demo data.
+ */
+public class SparqlDataSourceTest extends DataSourceTest<RDFNode,String,String> {
+
+    private static final List<String> queries =
+                                 Collections.synchronizedList(new ArrayList<String>());
+
+    private static File rdffile;
+    private static Server server;
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected TriplePatternElementParser<RDFNode,String,String>
+                                               getTriplePatternElementParser()
+    {
+        return TriplePatternElementParserForJena.getInstance();
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final String typeName = "SparqlTestSourceType";
+        if ( ! DataSourceTypesRegistry.isRegistered(typeName) ) {
+            DataSourceTypesRegistry.register( typeName, new SparqlDataSourceType() );
+        }
+
+        rdffile = getResourceAsFile();
+        final Model model = RDFDataMgr.loadModel(rdffile.getAbsolutePath());
+
+        server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new StubEndpoint(model)), "/sparql");
+        server.setHandler(context);
+        server.start();
+        final int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+
+        JsonObject config = createConfig("sparql test", "sparql test", typeName);
+
+        JsonObject settings = new JsonObject();
+        settings.addProperty("endpoint", "http://localhost:" + port + "/sparql");
+        config.add("settings", settings);
+
+        setDatasource(DataSourceFactory.create(config));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        getDatasource().close();
+        if (server != null) {
+            server.stop();
+        }
+        if (rdffile != null) {
+            rdffile.delete();
+        }
+    }
+
+    /**
+     * Test that pages and counts are fetched from the endpoint only once,
+     * and that the next page is fetched ahead of time.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCache() throws Exception {
+        final long total = getPage(1).getTotalSize();
+        Assert.assertTrue("Estimate is too small : " + total, total > 100);
+
+        // wait for the prefetch of the second page
+        for (int i = 0; i < 100 && count("OFFSET 100") == 0; i++) {
+            Thread.sleep(50);
+        }
+        getPage(2);
+        getPage(1);
+
+        Assert.assertEquals(1, count("OFFSET 0 "));
+        Assert.assertEquals(1, count("OFFSET 100"));
+        Assert.assertEquals(1, count("COUNT"));
+    }
+
+    /**
+     * Test that pages are ordered by the variables of the pattern, so that
+     * the endpoint slices the same sequence for every page.
+     */
+    @Test
+    public void testOrderedPages() {
+        getPage(1);
+        Assert.assertEquals(count("CONSTRUCT"), count("ORDER BY ?P ?O "));
+    }
+
+    /**
+     * Test that a page beyond the last one is empty but keeps the count.
+     */
+    @Test
+    public void testPastLastPage() {
+        final long total = getPage(1).getTotalSize();
+        final ITriplePatternFragment fragment = getPage(1000);
+        Assert.assertTrue(fragment.isLastPage());
+        Assert.assertFalse(fragment.getTriples().hasNext());
+        Assert.assertEquals(total, fragment.getTotalSize());
+    }
+
+    /**
+     * Test that a cancelled request does not query the endpoint.
+     */
+    @Test
+    public void testCancelled() {
+        final int before = count("OFFSET 900 ");
+        final CancellationToken cancellation = new CancellationToken(0);
+        cancellation.cancel();
+        try {
+            getDatasource().getRequestProcessor().createRequestedFragment(
+                    createRequest(10).withCancellationToken(cancellation));
+            Assert.fail("The request was not cancelled.");
+        } catch (FragmentCancelledException e) {
+            // expected
+        }
+        Assert.assertEquals(before, count("OFFSET 900 "));
+    }
+
+    private ITriplePatternFragment getPage(long page) {
+        return (ITriplePatternFragment) getDatasource().getRequestProcessor()
+            .createRequestedFragment(createRequest(page));
+    }
+
+    private TriplePatternFragmentRequestImpl<RDFNode,String,String> createRequest(long page) {
+        final TriplePatternElementParser<RDFNode,String,String> tpeParser =
+                                               getTriplePatternElementParser();
+        return new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "http://example.org/f", "http://example.org/", true, page,
+                        tpeParser.parseIntoTriplePatternElement("http://data.gov.be/catalog/ckanvl"),
+                        tpeParser.parseIntoTriplePatternElement(null),
+                        tpeParser.parseIntoTriplePatternElement(null));
+    }
+
+    private static int count(String fragment) {
+        int count = 0;
+        synchronized (queries) {
+            for (String query : queries) {
+                if (query.contains("ckanvl") && query.toUpperCase().contains(fragment)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Answers SPARQL queries over a model and records them.
+     */
+    private static class StubEndpoint extends HttpServlet {
+
+        private final Model model;
+
+        StubEndpoint(Model model) {
+            this.model = model;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response)
+                                                            throws IOException {
+            final Query query = QueryFactory.create(request.getParameter("query"));
+            queries.add(query.toString().replaceAll("\\s+", " ") + " ");
+            try (QueryExecution execution = QueryExecutionFactory.create(query, model)) {
+                if (query.isConstructType()) {
+                    response.setContentType(Lang.NTRIPLES.getHeaderString());
+                    RDFDataMgr.write(response.getOutputStream(),
+                                     execution.execConstruct(), Lang.NTRIPLES);
+                } else {
+                    response.setContentType("application/sparql-results+json");
+                    ResultSetFormatter.outputAsJSON(response.getOutputStream(),
+                                                    execution.execSelect());
+                }
+            }
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest request, HttpServletResponse response)
+                                                            throws IOException {
+            doGet(request, response);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.linkeddatafragments.test.datasource;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.rdf.model.RDFNode;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceRegistry;
+import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.IFragmentRequestProcessor;
+import org.linkeddatafragments.datasource.memory.MemoryDataSource;
+import org.linkeddatafragments.datasource.tiered.TieredDataSourceType;
+import org.linkeddatafragments.datasource.tiered.TieredRequestProcessorForTPFs;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+
+/**
+ * Tests the tiered data source, with an in-memory backing data source.
+ */
+public class TieredDataSourceTest extends DataSourceTest<RDFNode,String,String> {
+
+    private static final String FIXTURE_SUBJECT = "http://example.org/s";
+
+    private static final int PREDICATES = 3;
+
+    private static final int OBJECTS_PER_PREDICATE = 50;
+
+    private static File rdffile;
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected TriplePatternElementParser<RDFNode,String,String>
+                                               getTriplePatternElementParser()
+    {
+        return TriplePatternElementParserForJena.getInstance();
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final String typeName = "TieredTestSourceType";
+        if ( ! DataSourceTypesRegistry.isRegistered(typeName) ) {
+            DataSourceTypesRegistry.register( typeName, new TieredDataSourceType() );
+        }
+
+        rdffile = getResourceAsFile();
+        DataSourceRegistry.register("tiered-test-backing",
+                new MemoryDataSource("backing", "backing", rdffile.getAbsolutePath()));
+
+        JsonObject config = createConfig("tiered test", "tiered test", typeName);
+
+        JsonObject settings = new JsonObject();
+        settings.addProperty("backing", "tiered-test-backing");
+        settings.addProperty("promotionThreshold", 2);
+        config.add("settings", settings);
+
+        setDatasource(DataSourceFactory.create(config));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        getDatasource().close();
+        DataSourceRegistry.unregister("tiered-test-backing");
+        if (rdffile != null) {
+            rdffile.delete();
+        }
+    }
+
+    /**
+     * Test that a frequently requested pattern is promoted and then served
+     * with the same pages as the backing data source. The backing data holds
+     * one subject with {@link #PREDICATES} predicates of
+     * {@link #OBJECTS_PER_PREDICATE} objects each, so the subject spans two
+     * pages and each of its predicates fits on one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPromotion() throws Exception {
+        final File file = File.createTempFile("ldf-tiered-test", ".nt");
+        final List<String> lines = new ArrayList<String>();
+        for (int p = 0; p < PREDICATES; p++) {
+            for (int o = 0; o < OBJECTS_PER_PREDICATE; o++) {
+                lines.add("<" + FIXTURE_SUBJECT + "> <http://example.org/p" + p + "> \"" + o + "\" .");
+            }
+        }
+        Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+        final IDataSource fixture = new MemoryDataSource("fixture", "fixture",
+                                                         file.getAbsolutePath());
+        DataSourceRegistry.register("tiered-test-fixture", fixture);
+        final TieredRequestProcessorForTPFs processor = new TieredRequestProcessorForTPFs(
+                "tiered-test-fixture", TieredRequestProcessorForTPFs.DEFAULT_HEAP_BUDGET,
+                2, TieredRequestProcessorForTPFs.DEFAULT_MAX_PATTERN_SIZE);
+        try {
+            // the second request promotes the pattern
+            for (int i = 0; i < 2; i++) {
+                Assert.assertEquals(0, processor.getHotPatternCount());
+                getPage(processor, FIXTURE_SUBJECT, null, 1);
+            }
+            Assert.assertTrue(processor.awaitPromotions(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, processor.getHotPatternCount());
+            Assert.assertEquals(2, processor.getColdRequests());
+
+            for (long page = 1; page <= 2; page++) {
+                final ITriplePatternFragment hot = getPage(processor, FIXTURE_SUBJECT, null, page);
+                final ITriplePatternFragment cold = getPage(fixture.getRequestProcessor(),
+                                                            FIXTURE_SUBJECT, null, page);
+                Assert.assertEquals(PREDICATES * OBJECTS_PER_PREDICATE, hot.getTotalSize());
+                Assert.assertEquals(cold.getTotalSize(), hot.getTotalSize());
+                Assert.assertEquals(page == 2, hot.isLastPage());
+                Assert.assertEquals(cold.isLastPage(), hot.isLastPage());
+                Assert.assertEquals(cold.getTriples().toSet(), hot.getTriples().toSet());
+            }
+
+            // a more specific pattern of the hot subject
+            final ITriplePatternFragment specific = getPage(processor, FIXTURE_SUBJECT,
+                                                            "http://example.org/p0", 1);
+            Assert.assertEquals(OBJECTS_PER_PREDICATE, specific.getTotalSize());
+            Assert.assertEquals(OBJECTS_PER_PREDICATE, specific.getTriples().toList().size());
+
+            Assert.assertEquals(3, processor.getHotRequests());
+            Assert.assertEquals(2, processor.getColdRequests());
+            Assert.assertEquals(3.0 / 5, processor.getHitRatio(), 1e-9);
+        } finally {
+            processor.close();
+            DataSourceRegistry.unregister("tiered-test-fixture");
+            fixture.close();
+            file.delete();
+        }
+    }
+
+    private ITriplePatternFragment getPage(IFragmentRequestProcessor processor,
+                                           String subject, String predicate, long page) {
+        final TriplePatternElementParser<RDFNode,String,String> tpeParser =
+                                               getTriplePatternElementParser();
+        return (ITriplePatternFragment) processor
+            .createRequestedFragment(
+                new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "http://example.org/f", "http://example.org/", true, page,
+                        tpeParser.parseIntoTriplePatternElement(subject),
+                        tpeParser.parseIntoTriplePatternElement(predicate),
+                        tpeParser.parseIntoTriplePatternElement(null)));
+    }
+}
@@ -0,0 +1,171 @@
+package org.linkeddatafragments.test.datasource;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.File;
+import org.apache.jena.rdf.model.RDFNode;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.linkeddatafragments.datasource.DataSourceFactory;
+import org.linkeddatafragments.datasource.DataSourceRegistry;
+import org.linkeddatafragments.datasource.DataSourceTypesRegistry;
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.memory.MemoryDataSource;
+import org.linkeddatafragments.datasource.union.UnionDataSourceType;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+
+/**
+ * Tests the union data source, with two in-memory members that hold the
+ * same triples.
+ */
+public class UnionDataSourceTest extends DataSourceTest<RDFNode,String,String> {
+
+    private static File rdffile;
+    private static IDataSource member;
+
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected TriplePatternElementParser<RDFNode,String,String>
+                                               getTriplePatternElementParser()
+    {
+        return TriplePatternElementParserForJena.getInstance();
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        final String typeName = "UnionTestSourceType";
+        if ( ! DataSourceTypesRegistry.isRegistered(typeName) ) {
+            DataSourceTypesRegistry.register( typeName, new UnionDataSourceType() );
+        }
+
+        rdffile = getResourceAsFile();
+        member = new MemoryDataSource("member", "member", rdffile.getAbsolutePath());
+        DataSourceRegistry.register("union-test-a", member);
+        DataSourceRegistry.register("union-test-b",
+                new MemoryDataSource("member", "member", rdffile.getAbsolutePath()));
+
+        setDatasource(createUnion(true));
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        getDatasource().close();
+        DataSourceRegistry.unregister("union-test-a");
+        DataSourceRegistry.unregister("union-test-b");
+        if (rdffile != null) {
+            rdffile.delete();
+        }
+    }
+
+    /**
+     * Test that counts are summed and that the triples of the second member
+     * are dropped as duplicates.
+     */
+    @Test
+    public void testDeduplicate() {
+        final ITriplePatternFragment single = getPage(member);
+        final ITriplePatternFragment union = getPage(getDatasource());
+
+        Assert.assertEquals(2 * single.getTotalSize(), union.getTotalSize());
+        Assert.assertEquals(single.getTriples().toList().size(),
+                            union.getTriples().toList().size());
+    }
+
+    /**
+     * Test that a member that is registered again is used from then on.
+     */
+    @Test
+    public void testReregisteredMember() throws Exception {
+        final long total = getPage(getDatasource()).getTotalSize();
+        final File emptyFile = File.createTempFile("ldf-union-test", ".nt");
+        final IDataSource empty = new MemoryDataSource("empty", "empty",
+                                                       emptyFile.getAbsolutePath());
+        DataSourceRegistry.unregister("union-test-b");
+        DataSourceRegistry.register("union-test-b", empty);
+        try {
+            Assert.assertEquals(total / 2, getPage(getDatasource()).getTotalSize());
+        } finally {
+            DataSourceRegistry.unregister("union-test-b");
+            DataSourceRegistry.register("union-test-b",
+                    new MemoryDataSource("member", "member", rdffile.getAbsolutePath()));
+            emptyFile.delete();
+        }
+    }
+
+    /**
+     * Test that without removal of duplicates, the triples of both members
+     * are served, matching the summed counts.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBag() throws Exception {
+        final IDataSource bag = createUnion(false);
+        try {
+            final ITriplePatternFragment single = getPage(member);
+            final ITriplePatternFragment union = getPage(bag);
+            Assert.assertEquals(2 * single.getTotalSize(), union.getTotalSize());
+            Assert.assertEquals(2 * single.getTriples().toList().size(),
+                                union.getTriples().toList().size());
+        } finally {
+            bag.close();
+        }
+    }
+
+    /**
+     * Test that a union that was closed fails instead of waiting for
+     * searches that never run.
+     *
+     * @throws Exception
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws Exception {
+        final IDataSource closed = createUnion(true);
+        closed.close();
+        getPage(closed);
+    }
+
+    private static IDataSource createUnion(boolean deduplicate) throws Exception {
+        JsonObject config = createConfig("union test", "union test", "UnionTestSourceType");
+
+        JsonObject settings = new JsonObject();
+        JsonArray members = new JsonArray();
+        members.add(new JsonPrimitive("union-test-a"));
+        members.add(new JsonPrimitive("union-test-b"));
+        settings.add("members", members);
+        settings.addProperty("deduplicate", deduplicate);
+        config.add("settings", settings);
+
+        return DataSourceFactory.create(config);
+    }
+
+    private ITriplePatternFragment getPage(IDataSource dataSource) {
+        final TriplePatternElementParser<RDFNode,String,String> tpeParser =
+                                               getTriplePatternElementParser();
+        return (ITriplePatternFragment) dataSource.getRequestProcessor()
+            .createRequestedFragment(
+                new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        "http://example.org/f", "http://example.org/", true, 1L,
+                        tpeParser.parseIntoTriplePatternElement("http://data.gov.be/catalog/ckanvl"),
+                        tpeParser.parseIntoTriplePatternElement(null),
+                        tpeParser.parseIntoTriplePatternElement(null)));
+    }
+}
@@ -0,0 +1,93 @@
+package org.linkeddatafragments.test.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.util.BoundedCache;
+
+/**
+ * Checks that {@link BoundedCache} keeps the first value for a key and stays
+ * within its capacity.
+ */
+public class BoundedCacheTest {
+
+    /**
+     * Check that a value that is cached already is kept.
+     */
+    @Test
+    public void testPut() {
+        final BoundedCache<String, String> cache = new BoundedCache<>(2);
+        Assert.assertEquals("1", cache.put("a", "1"));
+        Assert.assertEquals("1", cache.put("a", "2"));
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+        Assert.assertEquals(1, cache.size());
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get("a"));
+    }
+
+    /**
+     * Check that an entry that was used since the last eviction is spared,
+     * and that the cache stays within its capacity.
+     */
+    @Test
+    public void testEviction() {
+        final BoundedCache<String, String> cache = new BoundedCache<>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertEquals("3", cache.put("c", "3"));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertTrue(cache.get("b") == null || cache.get("c") == null);
+
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertEquals("v" + i, cache.put("k" + i, "v" + i));
+            Assert.assertEquals(2, cache.size());
+        }
+    }
+
+    /**
+     * Check that concurrent additions and lookups leave the cache within its
+     * capacity and only return values cached for the given key.
+     */
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(64);
+        final AtomicInteger errors = new AtomicInteger();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        final int key = (i * 7 + offset) % 500;
+                        final Integer cached = cache.put(key, key + offset * 1000);
+                        final Integer found = cache.get(key);
+                        if (cached % 1000 != key || (found != null && found % 1000 != key)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, errors.get());
+        Assert.assertTrue(cache.size() <= 64);
+    }
+
+    /**
+     * Check that a cache must hold at least one entry.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacity() {
+        new BoundedCache<String, String>(0);
+    }
+}
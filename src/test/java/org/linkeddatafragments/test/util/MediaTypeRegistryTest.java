@@ -0,0 +1,163 @@
+package org.linkeddatafragments.test.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.util.MIMEParse;
+import org.linkeddatafragments.util.MediaTypeRegistry;
+
+/**
+ * Negotiates a table of Accept headers against the mime-types of the
+ * servlet, in the order in which the servlet registers them.
+ */
+public class MediaTypeRegistryTest {
+
+    private static final String HTML = "text/html";
+    private static final String BINARY = "application/x-ldf-binary";
+    private static final String TURTLE = "text/turtle";
+    private static final String JSONLD = "application/ld+json";
+    private static final String NTRIPLES = "application/n-triples";
+    private static final String RDFXML = "application/rdf+xml";
+
+    private static final List<String> MIME_TYPES =
+            Arrays.asList(HTML, BINARY, TURTLE, JSONLD, NTRIPLES, RDFXML);
+
+    /**
+     * Accept headers and the mime-types they must select
+     */
+    private static final String[][] HEADERS = {
+        // a single type
+        { TURTLE, TURTLE },
+        { JSONLD, JSONLD },
+        { BINARY, BINARY },
+        { "text/turtle; charset=utf-8", TURTLE },
+        // browsers
+        { "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8", HTML },
+        { "text/html, */*", HTML },
+        // q-values
+        { "text/turtle;q=0.5, application/n-triples;q=0.9", NTRIPLES },
+        { "application/n-triples;q=0.9, text/turtle;q=0.5", NTRIPLES },
+        { "*/*;q=0.1, text/turtle;q=0.2", TURTLE },
+        { "application/rdf+xml;q=0.8, text/turtle", TURTLE },
+        // a more specific range is preferred over a higher q-value
+        { "application/*, text/html;q=0.4", HTML },
+        // wildcards, on which the last registered type wins
+        { "*/*", RDFXML },
+        { "text/*", TURTLE },
+        { "application/*", RDFXML },
+        // ties on fitness and q-value go to the last registered type
+        { "text/turtle;q=0.3, application/rdf+xml;q=0.3", RDFXML },
+        { "application/rdf+xml;q=0.3, text/turtle;q=0.3", RDFXML },
+        { "application/ld+json, text/turtle", JSONLD },
+        // q=0 excludes a type; without acceptable types, the first one is used
+        { "text/turtle;q=0", HTML },
+        { "text/turtle;q=0, application/ld+json;q=0.5", JSONLD },
+        { "image/png", HTML },
+        { "", HTML },
+        // malformed ranges are skipped
+        { "turtle, text/turtle;q=0.5", TURTLE },
+        { "a/b/c, application/ld+json", JSONLD },
+        { ",,", HTML },
+    };
+
+    private static MediaTypeRegistry<String> createRegistry(int cacheSize) throws Exception {
+        final Map<String, String> handlers = new LinkedHashMap<>();
+        for (String mimeType : MIME_TYPES) {
+            handlers.put(mimeType, "writer for " + mimeType);
+        }
+        return new MediaTypeRegistry<>(handlers, cacheSize);
+    }
+
+    private static void assertSelects(MediaTypeRegistry<String> registry,
+                                      String header, String expected) {
+        final Map.Entry<String, String> selected = registry.select(header);
+        Assert.assertEquals("Accept: " + header, expected, selected.getKey());
+        Assert.assertEquals("writer for " + expected, selected.getValue());
+    }
+
+    /**
+     * Check the mime-type selected for every header of the table.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testHeaders() throws Exception {
+        final MediaTypeRegistry<String> registry = createRegistry(256);
+        for (String[] row : HEADERS) {
+            assertSelects(registry, row[0], row[1]);
+        }
+    }
+
+    /**
+     * Check that a request without an Accept header gets the first type.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testNoHeader() throws Exception {
+        assertSelects(createRegistry(256), null, HTML);
+    }
+
+    /**
+     * Check that the registry agrees with {@link MIMEParse#bestMatch} on the
+     * headers that only contain well-formed ranges.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSameAsBestMatch() throws Exception {
+        final MediaTypeRegistry<String> registry = createRegistry(256);
+        for (String[] row : HEADERS) {
+            if (!row[0].isEmpty() && !row[0].contains(",,")
+                    && !row[0].startsWith("turtle") && !row[0].startsWith("a/b/c")) {
+                Assert.assertEquals("Accept: " + row[0],
+                        MIMEParse.bestMatch(MIME_TYPES, row[0]),
+                        registry.select(row[0]).getKey());
+            }
+        }
+    }
+
+    /**
+     * Check that cached decisions are the same as the first ones, also when
+     * the cache is too small for all headers and for headers that are too
+     * long to be cached.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCachedDecisions() throws Exception {
+        final List<String[]> headers = new ArrayList<>(Arrays.asList(HEADERS));
+        final StringBuilder longHeader = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longHeader.append("application/x-unknown-").append(i).append(";q=0.9, ");
+        }
+        headers.add(new String[] { longHeader.append(JSONLD).toString(), JSONLD });
+
+        for (int cacheSize : new int[] { 1, 4, 256 }) {
+            final MediaTypeRegistry<String> registry = createRegistry(cacheSize);
+            for (int round = 0; round < 3; round++) {
+                for (String[] row : headers) {
+                    assertSelects(registry, row[0], row[1]);
+                    // the decision just made is reused
+                    Assert.assertSame(registry.select(row[0]), registry.select(row[0]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Check that the mime-types keep the order of registration.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMimeTypes() throws Exception {
+        Assert.assertEquals(MIME_TYPES, createRegistry(256).getMimeTypes());
+    }
+}
@@ -0,0 +1,130 @@
+package org.linkeddatafragments.test.util;
+
+import java.util.regex.Matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.util.RDFTermParser;
+
+/**
+ * Parses a table of request parameters into descriptions of the RDF terms
+ * that {@link RDFTermParser} creates for them.
+ */
+public class RDFTermParserTest {
+
+    private static final String XSD_INTEGER = "http://www.w3.org/2001/XMLSchema#integer";
+
+    /**
+     * Describes the terms it creates, so that they can be compared as strings.
+     */
+    private static final RDFTermParser<String> PARSER = new RDFTermParser<String>() {
+        @Override
+        public String createBlankNode(String label) {
+            return "blank " + label;
+        }
+
+        @Override
+        public String createURI(String uri) {
+            return "uri " + uri;
+        }
+
+        @Override
+        public String createTypedLiteral(String label, String typeURI) {
+            return "typed " + label + " " + typeURI;
+        }
+
+        @Override
+        public String createLanguageLiteral(String label, String langTag) {
+            return "lang " + label + " " + langTag;
+        }
+
+        @Override
+        public String createPlainLiteral(String label) {
+            return "plain " + label;
+        }
+
+        @Override
+        public String handleUnparsableParameter(String param) {
+            return "invalid";
+        }
+    };
+
+    /**
+     * Parameters and the terms they must be parsed into
+     */
+    private static final String[][] TERMS = {
+        // IRIs
+        { "http://example.org/s", "uri http://example.org/s" },
+        { "<http://example.org/s>", "uri http://example.org/s" },
+        { "<http://example.org/a?b=c#d>", "uri http://example.org/a?b=c#d" },
+        { "urn:isbn:123", "uri urn:isbn:123" },
+        // blank nodes
+        { "_:b1", "blank _:b1" },
+        // plain literals
+        { "\"plain\"", "plain plain" },
+        { "\"\"", "plain " },
+        { "\"with spaces and @ and ^^\"", "plain with spaces and @ and ^^" },
+        // language-tagged literals
+        { "\"chat\"@fr", "lang chat fr" },
+        { "\"colour\"@en-GB", "lang colour en-GB" },
+        // typed literals, with and without angular brackets
+        { "\"42\"^^<" + XSD_INTEGER + ">", "typed 42 " + XSD_INTEGER },
+        { "\"42\"^^" + XSD_INTEGER, "typed 42 " + XSD_INTEGER },
+        // quotes within the label, which is not unescaped
+        { "\"say \"hi\"\"", "plain say \"hi\"" },
+        { "\"say \\\"hi\\\"\"@en", "lang say \\\"hi\\\" en" },
+        { "\"a\"@en\"", "plain a\"@en" },
+        { "\"a\"^^<x>\"@de", "lang a\"^^<x> de" },
+        { "\"a\"^^\"b\"", "plain a\"^^\"b" },
+        // line breaks are allowed in the datatype only
+        { "\"\"^^<x\ny>", "typed  x\ny" },
+        // malformed input
+        { "", "invalid" },
+        { "<", "invalid" },
+        { "\"", "invalid" },
+        { "\"unterminated", "invalid" },
+        { "\"a\"b", "invalid" },
+        { "\"a\"^<x>", "invalid" },
+        { "\"a\"^^<x<y>", "invalid" },
+        { "\"a\"^^<x>y", "invalid" },
+        { "\"two\nlines\"", "invalid" },
+        { "\"a\"@en\nGB", "invalid" },
+    };
+
+    /**
+     * Check the term created for every parameter of the table.
+     */
+    @Test
+    public void testTerms() {
+        for (String[] row : TERMS) {
+            Assert.assertEquals("Parameter: " + row[0], row[1], PARSER.parseIntoRDFNode(row[0]));
+        }
+        Assert.assertEquals("invalid", PARSER.parseIntoRDFNode(null));
+    }
+
+    /**
+     * Check that literals are parsed into the parts that
+     * {@link RDFTermParser#STRINGPATTERN} matches.
+     */
+    @Test
+    public void testSameAsPattern() {
+        for (String[] row : TERMS) {
+            if (!row[0].startsWith("\"")) {
+                continue;
+            }
+            final Matcher matcher = RDFTermParser.STRINGPATTERN.matcher(row[0]);
+            final String expected;
+            if (!matcher.matches()) {
+                expected = "invalid";
+            } else if (matcher.group(2) != null) {
+                expected = "lang " + matcher.group(1) + " " + matcher.group(2);
+            } else if (matcher.group(3) != null) {
+                expected = "typed " + matcher.group(1) + " " + matcher.group(3);
+            } else {
+                expected = "plain " + matcher.group(1);
+            }
+            Assert.assertEquals("Parameter: " + row[0], expected, PARSER.parseIntoRDFNode(row[0]));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.linkeddatafragments.test.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.util.ResponseBuffer;
+import org.linkeddatafragments.util.ResponseBufferPool;
+
+/**
+ * Checks that {@link ResponseBuffer} sends small responses at once and
+ * streams the ones that outgrow the pool.
+ */
+public class ResponseBufferTest {
+
+    /**
+     * The output of a response, recorded from the calls on it.
+     */
+    private static class Recorder extends ServletOutputStream implements InvocationHandler {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int writes;
+        int contentLength = -1;
+
+        HttpServletResponse response() {
+            return (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                    new Class<?>[] { HttpServletResponse.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("setContentLength")) {
+                contentLength = (Integer) args[0];
+                return null;
+            }
+            Assert.assertEquals("getOutputStream", method.getName());
+            return this;
+        }
+
+        @Override
+        public void write(int b) {
+            writes++;
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static byte[] createBytes(int length, int seed) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Check that a response within the maximum size is sent in one write
+     * with its length, even if it outgrows the array of the pool.
+     */
+    @Test
+    public void testBuffered() throws IOException {
+        final ResponseBufferPool pool = new ResponseBufferPool(4, 64 * 1024);
+        final Recorder recorder = new Recorder();
+        final ResponseBuffer buffer = pool.acquire(recorder.response());
+        final byte[] expected = createBytes(20000, 0);
+        buffer.write(expected, 0, 1000);
+        for (int i = 1000; i < 1010; i++) {
+            buffer.write(expected[i]);
+        }
+        buffer.write(expected, 1010, expected.length - 1010);
+        buffer.flush();
+        Assert.assertEquals(0, recorder.writes);
+
+        buffer.send();
+        Assert.assertEquals(expected.length, recorder.contentLength);
+        Assert.assertEquals(1, recorder.writes);
+        Assert.assertArrayEquals(expected, recorder.bytes.toByteArray());
+    }
+
+    /**
+     * Check that a response that outgrows the maximum size in the middle of
+     * a write is streamed without its length.
+     */
+    @Test
+    public void testStreamed() throws IOException {
+        final ResponseBufferPool pool = new ResponseBufferPool(4, 8 * 1024);
+        final Recorder recorder = new Recorder();
+        final ResponseBuffer buffer = pool.acquire(recorder.response());
+        final byte[] expected = createBytes(12000, 0);
+        buffer.write(expected, 0, 6000);
+        Assert.assertEquals(0, recorder.writes);
+        buffer.write(expected, 6000, 4000);
+        Assert.assertTrue(recorder.writes > 0);
+        buffer.write(expected[10000]);
+        buffer.write(expected, 10001, expected.length - 10001);
+
+        buffer.send();
+        Assert.assertEquals(-1, recorder.contentLength);
+        Assert.assertArrayEquals(expected, recorder.bytes.toByteArray());
+    }
+
+    /**
+     * Check that releasing a sent buffer does not return its array to the
+     * pool a second time, where it would be shared by the next buffers.
+     */
+    @Test
+    public void testReleaseAfterSend() throws IOException {
+        final ResponseBufferPool pool = new ResponseBufferPool(4, 64 * 1024);
+        final ResponseBuffer sent = pool.acquire(new Recorder().response());
+        sent.write(createBytes(100, 0));
+        sent.send();
+        sent.release();
+
+        final Recorder first = new Recorder();
+        final Recorder second = new Recorder();
+        final ResponseBuffer firstBuffer = pool.acquire(first.response());
+        final ResponseBuffer secondBuffer = pool.acquire(second.response());
+        firstBuffer.write(createBytes(100, 1));
+        secondBuffer.write(createBytes(100, 2));
+        firstBuffer.send();
+        secondBuffer.send();
+        Assert.assertArrayEquals(createBytes(100, 1), first.bytes.toByteArray());
+        Assert.assertArrayEquals(createBytes(100, 2), second.bytes.toByteArray());
+    }
+}
@@ -0,0 +1,117 @@
+package org.linkeddatafragments.test.util;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.fragments.tpf.ITriplePatternElement;
+import org.linkeddatafragments.util.CommonResources;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+
+/**
+ * Parses request parameters into the elements of triple patterns for Jena.
+ */
+public class TriplePatternElementParserForJenaTest {
+
+    private static final TriplePatternElementParserForJena PARSER =
+            TriplePatternElementParserForJena.getInstance();
+
+    private static RDFNode parseConstant(String param) {
+        final ITriplePatternElement<RDFNode, String, String> element =
+                PARSER.parseIntoTriplePatternElement(param);
+        Assert.assertFalse("Parameter: " + param, element.isVariable());
+        return element.asConstantTerm();
+    }
+
+    /**
+     * Check that missing and empty parameters are unspecified variables.
+     */
+    @Test
+    public void testUnspecifiedVariables() {
+        for (String param : new String[] { null, "" }) {
+            final ITriplePatternElement<RDFNode, String, String> element =
+                    PARSER.parseIntoTriplePatternElement(param);
+            Assert.assertTrue(element.isVariable());
+            Assert.assertFalse(element.isSpecificVariable());
+        }
+    }
+
+    /**
+     * Check that named variables and blank nodes are specific variables.
+     */
+    @Test
+    public void testSpecificVariables() {
+        final ITriplePatternElement<RDFNode, String, String> named =
+                PARSER.parseIntoTriplePatternElement("?name");
+        Assert.assertTrue(named.isSpecificVariable());
+        Assert.assertTrue(named.isNamedVariable());
+        Assert.assertEquals("name", named.asNamedVariable());
+
+        final ITriplePatternElement<RDFNode, String, String> anonymous =
+                PARSER.parseIntoTriplePatternElement("_:b1");
+        Assert.assertTrue(anonymous.isSpecificVariable());
+        Assert.assertTrue(anonymous.isAnonymousVariable());
+        Assert.assertEquals("_:b1", anonymous.asAnonymousVariable());
+    }
+
+    /**
+     * Check that IRIs are parsed into resources.
+     */
+    @Test
+    public void testIRIs() {
+        final RDFNode resource = parseConstant("http://example.org/s");
+        Assert.assertEquals(ResourceFactory.createResource("http://example.org/s"), resource);
+        Assert.assertEquals(resource, parseConstant("<http://example.org/s>"));
+    }
+
+    /**
+     * Check that literals are parsed with their language tag or datatype.
+     */
+    @Test
+    public void testLiterals() {
+        Assert.assertEquals(ResourceFactory.createPlainLiteral("plain"),
+                            parseConstant("\"plain\""));
+        Assert.assertEquals(ResourceFactory.createLangLiteral("chat", "fr"),
+                            parseConstant("\"chat\"@fr"));
+        Assert.assertEquals(ResourceFactory.createPlainLiteral("say \"hi\""),
+                            parseConstant("\"say \"hi\"\""));
+
+        final String integer = XSDDatatype.XSDinteger.getURI();
+        final Literal typed = parseConstant("\"42\"^^<" + integer + ">").asLiteral();
+        Assert.assertEquals(ResourceFactory.createTypedLiteral("42", XSDDatatype.XSDinteger), typed);
+        Assert.assertEquals(42, typed.getInt());
+        Assert.assertEquals(typed, parseConstant("\"42\"^^" + integer));
+
+        final Literal custom = parseConstant("\"x\"^^<http://example.org/type>").asLiteral();
+        Assert.assertEquals("http://example.org/type", custom.getDatatypeURI());
+        Assert.assertEquals("x", custom.getLexicalForm());
+    }
+
+    /**
+     * Check that blank nodes are parsed into new blank nodes when they are
+     * not parsed as variables.
+     */
+    @Test
+    public void testBlankNodes() {
+        final RDFNode first = PARSER.parseIntoRDFNode("_:b1");
+        final RDFNode second = PARSER.parseIntoRDFNode("_:b1");
+        Assert.assertTrue(first.isAnon());
+        Assert.assertNotEquals(first, second);
+    }
+
+    /**
+     * Check that malformed parameters are parsed into the invalid URI.
+     */
+    @Test
+    public void testMalformed() {
+        for (String param : new String[] { "<", "\"", "\"unterminated", "\"a\"b",
+                                           "\"a\"^^<x<y>", "\"two\nlines\"" }) {
+            Assert.assertSame("Parameter: " + param,
+                              CommonResources.INVALID_URI, parseConstant(param));
+        }
+    }
+}
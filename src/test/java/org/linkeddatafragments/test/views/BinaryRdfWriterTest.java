@@ -0,0 +1,106 @@
+package org.linkeddatafragments.test.views;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.jena.rdf.model.Model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.views.BinaryRdf;
+import org.linkeddatafragments.views.BinaryRdfReader;
+
+/**
+ * Reads the output of the binary writer back with {@link BinaryRdfReader},
+ * and checks that the reader rejects truncated and corrupt input.
+ */
+public class BinaryRdfWriterTest extends FragmentWriterTest {
+
+    @Override
+    protected String getMimeType() {
+        return BinaryRdf.MIME_TYPE;
+    }
+
+    @Override
+    protected Model read(byte[] output) throws Exception {
+        return BinaryRdfReader.read(new ByteArrayInputStream(output));
+    }
+
+    /**
+     * Check that every truncation of a page is rejected.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        final byte[] output = write(createWriter(), createData(), 1, false);
+        for (int length = 0; length < output.length; length++) {
+            assertMalformed(Arrays.copyOf(output, length));
+        }
+    }
+
+    /**
+     * Check that corrupt pages are rejected.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCorrupt() throws Exception {
+        final byte[] iri = { BinaryRdf.NEW_TERM, BinaryRdf.IRI, 1, 'x' };
+        final byte[] literal = { BinaryRdf.NEW_TERM, BinaryRdf.STRING, 1, 'x' };
+
+        // a valid page with one triple
+        Assert.assertEquals(1, BinaryRdfReader.read(new ByteArrayInputStream(
+                page(iri, new byte[] { 2, 2 }, end()))).size());
+
+        // wrong magic bytes and version
+        final byte[] magic = page(end());
+        magic[0] = 'X';
+        assertMalformed(magic);
+        final byte[] version = page(end());
+        version[BinaryRdf.MAGIC.length] = BinaryRdf.VERSION + 1;
+        assertMalformed(version);
+
+        // unknown term kind
+        assertMalformed(page(new byte[] { BinaryRdf.NEW_TERM, 9, 1, 'x' }, new byte[] { 2, 2 }, end()));
+        // reference to a term that has not been read
+        assertMalformed(page(iri, new byte[] { 2, 3 }, end()));
+        // typed literal that is its own datatype
+        assertMalformed(page(iri, new byte[] { 2, BinaryRdf.NEW_TERM, BinaryRdf.TYPED_LITERAL, 1, 'x', 3 }, end()));
+        // typed literal with a literal as datatype
+        assertMalformed(page(iri, new byte[] { 2, BinaryRdf.NEW_TERM, BinaryRdf.TYPED_LITERAL, 1, 'x' },
+                             literal, end()));
+        // string length beyond the range of an int
+        assertMalformed(page(new byte[] { BinaryRdf.NEW_TERM, BinaryRdf.IRI,
+                                          (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F },
+                             end()));
+        // varint longer than five bytes
+        assertMalformed(page(new byte[] { (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1 }));
+    }
+
+    private static byte[] end() {
+        return new byte[] { BinaryRdf.END };
+    }
+
+    private static byte[] page(byte[]... parts) throws IOException {
+        final ByteArrayOutputStream page = new ByteArrayOutputStream();
+        page.write(BinaryRdf.MAGIC);
+        page.write(BinaryRdf.VERSION);
+        for (byte[] part : parts) {
+            page.write(part);
+        }
+        return page.toByteArray();
+    }
+
+    private static void assertMalformed(byte[] input) {
+        try {
+            BinaryRdfReader.read(new ByteArrayInputStream(input));
+            Assert.fail("Malformed input of " + input.length + " bytes was read.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package org.linkeddatafragments.test.views;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.vocabulary.RDF;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.fragments.ILinkedDataFragment;
+import org.linkeddatafragments.fragments.ILinkedDataFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentImpl;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.util.ByteArrayServletOutputStream;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+import org.linkeddatafragments.views.ILinkedDataFragmentWriter;
+import org.linkeddatafragments.views.LinkedDataFragmentWriterFactory;
+
+/**
+ * Writes fragments with the writer of a media type and checks that parsing
+ * the output back yields exactly the data, metadata and controls of the
+ * fragment.
+ *
+ * The data contains language-tagged and typed literals, blank nodes, and
+ * strings and IRIs that need escaping.
+ */
+public abstract class FragmentWriterTest {
+
+    /**
+     * The namespace of the data
+     */
+    protected static final String EX = "http://example.org/";
+
+    /**
+     * The URL of the test fragments
+     */
+    protected static final String FRAGMENT_URL = "http://example.org/dataset?subject=&predicate=";
+
+    /**
+     * The URL of the dataset of the test fragments
+     */
+    protected static final String DATASET_URL = "http://example.org/dataset";
+
+    /**
+     * Returns the media type of the writer under test.
+     *
+     * @return media type
+     */
+    protected abstract String getMimeType();
+
+    /**
+     * Parses the output of the writer.
+     *
+     * @param output the output
+     * @return the parsed triples
+     * @throws Exception
+     */
+    protected Model read(byte[] output) throws Exception {
+        final Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(output),
+                        RDFLanguages.contentTypeToLang(getMimeType()));
+        return model;
+    }
+
+    /**
+     * Returns the prefixes with which the writer is created.
+     *
+     * @return prefixes
+     */
+    protected Map<String, String> getPrefixes() {
+        final Map<String, String> prefixes = new HashMap<>();
+        prefixes.put("rdf", RDF.getURI());
+        prefixes.put("xsd", XSDDatatype.XSD + "#");
+        prefixes.put("hydra", "http://www.w3.org/ns/hydra/core#");
+        prefixes.put("void", "http://rdfs.org/ns/void#");
+        prefixes.put("ex", EX);
+        prefixes.put("exns", EX + "ns#");
+        return prefixes;
+    }
+
+    /**
+     * Creates the data of the test fragments.
+     *
+     * @return data
+     */
+    protected static Model createData() {
+        final Model model = ModelFactory.createDefaultModel();
+        final Resource s = model.createResource(EX + "s");
+        final Property p = model.createProperty(EX + "ns#p");
+        final Property q = model.createProperty(EX + "q");
+
+        s.addProperty(RDF.type, model.createResource(EX + "ns#Class"));
+        s.addProperty(p, "plain");
+        s.addProperty(p, "chat", "fr");
+        s.addProperty(p, "colour", "en-GB");
+        s.addProperty(p, model.createTypedLiteral("42", XSDDatatype.XSDinteger));
+        s.addProperty(p, model.createTypedLiteral("1.50", XSDDatatype.XSDdecimal));
+        s.addProperty(p, model.createTypedLiteral("x y", EX + "ns#datatype"));
+        s.addProperty(p, model.createTypedLiteral("explicit", XSDDatatype.XSDstring));
+        s.addProperty(p, "quote \" backslash \\ newline \n return \r tab \t");
+        s.addProperty(p, "unicode \u00e9 \u4e2d \ud834\udd1e");
+        s.addProperty(p, "");
+
+        // local names that cannot be abbreviated
+        s.addProperty(q, model.createResource(EX + "a.b"));
+        s.addProperty(q, model.createResource(EX + "path/to?x=1&y=%20#frag"));
+        s.addProperty(q, model.createResource(EX + "\u00e9t\u00e9"));
+        model.createResource(EX + "ns#").addProperty(q, s);
+
+        final Resource b1 = model.createResource();
+        final Resource b2 = model.createResource();
+        s.addProperty(q, b1);
+        b1.addProperty(q, b2);
+        b1.addProperty(p, "blank");
+        b2.addProperty(q, b1);
+        return model;
+    }
+
+    /**
+     * Creates a fragment of the given page of the data.
+     *
+     * @param data data
+     * @param page page number
+     * @param isLastPage whether it is the last page
+     * @return fragment
+     */
+    protected static ILinkedDataFragment createFragment(Model data, long page, boolean isLastPage) {
+        return new TriplePatternFragmentImpl(data, 1000, FRAGMENT_URL, DATASET_URL,
+                                             page, isLastPage);
+    }
+
+    /**
+     * Returns what the output of the given fragment must contain.
+     *
+     * @param data data
+     * @param page page number
+     * @param isLastPage whether it is the last page
+     * @return expected triples
+     */
+    protected static Model expected(Model data, long page, boolean isLastPage) {
+        final ILinkedDataFragment fragment = createFragment(data, page, isLastPage);
+        final Model model = ModelFactory.createDefaultModel();
+        model.add(fragment.getTriples());
+        model.add(fragment.getMetadata());
+        model.add(fragment.getControls());
+        return model;
+    }
+
+    /**
+     * Writes the given page of the data.
+     *
+     * @param writer writer
+     * @param data data
+     * @param page page number
+     * @param isLastPage whether it is the last page
+     * @return output
+     * @throws Exception
+     */
+    protected static byte[] write(ILinkedDataFragmentWriter writer, Model data,
+                                  long page, boolean isLastPage) throws Exception {
+        return write(writer, createFragment(data, page, isLastPage));
+    }
+
+    /**
+     * Writes the given fragment.
+     *
+     * @param writer writer
+     * @param fragment fragment
+     * @return output
+     * @throws Exception
+     */
+    protected static byte[] write(ILinkedDataFragmentWriter writer,
+                                  ILinkedDataFragment fragment) throws Exception {
+        final long page = fragment.getPageNumber();
+        final TriplePatternElementParser<RDFNode,String,String> parser =
+                TriplePatternElementParserForJena.getInstance();
+        final ILinkedDataFragmentRequest request =
+                new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        FRAGMENT_URL, DATASET_URL, page > 1, page,
+                        parser.parseIntoTriplePatternElement(null),
+                        parser.parseIntoTriplePatternElement(null),
+                        parser.parseIntoTriplePatternElement(null));
+        final ByteArrayServletOutputStream out = new ByteArrayServletOutputStream(1 << 12);
+        writer.writeFragment(out, null, fragment, request);
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates the writer under test.
+     *
+     * @return writer
+     * @throws Exception
+     */
+    protected ILinkedDataFragmentWriter createWriter() throws Exception {
+        return LinkedDataFragmentWriterFactory.create(getPrefixes(),
+                new HashMap<String, IDataSource>(), getMimeType());
+    }
+
+    /**
+     * Checks that the given output is the given page of the data.
+     *
+     * @param data data
+     * @param page page number
+     * @param isLastPage whether it is the last page
+     * @param output output
+     * @throws Exception
+     */
+    protected void assertRoundTrip(Model data, long page, boolean isLastPage,
+                                   byte[] output) throws Exception {
+        final Model expected = normalize(expected(data, page, isLastPage));
+        final Model actual = normalize(read(output));
+        if (!expected.isIsomorphicWith(actual)) {
+            Assert.fail("Output is not the fragment:\n" + new String(output, "UTF-8"));
+        }
+    }
+
+    /**
+     * Returns a copy of the given model with lower-cased language tags,
+     * because they are case-insensitive and some parsers lower-case them.
+     */
+    private static Model normalize(Model model) {
+        final Model normalized = ModelFactory.createDefaultModel();
+        for (Statement statement : model.listStatements().toList()) {
+            RDFNode object = statement.getObject();
+            if (object.isLiteral() && !object.asLiteral().getLanguage().isEmpty()) {
+                final Literal literal = object.asLiteral();
+                object = normalized.createLiteral(literal.getLexicalForm(),
+                        literal.getLanguage().toLowerCase(Locale.ROOT));
+            }
+            normalized.add(statement.getSubject(), statement.getPredicate(), object);
+        }
+        return normalized;
+    }
+
+    /**
+     * Check that the first page is written completely and correctly.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFirstPage() throws Exception {
+        final Model data = createData();
+        assertRoundTrip(data, 1, false, write(createWriter(), data, 1, false));
+    }
+
+    /**
+     * Check that later pages, which reuse the encoded description of the
+     * dataset, are written correctly.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLaterPages() throws Exception {
+        final ILinkedDataFragmentWriter writer = createWriter();
+        final Model data = createData();
+        assertRoundTrip(data, 1, false, write(writer, data, 1, false));
+        assertRoundTrip(data, 2, false, write(writer, data, 2, false));
+        assertRoundTrip(data, 3, true, write(writer, data, 3, true));
+    }
+
+    /**
+     * Check that an empty page is written correctly.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEmptyPage() throws Exception {
+        final Model data = ModelFactory.createDefaultModel();
+        assertRoundTrip(data, 1, true, write(createWriter(), data, 1, true));
+    }
+
+    /**
+     * Check that a fragment that only implements the methods that
+     * {@link ILinkedDataFragment} had before it described the dataset
+     * separately is written correctly, on every page.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFragmentWithoutDatasetDescription() throws Exception {
+        final ILinkedDataFragmentWriter writer = createWriter();
+        final Model data = createData();
+        for (long page = 1; page <= 2; page++) {
+            final ILinkedDataFragment fragment = createFragment(data, page, page == 2);
+            final ILinkedDataFragment minimal = new ILinkedDataFragment() {
+                @Override
+                public StmtIterator getTriples() {
+                    return fragment.getTriples();
+                }
+
+                @Override
+                public boolean isPageOnly() {
+                    return fragment.isPageOnly();
+                }
+
+                @Override
+                public long getPageNumber() {
+                    return fragment.getPageNumber();
+                }
+
+                @Override
+                public boolean isLastPage() {
+                    return fragment.isLastPage();
+                }
+
+                @Override
+                public long getMaxPageSize() {
+                    return fragment.getMaxPageSize();
+                }
+
+                @Override
+                public StmtIterator getMetadata() {
+                    return fragment.getMetadata();
+                }
+
+                @Override
+                public StmtIterator getControls() {
+                    return fragment.getControls();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            assertRoundTrip(data, page, page == 2, write(writer, minimal));
+        }
+    }
+}
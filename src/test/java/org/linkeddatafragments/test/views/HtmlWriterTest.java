@@ -0,0 +1,170 @@
+package org.linkeddatafragments.test.views;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.datasource.memory.MemoryDataSource;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragment;
+import org.linkeddatafragments.fragments.tpf.ITriplePatternFragmentRequest;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentImpl;
+import org.linkeddatafragments.fragments.tpf.TriplePatternFragmentRequestImpl;
+import org.linkeddatafragments.util.ByteArrayServletOutputStream;
+import org.linkeddatafragments.util.TriplePatternElementParser;
+import org.linkeddatafragments.util.TriplePatternElementParserForJena;
+import org.linkeddatafragments.views.HtmlTriplePatternFragmentWriterImpl;
+import org.linkeddatafragments.views.ILinkedDataFragmentWriter;
+import org.linkeddatafragments.views.LinkedDataFragmentWriterFactory;
+
+/**
+ * Checks that the HTML writer, which pre-renders the pages of a datasource
+ * and streams the triples into them, writes the same pages as rendering
+ * datasource.ftl.html with all the triples.
+ */
+public class HtmlWriterTest {
+
+    private static final String HYDRA = "http://www.w3.org/ns/hydra/core#";
+
+    private static File empty;
+    private static IDataSource datasource;
+    private static Configuration cfg;
+
+    /**
+     *
+     * @throws Exception
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // only the title is used
+        empty = File.createTempFile("ldf-html-test", ".nt");
+        datasource = new MemoryDataSource("Test <data> & \"more\"", "", empty.getAbsolutePath());
+
+        cfg = new Configuration(Configuration.VERSION_2_3_22);
+        cfg.setClassForTemplateLoading(HtmlTriplePatternFragmentWriterImpl.class, "/views");
+        cfg.setDefaultEncoding("UTF-8");
+        cfg.setURLEscapingCharset("UTF-8");
+    }
+
+    /**
+     *
+     * @throws Exception
+     */
+    @AfterClass
+    public static void tearDown() throws Exception {
+        empty.delete();
+    }
+
+    /**
+     * Check the pages of a pattern with matches, including terms that need
+     * escaping in HTML and URLs.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPages() throws Exception {
+        final ILinkedDataFragmentWriter writer = createWriter();
+        final Model data = FragmentWriterTest.createData();
+        assertSamePage(writer, data, 1, false, null);
+        assertSamePage(writer, data, 2, false, null);
+        assertSamePage(writer, data, 3, true, "\"a <b> & \\\"c\\\"\"@en");
+    }
+
+    /**
+     * Check the pages of patterns without matches.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testEmptyPages() throws Exception {
+        final ILinkedDataFragmentWriter writer = createWriter();
+        final Model data = ModelFactory.createDefaultModel();
+        assertSamePage(writer, data, 1, true, null);
+        assertSamePage(writer, data, 2, true, "<http://example.org/s>");
+    }
+
+    private static ILinkedDataFragmentWriter createWriter() throws Exception {
+        return LinkedDataFragmentWriterFactory.create(new HashMap<String, String>(),
+                new HashMap<String, IDataSource>(), "text/html");
+    }
+
+    private static void assertSamePage(ILinkedDataFragmentWriter writer, Model data,
+                                       long page, boolean isLastPage, String object) throws Exception {
+        final TriplePatternElementParser<RDFNode,String,String> parser =
+                TriplePatternElementParserForJena.getInstance();
+        final ITriplePatternFragmentRequest<RDFNode,String,String> request =
+                new TriplePatternFragmentRequestImpl<RDFNode,String,String>(
+                        FragmentWriterTest.FRAGMENT_URL, FragmentWriterTest.DATASET_URL,
+                        page > 1, page,
+                        parser.parseIntoTriplePatternElement(null),
+                        parser.parseIntoTriplePatternElement(null),
+                        parser.parseIntoTriplePatternElement(object));
+
+        final ByteArrayServletOutputStream out = new ByteArrayServletOutputStream(1 << 16);
+        writer.writeFragment(out, datasource, createFragment(data, page, isLastPage), request);
+        final String streamed = new String(out.toByteArray(), "UTF-8");
+
+        Assert.assertEquals(render(createFragment(data, page, isLastPage), request), streamed);
+    }
+
+    private static ITriplePatternFragment createFragment(Model data, long page, boolean isLastPage) {
+        return new TriplePatternFragmentImpl(data, data.isEmpty() ? 0 : 1000,
+                FragmentWriterTest.FRAGMENT_URL, FragmentWriterTest.DATASET_URL, page, isLastPage);
+    }
+
+    /**
+     * Renders a page with datasource.ftl.html.
+     */
+    private static String render(ITriplePatternFragment fragment,
+                                 ITriplePatternFragmentRequest<RDFNode,String,String> request) throws Exception {
+        final Map<String, Object> model = new HashMap<>();
+        model.put("assetsPath", "assets/");
+        model.put("header", datasource.getTitle());
+        model.put("date", new Date());
+        model.put("datasourceUrl", request.getDatasetURL());
+        model.put("datasource", datasource);
+
+        for (Statement control : fragment.getFragmentDescription().toList()) {
+            if (control.getObject().isURIResource()) {
+                model.put(control.getPredicate().getURI().replaceFirst(HYDRA, ""),
+                          control.getResource().getURI());
+            }
+        }
+        final List<Statement> triples = fragment.getTriples().toList();
+        final long start = (request.getPageNumber() - 1) * fragment.getMaxPageSize() + 1;
+        model.put("triples", triples);
+        model.put("count", triples.size());
+        model.put("start", start);
+        model.put("end", start + triples.size() - 1);
+        model.put("totalEstimate", fragment.getTotalSize());
+        model.put("itemsPerPage", fragment.getMaxPageSize());
+
+        final Map<String, String> query = new HashMap<>();
+        query.put("subject", "");
+        query.put("predicate", "");
+        query.put("object", request.getObject().isVariable() ? ""
+                          : request.getObject().asConstantTerm().toString());
+        model.put("query", query);
+
+        final Template template = cfg.getTemplate("datasource.ftl.html");
+        final StringWriter html = new StringWriter();
+        template.process(model, html);
+        return html.toString();
+    }
+}
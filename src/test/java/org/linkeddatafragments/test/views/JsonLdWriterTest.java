@@ -0,0 +1,46 @@
+package org.linkeddatafragments.test.views;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.StringReader;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Parses the output of the JSON-LD writer back.
+ */
+public class JsonLdWriterTest extends FragmentWriterTest {
+
+    @Override
+    protected String getMimeType() {
+        return Lang.JSONLD.getHeaderString();
+    }
+
+    /**
+     * Check that the output is one strictly valid JSON object with the
+     * prefixes as its context, even though the nodes are written one by one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStrictJson() throws Exception {
+        final Model data = createData();
+        final String output = new String(write(createWriter(), data, 2, false), "UTF-8");
+
+        final JsonReader reader = new JsonReader(new StringReader(output));
+        reader.setLenient(false);
+        final JsonElement document = new JsonParser().parse(reader);
+        Assert.assertTrue(document.isJsonObject());
+
+        final JsonObject context = document.getAsJsonObject().getAsJsonObject("@context");
+        Assert.assertEquals(EX, context.get("ex").getAsString());
+        Assert.assertTrue(document.getAsJsonObject().get("@graph").isJsonArray());
+    }
+}
@@ -0,0 +1,72 @@
+package org.linkeddatafragments.test.views;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.linkeddatafragments.datasource.IDataSource;
+import org.linkeddatafragments.views.ILinkedDataFragmentWriter;
+import org.linkeddatafragments.views.LinkedDataFragmentWriterFactory;
+
+/**
+ * Parses the output of the Turtle writer back.
+ */
+public class TurtleWriterTest extends FragmentWriterTest {
+
+    @Override
+    protected String getMimeType() {
+        return Lang.TTL.getHeaderString();
+    }
+
+    /**
+     * Check that the prefixes are declared and used where the local name
+     * allows it.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPrefixes() throws Exception {
+        final String output = new String(write(createWriter(), createData(), 1, false), "UTF-8");
+
+        Assert.assertTrue(output.startsWith("@prefix "));
+        Assert.assertTrue(output.contains("@prefix ex: <" + EX + "> ."));
+        Assert.assertTrue(output.contains("@prefix exns: <" + EX + "ns#> ."));
+        // the longest namespace is used
+        Assert.assertTrue(output.contains("exns:p "));
+        Assert.assertFalse(output.contains("ex:ns#p"));
+        Assert.assertTrue(output.contains(" a exns:Class"));
+        // local names that need escaping are written as IRIs
+        Assert.assertTrue(output.contains("<" + EX + "a.b>"));
+        Assert.assertTrue(output.contains("<" + EX + "ns#>"));
+    }
+
+    /**
+     * Check that prefixes that are not valid in Turtle are neither declared
+     * nor used.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInvalidPrefixes() throws Exception {
+        final Map<String, String> prefixes = new HashMap<>(getPrefixes());
+        prefixes.put("", EX + "ns#");
+        prefixes.put("1x", EX + "ns#");
+        prefixes.put("a.b", EX);
+        final ILinkedDataFragmentWriter writer = LinkedDataFragmentWriterFactory.create(
+                prefixes, new HashMap<String, IDataSource>(), getMimeType());
+
+        final Model data = createData();
+        final byte[] output = write(writer, data, 1, true);
+        assertRoundTrip(data, 1, true, output);
+
+        final String turtle = new String(output, "UTF-8");
+        Assert.assertFalse(turtle.contains("@prefix :"));
+        Assert.assertFalse(turtle.contains("1x:"));
+        Assert.assertFalse(turtle.contains("a.b:"));
+    }
+}